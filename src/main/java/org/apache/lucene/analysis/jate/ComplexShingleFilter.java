@@ -4,11 +4,9 @@ import org.apache.log4j.Logger;
 import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.analysis.tokenattributes.*;
 import org.apache.lucene.util.AttributeSource;
-import org.apache.lucene.util.BytesRef;
 
 import java.io.IOException;
-import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.Arrays;
 import java.util.Set;
 
 /**
@@ -39,8 +37,7 @@ public final class ComplexShingleFilter extends MWEFilter implements SentenceCon
      * The sequence of input stream tokens (or filler tokens, if necessary)
      * that will be composed to form output shingles.
      */
-    private LinkedList<InputWindowToken> inputWindow
-            = new LinkedList<>();
+    private final InputWindow inputWindow;
 
     /**
      * The number of input tokens in the next output token.  This is the "n" in
@@ -154,6 +151,7 @@ public final class ComplexShingleFilter extends MWEFilter implements SentenceCon
         this.tokenSeparator = tokenSeparater;
         this.fillerToken = fillerToken.toCharArray();
         gramSize = new CircularSequence();
+        inputWindow = new InputWindow(Math.max(1, maxTokens));
     }
 
 
@@ -182,16 +180,15 @@ public final class ComplexShingleFilter extends MWEFilter implements SentenceCon
         if (inputWindow.size() >= gramSize.getValue()) {
             boolean isAllFiller = true;
             InputWindowToken nextToken = null;
-            Iterator<InputWindowToken> iter = inputWindow.iterator();
 
             int idxInWindow = -1;
             boolean outputThisShingle = true;
             //this where the token n-gram is built
             for (int gramNum = 1;
-                 iter.hasNext() && builtGramSize < gramSize.getValue();
+                 gramNum <= inputWindow.size() && builtGramSize < gramSize.getValue();
                  ++gramNum) {
 
-                nextToken = iter.next();
+                nextToken = inputWindow.get(gramNum - 1);
                 idxInWindow++;
                 if (idxInWindow == 0)
                     outputThisShingle = checkToken(nextToken);
@@ -229,17 +226,11 @@ public final class ComplexShingleFilter extends MWEFilter implements SentenceCon
                 }
 
                 if (outputThisShingle) {
-                    inputWindow.getFirst().attSource.copyTo(this);
-                    BytesRef brFirstTokenMetadata = mweMetadata.getPayload();
-                    MWEMetadata firstTokenMetadata =
-                            MWEMetadata.deserialize(brFirstTokenMetadata.utf8ToString());
-                    SentenceContext firstTokenSentCtx = new SentenceContext(
-                            firstTokenMetadata
-                    );
-                    BytesRef brLastTokenmetadata =
-                            nextToken.sentenceContext.getPayload();
-                    MWEMetadata lastTokenMetadata = MWEMetadata.deserialize(brLastTokenmetadata.utf8ToString());
-                    SentenceContext lastTokenSentCtx = new SentenceContext(lastTokenMetadata);
+                    InputWindowToken firstToken = inputWindow.get(0);
+                    firstToken.attSource.copyTo(this);
+                    //the metadata of tokens was decoded once, when they entered the window
+                    SentenceContext firstTokenSentCtx = firstToken.context;
+                    SentenceContext lastTokenSentCtx = nextToken.context;
 
                     if (!crossBoundary(firstTokenSentCtx, lastTokenSentCtx)) {
                         posIncrAtt.setPositionIncrement(isOutputHere ? 0 : 1);
@@ -255,7 +246,8 @@ public final class ComplexShingleFilter extends MWEFilter implements SentenceCon
                         gramSize.advance();
                         tokenAvailable = true;
 
-                        if (firstTokenSentCtx != null && lastTokenSentCtx != null) {
+                        MWEMetadata firstTokenMetadata = firstToken.metadata();
+                        if (firstTokenMetadata != null) {
                             MWEMetadata metaData = addSentenceContext(new MWEMetadata(),
                                     firstTokenSentCtx.getFirstTokenIdx(),
                                     lastTokenSentCtx.getLastTokenIdx(),
@@ -322,6 +314,14 @@ public final class ComplexShingleFilter extends MWEFilter implements SentenceCon
      */
     private InputWindowToken getNextToken(InputWindowToken target)
             throws IOException {
+        InputWindowToken token = readNextToken(target);
+        if (token != null)
+            token.decodeMetadata();
+        return token;
+    }
+
+    private InputWindowToken readNextToken(InputWindowToken target)
+            throws IOException {
         InputWindowToken newTarget = target;
         if (numFillerTokensToInsert > 0) {
             if (null == target) {
@@ -380,7 +380,7 @@ public final class ComplexShingleFilter extends MWEFilter implements SentenceCon
                     OffsetAttribute newOffsetAtt = nextInputStreamToken.addAttribute(OffsetAttribute.class);
                     newOffsetAtt.setOffset(offsetAtt.endOffset(), offsetAtt.endOffset());
                     // Recurse/loop just once:
-                    return getNextToken(target);
+                    return readNextToken(target);
                 } else {
                     newTarget = null;
                 }
@@ -534,11 +534,55 @@ public final class ComplexShingleFilter extends MWEFilter implements SentenceCon
         }
     }
 
+    /**
+     * Ring buffer of the tokens of {@link #inputWindow}
+     */
+    private static final class InputWindow {
+        private final InputWindowToken[] tokens;
+        private int head = 0;
+        private int size = 0;
+
+        InputWindow(int capacity) {
+            tokens = new InputWindowToken[capacity];
+        }
+
+        int size() {
+            return size;
+        }
+
+        InputWindowToken get(int i) {
+            return tokens[(head + i) % tokens.length];
+        }
+
+        InputWindowToken removeFirst() {
+            InputWindowToken first = tokens[head];
+            tokens[head] = null;
+            head = (head + 1) % tokens.length;
+            size--;
+            return first;
+        }
+
+        void add(InputWindowToken token) {
+            tokens[(head + size) % tokens.length] = token;
+            size++;
+        }
+
+        void clear() {
+            Arrays.fill(tokens, null);
+            head = 0;
+            size = 0;
+        }
+    }
+
     private class InputWindowToken {
         final AttributeSource attSource;
         final CharTermAttribute termAtt;
         final OffsetAttribute offsetAtt;
         final PayloadAttribute sentenceContext;
+        //sentence context of the token, decoded from its payload when the token enters the window
+        final SentenceContext context = new SentenceContext();
+        //all metadata of the token, decoded on first use
+        private MWEMetadata metadata;
         boolean isFiller = false;
 
         public InputWindowToken(AttributeSource attSource) {
@@ -547,5 +591,16 @@ public final class ComplexShingleFilter extends MWEFilter implements SentenceCon
             this.offsetAtt = attSource.getAttribute(OffsetAttribute.class);
             this.sentenceContext = attSource.getAttribute(PayloadAttribute.class);
         }
+
+        void decodeMetadata() {
+            metadata = null;
+            context.read(sentenceContext == null ? null : sentenceContext.getPayload());
+        }
+
+        MWEMetadata metadata() {
+            if (metadata == null && sentenceContext != null && sentenceContext.getPayload() != null)
+                metadata = MWEMetadata.fromPayload(sentenceContext.getPayload());
+            return metadata;
+        }
     }
 }
@@ -25,6 +25,14 @@ public final class EnglishLemmatisationFilter extends TokenFilter {
         lemmatiser = new Lemmatiser(dragontoolLemmatiser);
     }
 
+    /**
+     * @param lemmatiser lemmatiser, may be shared by filters
+     */
+    public EnglishLemmatisationFilter(Lemmatiser lemmatiser, TokenStream input) {
+        super(input);
+        this.lemmatiser = lemmatiser;
+    }
+
     @Override
     public boolean incrementToken() throws IOException {
         if (input.incrementToken()) {
@@ -7,6 +7,8 @@ import org.apache.lucene.analysis.util.ResourceLoader;
 import org.apache.lucene.analysis.util.ResourceLoaderAware;
 import org.apache.lucene.analysis.util.TokenFilterFactory;
 import org.apache.solr.core.SolrResourceLoader;
+import uk.ac.shef.dcs.jate.nlp.LemmaCache;
+import uk.ac.shef.dcs.jate.nlp.Lemmatiser;
 
 import java.io.File;
 import java.io.IOException;
@@ -14,11 +16,16 @@ import java.util.Map;
 
 /**
  * Created by - on 19/02/2016.
+ *
+ * </p>Lemmas are cached by all filters of the factory, in a cache of at most 'lemmaCacheSize' words (default
+ * {@value #DEFAULT_CACHE_SIZE}, 0 for no cache), see {@link LemmaCache}
  */
 public class EnglishLemmatisationFilterFactory extends TokenFilterFactory implements ResourceLoaderAware {
+    public static final int DEFAULT_CACHE_SIZE = 100000;
 
-    private EngLemmatiser lemmatiser;
+    private Lemmatiser lemmatiser;
     private String lemmatiserResourceDir;
+    private int cacheSize = DEFAULT_CACHE_SIZE;
     /**
      * Initialize this factory via a set of key-value pairs.
      *
@@ -29,6 +36,9 @@ public class EnglishLemmatisationFilterFactory extends TokenFilterFactory implem
         lemmatiserResourceDir = args.get("lemmaResourceDir");
         if (lemmatiserResourceDir == null)
             throw new IllegalArgumentException("Parameter 'lemmaResourceDir' for lemmatiser is missing.");
+        String size = args.get("lemmaCacheSize");
+        if (size != null)
+            cacheSize = Integer.valueOf(size);
     }
 
     @Override
@@ -38,8 +48,8 @@ public class EnglishLemmatisationFilterFactory extends TokenFilterFactory implem
                 String path=((SolrResourceLoader) loader).getConfigDir();
                 if(!path.endsWith(File.separator))
                         path=path+File.separator;
-                lemmatiser = new EngLemmatiser(path+lemmatiserResourceDir,
-                        false, false);
+                lemmatiser = new Lemmatiser(new EngLemmatiser(path+lemmatiserResourceDir,
+                        false, false), cacheSize > 0 ? new LemmaCache(cacheSize) : null);
             } catch (Exception e) {
                 StringBuilder sb = new StringBuilder("Initiating ");
                 sb.append(this.getClass().getName()).append(" failed due to:\n");
@@ -53,4 +63,11 @@ public class EnglishLemmatisationFilterFactory extends TokenFilterFactory implem
     public TokenStream create(TokenStream input) {
         return new EnglishLemmatisationFilter(lemmatiser, input);
     }
+
+    /**
+     * @return the cache of lemmas of the filters, null if there is none or the factory is not yet informed
+     */
+    public LemmaCache getLemmaCache() {
+        return lemmatiser == null ? null : lemmatiser.getCache();
+    }
 }
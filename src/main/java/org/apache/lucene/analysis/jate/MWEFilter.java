@@ -4,7 +4,6 @@ import org.apache.log4j.Logger;
 import org.apache.lucene.analysis.TokenFilter;
 import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.analysis.tokenattributes.PayloadAttribute;
-import org.apache.lucene.util.BytesRef;
 
 import java.util.Map;
 import java.util.Set;
@@ -153,8 +152,7 @@ public abstract class MWEFilter extends TokenFilter implements SentenceContextAw
     }
 
     public void addPayloadAttribute(PayloadAttribute attribute, MWEMetadata ctx) {
-        String data = MWEMetadata.serialize(ctx);
-        attribute.setPayload(new BytesRef(data));
+        attribute.setPayload(MWEMetadata.toPayload(ctx));
     }
 
     protected String stripSymbolChars(String in) {
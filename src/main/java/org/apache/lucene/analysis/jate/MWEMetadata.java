@@ -1,20 +1,38 @@
 package org.apache.lucene.analysis.jate;
 
 import com.google.gson.Gson;
-import org.apache.commons.lang.exception.ExceptionUtils;
 import org.apache.log4j.Logger;
+import org.apache.lucene.util.BytesRef;
 
 import java.io.*;
-import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
 /**
+ * Metadata of a token or MWE, carried as its payload.
  *
+ * </p>Payloads are written in a compact binary format by {@link #toPayload(MWEMetadata)}:
+ * <pre>
+ *     byte    format version ({@value #BINARY_VERSION})
+ *     vint    bitmap of the types present, by {@link MWEMetadataType} ordinal
+ *     vint    bitmap of the present types whose value is written as a string (see below)
+ *     vint    bitmap of the present flag types (see {@link #isFlag(MWEMetadataType)}) whose value is "true"
+ *     values  for each present type in ordinal order: a zig-zag vint for a number type, a vint length followed by
+ *             UTF-8 bytes for a string; flag types have no value, it is in the bitmap above
+ * </pre>
+ * A value that does not have the natural form of its type (e.g., a number with leading zeros) is written as a
+ * string, so any value reads back as it was written. {@link #fromPayload(BytesRef)} also reads the JSON payloads of
+ * existing indexes, written by {@link #serialize(MWEMetadata)}.
  */
 public class MWEMetadata implements Serializable {
     private static final long serialVersionUID = -3117653988678036089L;
     private static final Logger log = Logger.getLogger(MWEMetadata.class.getName());
+
+    static final byte BINARY_VERSION = 1;
+    static final MWEMetadataType[] TYPES = MWEMetadataType.values();
+
     Map<MWEMetadataType, String> metadata = new HashMap<>();
 
     public void addMetaData(MWEMetadataType prop, String value) {
@@ -25,21 +43,305 @@ public class MWEMetadata implements Serializable {
         return metadata.get(prop);
     }
 
+    /**
+     * @return the metadata encoded as a payload, in the binary format
+     */
+    public static BytesRef toPayload(MWEMetadata data) {
+        int present = 0, asString = 0, flagsTrue = 0;
+        for (Map.Entry<MWEMetadataType, String> e : data.metadata.entrySet()) {
+            if (e.getValue() == null)
+                continue;
+            int bit = 1 << e.getKey().ordinal();
+            present |= bit;
+            if (isFlag(e.getKey())) {
+                if ("true".equals(e.getValue()))
+                    flagsTrue |= bit;
+                else if (!"false".equals(e.getValue()))
+                    asString |= bit;
+            } else if (isNumber(e.getKey()) && !isCanonicalInt(e.getValue())) {
+                asString |= bit;
+            }
+        }
+
+        Output out = new Output();
+        out.writeByte(BINARY_VERSION);
+        out.writeVInt(present);
+        out.writeVInt(asString);
+        out.writeVInt(flagsTrue);
+        for (MWEMetadataType type : TYPES) {
+            int bit = 1 << type.ordinal();
+            if ((present & bit) == 0)
+                continue;
+            String value = data.metadata.get(type);
+            if ((asString & bit) != 0 || (!isFlag(type) && !isNumber(type)))
+                out.writeString(value);
+            else if (isNumber(type))
+                out.writeZInt(Integer.parseInt(value));
+        }
+        return out.toBytesRef();
+    }
+
+    /**
+     * @param payload a payload written by {@link #toPayload(MWEMetadata)}, or a JSON payload written by
+     *                {@link #serialize(MWEMetadata)}
+     * @return the metadata
+     */
+    public static MWEMetadata fromPayload(BytesRef payload) {
+        if (payload.length == 0 || payload.bytes[payload.offset] == '{')
+            return deserialize(payload.utf8ToString());
+        if (payload.bytes[payload.offset] != BINARY_VERSION)
+            throw new IllegalArgumentException("Unsupported MWEMetadata payload version: " +
+                    payload.bytes[payload.offset]);
+
+        Input in = new Input().reset(payload);
+        in.pos++;
+        int present = in.readVInt();
+        int asString = in.readVInt();
+        int flagsTrue = in.readVInt();
+        MWEMetadata data = new MWEMetadata();
+        for (MWEMetadataType type : TYPES) {
+            int bit = 1 << type.ordinal();
+            if ((present & bit) == 0)
+                continue;
+            String value;
+            if ((asString & bit) != 0 || (!isFlag(type) && !isNumber(type)))
+                value = in.readString();
+            else if (isNumber(type))
+                value = String.valueOf(in.readZInt());
+            else
+                value = (flagsTrue & bit) != 0 ? "true" : "false";
+            data.metadata.put(type, value);
+        }
+        return data;
+    }
+
+    /**
+     * Set flag types of a payload. The header of a binary payload is rewritten and its values are copied without being
+     * decoded.
+     *
+     * @param flags     bitmap of the flag types to set, by ordinal, see {@link #isFlag(MWEMetadataType)}
+     * @param flagsTrue bitmap of the flag types set to "true", the others in flags are set to "false"
+     * @return the payload with the flags, in the binary format
+     */
+    static BytesRef setFlags(BytesRef payload, int flags, int flagsTrue) {
+        if (payload.length > 0 && payload.bytes[payload.offset] == BINARY_VERSION) {
+            Input in = new Input().reset(payload);
+            in.pos++;
+            int present = in.readVInt();
+            int asString = in.readVInt();
+            int oldFlagsTrue = in.readVInt();
+            //a flag with a value other than true or false has its value written, which is dropped below
+            if ((asString & flags) == 0) {
+                Output out = new Output();
+                out.writeByte(BINARY_VERSION);
+                out.writeVInt(present | flags);
+                out.writeVInt(asString);
+                out.writeVInt((oldFlagsTrue & ~flags) | (flagsTrue & flags));
+                out.writeBytes(payload.bytes, in.pos, payload.offset + payload.length - in.pos);
+                return out.toBytesRef();
+            }
+        }
+        MWEMetadata data = payload.length == 0 ? new MWEMetadata() : fromPayload(payload);
+        for (MWEMetadataType type : TYPES) {
+            int bit = 1 << type.ordinal();
+            if ((flags & bit) != 0)
+                data.addMetaData(type, String.valueOf((flagsTrue & bit) != 0));
+        }
+        return toPayload(data);
+    }
+
+    /**
+     * Set the value of a string type (i.e., {@link MWEMetadataType#POS}) in a payload. The header of a binary payload
+     * is rewritten, the value is spliced in and the other values are copied without being decoded.
+     *
+     * @param payload a payload, or null for none
+     * @return the payload with the value, in the binary format
+     */
+    static BytesRef setString(BytesRef payload, MWEMetadataType type, String value) {
+        if (value != null && !isFlag(type) && !isNumber(type) && payload != null && payload.length > 0
+                && payload.bytes[payload.offset] == BINARY_VERSION) {
+            Input in = new Input().reset(payload);
+            in.pos++;
+            int present = in.readVInt();
+            int asString = in.readVInt();
+            int flagsTrue = in.readVInt();
+            int valuesStart = in.pos;
+            //skip the values of the types written before this one
+            for (int t = 0; t < type.ordinal(); t++) {
+                int bit = 1 << t;
+                if ((present & bit) == 0)
+                    continue;
+                if ((asString & bit) != 0 || (!isFlag(TYPES[t]) && !isNumber(TYPES[t]))) {
+                    int length = in.readStringLength();
+                    in.pos += length;
+                } else if (isNumber(TYPES[t]))
+                    in.readVInt();
+            }
+            int valueStart = in.pos;
+            int bit = 1 << type.ordinal();
+            if ((present & bit) != 0) {
+                int length = in.readStringLength();
+                in.pos += length;
+            }
+
+            Output out = new Output();
+            out.writeByte(BINARY_VERSION);
+            out.writeVInt(present | bit);
+            out.writeVInt(asString);
+            out.writeVInt(flagsTrue);
+            out.writeBytes(payload.bytes, valuesStart, valueStart - valuesStart);
+            out.writeString(value);
+            out.writeBytes(payload.bytes, in.pos, payload.offset + payload.length - in.pos);
+            return out.toBytesRef();
+        }
+        MWEMetadata data = payload == null || payload.length == 0 ? new MWEMetadata() : fromPayload(payload);
+        data.addMetaData(type, value);
+        return toPayload(data);
+    }
+
+    /**
+     * @return true if values of the type are "true" or "false", see {@link MWEFeatureFilter}
+     */
+    static boolean isFlag(MWEMetadataType type) {
+        switch (type) {
+            case HAS_UPPERCASE:
+            case HAS_DIGIT:
+            case HAS_SYMBOL:
+            case HAS_ACRONYM_TOKEN:
+            case HAS_NUMERIC_TOKEN:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * @return true if values of the type are ids or counts
+     */
+    static boolean isNumber(MWEMetadataType type) {
+        return !isFlag(type) && type != MWEMetadataType.POS;
+    }
+
+    //true if the value parses as an int and prints back the same
+    private static boolean isCanonicalInt(String value) {
+        try {
+            return String.valueOf(Integer.parseInt(value)).equals(value);
+        } catch (NumberFormatException nfe) {
+            return false;
+        }
+    }
+
+    /**
+     * JSON encoding, used by indexes built before the binary format.
+     *
+     * @deprecated use {@link #toPayload(MWEMetadata)}
+     */
+    @Deprecated
     public static final String serialize(MWEMetadata data) {
         Gson gson = new Gson();
         String json=gson.toJson(data);
-        /*try {
-            return json.getBytes("UTF-8");
-        } catch (UnsupportedEncodingException e) {
-            return json.getBytes();
-        }*/
         return json;
     }
 
+    /**
+     * Read a JSON encoding, see {@link #serialize(MWEMetadata)}. Payloads in either format are read by
+     * {@link #fromPayload(BytesRef)}.
+     */
     public static final MWEMetadata deserialize(String json) {
-       // String json = new String(data, Charset.forName("UTF-8")).trim();
         Gson gson = new Gson();
         MWEMetadata obj=gson.fromJson(json, MWEMetadata.class);
         return obj;
     }
+
+    private static final class Output {
+        private byte[] bytes = new byte[32];
+        private int length = 0;
+
+        void writeByte(byte b) {
+            if (length == bytes.length)
+                bytes = Arrays.copyOf(bytes, length << 1);
+            bytes[length++] = b;
+        }
+
+        void writeVInt(int i) {
+            while ((i & ~0x7F) != 0) {
+                writeByte((byte) ((i & 0x7F) | 0x80));
+                i >>>= 7;
+            }
+            writeByte((byte) i);
+        }
+
+        void writeZInt(int i) {
+            writeVInt((i >> 31) ^ (i << 1));
+        }
+
+        void writeBytes(byte[] b, int offset, int length) {
+            if (length + this.length > bytes.length)
+                bytes = Arrays.copyOf(bytes, Math.max(length + this.length, this.length << 1));
+            System.arraycopy(b, offset, bytes, this.length, length);
+            this.length += length;
+        }
+
+        void writeString(String s) {
+            byte[] utf8 = s.getBytes(StandardCharsets.UTF_8);
+            writeVInt(utf8.length);
+            for (byte b : utf8)
+                writeByte(b);
+        }
+
+        BytesRef toBytesRef() {
+            return new BytesRef(bytes, 0, length);
+        }
+    }
+
+    /**
+     * Reads the binary format, reusable across payloads
+     */
+    static final class Input {
+        private byte[] bytes;
+        private int end;
+        int pos;
+
+        Input reset(BytesRef ref) {
+            this.bytes = ref.bytes;
+            this.pos = ref.offset;
+            this.end = ref.offset + ref.length;
+            return this;
+        }
+
+        int readVInt() {
+            int i = 0;
+            for (int shift = 0; shift < 32; shift += 7) {
+                if (pos >= end)
+                    throw new IllegalArgumentException("Truncated MWEMetadata payload");
+                byte b = bytes[pos++];
+                i |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0)
+                    return i;
+            }
+            throw new IllegalArgumentException("Malformed vint in MWEMetadata payload");
+        }
+
+        int readZInt() {
+            int i = readVInt();
+            return (i >>> 1) ^ -(i & 1);
+        }
+
+        /**
+         * @return length of the string at the current position, which is then at its first byte
+         */
+        int readStringLength() {
+            int length = readVInt();
+            if (length < 0 || pos + length > end)
+                throw new IllegalArgumentException("Truncated MWEMetadata payload");
+            return length;
+        }
+
+        String readString() {
+            int length = readStringLength();
+            String s = new String(bytes, pos, length, StandardCharsets.UTF_8);
+            pos += length;
+            return s;
+        }
+    }
 }
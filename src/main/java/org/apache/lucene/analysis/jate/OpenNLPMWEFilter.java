@@ -5,7 +5,6 @@ import org.apache.commons.lang.exception.ExceptionUtils;
 import org.apache.log4j.Logger;
 import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.analysis.tokenattributes.*;
-import org.apache.lucene.util.AttributeSource;
 import org.apache.lucene.util.BytesRef;
 
 import java.io.IOException;
@@ -22,13 +21,19 @@ public abstract class OpenNLPMWEFilter extends MWEFilter {
 
     protected boolean first = true;
     protected static String SENTENCE_BREAK = "[.?!]";
-    // cloned attrs of all tokens
-    protected List<AttributeSource> tokenAttrs = new ArrayList<>();
+    // all tokens
+    protected final TokenBuffer tokens = new TokenBuffer(this);
     protected Map<Integer, List<Integer>> chunkSpans = new HashMap<>(); //start, end; end is exclusive
     protected Map<Integer, String> chunkTypes = new HashMap<>();
     protected int chunkStart = -1;
     protected List<Integer> chunkEnds = new ArrayList<>(); //multiple chunks with the same start index but different end index are possible
     protected int tokenIdx = 0;
+    //readers of the sentence context of tokens, reused for every MWE
+    private final SentenceContext firstTokenSentCtx = new SentenceContext();
+    private final SentenceContext lastTokenSentCtx = new SentenceContext();
+    private final SentenceContext posContext = new SentenceContext();
+    private final BytesRef firstTokenPayloadRef = new BytesRef();
+    private final BytesRef lastTokenPayloadRef = new BytesRef();
 
 
     public OpenNLPMWEFilter(TokenStream input, int minTokens, int maxTokens,
@@ -56,20 +61,17 @@ public abstract class OpenNLPMWEFilter extends MWEFilter {
 
 
     protected boolean addMWE(int chunkEnd) {
-        AttributeSource start = tokenAttrs.get(chunkStart);
-        AttributeSource end = tokenAttrs.get(chunkEnd - 1);
-
-        MWEMetadata firstTokenMetadata = parseTokenMetadataPayload(start.getAttribute(PayloadAttribute.class));
-        MWEMetadata lastTokenMetadata = parseTokenMetadataPayload(end.getAttribute(PayloadAttribute.class));
-
-        SentenceContext firstTokenSentCtx = parseSentenceContextPayload(firstTokenMetadata);
-        SentenceContext lastTokenSentCtx = parseSentenceContextPayload(lastTokenMetadata);
+        BytesRef firstTokenPayload = tokens.payload(chunkStart, firstTokenPayloadRef);
+        firstTokenSentCtx.read(firstTokenPayload);
+        lastTokenSentCtx.read(tokens.payload(chunkEnd - 1, lastTokenPayloadRef));
 
         boolean added = false;
         if (!crossBoundary(firstTokenSentCtx, lastTokenSentCtx)) {
             StringBuilder phrase = new StringBuilder();
-            for (int i = chunkStart; i <= chunkEnd - 1; i++)
-                phrase.append(tokenAttrs.get(i).getAttribute(CharTermAttribute.class).buffer()).append(" ");
+            for (int i = chunkStart; i <= chunkEnd - 1; i++) {
+                tokens.appendTerm(i, phrase);
+                phrase.append(" ");
+            }
 
             //check char length
             String normalized = null;
@@ -86,15 +88,16 @@ public abstract class OpenNLPMWEFilter extends MWEFilter {
 
             if (passCharLengthCheck) {
                 termAtt.setEmpty().append(normalized);
-                offsetAtt.setOffset(start.getAttribute(OffsetAttribute.class).startOffset(),
-                        end.getAttribute(OffsetAttribute.class).endOffset());
+                offsetAtt.setOffset(tokens.startOffset(chunkStart), tokens.endOffset(chunkEnd - 1));
                 typeAtt.setType(chunkTypes.get(chunkStart));
                 MWEMetadata metadata=addSentenceContext(new MWEMetadata(),
                         firstTokenSentCtx.getFirstTokenIdx(),
                         lastTokenSentCtx.getLastTokenIdx(),
                         firstTokenSentCtx.getPosTag(),
                         lastTokenSentCtx.getSentenceId());
-                metadata=inheritOtherMetadata(metadata, firstTokenMetadata);
+                //the other metadata of the first token is decoded only for an MWE that is output
+                if (firstTokenPayload != null)
+                    metadata=inheritOtherMetadata(metadata, MWEMetadata.fromPayload(firstTokenPayload));
                 addPayloadAttribute(metadataAttr, metadata);
 
                 added = true;
@@ -113,21 +116,6 @@ public abstract class OpenNLPMWEFilter extends MWEFilter {
         return added;
     }
 
-    private MWEMetadata parseTokenMetadataPayload(PayloadAttribute attribute) {
-        BytesRef bfTokenMetadata = attribute != null ? attribute.getPayload() : null;
-        if(bfTokenMetadata!=null) {
-            MWEMetadata meta = MWEMetadata.deserialize(bfTokenMetadata.utf8ToString());
-            return meta;
-        }
-        return null;
-    }
-
-    private SentenceContext parseSentenceContextPayload(MWEMetadata metaData) {
-        return new SentenceContext(
-                metaData
-        );
-    }
-
     private boolean crossBoundary(SentenceContext firstTokenSentCtx,
                                   SentenceContext lastTokenSentCtx) {
         if (firstTokenSentCtx != null && lastTokenSentCtx != null) {
@@ -287,10 +275,10 @@ public abstract class OpenNLPMWEFilter extends MWEFilter {
             wordList.add(word);
             PayloadAttribute posAtt = input.getAttribute(PayloadAttribute.class);
             if (posAtt != null) {
-                posList.add(new SentenceContext(MWEMetadata.deserialize(posAtt.getPayload().utf8ToString())).getPosTag());
+                posContext.read(posAtt.getPayload());
+                posList.add(posContext.getPosTag());
             }
-            AttributeSource attrs = input.cloneAttributes();
-            tokenAttrs.add(attrs);
+            tokens.capture();
         }
         if (wordList.size() != posList.size()) {
             StringBuilder sb = new StringBuilder(this.getClass().getName());
@@ -315,7 +303,7 @@ public abstract class OpenNLPMWEFilter extends MWEFilter {
     public final void end() throws IOException {
         super.end();
         clearAttributes();
-        tokenAttrs.clear();
+        tokens.clear();
     }
 
     @Override
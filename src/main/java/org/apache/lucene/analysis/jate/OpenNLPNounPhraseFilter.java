@@ -71,7 +71,7 @@ public final class OpenNLPNounPhraseFilter extends OpenNLPMWEFilter {
             tokenIdx = 0;
         }
 
-        if (tokenIdx == tokenAttrs.size()) {
+        if (tokenIdx == tokens.size()) {
             resetParams();
             return false;
         }
@@ -4,27 +4,33 @@ import org.apache.log4j.Logger;
 import org.apache.lucene.analysis.TokenFilter;
 import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.analysis.tokenattributes.*;
-import org.apache.lucene.util.Attribute;
-import org.apache.lucene.util.AttributeSource;
-import org.apache.lucene.util.BytesRef;
 import uk.ac.shef.dcs.jate.nlp.POSTagger;
 
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.List;
 
 
+/**
+ * Tags the tokens of a stream with their POS, one sentence at a time. Sentences are read from the sentence ids in the
+ * payloads of tokens (see {@link OpenNLPTokenizer}), so only the tokens of one sentence are buffered, and each sentence
+ * is tagged as a separate sequence. Tokens without a sentence id are tagged as one sequence.
+ */
 public final class OpenNLPPOSTaggerFilter extends TokenFilter {
     protected static Logger LOG = Logger.getLogger(OpenNLPPOSTaggerFilter.class.getSimpleName());
 
     private POSTagger tagger;
     private int tokenIdx = 0;
-    protected boolean first = true;
-    // cloned attrs of all tokens
-    protected List<AttributeSource> tokenAttrs = new ArrayList<>();
+    // tokens of the current sentence, followed by the first token of the next sentence if it has been read ahead
+    private final TokenBuffer tokens = new TokenBuffer(this);
+    private int sentenceSize = 0;
+    // word of the token read ahead, null if there is none
+    private String nextSentenceStartWord;
+    private int nextSentenceId;
+    private boolean inputExhausted = false;
 
     private final PayloadAttribute exitingPayload = addAttribute(PayloadAttribute.class);
+    private final SentenceContext sentenceContext = new SentenceContext();
 
     private String[] posTags;
 
@@ -41,57 +47,65 @@ public final class OpenNLPPOSTaggerFilter extends TokenFilter {
     @Override
     public boolean incrementToken() throws IOException {
         //clearAttributes();
-        if (first) {
-            //gather all tokens from doc
+        if (tokenIdx == sentenceSize) {
+            //gather the tokens of the next sentence
             String[] words = walkTokens();
             if (words.length == 0) {
                 return false;
             }
             //tagging
             posTags = createTags(words);
-            first = false;
             tokenIdx = 0;
         }
 
-        if (tokenIdx == tokenAttrs.size()) {
-            resetParams();
-            return false;
-        }
-
-        AttributeSource as = tokenAttrs.get(tokenIdx);
-        Iterator<? extends Class<? extends Attribute>> it = as.getAttributeClassesIterator();
-        while (it.hasNext()) {
-            Class<? extends Attribute> attrClass = it.next();
-            if (!hasAttribute(attrClass)) {
-                addAttribute(attrClass);
-            }
-        }
-        as.copyTo(this);
-        MWEMetadata metadata = exitingPayload.getPayload() == null ? new MWEMetadata() :
-                MWEMetadata.deserialize(exitingPayload.getPayload().utf8ToString());
-        metadata.addMetaData(MWEMetadataType.POS, posTags[tokenIdx]);
-        exitingPayload.setPayload(new BytesRef(MWEMetadata.serialize(metadata)));
+        clearAttributes();
+        tokens.restore(tokenIdx);
+        exitingPayload.setPayload(MWEMetadata.setString(exitingPayload.getPayload(), MWEMetadataType.POS,
+                posTags[tokenIdx]));
         tokenIdx++;
         return true;
     }
 
+    /**
+     * Read the tokens of the next sentence. The sentence ends at the first token with a different sentence id, which
+     * is kept for the next call.
+     *
+     * @return words of the sentence, empty at the end of the stream
+     */
     protected String[] walkTokens() throws IOException {
+        //drop the previous sentence, keeping the token read ahead
+        tokens.discard(sentenceSize);
+        sentenceSize = 0;
+        tokenIdx = 0;
         List<String> wordList = new ArrayList<>();
-        while (input.incrementToken()) {
+        int sentenceId = nextSentenceId;
+        if (nextSentenceStartWord != null) {
+            wordList.add(nextSentenceStartWord);
+            nextSentenceStartWord = null;
+            sentenceSize = 1;
+        }
+        while (!inputExhausted && input.incrementToken()) {
             CharTermAttribute textAtt = input.getAttribute(CharTermAttribute.class);
             OffsetAttribute offsetAtt = input.getAttribute(OffsetAttribute.class);
             char[] buffer = textAtt.buffer();
             String word =  new String(buffer, 0, offsetAtt.endOffset() - offsetAtt.startOffset());
+            //the payload attribute is shared with the input
+            sentenceContext.read(exitingPayload.getPayload());
+            int tokenSentenceId = sentenceContext.getSentenceId();
+
+            tokens.capture();
+            if (sentenceSize > 0 && tokenSentenceId != sentenceId) {
+                nextSentenceStartWord = word;
+                nextSentenceId = tokenSentenceId;
+                break;
+            }
+            sentenceId = tokenSentenceId;
+            sentenceSize++;
             wordList.add(word);
-
-            AttributeSource attrs = input.cloneAttributes();
-            tokenAttrs.add(attrs);
-        }
-        String[] words = new String[wordList.size()];
-        for (int i = 0; i < words.length; i++) {
-            words[i] = wordList.get(i);
         }
-        return words;
+        if (nextSentenceStartWord == null)
+            inputExhausted = true;
+        return wordList.toArray(new String[wordList.size()]);
     }
 
     protected String[] createTags(String[] words) {
@@ -116,12 +130,17 @@ public final class OpenNLPPOSTaggerFilter extends TokenFilter {
     public final void end() throws IOException {
         super.end();
         //clearAttributes();
-        tokenAttrs.clear();
+        tokens.clear();
+        sentenceSize = 0;
+        tokenIdx = 0;
     }
 
     protected void resetParams() {
-        first = true;
         tokenIdx = 0;
         posTags = null;
+        tokens.clear();
+        sentenceSize = 0;
+        nextSentenceStartWord = null;
+        inputExhausted = false;
     }
 }
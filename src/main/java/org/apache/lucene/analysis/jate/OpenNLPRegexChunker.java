@@ -69,7 +69,7 @@ public final class OpenNLPRegexChunker extends OpenNLPMWEFilter {
             tokenIdx = 0;
         }
 
-        if (tokenIdx == tokenAttrs.size()) {
+        if (tokenIdx == tokens.size()) {
             resetParams();
             return false;
         }
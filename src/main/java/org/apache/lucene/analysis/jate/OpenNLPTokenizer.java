@@ -18,6 +18,7 @@ package org.apache.lucene.analysis.jate;
  */
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -32,16 +33,20 @@ import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
 import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
 import org.apache.lucene.analysis.tokenattributes.PayloadAttribute;
 import org.apache.lucene.util.AttributeFactory;
-import org.apache.lucene.util.BytesRef;
 
 /**
  * Run OpenNLP SentenceDetector and Tokenizer.
  * Must have Sentence and/or Tokenizer.
  * <p>This class will split a text into sentences, the tokenize each sentence. For each token, it will record its sentence context information. See SentenceContext class.
  * The sentence context information is recorded as PayloadAttribute</p>
+ * <p>By default the whole input is read before the first token is emitted. With a streaming window, the input is read
+ * a window at a time and sentences are emitted as they are detected, see
+ * {@link #OpenNLPTokenizer(AttributeFactory, SentenceDetector, opennlp.tools.tokenize.Tokenizer, ParagraphChunker, int)}</p>
  */
 public final class OpenNLPTokenizer extends Tokenizer implements SentenceContextAware {
     private static final int DEFAULT_BUFFER_SIZE = 256;
+    //a window grown for long sentences is kept for later documents up to this many times the streaming window
+    private static final int MAX_WINDOW_GROWTH = 16;
     private static final Logger LOG = Logger.getLogger(OpenNLPTokenizer.class.getName());
 
     private int finalOffset;
@@ -54,13 +59,18 @@ public final class OpenNLPTokenizer extends Tokenizer implements SentenceContext
     private Map<Paragraph, Integer> paragraphHasSents = new HashMap<>(); //key is the paragraph, value is the number of sentences in that paragraph
     private Map<Integer, Integer> sentIdsInParagraph = new HashMap<>(); //key is the setnecen startoffset, value is the sentence's id in its source paragraph
 
-    private Span[] sentences = null;
-    private Span[][] words = null;
-    private Span[] wordSet = null;
+    private Span[] sentences = null; //sentences of the text buffered, offsets are relative to fullText
+    private int sentencesReady = 0; //number of sentences that are complete, the others are still being read
+    private Span[] wordSet = null; //tokens of the current sentence
     boolean first = true;
     int indexSentence = 0;
     int indexWord = 0;
     private char[] fullText;
+    private int textLength = 0; //chars of fullText in use
+    private int windowStart = 0; //offset of fullText[0] in the document
+    private int sentenceIdBase = 0; //id in the document of sentences[0]
+    private boolean inputExhausted = false;
+    private final int streamingWindow; //0 if the whole document is read at once
 
     private ParagraphChunker paragraphOp = null;
     private SentenceDetector sentenceOp = null;
@@ -68,18 +78,25 @@ public final class OpenNLPTokenizer extends Tokenizer implements SentenceContext
 
     public OpenNLPTokenizer(AttributeFactory factory, SentenceDetector sentenceOp,
                             opennlp.tools.tokenize.Tokenizer tokenizerOp) {
-        super(factory);
-        termAtt.resizeBuffer(DEFAULT_BUFFER_SIZE);
-        if (sentenceOp == null && tokenizerOp == null) {
-            throw new IllegalArgumentException("OpenNLPTokenizer: need one or both of Sentence Detector and Tokenizer");
-        }
-        this.sentenceOp = sentenceOp;
-        this.tokenizerOp = tokenizerOp;
+        this(factory, sentenceOp, tokenizerOp, null, 0);
     }
 
     public OpenNLPTokenizer(AttributeFactory factory, SentenceDetector sentenceOp,
                             opennlp.tools.tokenize.Tokenizer tokenizerOp,
                             ParagraphChunker paragraphOp) {
+        this(factory, sentenceOp, tokenizerOp, paragraphOp, 0);
+    }
+
+    /**
+     * @param streamingWindow if greater than 0, the text is read in windows of (initially) this many chars, and
+     *                        sentences are detected, tokenized and emitted one window at a time, so a large document is
+     *                        never held in memory at once. A window grows if a sentence does not fit. Ignored if a
+     *                        paragraph chunker is given, the paragraph metadata (e.g., the number of sentences in the
+     *                        document) requires the whole document.
+     */
+    public OpenNLPTokenizer(AttributeFactory factory, SentenceDetector sentenceOp,
+                            opennlp.tools.tokenize.Tokenizer tokenizerOp,
+                            ParagraphChunker paragraphOp, int streamingWindow) {
         super(factory);
         termAtt.resizeBuffer(DEFAULT_BUFFER_SIZE);
         if (sentenceOp == null && tokenizerOp == null) {
@@ -88,100 +105,97 @@ public final class OpenNLPTokenizer extends Tokenizer implements SentenceContext
         this.sentenceOp = sentenceOp;
         this.tokenizerOp = tokenizerOp;
         this.paragraphOp = paragraphOp;
+        this.streamingWindow = paragraphOp == null ? Math.max(0, streamingWindow) : 0;
     }
 
-    // OpenNLP ops run all-at-once. Have to cache sentence and/or word spans and feed them out.
-    // Cache entire input buffer- don't know if this is the right implementation.
-    // Of if the CharTermAttribute can cache it across multiple increments?
+    // OpenNLP ops run on whole strings. Sentences of the text buffered are detected at once, then each sentence is
+    // tokenized when its tokens are fed out. Without streaming, the buffer holds the entire input.
 
     @Override
     public final boolean incrementToken() throws IOException {
         if (first) {
-            loadAll();
             restartAtBeginning();
+            if (streamingWindow > 0)
+                readWindow();
+            else
+                loadAll();
             first = false;
         }
-        if (sentences.length == 0) {
-            first = true;
-            return false;
-        }
-        int sentenceOffset = sentences[indexSentence].getStart();
-        if (wordSet == null) {
-            wordSet = words[indexSentence];
-        }
         clearAttributes();
 
-        while (indexSentence < sentences.length) {
-            while (indexWord == wordSet.length) {
+        while (wordSet == null || indexWord == wordSet.length) {
+            if (wordSet != null) {
                 indexSentence++;
-                if (indexSentence < sentences.length) {
-                    wordSet = words[indexSentence];
-                    indexWord = 0;
-                    sentenceOffset = sentences[indexSentence].getStart();
-                } else {
-                    first = true;
-                    return false;
-                }
+                wordSet = null;
             }
-            // set termAtt from private buffer
-            Span sentence = sentences[indexSentence];
-
-            Span word = wordSet[indexWord];
-
-            int spot = sentence.getStart() + word.getStart();
-            termAtt.setEmpty();
-            int termLength = word.getEnd() - word.getStart();
-            if (termAtt.buffer().length < termLength) {
-                termAtt.resizeBuffer(termLength);
-            }
-            termAtt.setLength(termLength);
-            char[] buffer = termAtt.buffer();
-            finalOffset = correctOffset(sentenceOffset + word.getEnd());
-            int start = correctOffset(word.getStart() + sentenceOffset);
-
-            for (int i = 0; i < termLength; i++) {
-                buffer[i] = fullText[spot + i];
-            }
-
-            //safeguard tweak to avoid invalid token offsets, see issue 26 on github
-            if (finalOffset - start > termLength) {
-                offsetAtt.setOffset(start, start + termLength);
-                LOG.warn("Invalid token start and end offsets diff greater than term length. End offset is reset to be start+tokenlength. " +
-                        "start=" + start + ", invalid end=" + finalOffset + ", termlength=" + termLength + ". See Issue 26 on JATE webpage");
-/*                String wordStr =  new String(buffer, 0, offsetAtt.endOffset() - offsetAtt.startOffset());
-                System.out.println(wordStr);*/
-            } else
-                offsetAtt.setOffset(start, finalOffset);
-
-            MWEMetadata ctx = addSentenceContext(new MWEMetadata(), indexWord, indexWord,
-                    null, indexSentence);
-            if (paragraphOp != null) {
-                Paragraph sourcePar = sentsInParagraph.get(sentence.getStart());
-                int sentenceIdInParagraph= sentIdsInParagraph.get(sentences[indexSentence].getStart());
-                addOtherMetadata(ctx,
-                        sourcePar.indexInDoc,
-                        paragraphHasSents.get(sourcePar),
-                        paragraphHasSents.size(),
-                        sentenceIdInParagraph,
-                        sentences.length);
+            if (indexSentence == sentencesReady && !readWindow()) {
+                first = true;
+                return false;
             }
-            addPayloadAttribute(tokenMetadataAtt, ctx);
-            //System.out.println(tokenMetadataAtt.getPayload().utf8ToString()+","+new String(buffer,0, termAtt.length()));
+            splitWords(indexSentence);
+            indexWord = 0;
+        }
+        // set termAtt from private buffer
+        Span sentence = sentences[indexSentence];
+        int sentenceOffset = windowStart + sentence.getStart();
+        int sentenceId = sentenceIdBase + indexSentence;
+
+        Span word = wordSet[indexWord];
+
+        int spot = sentence.getStart() + word.getStart();
+        termAtt.setEmpty();
+        int termLength = word.getEnd() - word.getStart();
+        if (termAtt.buffer().length < termLength) {
+            termAtt.resizeBuffer(termLength);
+        }
+        termAtt.setLength(termLength);
+        char[] buffer = termAtt.buffer();
+        finalOffset = correctOffset(sentenceOffset + word.getEnd());
+        int start = correctOffset(word.getStart() + sentenceOffset);
+
+        System.arraycopy(fullText, spot, buffer, 0, termLength);
+
+        //safeguard tweak to avoid invalid token offsets, see issue 26 on github
+        if (finalOffset - start > termLength) {
+            offsetAtt.setOffset(start, start + termLength);
+            LOG.warn("Invalid token start and end offsets diff greater than term length. End offset is reset to be start+tokenlength. " +
+                    "start=" + start + ", invalid end=" + finalOffset + ", termlength=" + termLength + ". See Issue 26 on JATE webpage");
+        } else
+            offsetAtt.setOffset(start, finalOffset);
+
+        MWEMetadata ctx = addSentenceContext(new MWEMetadata(), indexWord, indexWord,
+                null, sentenceId);
+        if (paragraphOp != null) {
+            Paragraph sourcePar = sentsInParagraph.get(sentence.getStart());
+            int sentenceIdInParagraph= sentIdsInParagraph.get(sentence.getStart());
+            addOtherMetadata(ctx,
+                    sourcePar.indexInDoc,
+                    paragraphHasSents.get(sourcePar),
+                    paragraphHasSents.size(),
+                    sentenceIdInParagraph,
+                    sentences.length);
+        }
+        addPayloadAttribute(tokenMetadataAtt, ctx);
 
-            indexWord++;
+        indexWord++;
 
-            return true;
-        }
-        first = true;
-        return false;
+        return true;
     }
 
     void restartAtBeginning() throws IOException {
         indexWord = 0;
         indexSentence = 0;
-        indexWord = 0;
         finalOffset = 0;
         wordSet = null;
+        sentences = null;
+        sentencesReady = 0;
+        textLength = 0;
+        windowStart = 0;
+        sentenceIdBase = 0;
+        inputExhausted = false;
+        if (streamingWindow > 0 && (fullText == null || fullText.length < streamingWindow
+                || fullText.length > streamingWindow * MAX_WINDOW_GROWTH))
+            fullText = new char[streamingWindow];
     }
 
     void loadAll() throws IOException {
@@ -191,33 +205,68 @@ public final class OpenNLPTokenizer extends Tokenizer implements SentenceContext
         if (paragraphOp != null) {
             detectParagraphs(txtStr);
         }
-        words = new Span[sentences.length][];
-        for (int i = 0; i < sentences.length; i++) {
-            splitWords(i);
+        textLength = fullText.length;
+        sentencesReady = sentences.length;
+        inputExhausted = true;
+    }
+
+    /**
+     * Move to the next window of a streamed input: the text of the sentences emitted is dropped, the rest is kept and
+     * more is read, then sentences are detected. The last sentence detected may continue beyond the window, so it is
+     * not emitted before the next window, unless the input is exhausted.
+     *
+     * @return false if there are no more sentences
+     */
+    boolean readWindow() throws IOException {
+        if (inputExhausted)
+            return false;
+        if (sentences != null) {
+            int keep = sentencesReady < sentences.length ? sentences[sentencesReady].getStart() : textLength;
+            System.arraycopy(fullText, keep, fullText, 0, textLength - keep);
+            windowStart += keep;
+            textLength -= keep;
+            sentenceIdBase += sentencesReady;
+        }
+        while (true) {
+            while (textLength < fullText.length) {
+                int read = input.read(fullText, textLength, fullText.length - textLength);
+                if (read == -1) {
+                    inputExhausted = true;
+                    break;
+                }
+                textLength += read;
+            }
+            detectSentences(new String(fullText, 0, textLength));
+            if (inputExhausted) {
+                sentencesReady = sentences.length;
+                break;
+            }
+            if (sentences.length > 1) {
+                sentencesReady = sentences.length - 1;
+                break;
+            }
+            if (sentences.length == 0) {
+                //only whitespace
+                windowStart += textLength;
+                textLength = 0;
+            } else {
+                //a sentence longer than the window
+                fullText = Arrays.copyOf(fullText, fullText.length << 1);
+            }
         }
+        indexSentence = 0;
+        return sentencesReady > 0;
     }
 
     void splitWords(int i) {
         Span current = sentences[i];
         String sentence = String.copyValueOf(fullText, current.getStart(), current.getEnd() - current.getStart());
-        words[i] = tokenizerOp.tokenizePos(sentence);
+        wordSet = tokenizerOp.tokenizePos(sentence);
     }
 
     // read all text, turn into sentences
     void detectSentences(String fulltext) throws IOException {
-        //fullText.hashCode();
         sentences = sentenceOp.sentPosDetect(fulltext);
-
-       /* Span[] revised = new Span[sentences.length];
-        //correct offsets, in case charfilters have been used and will change offsets
-
-        for(int i=0; i<sentences.length; i++){
-            Span span = sentences[i];
-            int newStart =correctOffset(span.getStart());
-            int newEnd = correctOffset(span.getEnd());
-            revised[i] = new Span(newStart, newEnd, span.getType(), span.getProb());
-        }
-        sentences=revised;*/
     }
 
     //split paragraphs and also create containment relation with sentences
@@ -264,17 +313,6 @@ public final class OpenNLPTokenizer extends Tokenizer implements SentenceContext
 
     void fillBuffer() throws IOException {
         fullText = IOUtils.toCharArray(input);
-        /*int offset = 0;
-        int size = 10000;
-        fullText = new char[size];
-        int length = input.read(fullText);
-        while(length == size) {
-//    fullText = IOUtils.toCharArray(input);
-            fullText = Arrays.copyOf(fullText, offset + size);
-            offset += size;
-            length = input.read(fullText, offset, size);
-        }
-        fullText = Arrays.copyOf(fullText, offset + length);*/
     }
 
     @Override
@@ -295,7 +333,7 @@ public final class OpenNLPTokenizer extends Tokenizer implements SentenceContext
     public void reset() throws IOException {
         super.reset();
         clearAttributes();
-        restartAtBeginning();
+        first = true;
     }
 
     public MWEMetadata addSentenceContext(MWEMetadata ctx, int firstTokenIndex, int lastTokenIndex,
@@ -320,7 +358,6 @@ public final class OpenNLPTokenizer extends Tokenizer implements SentenceContext
     }
 
     public void addPayloadAttribute(PayloadAttribute attribute, MWEMetadata ctx) {
-        String data = MWEMetadata.serialize(ctx);
-        attribute.setPayload(new BytesRef(data));
+        attribute.setPayload(MWEMetadata.toPayload(ctx));
     }
 }
@@ -1,6 +1,5 @@
 package org.apache.lucene.analysis.jate;
 
-import opennlp.tools.sentdetect.SentenceDetector;
 import opennlp.tools.sentdetect.SentenceDetectorME;
 import opennlp.tools.sentdetect.SentenceModel;
 import opennlp.tools.tokenize.TokenizerME;
@@ -13,15 +12,23 @@ import org.apache.lucene.util.AttributeFactory;
 
 import java.io.IOException;
 import java.util.Map;
-import java.util.concurrent.Exchanger;
 
+/**
+ * The models are loaded once and shared by all tokenizers created, they are immutable. The sentence detector and
+ * tokenizer of OpenNLP are not thread-safe, so each tokenizer gets its own instances. Lucene reuses a tokenizer
+ * within the thread that created it, so these are created once per thread and field.
+ *
+ * </p>Set 'streamingWindow' to a number of chars to tokenize large documents a window at a time, see
+ * {@link OpenNLPTokenizer}. It has no effect with a paragraph chunker.
+ */
 public class OpenNLPTokenizerFactory extends TokenizerFactory implements ResourceLoaderAware {
-    private SentenceDetector sentenceOp = null;
+    private SentenceModel sentenceModel = null;
     private String sentenceModelFile = null;
-    private opennlp.tools.tokenize.Tokenizer tokenizerOp = null;
+    private TokenizerModel tokenizerModel = null;
     private String tokenizerModelFile = null;
     private String parChunkingClass=null;
     private ParagraphChunker paragraphChunker;
+    private int streamingWindow = 0;
 
     /**
      * Creates a new StandardTokenizerFactory
@@ -31,31 +38,30 @@ public class OpenNLPTokenizerFactory extends TokenizerFactory implements Resourc
         sentenceModelFile = args.get("sentenceModel");
         tokenizerModelFile = args.get("tokenizerModel");
         parChunkingClass=args.get("paragraphChunker-class");
+        String window = args.get("streamingWindow");
+        if (window != null)
+            streamingWindow = Integer.valueOf(window);
     }
 
     @Override
     public Tokenizer create(AttributeFactory factory) {
         OpenNLPTokenizer tokenizer;
+        SentenceDetectorME sentenceOp = sentenceModel == null ? null : new SentenceDetectorME(sentenceModel);
+        TokenizerME tokenizerOp = new TokenizerME(tokenizerModel);
 
-        if(paragraphChunker==null)
-            tokenizer= new OpenNLPTokenizer(factory, sentenceOp, tokenizerOp);
-        else
-            tokenizer=new OpenNLPTokenizer(factory, sentenceOp, tokenizerOp, paragraphChunker);
+        tokenizer = new OpenNLPTokenizer(factory, sentenceOp, tokenizerOp, paragraphChunker, streamingWindow);
         return tokenizer;
     }
 
     @Override
     public void inform(ResourceLoader loader) throws IOException {
         if(sentenceModelFile!=null) {
-            sentenceOp = new SentenceDetectorME(new SentenceModel(
-                    loader.openResource(sentenceModelFile)));
+            sentenceModel = new SentenceModel(loader.openResource(sentenceModelFile));
         }
 
         if(tokenizerModelFile==null)
             throw new IOException("Parameter 'tokenizerModle' is required, but is invalid:"+tokenizerModelFile);
-        tokenizerOp = new TokenizerME(new TokenizerModel(
-                loader.openResource(tokenizerModelFile)
-        ));
+        tokenizerModel = new TokenizerModel(loader.openResource(tokenizerModelFile));
 
         if(parChunkingClass!=null) {
             try {
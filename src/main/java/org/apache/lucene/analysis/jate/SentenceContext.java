@@ -1,6 +1,12 @@
 package org.apache.lucene.analysis.jate;
 
 
+import org.apache.lucene.util.BytesRef;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
 /**
  * Represents the context where a candidate term appears in a sentence. The following information is
  * recorded:
@@ -8,18 +14,36 @@ package org.apache.lucene.analysis.jate;
  * <br/> index of the first token of the candidate as it appears in the sentence
  * <br/> index of the second token of the candidate as it appears in the sentence
  * <br/> pos of the candidate, if makes sense
+ *
+ * </p>A context created with {@link #SentenceContext()} is a reusable reader: {@link #read(BytesRef)} decodes the
+ * fields straight from a payload in the binary format of {@link MWEMetadata#toPayload(MWEMetadata)}, without
+ * decoding the other metadata. Strings of POS tags are cached by the reader, so reading allocates nothing once the
+ * tags have been seen. A reader is not thread-safe.
  */
 public class SentenceContext {
 
-    private int sentenceId;
-    private int firstTokenIdx;
-    private int lastTokenIdx;
+    //beyond this many distinct POS tags (far more than any tag set has), tags are not cached
+    private static final int MAX_CACHED_POS_TAGS = 1024;
+
+    private int sentenceId = -1;
+    private int firstTokenIdx = -1;
+    private int lastTokenIdx = -1;
     private String posTag;
 
+    private MWEMetadata.Input input;
+    private Map<BytesRef, String> posTags;
+    private BytesRef scratch;
+
     public SentenceContext(MWEMetadata metaData) {
         init(metaData);
     }
 
+    /**
+     * Create a reusable reader, see {@link #read(BytesRef)}
+     */
+    public SentenceContext() {
+    }
+
     public int getSentenceId() {
         return sentenceId;
     }
@@ -34,6 +58,62 @@ public class SentenceContext {
         return lastTokenIdx;
     }
 
+    /**
+     * Read the sentence context of a token or MWE from its payload, replacing the fields of this object. Fields
+     * missing from the payload are set to -1 (ids) or null (POS).
+     *
+     * @param payload payload, or null
+     * @return true if the payload has the sentence id, and first and last token indexes
+     */
+    public boolean read(BytesRef payload) {
+        sentenceId = -1;
+        firstTokenIdx = -1;
+        lastTokenIdx = -1;
+        posTag = null;
+        if (payload == null || payload.length == 0)
+            return false;
+        if (payload.bytes[payload.offset] != MWEMetadata.BINARY_VERSION) {
+            //a JSON payload of an existing index
+            MWEMetadata metadata = MWEMetadata.fromPayload(payload);
+            if (metadata != null)
+                initIfPresent(metadata);
+            return isComplete();
+        }
+
+        if (input == null) {
+            input = new MWEMetadata.Input();
+            posTags = new HashMap<>();
+            scratch = new BytesRef();
+        }
+        MWEMetadata.Input in = input.reset(payload);
+        in.pos++;
+        int present = in.readVInt();
+        int asString = in.readVInt();
+        in.readVInt();
+        for (MWEMetadataType type : MWEMetadata.TYPES) {
+            int bit = 1 << type.ordinal();
+            if ((present & bit) == 0)
+                continue;
+            if (type == MWEMetadataType.POS) {
+                int length = in.readStringLength();
+                posTag = posTag(payload.bytes, in.pos, length);
+                in.pos += length;
+            } else if ((asString & bit) != 0) {
+                int length = in.readStringLength();
+                if (isSentenceContext(type))
+                    set(type, parse(new String(payload.bytes, in.pos, length, StandardCharsets.UTF_8)));
+                in.pos += length;
+            } else if (MWEMetadata.isNumber(type)) {
+                int value = in.readZInt();
+                if (isSentenceContext(type))
+                    set(type, value);
+            }
+            //the fields wanted all come before the flag types
+            if (type.ordinal() >= MWEMetadataType.POS.ordinal())
+                break;
+        }
+        return isComplete();
+    }
 
     private void init(MWEMetadata metadata) {
         sentenceId = Integer.valueOf(metadata.getMetaData(MWEMetadataType.SOURCE_SENTENCE_ID_IN_DOC));
@@ -43,6 +123,55 @@ public class SentenceContext {
         //totalSentsInDoc=Integer.valueOf(metadata.getMetaData(MWEMetadataType.SENTENCES_IN_DOC));
     }
 
+    private void initIfPresent(MWEMetadata metadata) {
+        sentenceId = parse(metadata.getMetaData(MWEMetadataType.SOURCE_SENTENCE_ID_IN_DOC));
+        firstTokenIdx = parse(metadata.getMetaData(MWEMetadataType.FIRST_COMPOSING_TOKEN_ID_IN_SENT));
+        lastTokenIdx = parse(metadata.getMetaData(MWEMetadataType.LAST_COMPOSING_TOKEN_ID_IN_SENT));
+        posTag = metadata.getMetaData(MWEMetadataType.POS);
+    }
+
+    private boolean isComplete() {
+        return sentenceId != -1 && firstTokenIdx != -1 && lastTokenIdx != -1;
+    }
+
+    private static boolean isSentenceContext(MWEMetadataType type) {
+        return type == MWEMetadataType.SOURCE_SENTENCE_ID_IN_DOC
+                || type == MWEMetadataType.FIRST_COMPOSING_TOKEN_ID_IN_SENT
+                || type == MWEMetadataType.LAST_COMPOSING_TOKEN_ID_IN_SENT;
+    }
+
+    private void set(MWEMetadataType type, int value) {
+        if (type == MWEMetadataType.SOURCE_SENTENCE_ID_IN_DOC)
+            sentenceId = value;
+        else if (type == MWEMetadataType.FIRST_COMPOSING_TOKEN_ID_IN_SENT)
+            firstTokenIdx = value;
+        else if (type == MWEMetadataType.LAST_COMPOSING_TOKEN_ID_IN_SENT)
+            lastTokenIdx = value;
+    }
+
+    private static int parse(String value) {
+        if (value == null)
+            return -1;
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException nfe) {
+            return -1;
+        }
+    }
+
+    private String posTag(byte[] bytes, int offset, int length) {
+        scratch.bytes = bytes;
+        scratch.offset = offset;
+        scratch.length = length;
+        String tag = posTags.get(scratch);
+        if (tag == null) {
+            tag = scratch.utf8ToString();
+            if (posTags.size() < MAX_CACHED_POS_TAGS)
+                posTags.put(BytesRef.deepCopyOf(scratch), tag);
+        }
+        return tag;
+    }
+
     public String getPosTag() {
         return posTag;
     }
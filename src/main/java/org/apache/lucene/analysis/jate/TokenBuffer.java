@@ -0,0 +1,190 @@
+package org.apache.lucene.analysis.jate;
+
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
+import org.apache.lucene.analysis.tokenattributes.PayloadAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionLengthAttribute;
+import org.apache.lucene.analysis.tokenattributes.TypeAttribute;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.AttributeSource;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.RamUsageEstimator;
+
+import java.util.Arrays;
+
+/**
+ * Buffers the tokens of a stream in parallel arrays, for filters that read a whole sentence or document before
+ * emitting tokens. The term text, offsets, position increment and length, type and payload of each token are
+ * buffered. Unlike {@link AttributeSource#cloneAttributes()}, capturing a token allocates nothing once the arrays are
+ * large enough, and a buffer is reused across sentences and documents.
+ *
+ * </p>A buffer is bound to the attributes of a filter (shared with its input): {@link #capture()} copies the current
+ * token from them, and {@link #restore(int)} copies a buffered token back. Other attributes are not buffered.
+ */
+public final class TokenBuffer {
+    private static final int INITIAL_TOKENS = 64;
+
+    private final CharTermAttribute termAtt;
+    private final OffsetAttribute offsetAtt;
+    private final PositionIncrementAttribute posIncrAtt;
+    private final PositionLengthAttribute posLenAtt;
+    private final TypeAttribute typeAtt;
+    private final PayloadAttribute payloadAtt;
+
+    private char[] termChars = new char[INITIAL_TOKENS * 8];
+    private int termCharsUsed = 0;
+    private byte[] payloadBytes = new byte[INITIAL_TOKENS * 16];
+    private int payloadBytesUsed = 0;
+
+    private int[] termStart = new int[INITIAL_TOKENS];
+    private int[] termLength = new int[INITIAL_TOKENS];
+    private int[] startOffset = new int[INITIAL_TOKENS];
+    private int[] endOffset = new int[INITIAL_TOKENS];
+    private int[] posIncr = new int[INITIAL_TOKENS];
+    private int[] posLen = new int[INITIAL_TOKENS];
+    private int[] payloadStart = new int[INITIAL_TOKENS];
+    private int[] payloadLength = new int[INITIAL_TOKENS]; //-1 for a token without payload
+    private String[] types = new String[INITIAL_TOKENS];
+    private int size = 0;
+
+    //the payload set by restore, valid until the next restore
+    private final BytesRef payload = new BytesRef();
+
+    public TokenBuffer(AttributeSource attributes) {
+        termAtt = attributes.addAttribute(CharTermAttribute.class);
+        offsetAtt = attributes.addAttribute(OffsetAttribute.class);
+        posIncrAtt = attributes.addAttribute(PositionIncrementAttribute.class);
+        posLenAtt = attributes.addAttribute(PositionLengthAttribute.class);
+        typeAtt = attributes.addAttribute(TypeAttribute.class);
+        payloadAtt = attributes.addAttribute(PayloadAttribute.class);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        size = 0;
+        termCharsUsed = 0;
+        payloadBytesUsed = 0;
+    }
+
+    /**
+     * Append the current token of the attributes
+     *
+     * @return index of the token in the buffer
+     */
+    public int capture() {
+        if (size == termStart.length)
+            grow();
+        int length = termAtt.length();
+        termChars = ArrayUtil.grow(termChars, termCharsUsed + length);
+        System.arraycopy(termAtt.buffer(), 0, termChars, termCharsUsed, length);
+        termStart[size] = termCharsUsed;
+        termLength[size] = length;
+        termCharsUsed += length;
+
+        startOffset[size] = offsetAtt.startOffset();
+        endOffset[size] = offsetAtt.endOffset();
+        posIncr[size] = posIncrAtt.getPositionIncrement();
+        posLen[size] = posLenAtt.getPositionLength();
+        types[size] = typeAtt.type();
+
+        BytesRef p = payloadAtt.getPayload();
+        payloadStart[size] = payloadBytesUsed;
+        if (p == null) {
+            payloadLength[size] = -1;
+        } else {
+            payloadBytes = ArrayUtil.grow(payloadBytes, payloadBytesUsed + p.length);
+            System.arraycopy(p.bytes, p.offset, payloadBytes, payloadBytesUsed, p.length);
+            payloadLength[size] = p.length;
+            payloadBytesUsed += p.length;
+        }
+        return size++;
+    }
+
+    /**
+     * Set the attributes to the buffered token. The payload set is valid until the next call.
+     */
+    public void restore(int i) {
+        termAtt.copyBuffer(termChars, termStart[i], termLength[i]);
+        offsetAtt.setOffset(startOffset[i], endOffset[i]);
+        posIncrAtt.setPositionIncrement(posIncr[i]);
+        posLenAtt.setPositionLength(posLen[i]);
+        typeAtt.setType(types[i]);
+        payloadAtt.setPayload(payload(i, payload));
+    }
+
+    /**
+     * Drop the first tokens of the buffer, the others are moved to the front
+     */
+    public void discard(int count) {
+        if (count >= size) {
+            clear();
+            return;
+        }
+        if (count <= 0)
+            return;
+        int charShift = termStart[count];
+        int byteShift = payloadStart[count];
+        System.arraycopy(termChars, charShift, termChars, 0, termCharsUsed - charShift);
+        termCharsUsed -= charShift;
+        System.arraycopy(payloadBytes, byteShift, payloadBytes, 0, payloadBytesUsed - byteShift);
+        payloadBytesUsed -= byteShift;
+
+        int remaining = size - count;
+        System.arraycopy(termStart, count, termStart, 0, remaining);
+        System.arraycopy(termLength, count, termLength, 0, remaining);
+        System.arraycopy(startOffset, count, startOffset, 0, remaining);
+        System.arraycopy(endOffset, count, endOffset, 0, remaining);
+        System.arraycopy(posIncr, count, posIncr, 0, remaining);
+        System.arraycopy(posLen, count, posLen, 0, remaining);
+        System.arraycopy(payloadStart, count, payloadStart, 0, remaining);
+        System.arraycopy(payloadLength, count, payloadLength, 0, remaining);
+        System.arraycopy(types, count, types, 0, remaining);
+        for (int i = 0; i < remaining; i++) {
+            termStart[i] -= charShift;
+            payloadStart[i] -= byteShift;
+        }
+        size = remaining;
+    }
+
+    public void appendTerm(int i, StringBuilder sb) {
+        sb.append(termChars, termStart[i], termLength[i]);
+    }
+
+    public int startOffset(int i) {
+        return startOffset[i];
+    }
+
+    public int endOffset(int i) {
+        return endOffset[i];
+    }
+
+    /**
+     * @param into set to the payload of the buffered token, which it references until the buffer changes
+     * @return into, or null if the token has no payload
+     */
+    public BytesRef payload(int i, BytesRef into) {
+        if (payloadLength[i] == -1)
+            return null;
+        into.bytes = payloadBytes;
+        into.offset = payloadStart[i];
+        into.length = payloadLength[i];
+        return into;
+    }
+
+    private void grow() {
+        int capacity = ArrayUtil.oversize(size + 1, RamUsageEstimator.NUM_BYTES_INT);
+        termStart = Arrays.copyOf(termStart, capacity);
+        termLength = Arrays.copyOf(termLength, capacity);
+        startOffset = Arrays.copyOf(startOffset, capacity);
+        endOffset = Arrays.copyOf(endOffset, capacity);
+        posIncr = Arrays.copyOf(posIncr, capacity);
+        posLen = Arrays.copyOf(posLen, capacity);
+        payloadStart = Arrays.copyOf(payloadStart, capacity);
+        payloadLength = Arrays.copyOf(payloadLength, capacity);
+        types = Arrays.copyOf(types, capacity);
+    }
+}
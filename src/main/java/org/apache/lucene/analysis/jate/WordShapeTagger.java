@@ -1,52 +1,93 @@
 package org.apache.lucene.analysis.jate;
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
 /**
  * see MWEMetadata for the types of shapes that will be recognised
+ *
+ * </p>All shapes of a token are computed in a single scan of its chars, into a bitmap of the corresponding
+ * {@link MWEMetadataType} flags (by ordinal, see {@link MWEMetadata}). The shapes are those of the patterns:
+ * <br/> acronym: a match of <code>\b[A-Z0-9]+\b</code> containing an uppercase letter
+ * <br/> number: <code>\b[0-9\.,/]+\b</code>
+ * <br/> uppercase: <code>[A-Z]</code>
+ * <br/> digit: <code>[0-9]</code>
+ * <br/> symbol: <code>\p{Punct}</code>
  */
-class WordShapeTagger {
-    private static final Pattern acronym = Pattern.compile("\\b[A-Z0-9]+\\b");
-    private static final Pattern number = Pattern.compile("\\b[0-9\\.,/]+\\b");
-    private static final Pattern uppercase = Pattern.compile("[A-Z]");
-    private static final Pattern digit = Pattern.compile("[0-9]");
-    private static final Pattern symbol = Pattern.compile("\\p{Punct}");
-
-    public boolean hasNumber(String input){
-        return number.matcher(input).find();
-    }
+final class WordShapeTagger {
+    static final int ACRONYM = 1 << MWEMetadataType.HAS_ACRONYM_TOKEN.ordinal();
+    static final int NUMBER = 1 << MWEMetadataType.HAS_NUMERIC_TOKEN.ordinal();
+    static final int UPPERCASE = 1 << MWEMetadataType.HAS_UPPERCASE.ordinal();
+    static final int DIGIT = 1 << MWEMetadataType.HAS_DIGIT.ordinal();
+    static final int SYMBOL = 1 << MWEMetadataType.HAS_SYMBOL.ordinal();
+    static final int ALL = ACRONYM | NUMBER | UPPERCASE | DIGIT | SYMBOL;
 
-    public boolean hasAcronym(String input){
-        Matcher m= acronym.matcher(input);
-        while(m.find()){
-            String matched =input.substring(m.start(), m.end());
-            if(uppercase.matcher(matched).find())
-                return true;
-        }
-        return false;
+    private WordShapeTagger() {
     }
 
-    public boolean hasUppercase(String input){
-        return uppercase.matcher(input).find();
-    }
+    /**
+     * @return bitmap of the shapes of the chars, see the constants of this class
+     */
+    static int tag(char[] buffer, int offset, int length) {
+        int shape = 0;
+        int end = offset + length;
+        //as in regex, a word boundary is between a word char and a non-word char, the text is bounded by non-word chars
+        boolean prevWord = false;
+        boolean inAcronym = false, acronymBounded = false, acronymUpper = false;
+        boolean inNumber = false;
+        int numberBounds = 0;
+        for (int i = offset; i <= end; i++) {
+            boolean atEnd = i == end;
+            char c = atEnd ? ' ' : buffer[i];
+            boolean word = !atEnd && isWord(c);
+            boolean boundary = prevWord != word;
+            boolean upper = !atEnd && c >= 'A' && c <= 'Z';
+            boolean digit = !atEnd && c >= '0' && c <= '9';
 
-    public boolean hasDigit(String input){
-        return digit.matcher(input).find();
-    }
+            //acronym: a maximal run of [A-Z0-9], all word chars, so only its ends can be boundaries
+            if (upper || digit) {
+                if (!inAcronym) {
+                    inAcronym = true;
+                    acronymBounded = boundary;
+                    acronymUpper = false;
+                }
+                acronymUpper |= upper;
+            } else if (inAcronym) {
+                inAcronym = false;
+                if (acronymBounded && boundary && acronymUpper)
+                    shape |= ACRONYM;
+            }
 
-    public boolean hasSymbol(String input){
-        return symbol.matcher(input).find();
+            //number: a run of [0-9.,/] has a match if two of its positions, ends included, are boundaries
+            if (digit || (!atEnd && (c == '.' || c == ',' || c == '/'))) {
+                if (!inNumber) {
+                    inNumber = true;
+                    numberBounds = 0;
+                }
+                if (boundary)
+                    numberBounds++;
+            } else if (inNumber) {
+                inNumber = false;
+                if (boundary)
+                    numberBounds++;
+                if (numberBounds >= 2)
+                    shape |= NUMBER;
+            }
+
+            if (upper)
+                shape |= UPPERCASE;
+            if (digit)
+                shape |= DIGIT;
+            if (!atEnd && isPunct(c))
+                shape |= SYMBOL;
+            prevWord = word;
+        }
+        return shape;
     }
 
-    /*public static void main(String[] args) {
-        WordShapeTagger test = new WordShapeTagger();
-        String input = "CD28 surface receptor";
-        System.out.println(test.hasNumber(input));
-        System.out.println(test.hasAcronym(input));
-        System.out.println(test.hasUppercase(input));
-        System.out.println(test.hasDigit(input));
-        System.out.println(test.hasSymbol(input));
-    }*/
+    private static boolean isWord(char c) {
+        return c == '_' || Character.isLetterOrDigit(c);
+    }
 
+    //POSIX punctuation, as \p{Punct}
+    private static boolean isPunct(char c) {
+        return (c >= '!' && c <= '/') || (c >= ':' && c <= '@') || (c >= '[' && c <= '`') || (c >= '{' && c <= '~');
+    }
 }
@@ -0,0 +1,157 @@
+package uk.ac.shef.dcs.jate;
+
+import org.apache.log4j.Logger;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fork/join pools shared by all feature builders and algorithms, so that pools are not created (and threads
+ * leaked) for each build. One pool is kept per level of parallelism, usually
+ * {@link JATEProperties#getMaxCPUCores()}.
+ *
+ * </p>Users of the pools (e.g., a Solr core) {@link #acquire()} them when they start and {@link #release()} them
+ * when they close. The pools are shut down when the last user releases them; a later call to
+ * {@link #getPool(int)} creates new pools.
+ */
+public final class JATEExecutors {
+    private static final Logger LOG = Logger.getLogger(JATEExecutors.class.getName());
+
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 30;
+
+    private static final Map<Integer, ForkJoinPool> pools = new LinkedHashMap<>();
+    private static int users = 0;
+
+    private JATEExecutors() {
+    }
+
+    /**
+     * @return shared pool sized from {@link JATEProperties#getMaxCPUCores()}
+     */
+    public static ForkJoinPool getPool(JATEProperties properties) {
+        return getPool(properties.getMaxCPUCores());
+    }
+
+    /**
+     * @return shared pool sized by the number of available processors
+     */
+    public static ForkJoinPool getPool() {
+        return getPool(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param parallelism number of worker threads, values below 1 are treated as 1
+     * @return shared pool with the given parallelism
+     */
+    public static synchronized ForkJoinPool getPool(int parallelism) {
+        parallelism = parallelism < 1 ? 1 : parallelism;
+        ForkJoinPool pool = pools.get(parallelism);
+        if (pool == null || pool.isShutdown()) {
+            pool = new ForkJoinPool(parallelism, new WorkerThreadFactory(parallelism), null, false);
+            pools.put(parallelism, pool);
+            LOG.info("Created fork/join pool, parallelism=" + parallelism);
+        }
+        return pool;
+    }
+
+    /**
+     * Register a user of the shared pools, see {@link #release()}
+     */
+    public static synchronized void acquire() {
+        users++;
+    }
+
+    /**
+     * Unregister a user of the shared pools, shutting them down if it is the last one
+     */
+    public static void release() {
+        Map<Integer, ForkJoinPool> detached;
+        synchronized (JATEExecutors.class) {
+            if (users > 0)
+                users--;
+            if (users > 0)
+                return;
+            detached = detachPools();
+        }
+        shutdown(detached);
+    }
+
+    /**
+     * Shut down all shared pools. Tasks already submitted are completed, waiting up to
+     * {@value #SHUTDOWN_TIMEOUT_SECONDS} seconds. The pools are detached first, so that other callers are not
+     * blocked while waiting and a later {@link #getPool(int)} creates new pools.
+     */
+    public static void shutdown() {
+        shutdown(detachPools());
+    }
+
+    private static synchronized Map<Integer, ForkJoinPool> detachPools() {
+        Map<Integer, ForkJoinPool> detached = new LinkedHashMap<>(pools);
+        pools.clear();
+        return detached;
+    }
+
+    private static void shutdown(Map<Integer, ForkJoinPool> detached) {
+        //all pools stop taking tasks at once, so their remaining tasks complete concurrently
+        for (ForkJoinPool pool : detached.values())
+            pool.shutdown();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(SHUTDOWN_TIMEOUT_SECONDS);
+        for (Map.Entry<Integer, ForkJoinPool> e : detached.entrySet()) {
+            ForkJoinPool pool = e.getValue();
+            try {
+                if (!pool.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                    LOG.warn("Fork/join pool (parallelism=" + e.getKey() + ") did not terminate in time, " +
+                            "cancelling remaining tasks");
+                    pool.shutdownNow();
+                }
+            } catch (InterruptedException ie) {
+                pool.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (detached.size() > 0)
+            LOG.info("Shut down " + detached.size() + " fork/join pool(s)");
+    }
+
+    /**
+     * @return for each shared pool, keyed by "pool-&lt;parallelism&gt;", its size, active threads, queued tasks,
+     * queued submissions and steal count
+     */
+    public static synchronized Map<String, Map<String, Object>> getStatistics() {
+        Map<String, Map<String, Object>> stats = new LinkedHashMap<>();
+        for (Map.Entry<Integer, ForkJoinPool> e : pools.entrySet()) {
+            ForkJoinPool pool = e.getValue();
+            Map<String, Object> poolStats = new LinkedHashMap<>();
+            poolStats.put("poolSize", pool.getPoolSize());
+            poolStats.put("activeThreads", pool.getActiveThreadCount());
+            poolStats.put("queuedTasks", pool.getQueuedTaskCount());
+            poolStats.put("queuedSubmissions", pool.getQueuedSubmissionCount());
+            poolStats.put("steals", pool.getStealCount());
+            stats.put("pool-" + e.getKey(), poolStats);
+        }
+        return stats;
+    }
+
+    public static void logStatistics() {
+        if (LOG.isDebugEnabled())
+            LOG.debug("Fork/join pools: " + getStatistics());
+    }
+
+    private static class WorkerThreadFactory implements ForkJoinPool.ForkJoinWorkerThreadFactory {
+        private final String prefix;
+
+        WorkerThreadFactory(int parallelism) {
+            this.prefix = "jate-fj-" + parallelism + "-worker-";
+        }
+
+        @Override
+        public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName(prefix + thread.getPoolIndex());
+            return thread;
+        }
+    }
+}
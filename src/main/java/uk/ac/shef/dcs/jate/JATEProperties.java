@@ -40,6 +40,11 @@ public class JATEProperties {
     public static final String PROPERTY_INDEXER_MAX_UNITS_TO_COMMIT = "indexer_max_units_to_commit";
     // Maximum % of parallel CPU cores used
     public static final String PROPERTY_MAX_CORES = "max_cores";
+    // Directory where features are written to memory-mapped files, instead of being held in heap
+    public static final String PROPERTY_FEATURE_STORE_DIR = "feature_store_dir";
+    // Whether built features are persisted as snapshots in the data directory of the Solr core, to be reused
+    // while the index does not change
+    public static final String PROPERTY_FEATURE_SNAPSHOTS = "feature_snapshots";
 
     public static final Integer VALUE_DEFAULT_INDEXER_MAX_UNITS_TO_COMMIT = 500;
 
@@ -206,6 +211,30 @@ public class JATEProperties {
         prop.setProperty(PROPERTY_MAX_CORES, String.valueOf(maxCPUCores));
     }
 
+    /**
+     * get the directory where features are written to memory-mapped files
+     *
+     * @return directory specified, or null if features are to be held in heap
+     */
+    public String getFeatureStoreDir() {
+        return getString(PROPERTY_FEATURE_STORE_DIR);
+    }
+
+    public void setFeatureStoreDir(String featureStoreDir) {
+        prop.setProperty(PROPERTY_FEATURE_STORE_DIR, featureStoreDir);
+    }
+
+    /**
+     * @return true if built features are to be persisted as snapshots and reused while the index does not change
+     */
+    public boolean isFeatureSnapshotsEnabled() {
+        return Boolean.parseBoolean(getString(PROPERTY_FEATURE_SNAPSHOTS));
+    }
+
+    public void setFeatureSnapshotsEnabled(boolean featureSnapshotsEnabled) {
+        prop.setProperty(PROPERTY_FEATURE_SNAPSHOTS, String.valueOf(featureSnapshotsEnabled));
+    }
+
     private int getInt(String propertyName) {
         String string = prop.getProperty(propertyName);
         return Integer.valueOf(string);
@@ -1,24 +1,56 @@
 package uk.ac.shef.dcs.jate;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.RecursiveTask;
+import java.util.function.ToLongFunction;
 
 /**
  * Created by zqz on 15/09/2015.
+ *
+ * </p>Tasks are split in halves until a split is small enough to be computed by a single worker. Splits are views
+ * of ranges of the original task list, which is not copied and must not be modified while the worker runs.
+ *
+ * </p>By default tasks are split by count, see {@link #maxTasksPerThread}. When the cost of tasks is very uneven
+ * (e.g., terms whose postings follow a Zipf distribution), set a cost function with
+ * {@link #setCost(ToLongFunction, int)} so that tasks are split into halves of equal cost instead.
  */
 public abstract class JATERecursiveTaskWorker<S, T> extends RecursiveTask<T>{
-	
+
 	private static final long serialVersionUID = -5145284438127806541L;
-	
+
 	protected List<S> tasks;
     protected int maxTasksPerThread;
 
+    //cumulativeCost[i] is the total cost of the first i tasks of the root worker, shared by all sub workers.
+    //costOffset is the index of the first task of this worker in the root worker's task list
+    private long[] cumulativeCost;
+    private int costOffset;
+    private long maxCostPerThread;
+
     public JATERecursiveTaskWorker(List<S> tasks, int maxTasksPerWorker){
         this.tasks = tasks;
         this.maxTasksPerThread=maxTasksPerWorker;
     }
 
+    /**
+     * Split tasks by cost rather than by count. Must be called before the worker is started.
+     *
+     * @param cost  cost of a task, e.g., the document frequency of a term
+     * @param parts tasks are split until the cost of a split is at most 1/parts of the total cost
+     */
+    public void setCost(ToLongFunction<? super S> cost, int parts) {
+        long[] cumulative = new long[tasks.size() + 1];
+        for (int i = 0; i < tasks.size(); i++)
+            cumulative[i + 1] = cumulative[i] + Math.max(0, cost.applyAsLong(tasks.get(i)));
+        parts = parts < 1 ? 1 : parts;
+        long total = cumulative[tasks.size()];
+        this.cumulativeCost = cumulative;
+        this.costOffset = 0;
+        this.maxCostPerThread = Math.max(1, total / parts + (total % parts == 0 ? 0 : 1));
+    }
+
     protected abstract JATERecursiveTaskWorker<S, T> createInstance(List<S> splitTasks);
 
     protected abstract T mergeResult(List<JATERecursiveTaskWorker<S, T>> workers);
@@ -27,7 +59,7 @@ public abstract class JATERecursiveTaskWorker<S, T> extends RecursiveTask<T>{
 
     @Override
     protected T compute() {
-        if (this.tasks.size() > maxTasksPerThread) {
+        if (isSplittable()) {
             List<JATERecursiveTaskWorker<S, T>> subWorkers =
                     new ArrayList<>();
             subWorkers.addAll(createSubWorkers());
@@ -39,24 +71,56 @@ public abstract class JATERecursiveTaskWorker<S, T> extends RecursiveTask<T>{
         }
     }
 
+    private boolean isSplittable() {
+        if (tasks.size() < 2)
+            return false;
+        if (cumulativeCost != null)
+            return cumulativeCost[costOffset + tasks.size()] - cumulativeCost[costOffset] > maxCostPerThread;
+        return tasks.size() > maxTasksPerThread;
+    }
+
     protected List<JATERecursiveTaskWorker<S, T>> createSubWorkers() {
         List<JATERecursiveTaskWorker<S, T>> subWorkers =
                 new ArrayList<>();
 
-        int total = tasks.size() / 2;
-        List<S> splitTask1 = new ArrayList<>();
-        for (int i = 0; i < total; i++)
-            splitTask1.add(tasks.get(i));
-        JATERecursiveTaskWorker<S, T> subWorker1 = createInstance(splitTask1);
-
-        List<S> splitTask2 = new ArrayList<>();
-        for (int i = total; i < tasks.size(); i++)
-            splitTask2.add(tasks.get(i));
-        JATERecursiveTaskWorker<S, T> subWorker2 = createInstance(splitTask2);
+        int total = splitPoint();
+        JATERecursiveTaskWorker<S, T> subWorker1 = createInstance(tasks.subList(0, total));
+        JATERecursiveTaskWorker<S, T> subWorker2 = createInstance(tasks.subList(total, tasks.size()));
+        if (cumulativeCost != null) {
+            subWorker1.inheritCost(this, costOffset);
+            subWorker2.inheritCost(this, costOffset + total);
+        }
 
         subWorkers.add(subWorker1);
         subWorkers.add(subWorker2);
 
         return subWorkers;
     }
+
+    /**
+     * @return index of the first task of the second half; halves have equal cost if a cost function is set,
+     * otherwise equal size
+     */
+    private int splitPoint() {
+        if (cumulativeCost == null)
+            return tasks.size() / 2;
+        int from = costOffset, to = costOffset + tasks.size();
+        long half = cumulativeCost[from] + (cumulativeCost[to] - cumulativeCost[from]) / 2;
+        int idx = Arrays.binarySearch(cumulativeCost, from + 1, to, half);
+        if (idx < 0)
+            idx = -idx - 1;
+        int split = idx - from;
+        //each half keeps at least one task
+        if (split < 1)
+            split = 1;
+        else if (split > tasks.size() - 1)
+            split = tasks.size() - 1;
+        return split;
+    }
+
+    private void inheritCost(JATERecursiveTaskWorker<S, T> parent, int offset) {
+        this.cumulativeCost = parent.cumulativeCost;
+        this.maxCostPerThread = parent.maxCostPerThread;
+        this.costOffset = offset;
+    }
 }
@@ -4,6 +4,7 @@ import org.apache.log4j.Logger;
 import uk.ac.shef.dcs.jate.JATEException;
 import uk.ac.shef.dcs.jate.feature.AbstractFeature;
 import uk.ac.shef.dcs.jate.feature.FrequencyTermBased;
+import uk.ac.shef.dcs.jate.feature.TermStatistics;
 import uk.ac.shef.dcs.jate.model.JATETerm;
 
 import java.util.*;
@@ -18,13 +19,13 @@ public class ATTF extends Algorithm{
     public List<JATETerm> execute(Collection<String> candidates) throws JATEException {
         LOG.info("Calculating ATTF for "+candidates.size()+" candidate terms.");
         AbstractFeature feature = features.get(FrequencyTermBased.class.getName());
-        validateFeature(feature, FrequencyTermBased.class);
+        validateFeature(feature, TermStatistics.class);
 
-        FrequencyTermBased fFeature = (FrequencyTermBased) feature;
+        TermStatistics fFeature = (TermStatistics) feature;
         List<JATETerm> result = new ArrayList<>();
         for(String tString: candidates){
             Integer ttf = fFeature.getTTF(tString);
-            Integer docFrequency = fFeature.getTermFrequencyInDocument(tString).size();
+            int docFrequency = fFeature.getDocFrequency(tString);
             double score;
             if(ttf==0)
                 score=0;
@@ -16,8 +16,9 @@ public abstract class Algorithm {
 
     public abstract List<JATETerm> execute(Collection<String> candidates) throws JATEException;
 
+    //the feature may be of a subtype, e.g., a FrequencyTermBased where TermStatistics are required
     protected void validateFeature(AbstractFeature feature, Class<? extends AbstractFeature> type) throws JATEException {
-        if (feature == null || !(feature.getClass().equals(type))) {
+        if (feature == null || !type.isInstance(feature)) {
             StringBuilder sb = new StringBuilder();
             sb.append("requires feature type:").append(type).append(",")
                     .append(" provided:");
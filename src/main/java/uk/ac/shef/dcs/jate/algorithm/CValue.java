@@ -1,6 +1,7 @@
 package uk.ac.shef.dcs.jate.algorithm;
 
 import uk.ac.shef.dcs.jate.JATEException;
+import uk.ac.shef.dcs.jate.JATEExecutors;
 import uk.ac.shef.dcs.jate.feature.AbstractFeature;
 import uk.ac.shef.dcs.jate.feature.Containment;
 import uk.ac.shef.dcs.jate.feature.FrequencyTermBased;
@@ -37,10 +38,12 @@ public class CValue extends Algorithm {
         msg.append(cores).append(", total terms=" + candidates.size()).append(",").
                 append(" max terms per worker thread=").append(maxPerWorker);
         LOG.info(msg.toString());
-        ForkJoinPool forkJoinPool = new ForkJoinPool(cores);
+        ForkJoinPool forkJoinPool = JATEExecutors.getPool(cores);
         CValueWorker worker = new CValueWorker(new ArrayList<>(candidates), maxPerWorker, fFeature,
                 cFeature
                 );
+        //the score of a term sums over the terms containing it, so split the candidates by that
+        worker.setCost(term -> 1 + cFeature.getTermParents(term).size(), cores);
         List<JATETerm> result = forkJoinPool.invoke(worker);
         Collections.sort(result);
         LOG.info("Complete");
@@ -1,6 +1,7 @@
 package uk.ac.shef.dcs.jate.algorithm;
 
 import uk.ac.shef.dcs.jate.JATEException;
+import uk.ac.shef.dcs.jate.JATEExecutors;
 import uk.ac.shef.dcs.jate.feature.*;
 import uk.ac.shef.dcs.jate.model.JATETerm;
 
@@ -42,7 +43,7 @@ public class ChiSquare extends Algorithm {
         msg.append(cores).append(", total terms=" + candidates.size()).append(",").
                 append(" max terms per worker thread=").append(maxPerWorker);
         LOG.info(msg.toString());
-        ForkJoinPool forkJoinPool = new ForkJoinPool(cores);
+        ForkJoinPool forkJoinPool = JATEExecutors.getPool(cores);
 
         ChiSquareWorker worker = new ChiSquareWorker(new ArrayList<>(candidates), maxPerWorker,
                 termFeatureCtxBased, fFeatureCoocurr, refTermExpProb
@@ -2,6 +2,7 @@ package uk.ac.shef.dcs.jate.algorithm;
 
 import org.apache.log4j.Logger;
 import uk.ac.shef.dcs.jate.JATEException;
+import uk.ac.shef.dcs.jate.JATEExecutors;
 import uk.ac.shef.dcs.jate.feature.AbstractFeature;
 import uk.ac.shef.dcs.jate.feature.FrequencyTermBased;
 import uk.ac.shef.dcs.jate.feature.TermComponentIndex;
@@ -47,7 +48,7 @@ public class RAKE extends Algorithm {
 
 
         LOG.info(msg.toString());
-        ForkJoinPool forkJoinPool = new ForkJoinPool(cores);
+        ForkJoinPool forkJoinPool = JATEExecutors.getPool(cores);
         RAKEWorker worker = new RAKEWorker(new ArrayList<>(candidates), Integer.MAX_VALUE, fFeatureWords, fFeatureTerms,
                 fFeatureTermCompIndex
         );
@@ -1,7 +1,6 @@
 package uk.ac.shef.dcs.jate.algorithm;
 
 import org.apache.log4j.Logger;
-import org.apache.solr.common.util.Pair;
 import uk.ac.shef.dcs.jate.JATERecursiveTaskWorker;
 import uk.ac.shef.dcs.jate.feature.FrequencyTermBased;
 import uk.ac.shef.dcs.jate.feature.TermComponentIndex;
@@ -71,22 +70,19 @@ public class RAKEWorker extends JATERecursiveTaskWorker<String, List<JATETerm>>
                 int degree = freq;
 
                 //for the remaining part of degree, it depends on terms (parent term) that contain this element
-                List<Pair<String, Integer>> parentTerms=fTermCompIndex.getSorted(e);
-                for(Pair<String, Integer> pTerm: parentTerms){
-                    String pTermStr = pTerm.getKey();
-                    if(pTerm.getValue()==1) //we are only interested in multi-word expressions for computing degree
-                        continue;
-
-                    int pTF = fFeatureTerms.getTTF(pTermStr); //how many times this parent term appear in corpus
-
-                    String[] pTermElements = pTermStr.split(" "); //components of this parent term
-                    for(String ep: pTermElements){
-                        if (ep.equals(e)) //discount the word element itself
-                            continue;
+                int unigram = fTermCompIndex.lookup(e);
+                if (unigram != -1) {
+                    //we are only interested in multi-word expressions for computing degree, which are sorted first
+                    int end = fTermCompIndex.getEndOfLongerThan(unigram, 1);
+                    for (int pos = fTermCompIndex.getStart(unigram); pos < end; pos++) {
+                        String pTermStr = fTermCompIndex.getTerm(pos);
+
+                        int pTF = fFeatureTerms.getTTF(pTermStr); //how many times this parent term appear in corpus
+
+                        //components of this parent term, discounting the word element itself
                         //does stop words matter?
-                        degree+=pTF;
+                        degree += pTF * (fTermCompIndex.getNumTokens(pos) - countToken(pTermStr, e));
                     }
-
                 }
 
                 double wScore = (double) degree / freq; //score of this element word
@@ -103,4 +99,21 @@ public class RAKEWorker extends JATERecursiveTaskWorker<String, List<JATETerm>>
         }
         return result;
     }
+
+    /**
+     * @return number of space separated tokens in term that equal token
+     */
+    private static int countToken(String term, String token) {
+        int count = 0;
+        int from = 0;
+        while (from <= term.length()) {
+            int to = term.indexOf(' ', from);
+            if (to == -1)
+                to = term.length();
+            if (to - from == token.length() && term.startsWith(token, from))
+                count++;
+            from = to + 1;
+        }
+        return count;
+    }
 }
@@ -3,6 +3,7 @@ package uk.ac.shef.dcs.jate.algorithm;
 import uk.ac.shef.dcs.jate.JATEException;
 import uk.ac.shef.dcs.jate.feature.AbstractFeature;
 import uk.ac.shef.dcs.jate.feature.FrequencyTermBased;
+import uk.ac.shef.dcs.jate.feature.TermStatistics;
 import uk.ac.shef.dcs.jate.model.JATETerm;
 
 import java.util.*;
@@ -17,8 +18,8 @@ public class RIDF extends Algorithm{
     @Override
     public List<JATETerm> execute(Collection<String> candidates) throws JATEException {
         AbstractFeature feature = features.get(FrequencyTermBased.class.getName());
-        validateFeature(feature, FrequencyTermBased.class);
-        FrequencyTermBased fFeature = (FrequencyTermBased) feature;
+        validateFeature(feature, TermStatistics.class);
+        TermStatistics fFeature = (TermStatistics) feature;
 
         double totalDocs = (double) fFeature.getTotalDocs();
         List<JATETerm> result = new ArrayList<>();
@@ -43,7 +44,7 @@ public class RIDF extends Algorithm{
             double attf = (double) ttf / totalDocs;
             double pi = Math.exp(0 - attf);
             double eidf = 0-(Math.log(1-pi)/Math.log(2));//expected idf
-            double df = (double) fFeature.getTermFrequencyInDocument(tString).size();
+            double df = (double) fFeature.getDocFrequency(tString);
             double idf= Math.log(totalDocs / df);
 
             double ridf = idf-eidf;
@@ -3,6 +3,7 @@ package uk.ac.shef.dcs.jate.algorithm;
 import uk.ac.shef.dcs.jate.JATEException;
 import uk.ac.shef.dcs.jate.feature.AbstractFeature;
 import uk.ac.shef.dcs.jate.feature.FrequencyTermBased;
+import uk.ac.shef.dcs.jate.feature.TermStatistics;
 import uk.ac.shef.dcs.jate.model.JATETerm;
 
 import java.util.*;
@@ -16,8 +17,8 @@ public class TFIDF extends Algorithm {
     @Override
     public List<JATETerm> execute(Collection<String> candidates) throws JATEException {
         AbstractFeature feature = features.get(FrequencyTermBased.class.getName());
-        validateFeature(feature, FrequencyTermBased.class);
-        FrequencyTermBased fFeature = (FrequencyTermBased) feature;
+        validateFeature(feature, TermStatistics.class);
+        TermStatistics fFeature = (TermStatistics) feature;
 
         double totalDocs = (double) fFeature.getTotalDocs();
         List<JATETerm> result = new ArrayList<>();
@@ -28,7 +29,7 @@ public class TFIDF extends Algorithm {
         for (String tString: candidates) {
             JATETerm term = new JATETerm(tString);
             double tf = fFeature.getTTFNorm(tString);
-            double df = fFeature.getTermFrequencyInDocument(tString).size();
+            double df = fFeature.getDocFrequency(tString);
             double idf = Math.log(totalDocs / df);
 
             term.setScore(tf * idf);
@@ -110,17 +110,19 @@ public class TermEx extends ReferenceBased {
             //calc DC
             Set<Integer> docs = fFeatureTerms.getTermFrequencyInDocument(tString).keySet();
             double sum = 0;
+            int termIdInDocs = fFeatureDocs.lookupTerm(tString);
             for (int i : docs) {
-                //do not query for features using this context window. but query to get the
-                //real context window object that matches this id
+                //query for features using the id of the context window of this document
                 ContextWindow c = new ContextWindow();
                 c.setDocId(i);
-                c = fFeatureDocs.getContextWindow(c.toString());
-                if (c == null)
+                int ctxId = fFeatureDocs.lookupContext(c);
+                if (ctxId == -1 || termIdInDocs == -1) {
                     LOG.error(String.format("TermEx error: expected context window does not exist in doc [%s]", i));
+                    continue;
+                }
 
-                int tfid = fFeatureDocs.getTFIC(c).get(tString);
-                int ttfid = fFeatureDocs.getMapCtx2TTF().get(c);
+                int tfid = fFeatureDocs.getTFIC(ctxId, termIdInDocs);
+                int ttfid = fFeatureDocs.getCtxTTF(ctxId);
                 double norm = tfid == 0 ? 0 : (double) tfid / ttfid;
                 if (norm == 0) sum += 0;
                 else {
@@ -14,8 +14,8 @@ import org.slf4j.LoggerFactory;
 import uk.ac.shef.dcs.jate.JATEException;
 import uk.ac.shef.dcs.jate.JATEProperties;
 import uk.ac.shef.dcs.jate.algorithm.TermInfoCollector;
-import uk.ac.shef.dcs.jate.feature.FrequencyTermBased;
 import uk.ac.shef.dcs.jate.feature.FrequencyTermBasedFBMaster;
+import uk.ac.shef.dcs.jate.feature.TermStatistics;
 import uk.ac.shef.dcs.jate.model.JATEDocument;
 import uk.ac.shef.dcs.jate.model.JATETerm;
 import uk.ac.shef.dcs.jate.util.IOUtil;
@@ -86,9 +86,9 @@ public abstract class App {
     }
 
     protected FrequencyTermBasedFBMaster freqFeatureBuilder = null;
-    // term indexed feature (typically frequency info.)
+    // term indexed feature (typically frequency info.), a FrequencyTermBased where per-document frequencies are used
     // see also {@code AppATTF}
-    protected FrequencyTermBased freqFeature = null;
+    protected TermStatistics freqFeature = null;
 
     private static String DEFAULT_OUTPUT_FILE = "terms.txt";
 
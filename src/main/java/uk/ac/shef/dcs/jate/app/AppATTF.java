@@ -9,8 +9,8 @@ import uk.ac.shef.dcs.jate.JATEException;
 import uk.ac.shef.dcs.jate.JATEProperties;
 import uk.ac.shef.dcs.jate.algorithm.ATTF;
 import uk.ac.shef.dcs.jate.algorithm.Algorithm;
+import uk.ac.shef.dcs.jate.feature.FeatureContext;
 import uk.ac.shef.dcs.jate.feature.FrequencyTermBased;
-import uk.ac.shef.dcs.jate.feature.FrequencyTermBasedFBMaster;
 import uk.ac.shef.dcs.jate.model.JATETerm;
 
 import java.io.IOException;
@@ -95,9 +95,10 @@ public class AppATTF extends App {
             core.open();
         }
         SolrIndexSearcher searcher = core.getSearcher().get();
-//        try {
-	        this.freqFeatureBuilder = new FrequencyTermBasedFBMaster(searcher, properties, FrequencyTermBasedFBMaster.FEATURE_TYPE_TERM);
-	        this.freqFeature = (FrequencyTermBased) freqFeatureBuilder.build();
+        //features are shared with other algorithms run on the same searcher
+        FeatureContext features = FeatureContext.acquire(searcher);
+        try {
+	        this.freqFeature = features.getTermStatistics(properties);
 	
 	        Algorithm attf = new ATTF();
 	        attf.registerFeature(FrequencyTermBased.class.getName(), freqFeature);
@@ -115,13 +116,9 @@ public class AppATTF extends App {
 	                properties.getSolrFieldNameID());
 	
 	        return terms;
-//        } finally {
-//        	try {
-//				searcher.close();
-//			} catch (IOException e) {
-//				LOG.error(e.toString());
-//			}
-//        }
+        } finally {
+            features.release();
+        }
     }
 
 }
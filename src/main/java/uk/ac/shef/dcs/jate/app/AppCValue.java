@@ -86,19 +86,13 @@ public class AppCValue extends App {
 		}
 
 		SolrIndexSearcher searcher = core.getSearcher().get();
-//		try {
-
-			this.freqFeatureBuilder = new FrequencyTermBasedFBMaster(searcher, properties, 0);
-			this.freqFeature = (FrequencyTermBased) freqFeatureBuilder.build();
+		//features are shared with other algorithms run on the same searcher
+		FeatureContext features = FeatureContext.acquire(searcher);
+		try {
 
-			Set<String> uniqueCandidateTerms = freqFeature.getMapTerm2TTF().keySet();
-			TermComponentIndexFBMaster termCompIndexFeatureBuilder = new TermComponentIndexFBMaster(properties,
-					new ArrayList<>(uniqueCandidateTerms));
-			TermComponentIndex termComponentIndexFeature = (TermComponentIndex) termCompIndexFeatureBuilder.build();
+			this.freqFeature = features.getTermFrequency(properties);
 
-			ContainmentFBMaster cb = new ContainmentFBMaster(searcher, properties, termComponentIndexFeature,
-					uniqueCandidateTerms);
-			Containment cf = (Containment) cb.build();
+			Containment cf = features.getContainment(properties);
 
 			CValue cvalue = new CValue();
 			cvalue.registerFeature(FrequencyTermBased.class.getName(), this.freqFeature);
@@ -115,13 +109,9 @@ public class AppCValue extends App {
 					properties.getSolrFieldNameID());
 			LOG.info("Complete CValue term extraction.");
 			return terms;
-//		} finally {
-//			try {
-//				searcher.close();
-//			} catch (IOException e) {
-//				LOG.error(e.toString());
-//			}
-//		}
+		} finally {
+			features.release();
+		}
 	}
 
 }
@@ -109,13 +109,13 @@ public class AppChiSquare extends App {
             core.open();
         }
         SolrIndexSearcher searcher = core.getSearcher().get();
-//        try {
-            FrequencyTermBasedFBMaster ftbb = new FrequencyTermBasedFBMaster(searcher, properties, 0);
-            FrequencyTermBased ft = (FrequencyTermBased) ftbb.build();
+        //features are shared with other algorithms run on the same searcher
+        FeatureContext features = FeatureContext.acquire(searcher);
+        try {
+            FrequencyTermBased ft = features.getTermFrequency(properties);
 
             //sentence is a context
-            FrequencyCtxSentenceBasedFBMaster fcsbb = new FrequencyCtxSentenceBasedFBMaster(searcher, properties, 0);
-            FrequencyCtxBased fcs = (FrequencyCtxBased) fcsbb.build();
+            FrequencyCtxBased fcs = features.getSentenceContextFrequency(properties);
             FrequencyCtxBased ref_fcs = (FrequencyCtxBased)
                     (new FrequencyCtxBasedCopier(searcher, properties, fcs, ft, frequentTermFT).build());
             //window is a context
@@ -124,8 +124,10 @@ public class AppChiSquare extends App {
             FrequencyCtxBased ref_fcsb = (FrequencyCtxBased)
                     (new FrequencyCtxWindowBasedFBMaster(searcher, properties, fcsb.getMapCtx2TTF().keySet(), 5, 0).build());*/
 
+            //sentence contexts, frequent terms as reference terms
             CooccurrenceFBMaster cob = new CooccurrenceFBMaster(searcher, properties, ft,
-                    this.prefilterMinTTF, fcs, ref_fcs, this.prefilterMinTCF);
+                    this.prefilterMinTTF, fcs, ref_fcs, this.prefilterMinTCF,
+                    "ctx=sentence", "ref=frequent-terms:" + frequentTermFT);
             Cooccurrence co = (Cooccurrence) cob.build();
 
             //feature expected probability for frequent terms
@@ -149,13 +151,9 @@ public class AppChiSquare extends App {
             addAdditionalTermInfo(terms, searcher, properties.getSolrFieldNameJATENGramInfo(),
                     properties.getSolrFieldNameID());
             return terms;
-//        } finally {
-//            try {
-//                searcher.close();
-//            } catch (IOException e) {
-//                log.error(e.toString());
-//            }
-//        }
+        } finally {
+            features.release();
+        }
     }
 
 }
@@ -89,12 +89,12 @@ public class AppGlossEx extends App {
 		}
 
 		SolrIndexSearcher searcher = core.getSearcher().get();
-//		try {
-			this.freqFeatureBuilder = new FrequencyTermBasedFBMaster(searcher, properties, 0);
-			this.freqFeature = (FrequencyTermBased) freqFeatureBuilder.build();
+		//features are shared with other algorithms run on the same searcher
+		FeatureContext features = FeatureContext.acquire(searcher);
+		try {
+			this.freqFeature = features.getTermFrequency(properties);
 
-			FrequencyTermBasedFBMaster fwbb = new FrequencyTermBasedFBMaster(searcher, properties, 1);
-			FrequencyTermBased fwb = (FrequencyTermBased) fwbb.build();
+			FrequencyTermBased fwb = features.getWordFrequency(properties);
 
 			TTFReferenceFeatureFileBuilder ftrb = new TTFReferenceFeatureFileBuilder(this.referenceFrequencyFilePath);
 			FrequencyTermBased frb = ftrb.build();
@@ -116,14 +116,9 @@ public class AppGlossEx extends App {
 
 			log.info("complete GlossEx term extraction.");
 			return terms;
-//		} finally {
-//			try {
-//				searcher.close();
-//			} catch (IOException e) {
-//				e.printStackTrace();
-//				log.error("Failed to close current SolrIndexSearcher!" + e.getCause().toString());
-//			}
-//		}
+		} finally {
+			features.release();
+		}
 	}
 
 	protected static void printHelp() {
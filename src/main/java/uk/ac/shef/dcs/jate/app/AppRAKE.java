@@ -90,12 +90,12 @@ public class AppRAKE extends App {
 			core.open();
 		}
 		SolrIndexSearcher searcher = core.getSearcher().get();
-//		try {
-			this.freqFeatureBuilder = new FrequencyTermBasedFBMaster(searcher, properties, 0);
-			this.freqFeature = (FrequencyTermBased) freqFeatureBuilder.build();
+		//features are shared with other algorithms run on the same searcher
+		FeatureContext features = FeatureContext.acquire(searcher);
+		try {
+			this.freqFeature = features.getTermFrequency(properties);
 
-			FrequencyTermBasedFBMaster fwbb = new FrequencyTermBasedFBMaster(searcher, properties, 1);
-			FrequencyTermBased fwb = (FrequencyTermBased) fwbb.build();
+			FrequencyTermBased fwb = features.getWordFrequency(properties);
 
 			TermComponentIndexFBMaster tcib = new TermComponentIndexFBMaster(properties,
 					new ArrayList<>(this.freqFeature.getMapTerm2TTF().keySet()));
@@ -116,13 +116,9 @@ public class AppRAKE extends App {
 			addAdditionalTermInfo(terms, searcher, properties.getSolrFieldNameJATENGramInfo(),
 					properties.getSolrFieldNameID());
 			return terms;
-//		} finally {
-//			try {
-//				searcher.close();
-//			} catch (IOException e) {
-//				log.error(e.toString());
-//			}
-//		}
+		} finally {
+			features.release();
+		}
 	}
 
 	protected static void printHelp() {
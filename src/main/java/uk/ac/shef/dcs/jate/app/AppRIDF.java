@@ -7,8 +7,8 @@ import org.slf4j.LoggerFactory;
 import uk.ac.shef.dcs.jate.JATEException;
 import uk.ac.shef.dcs.jate.JATEProperties;
 import uk.ac.shef.dcs.jate.algorithm.RIDF;
+import uk.ac.shef.dcs.jate.feature.FeatureContext;
 import uk.ac.shef.dcs.jate.feature.FrequencyTermBased;
-import uk.ac.shef.dcs.jate.feature.FrequencyTermBasedFBMaster;
 import uk.ac.shef.dcs.jate.model.JATETerm;
 
 import java.io.IOException;
@@ -84,9 +84,10 @@ public class AppRIDF extends App {
 			core.open();
 		}
 		SolrIndexSearcher searcher = core.getSearcher().get();
-//		try {
-			this.freqFeatureBuilder = new FrequencyTermBasedFBMaster(searcher, properties, 0);
-			this.freqFeature = (FrequencyTermBased) freqFeatureBuilder.build();
+		//features are shared with other algorithms run on the same searcher
+		FeatureContext features = FeatureContext.acquire(searcher);
+		try {
+			this.freqFeature = features.getTermStatistics(properties);
 
 			RIDF attf = new RIDF();
 			attf.registerFeature(FrequencyTermBased.class.getName(), this.freqFeature);
@@ -101,13 +102,9 @@ public class AppRIDF extends App {
 			addAdditionalTermInfo(terms, searcher, properties.getSolrFieldNameJATENGramInfo(),
 					properties.getSolrFieldNameID());
 			return terms;
-//		} finally {
-//			try {
-//				searcher.close();
-//			} catch (IOException e) {
-//				log.error(e.toString());
-//			}
-//		}
+		} finally {
+			features.release();
+		}
 	}
 
 }
@@ -8,8 +8,8 @@ import uk.ac.shef.dcs.jate.JATEException;
 import uk.ac.shef.dcs.jate.JATEProperties;
 import uk.ac.shef.dcs.jate.algorithm.Algorithm;
 import uk.ac.shef.dcs.jate.algorithm.TFIDF;
+import uk.ac.shef.dcs.jate.feature.FeatureContext;
 import uk.ac.shef.dcs.jate.feature.FrequencyTermBased;
-import uk.ac.shef.dcs.jate.feature.FrequencyTermBasedFBMaster;
 import uk.ac.shef.dcs.jate.model.JATETerm;
 
 import java.io.IOException;
@@ -83,9 +83,10 @@ public class AppTFIDF extends App {
 			core.open();
 		}
 		SolrIndexSearcher searcher = core.getSearcher().get();
-//		try {
-			this.freqFeatureBuilder = new FrequencyTermBasedFBMaster(searcher, properties, 0);
-			this.freqFeature = (FrequencyTermBased) freqFeatureBuilder.build();
+		//features are shared with other algorithms run on the same searcher
+		FeatureContext features = FeatureContext.acquire(searcher);
+		try {
+			this.freqFeature = features.getTermStatistics(properties);
 
 			Algorithm tfidf = new TFIDF();
 			tfidf.registerFeature(FrequencyTermBased.class.getName(), this.freqFeature);
@@ -100,13 +101,9 @@ public class AppTFIDF extends App {
 			addAdditionalTermInfo(terms, searcher, properties.getSolrFieldNameJATENGramInfo(),
 					properties.getSolrFieldNameID());
 			return terms;
-//		} finally {
-//			try {
-//				searcher.close();
-//			} catch (IOException e) {
-//				log.error(e.toString());
-//			}
-//		}
+		} finally {
+			features.release();
+		}
 	}
 
 }
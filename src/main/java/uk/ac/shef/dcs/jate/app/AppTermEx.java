@@ -92,18 +92,17 @@ public class AppTermEx extends App {
 			core.open();
 		}
 		SolrIndexSearcher searcher = core.getSearcher().get();
-//		try {
-			this.freqFeatureBuilder = new FrequencyTermBasedFBMaster(searcher, properties, 0);
-			this.freqFeature = (FrequencyTermBased) freqFeatureBuilder.build();
+		//features are shared with other algorithms run on the same searcher
+		FeatureContext features = FeatureContext.acquire(searcher);
+		try {
+			this.freqFeature = features.getTermFrequency(properties);
 
-			FrequencyTermBasedFBMaster fwbb = new FrequencyTermBasedFBMaster(searcher, properties, 1);
-			FrequencyTermBased fwb = (FrequencyTermBased) fwbb.build();
+			FrequencyTermBased fwb = features.getWordFrequency(properties);
 
 			TTFReferenceFeatureFileBuilder ftrb = new TTFReferenceFeatureFileBuilder(this.referenceFrequencyFilePath);
 			FrequencyTermBased frb = ftrb.build();
 
-			FrequencyCtxDocBasedFBMaster fdbb = new FrequencyCtxDocBasedFBMaster(searcher, properties, 0);
-			FrequencyCtxBased fdb = (FrequencyCtxBased) fdbb.build();
+			FrequencyCtxBased fdb = features.getDocContextFrequency(properties);
 
 			TermEx termex = new TermEx();
 			termex.registerFeature(FrequencyTermBased.class.getName(), this.freqFeature);
@@ -123,13 +122,9 @@ public class AppTermEx extends App {
 			addAdditionalTermInfo(terms, searcher, properties.getSolrFieldNameJATENGramInfo(),
 					properties.getSolrFieldNameID());
 			return terms;
-//		} finally {
-//			try {
-//				searcher.close();
-//			} catch (IOException e) {
-//				log.error(e.toString());
-//			}
-//		}
+		} finally {
+			features.release();
+		}
 	}
 
 	protected static void printHelp() {
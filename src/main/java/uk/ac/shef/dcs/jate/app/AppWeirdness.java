@@ -7,8 +7,8 @@ import org.slf4j.LoggerFactory;
 import uk.ac.shef.dcs.jate.JATEException;
 import uk.ac.shef.dcs.jate.JATEProperties;
 import uk.ac.shef.dcs.jate.algorithm.Weirdness;
+import uk.ac.shef.dcs.jate.feature.FeatureContext;
 import uk.ac.shef.dcs.jate.feature.FrequencyTermBased;
-import uk.ac.shef.dcs.jate.feature.FrequencyTermBasedFBMaster;
 import uk.ac.shef.dcs.jate.feature.TTFReferenceFeatureFileBuilder;
 import uk.ac.shef.dcs.jate.model.JATETerm;
 
@@ -91,12 +91,12 @@ public class AppWeirdness extends App {
 			core.open();
 		}
 		SolrIndexSearcher searcher = core.getSearcher().get();
-//		try {
-			this.freqFeatureBuilder = new FrequencyTermBasedFBMaster(searcher, properties, 0);
-			this.freqFeature = (FrequencyTermBased) freqFeatureBuilder.build();
+		//features are shared with other algorithms run on the same searcher
+		FeatureContext features = FeatureContext.acquire(searcher);
+		try {
+			this.freqFeature = features.getTermFrequency(properties);
 
-			FrequencyTermBasedFBMaster fwbb = new FrequencyTermBasedFBMaster(searcher, properties, 1);
-			FrequencyTermBased fwb = (FrequencyTermBased) fwbb.build();
+			FrequencyTermBased fwb = features.getWordFrequency(properties);
 
 			TTFReferenceFeatureFileBuilder ftrb = new TTFReferenceFeatureFileBuilder(this.referenceFrequencyFilePath);
 			FrequencyTermBased frb = ftrb.build();
@@ -115,13 +115,9 @@ public class AppWeirdness extends App {
 			addAdditionalTermInfo(terms, searcher, properties.getSolrFieldNameJATENGramInfo(),
 					properties.getSolrFieldNameID());
 			return terms;
-//		} finally {
-//			try {
-//				searcher.close();
-//			} catch (IOException e) {
-//				log.error(e.toString());
-//			}
-//		}
+		} finally {
+			features.release();
+		}
 	}
 
 	protected static void printHelp() {
@@ -7,4 +7,11 @@ public class AbstractFeature {
     public String getName(){
         return this.getClass().getName();
     }
+
+    /**
+     * Release what the feature holds outside the heap, e.g., the file of a feature offloaded to a memory-mapped
+     * file. Called by {@link FeatureContext} when it drops the feature; the feature must not be used afterwards.
+     */
+    public void release() {
+    }
 }
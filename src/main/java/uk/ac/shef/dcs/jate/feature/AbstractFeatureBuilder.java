@@ -1,20 +1,36 @@
 package uk.ac.shef.dcs.jate.feature;
 
+import org.apache.commons.lang.exception.ExceptionUtils;
+import org.apache.log4j.Logger;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.index.Terms;
 import org.apache.lucene.index.TermsEnum;
 import org.apache.lucene.util.BytesRef;
+import org.apache.solr.core.SolrCore;
 import org.apache.solr.search.SolrIndexSearcher;
 import uk.ac.shef.dcs.jate.JATEException;
+import uk.ac.shef.dcs.jate.JATEExecutors;
 import uk.ac.shef.dcs.jate.JATEProperties;
 import uk.ac.shef.dcs.jate.util.SolrUtil;
 
+import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 /**
  *
  */
 public abstract class AbstractFeatureBuilder {
+    private static final Logger LOG = Logger.getLogger(AbstractFeatureBuilder.class.getName());
+
+    //directory under the data directory of the solr core where feature snapshots are kept
+    protected static final String SNAPSHOT_DIR = "jate-features";
 
     protected SolrIndexSearcher solrIndexSearcher;
 
@@ -42,10 +58,20 @@ public abstract class AbstractFeatureBuilder {
 
 
     protected Set<String> getUniqueWords() throws JATEException, IOException {
+        return new HashSet<>(getSortedUniqueWords());
+    }
+
+    /**
+     * @return single-token terms of the n-gram field in index order, i.e., the byte order of their UTF-8 encoding,
+     * see {@link TermsMergeJoin}
+     * @throws JATEException
+     * @throws IOException
+     */
+    protected List<String> getSortedUniqueWords() throws JATEException, IOException {
         Terms ngramInfo = SolrUtil.getTermVector(properties.getSolrFieldNameJATENGramInfo(), solrIndexSearcher);
 
         TermsEnum termsEnum = ngramInfo.iterator();
-        Set<String> allWords = new HashSet<>();
+        List<String> allWords = new ArrayList<>();
 
         while (termsEnum.next() != null) {
             BytesRef t = termsEnum.term();
@@ -73,43 +99,169 @@ public abstract class AbstractFeatureBuilder {
      * @throws IOException
      */
     protected Set<String> getUniqueTerms() throws JATEException, IOException {
-        Terms terms =SolrUtil.getTermVector(properties.getSolrFieldNameJATECTerms(),solrIndexSearcher);
-
-        //>>>>>>>>>
-        /*TermsEnum source = terms.iterator();
-        String term = //"thrownawayorusedjustforelementarystatistical profile";
-        "l hierar hy";
-        //"ordertoavoidadependencyofthebaselineresultontherandom";
+        return new HashSet<>(getTermDictionary().getTerms());
+    }
 
-                if (source.seekExact(new BytesRef(term.getBytes("UTF-8")))) {
-                    PostingsEnum docEnum = source.postings(null);
-                    int doc = 0;
-                    while ((doc = docEnum.nextDoc()) != PostingsEnum.NO_MORE_DOCS) {
-                        int tfid = docEnum.freq();  //tf in document
+    /**
+     * @return the dictionary of term candidates shared by all features built on the same searcher
+     * @throws JATEException
+     */
+    protected TermDictionary getTermDictionary() throws JATEException {
+        return TermDictionary.getInstance(solrIndexSearcher, properties);
+    }
 
-                    }
+    /**
+     * @return the segments of the index. Builders process segments independently, so that the work scales with
+     * cores on multi-segment indexes and no merged view of the index is needed
+     */
+    protected List<LeafReaderContext> getLeaves() {
+        return solrIndexSearcher.getIndexReader().leaves();
+    }
 
-                } else {
+    /**
+     * Run the workers, typically one per segment, in parallel in the pool and wait for all of them
+     *
+     * @return results of the workers, in the order of the workers
+     */
+    protected static <T> List<T> invokeAll(ForkJoinPool forkJoinPool, List<? extends ForkJoinTask<T>> workers) {
+        List<ForkJoinTask<T>> submitted = new ArrayList<>(workers.size());
+        for (ForkJoinTask<T> worker : workers)
+            submitted.add(forkJoinPool.submit(worker));
+        List<T> results = new ArrayList<>(workers.size());
+        for (ForkJoinTask<T> task : submitted)
+            results.add(task.join());
+        JATEExecutors.logStatistics();
+        return results;
+    }
 
-                }*/
-        //>>>>>>>>>
+    /**
+     * @param prefix prefix of the file name, usually the feature name
+     * @return a new file in the feature store directory (see {@link JATEProperties#getFeatureStoreDir()}) to write
+     * a feature to, or null if features are to be held in heap. The file is deleted when the feature offloaded to it
+     * is released, see {@link AbstractFeature#release()}
+     * @throws JATEException
+     */
+    protected File newFeatureStoreFile(String prefix) throws JATEException {
+        String dir = properties.getFeatureStoreDir();
+        if (dir == null)
+            return null;
+        try {
+            File storeDir = new File(dir);
+            if (!storeDir.exists() && !storeDir.mkdirs())
+                throw new IOException("Cannot create directory " + storeDir);
+            MappedFeatureFile.deleteUnreachable();
+            return File.createTempFile(prefix, ".jatef", storeDir);
+        } catch (IOException ioe) {
+            StringBuilder sb = new StringBuilder("Failed to create feature store file in ");
+            sb.append(dir).append("\n").append(ExceptionUtils.getFullStackTrace(ioe));
+            throw new JATEException(sb.toString());
+        }
+    }
 
-        TermsEnum termsEnum = terms.iterator();
-        Set<String> allTermCandidates = new HashSet<>();
+    /**
+     * Offload a built context frequency feature to its snapshot file, or else to a new file in the feature store
+     * directory if one is configured
+     *
+     * @param feature  feature built
+     * @param prefix   prefix of the file name, usually the feature name
+     * @param snapshot snapshot file of the feature, see {@link #getSnapshotFile(String, String...)}; or null
+     * @throws JATEException
+     */
+    protected void offloadContexts(FrequencyCtxBased feature, String prefix, File snapshot) throws JATEException {
+        //a snapshot is a feature file that is kept
+        File storeFile = snapshot != null ? snapshot : newFeatureStoreFile(prefix);
+        if (storeFile == null)
+            return;
+        try {
+            feature.offload(storeFile, snapshot == null);
+            LOG.info("Feature offloaded to " + storeFile);
+        } catch (IOException ioe) {
+            if (snapshot == null)
+                storeFile.delete();
+            StringBuilder sb = new StringBuilder("Failed to offload features to ");
+            sb.append(storeFile).append("\n").append(ExceptionUtils.getFullStackTrace(ioe));
+            LOG.error(sb.toString());
+            throw new JATEException(sb.toString());
+        }
+    }
 
-        while (termsEnum.next() != null) {
-            BytesRef t = termsEnum.term();
-            if (t.length == 0)
-                continue;
-            allTermCandidates.add(t.utf8ToString());
+    /**
+     * Get the snapshot file of a feature built on the current version of the index. Snapshots are kept under the
+     * data directory of the solr core and named by the feature, the solr fields it is built from, its build
+     * parameters and the version of the index (commit generation and reader version). Snapshots made for older
+     * versions of the index are deleted on commit, see {@link #deleteStaleSnapshots(SolrCore, SolrIndexSearcher...)}.
+     *
+     * @param featureName name of the feature
+     * @param params build parameters that change the content of the feature
+     * @return snapshot file, which exists if a snapshot has been made for the current index; or null if snapshots
+     * are not enabled (see {@link JATEProperties#isFeatureSnapshotsEnabled()})
+     * @throws JATEException
+     */
+    protected File getSnapshotFile(String featureName, String... params) throws JATEException {
+        if (!properties.isFeatureSnapshotsEnabled())
+            return null;
+        StringBuilder key = new StringBuilder(properties.getSolrFieldNameJATENGramInfo());
+        key.append('\n').append(properties.getSolrFieldNameJATECTerms());
+        for (String p : params)
+            key.append('\n').append(p);
+        String name = featureName + "-" + digest(key.toString());
 
-            if(t.utf8ToString().equals("l hierar hy"))
-                System.out.println();
+        try {
+            DirectoryReader reader = solrIndexSearcher.getIndexReader();
+            File dir = new File(solrIndexSearcher.getCore().getDataDir(), SNAPSHOT_DIR);
+            if (!dir.exists() && !dir.mkdirs())
+                throw new IOException("Cannot create directory " + dir);
+            return new File(dir, name + snapshotSuffix(reader));
+        } catch (IOException ioe) {
+            StringBuilder sb = new StringBuilder("Failed to locate feature snapshot for ");
+            sb.append(featureName).append("\n").append(ExceptionUtils.getFullStackTrace(ioe));
+            LOG.error(sb.toString());
+            throw new JATEException(sb.toString());
         }
-        return allTermCandidates;
     }
 
+    /**
+     * Delete the feature snapshots of a solr core that are made for none of the given searchers. Called when a new
+     * searcher is registered (i.e., on commit) with the new and the previous searcher, as the previous searcher may
+     * still be in use. Snapshots of older searchers are no longer looked up.
+     *
+     * @param core      solr core
+     * @param searchers searchers whose snapshots are kept, null elements are ignored
+     * @throws IOException
+     */
+    public static void deleteStaleSnapshots(SolrCore core, SolrIndexSearcher... searchers) throws IOException {
+        File dir = new File(core.getDataDir(), SNAPSHOT_DIR);
+        if (!dir.exists())
+            return;
+        Set<String> kept = new HashSet<>();
+        for (SolrIndexSearcher s : searchers) {
+            if (s != null)
+                kept.add(snapshotSuffix(s.getIndexReader()));
+        }
+        File[] stale = dir.listFiles((d, n) -> n.endsWith(".jatef") && kept.stream().noneMatch(n::endsWith));
+        if (stale == null)
+            return;
+        for (File f : stale) {
+            if (f.delete())
+                LOG.info("Deleted stale feature snapshot " + f);
+        }
+    }
 
+    //the version of the index a snapshot is made for
+    private static String snapshotSuffix(DirectoryReader reader) throws IOException {
+        return "-" + reader.getIndexCommit().getGeneration() + "-" + reader.getVersion() + ".jatef";
+    }
 
+    private static String digest(String key) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-1").digest(key.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder();
+            for (int i = 0; i < 8; i++)
+                hex.append(String.format("%02x", hash[i]));
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
 
 }
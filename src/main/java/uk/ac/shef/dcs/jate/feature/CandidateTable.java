@@ -0,0 +1,79 @@
+package uk.ac.shef.dcs.jate.feature;
+
+import org.apache.lucene.util.BytesRef;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The candidates of the sinks of a {@link DocumentSweep}, keyed by their UTF-8 bytes, so that terms read from term
+ * vectors are tested for membership without being decoded to strings. Each candidate has an ordinal, and the string
+ * of a candidate is created once, when the table is built.
+ *
+ * </p>The table is read-only once built and can be shared by workers.
+ */
+final class CandidateTable {
+    private final Map<BytesRef, Integer> ordinals = new HashMap<>();
+    private final List<String> terms = new ArrayList<>();
+    //per sink, ordinals of its candidates, or null if the sink accepts all terms
+    private final BitSet[] members;
+    private boolean anyAcceptsAll = false;
+
+    /**
+     * @param candidates per sink, its candidates, or null for all terms
+     */
+    CandidateTable(List<Set<String>> candidates) {
+        members = new BitSet[candidates.size()];
+        for (int sink = 0; sink < members.length; sink++) {
+            Set<String> c = candidates.get(sink);
+            if (c == null) {
+                anyAcceptsAll = true;
+                continue;
+            }
+            BitSet m = new BitSet();
+            for (String term : c) {
+                BytesRef bytes = new BytesRef(term);
+                Integer ord = ordinals.get(bytes);
+                if (ord == null) {
+                    ord = terms.size();
+                    ordinals.put(bytes, ord);
+                    terms.add(term);
+                }
+                m.set(ord);
+            }
+            members[sink] = m;
+        }
+    }
+
+    /**
+     * @return ordinal of the candidate with the given UTF-8 bytes, or -1 if it is not a candidate of any sink
+     */
+    int ordinal(BytesRef bytes) {
+        Integer ord = ordinals.get(bytes);
+        return ord == null ? -1 : ord;
+    }
+
+    String term(int ordinal) {
+        return terms.get(ordinal);
+    }
+
+    /**
+     * @param ordinal ordinal of a candidate, or -1 for a term that is not a candidate
+     * @return true if the sink accepts the term
+     */
+    boolean accepts(int sink, int ordinal) {
+        BitSet m = members[sink];
+        return m == null || (ordinal != -1 && m.get(ordinal));
+    }
+
+    /**
+     * @return true if some sink accepts all terms, so terms that are not candidates can not be skipped
+     */
+    boolean anyAcceptsAll() {
+        return anyAcceptsAll;
+    }
+}
@@ -2,6 +2,7 @@ package uk.ac.shef.dcs.jate.feature;
 
 import org.apache.log4j.Logger;
 import uk.ac.shef.dcs.jate.JATEException;
+import uk.ac.shef.dcs.jate.JATEExecutors;
 import uk.ac.shef.dcs.jate.JATEProperties;
 
 import java.util.*;
@@ -43,7 +44,7 @@ public class ChiSquareFrequentTermsFBMaster extends AbstractFeatureBuilder {
         ChiSquareFrequentTermsFBWorker worker = new
                 ChiSquareFrequentTermsFBWorker(allFrequentTerms, maxPerThread, ctx2TTF, term2Ctx,
                 feature, ttfInCorpus);
-        ForkJoinPool forkJoinPool = new ForkJoinPool(cores);
+        ForkJoinPool forkJoinPool = JATEExecutors.getPool(cores);
         int total = forkJoinPool.invoke(worker);
         StringBuilder sb = new StringBuilder("Complete building features. Total processed terms = " + total);
         LOG.info(sb.toString());
@@ -12,11 +12,7 @@ public class Containment extends AbstractFeature {
     private Map<String, Set<String>> term2Parents = new ConcurrentHashMap<>();
 
     public void add(String term, String parentTerm){
-        Set<String> parentTerms = term2Parents.get(term);
-        if(parentTerms==null)
-            parentTerms=new HashSet<>();
-        parentTerms.add(parentTerm);
-        term2Parents.put(term, parentTerms);
+        term2Parents.computeIfAbsent(term, t -> ConcurrentHashMap.newKeySet()).add(parentTerm);
     }
 
     public Set<String> getTermParents(String term){
@@ -3,6 +3,7 @@ package uk.ac.shef.dcs.jate.feature;
 
 import org.apache.solr.search.SolrIndexSearcher;
 import uk.ac.shef.dcs.jate.JATEException;
+import uk.ac.shef.dcs.jate.JATEExecutors;
 import uk.ac.shef.dcs.jate.JATEProperties;
 import java.util.*;
 import java.util.concurrent.ForkJoinPool;
@@ -14,20 +15,19 @@ public class ContainmentFBMaster extends AbstractFeatureBuilder {
 
     private static final Logger LOG = Logger.getLogger(ContainmentFBMaster.class.getName());
 
-    private TermComponentIndex termComponentIndex;
     private Set<String> uniqueCandidateTerms;
 
     public ContainmentFBMaster(SolrIndexSearcher solrIndexSearcher, JATEProperties properties,
-                               TermComponentIndex termComponentIndex,
                                Set<String> uniqueCandidateTerms) {
         super(solrIndexSearcher, properties);
-        this.termComponentIndex = termComponentIndex;
         this.uniqueCandidateTerms = uniqueCandidateTerms;
     }
 
     @Override
     public AbstractFeature build() throws JATEException {
         Containment feature = new Containment();
+        List<String> candidates = new ArrayList<>(uniqueCandidateTerms);
+        TermNGramIndex termNGramIndex = new TermNGramIndex(candidates);
 
         //start workers
         int cores = properties.getMaxCPUCores();
@@ -39,10 +39,10 @@ public class ContainmentFBMaster extends AbstractFeatureBuilder {
                 .append(maxPerThread);
         LOG.info(sb.toString());
         ContainmentFBWorker worker = new
-                ContainmentFBWorker(new ArrayList<>(uniqueCandidateTerms), maxPerThread,
+                ContainmentFBWorker(candidates, maxPerThread,
                 feature,
-                termComponentIndex);
-        ForkJoinPool forkJoinPool = new ForkJoinPool(cores);
+                termNGramIndex);
+        ForkJoinPool forkJoinPool = JATEExecutors.getPool(cores);
         int[] total = forkJoinPool.invoke(worker);
         sb = new StringBuilder("Complete building features. Total=");
         sb.append(total[1]).append(" success=").append(total[0]);
@@ -1,35 +1,40 @@
 package uk.ac.shef.dcs.jate.feature;
 
 import org.apache.log4j.Logger;
-import org.apache.solr.common.util.Pair;
 import uk.ac.shef.dcs.jate.JATERecursiveTaskWorker;
 
 import java.util.*;
-import java.util.regex.Pattern;
 
 /**
  * Created by zqz on 17/09/2015.
+ *
+ * <p>Each task term is treated as a parent: its contiguous token sub-sequences are looked up in a
+ * {@link TermNGramIndex} and the parent is registered as a container of every candidate found. A candidate is
+ * contained by a longer candidate if it appears in the longer candidate delimited by non-word characters, and the
+ * two share at least one token. Hence the first and last tokens of a sub-term may also be the part of a parent's
+ * token that follows, or precedes, a non-word character (e.g., 'cell receptor' in 't-cell receptor complex').</p>
  */
 class ContainmentFBWorker extends JATERecursiveTaskWorker<String, int[]> {
 
     private static final long serialVersionUID = -1208424489000405913L;
     private static final Logger LOG = Logger.getLogger(ContainmentFBWorker.class.getName());
+    private static final int[] NO_VARIANTS = new int[0];
     private Containment feature;
-    private TermComponentIndex featureTermCompIndex;
+    private TermNGramIndex termNGramIndex;
 
     ContainmentFBWorker(List<String> taskTerms, int maxTasksPerWorker,
                         Containment feature,
-                        TermComponentIndex featureTermCompIndex) {
+                        TermNGramIndex termNGramIndex) {
         super(taskTerms, maxTasksPerWorker);
         this.feature = feature;
-        this.featureTermCompIndex = featureTermCompIndex;
+        this.termNGramIndex = termNGramIndex;
     }
 
     @Override
     protected JATERecursiveTaskWorker<String, int[]> createInstance(List<String> termSplit) {
         return new ContainmentFBWorker(termSplit, maxTasksPerThread,
                 feature,
-                featureTermCompIndex);
+                termNGramIndex);
     }
 
     @Override
@@ -47,36 +52,110 @@ class ContainmentFBWorker extends JATERecursiveTaskWorker<String, int[]> {
     protected int[] computeSingleWorker(List<String> taskTerms) {
         int count = 0;
         LOG.info("Total terms to process=" + taskTerms.size());
-        for (String termString : taskTerms) {
-            String[] tokens = termString.split(" ");
-
-            Set<String> compareCandidates = new HashSet<>();
-            for (String tok : tokens) {
-                List<Pair<String, Integer>> candidates = featureTermCompIndex.getSorted(tok);
-                Iterator<Pair<String, Integer>> it = candidates.iterator();
-                while (it.hasNext()) {
-                    Pair<String, Integer> c = it.next();
-                    if (c.getValue() <= tokens.length)
-                        break;
-                    compareCandidates.add(c.getKey());
-                }
+        for (String parentTerm : taskTerms) {
+            String[] tokens = parentTerm.split(" ");
+            if (tokens.length > 1)
+                registerParent(parentTerm, tokens);
 
-            }
+            count++;
+            if (count % 2000 == 0)
+                LOG.debug(count + "/" + taskTerms.size());
+        }
+        return new int[]{count, taskTerms.size()};
+    }
+
+    private void registerParent(String parentTerm, String[] tokens) {
+        int k = tokens.length;
+        int[] exact = new int[k];
+        int[][] firstTokens = new int[k][];
+        int[][] lastTokens = new int[k][];
+        for (int j = 0; j < k; j++) {
+            exact[j] = termNGramIndex.tokenId(tokens[j]);
+            firstTokens[j] = suffixVariants(tokens[j], exact[j]);
+            lastTokens[j] = prefixVariants(tokens[j], exact[j]);
+        }
+        int[] probe = new int[k];
 
-            StringBuilder pStr = new StringBuilder("(?<!\\w)");
-            pStr.append(Pattern.quote(termString)).append("(?!\\w)");
-            Pattern pattern = Pattern.compile(pStr.toString());
+        //sub-terms of a single token must be one of the parent's tokens
+        for (int j = 0; j < k; j++) {
+            if (exact[j] == -1)
+                continue;
+            probe[0] = exact[j];
+            add(termNGramIndex.lookup(TermNGramIndex.hash(TermNGramIndex.seed(), exact[j]), probe, 1), parentTerm);
+        }
 
-            for (String pterm : compareCandidates) {
-                if (pattern.matcher(pterm).find()) {  //ref term contains term
-                    feature.add(termString, pterm);
+        //sub-terms of 2 to k-1 tokens, from token i to token j of the parent
+        for (int i = 0; i < k - 1; i++) {
+            for (int first : firstTokens[i]) {
+                long hash = TermNGramIndex.hash(TermNGramIndex.seed(), first);
+                probe[0] = first;
+                for (int j = i + 1; j < k && j - i + 1 < k; j++) {
+                    int length = j - i + 1;
+                    for (int last : lastTokens[j]) {
+                        //a two-token sub-term must share a whole token with the parent
+                        if (length == 2 && !contains(exact, first) && !contains(exact, last))
+                            continue;
+                        probe[length - 1] = last;
+                        add(termNGramIndex.lookup(TermNGramIndex.hash(hash, last), probe, length), parentTerm);
+                    }
+                    if (exact[j] == -1)
+                        break;
+                    probe[length - 1] = exact[j];
+                    hash = TermNGramIndex.hash(hash, exact[j]);
                 }
             }
+        }
+    }
 
-            count++;
-            if (count % 2000 == 0)
-                LOG.debug(count + "/" + taskTerms.size());
+    private void add(int subTerm, String parentTerm) {
+        if (subTerm != -1)
+            feature.add(termNGramIndex.getTerm(subTerm), parentTerm);
+    }
+
+    /**
+     * @return ids of the token, and of its parts that follow a non-word character
+     */
+    private int[] suffixVariants(String token, int tokenId) {
+        int[] variants = tokenId == -1 ? NO_VARIANTS : new int[]{tokenId};
+        for (int s = 1; s < token.length(); s++) {
+            if (!isWordChar(token.charAt(s - 1)))
+                variants = append(variants, termNGramIndex.tokenId(token.substring(s)));
         }
-        return new int[]{count, taskTerms.size()};
+        return variants;
+    }
+
+    /**
+     * @return ids of the token, and of its parts that precede a non-word character
+     */
+    private int[] prefixVariants(String token, int tokenId) {
+        int[] variants = tokenId == -1 ? NO_VARIANTS : new int[]{tokenId};
+        for (int e = token.length() - 1; e > 0; e--) {
+            if (!isWordChar(token.charAt(e)))
+                variants = append(variants, termNGramIndex.tokenId(token.substring(0, e)));
+        }
+        return variants;
+    }
+
+    private static int[] append(int[] variants, int tokenId) {
+        if (tokenId == -1)
+            return variants;
+        int[] result = Arrays.copyOf(variants, variants.length + 1);
+        result[variants.length] = tokenId;
+        return result;
+    }
+
+    private static boolean contains(int[] tokenIds, int tokenId) {
+        for (int id : tokenIds) {
+            if (id == tokenId)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return true if the char is matched by \w in a regular expression
+     */
+    private static boolean isWordChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
     }
 }
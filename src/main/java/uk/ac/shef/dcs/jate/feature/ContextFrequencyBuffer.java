@@ -0,0 +1,92 @@
+package uk.ac.shef.dcs.jate.feature;
+
+import java.util.Arrays;
+
+/**
+ * Collects frequency-in-context updates of a single worker in primitive columns, so that workers building a
+ * {@link FrequencyCtxBased} feature do not contend on the feature. Buffered updates become visible in the
+ * feature after {@link #flush()}.
+ *
+ * </p>A buffer is not thread-safe and should be used by one worker only.
+ */
+final class ContextFrequencyBuffer {
+    private static final int INITIAL_CAPACITY = 256;
+    //term id of updates that count the total frequency of all terms in a context
+    static final int CONTEXT_TOTAL = -1;
+
+    private final FrequencyCtxBased feature;
+
+    long[] docSentenceKeys;
+    long[] tokenSpanKeys;
+    int[] termIds;
+    int[] freqs;
+    int size = 0;
+
+    ContextFrequencyBuffer(FrequencyCtxBased feature) {
+        this(feature, true);
+    }
+
+    private ContextFrequencyBuffer(FrequencyCtxBased feature, boolean allocate) {
+        this.feature = feature;
+        if (allocate)
+            allocate();
+    }
+
+    private void allocate() {
+        docSentenceKeys = new long[INITIAL_CAPACITY];
+        tokenSpanKeys = new long[INITIAL_CAPACITY];
+        termIds = new int[INITIAL_CAPACITY];
+        freqs = new int[INITIAL_CAPACITY];
+    }
+
+    /**
+     * increment the total number of occurrences of terms in the context by freq
+     */
+    void increment(ContextWindow ctx, int freq) {
+        add(ctx.getDocSentenceKey(), ctx.getTokenSpanKey(), CONTEXT_TOTAL, freq);
+    }
+
+    /**
+     * increment the number of occurrences of term in the context by tf. Terms not in the dictionary of the feature
+     * are ignored
+     */
+    void increment(ContextWindow ctx, String term, int tf) {
+        int termId = feature.indexTerm(term);
+        if (termId != -1)
+            add(ctx.getDocSentenceKey(), ctx.getTokenSpanKey(), termId, tf);
+    }
+
+    void add(long docSentenceKey, long tokenSpanKey, int termId, int freq) {
+        if (size == termIds.length) {
+            int capacity = size << 1;
+            docSentenceKeys = Arrays.copyOf(docSentenceKeys, capacity);
+            tokenSpanKeys = Arrays.copyOf(tokenSpanKeys, capacity);
+            termIds = Arrays.copyOf(termIds, capacity);
+            freqs = Arrays.copyOf(freqs, capacity);
+        }
+        docSentenceKeys[size] = docSentenceKey;
+        tokenSpanKeys[size] = tokenSpanKey;
+        termIds[size] = termId;
+        freqs[size] = freq;
+        size++;
+    }
+
+    /**
+     * Hand the buffered updates over to the feature. The buffer is empty and can be reused afterwards.
+     */
+    void flush() {
+        if (size == 0)
+            return;
+        //hand over the columns as they are and start new ones
+        ContextFrequencyBuffer flushed = new ContextFrequencyBuffer(feature, false);
+        flushed.docSentenceKeys = docSentenceKeys;
+        flushed.tokenSpanKeys = tokenSpanKeys;
+        flushed.termIds = termIds;
+        flushed.freqs = freqs;
+        flushed.size = size;
+        feature.merge(flushed);
+
+        allocate();
+        size = 0;
+    }
+}
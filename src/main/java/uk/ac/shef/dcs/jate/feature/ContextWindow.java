@@ -44,6 +44,51 @@ public class ContextWindow implements Comparable<ContextWindow>{
         this.lastTok = lastTok;
     }
 
+    /**
+     * @return the document and sentence of this context packed into a long, see {@link #pack(int, int)}
+     */
+    public long getDocSentenceKey() {
+        return pack(docId, sentenceId);
+    }
+
+    /**
+     * @return the first and last token of this context packed into a long, see {@link #pack(int, int)}
+     */
+    public long getTokenSpanKey() {
+        return pack(firstTok, lastTok);
+    }
+
+    /**
+     * Pack two ids (which can be -1, i.e., not set) into a long. Comparing packed longs gives the same order as
+     * comparing the ids one after another, so (doc/sentence, first/last token) key pairs order contexts in the
+     * same way as {@link #compareTo(ContextWindow)}.
+     */
+    static long pack(int high, int low) {
+        return ((long) (high + 1) << 32) | ((low + 1) & 0xFFFFFFFFL);
+    }
+
+    static int unpackHigh(long key) {
+        return (int) (key >>> 32) - 1;
+    }
+
+    static int unpackLow(long key) {
+        return (int) key - 1;
+    }
+
+    /**
+     * @param docSentenceKey see {@link #getDocSentenceKey()}
+     * @param tokenSpanKey see {@link #getTokenSpanKey()}
+     * @return the context window identified by the two keys
+     */
+    static ContextWindow fromKeys(long docSentenceKey, long tokenSpanKey) {
+        ContextWindow ctx = new ContextWindow();
+        ctx.docId = unpackHigh(docSentenceKey);
+        ctx.sentenceId = unpackLow(docSentenceKey);
+        ctx.firstTok = unpackHigh(tokenSpanKey);
+        ctx.lastTok = unpackLow(tokenSpanKey);
+        return ctx;
+    }
+
     public boolean equals(Object o) {
         if (o instanceof ContextWindow) {
             ContextWindow ctx = (ContextWindow) o;
@@ -55,6 +100,14 @@ public class ContextWindow implements Comparable<ContextWindow>{
         return false;
     }
 
+    @Override
+    public int hashCode() {
+        int result = docId;
+        result = 31 * result + sentenceId;
+        result = 31 * result + firstTok;
+        return 31 * result + lastTok;
+    }
+
     public String getContextId(){
         StringBuilder sb = new StringBuilder();
         sb.append("d=").append(docId).append(",st=").append(sentenceId)
@@ -1,110 +1,247 @@
 package uk.ac.shef.dcs.jate.feature;
 
 
-import no.uib.cipr.matrix.sparse.FlexCompRowMatrix;
-import no.uib.cipr.matrix.sparse.SparseVector;
 import org.apache.log4j.Logger;
+import org.apache.lucene.util.IntroSorter;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.IntBuffer;
 import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 /**
+ * Co-occurrence frequencies between target terms (rows) and reference terms (columns). Both are indexed by their
+ * ordinals in the shared {@link TermDictionary}; reference terms that are not candidate terms (e.g., words) are given
+ * ids after the ordinals, see {@link #indexRefTerm(String)}.
  *
+ * </p>Builders accumulate frequencies in a {@link CooccurrenceAccumulator} each and hand them over with
+ * {@link #merge(CooccurrenceAccumulator)}. On first read the accumulated frequencies are summed into compressed
+ * sparse rows: the reference terms co-occurring with target term {@code t} are
+ * {@code cols[rowOffsets[t]..rowOffsets[t+1])} in ascending order, with their frequencies at the same positions
+ * of {@code values}. The rows can be moved to a memory-mapped file with {@link #offload(File, boolean)}.
  */
 public class Cooccurrence extends AbstractFeature {
     private static Logger LOG = Logger.getLogger(Cooccurrence.class.getSimpleName());
 
-    protected FlexCompRowMatrix cooccurrence;
-    protected Map<Integer, String> mapIdx2Term = new HashMap<>();
-    protected Map<String, Integer> mapTerm2Idx = new HashMap<>();
+    //columns of an offloaded feature
+    private static final String COLUMN_ROW_OFFSETS = "row.offsets";
+    private static final String COLUMN_COLS = "cols";
+    private static final String COLUMN_VALUES = "values";
+    private static final String COLUMN_REF_TERM_IDS = "ref.term.ids";
 
-    protected Map<Integer, String> mapIdx2RefTerm = new HashMap<>();
-    protected Map<String, Integer> mapRefTerm2Idx = new HashMap<>();
+    protected final TermDictionary dictionary;
+    //ordinals of target and reference terms that have co-occurrence stats
+    protected final BitSet indexedTerms = new BitSet();
+    protected final BitSet indexedRefTerms = new BitSet();
+    //reference terms that are not in the dictionary, the id of each is the dictionary size plus its index in the list
+    private final List<String> nonCandidateRefTerms = new ArrayList<>();
+    private final Map<String, Integer> nonCandidateRefIds = new HashMap<>();
 
+    private final Queue<CooccurrenceAccumulator> pending = new ConcurrentLinkedQueue<>();
+    private volatile boolean frozen = true;
 
-    protected int termCounter =-1;
-    protected int ctxTermCounter =-1;
+    private int[] rowOffsets;
+    private int[] cols = new int[0];
+    private int[] values = new int[0];
 
-    public Cooccurrence(int terms, int refTerms){
-        cooccurrence =new FlexCompRowMatrix(terms, refTerms);
+    //set by offload(File, boolean), the rows are then read from this file and the arrays are dropped
+    private MappedFeatureFile mapped;
+    private IntBuffer mappedRowOffsets;
+    private IntBuffer mappedCols;
+    private IntBuffer mappedValues;
+
+    public Cooccurrence(TermDictionary dictionary){
+        this.dictionary=dictionary;
+        rowOffsets = new int[dictionary.size() + 1];
     }
 
     void deduce(int rowIndex, int colIndex, int value){
-        double newValue = cooccurrence.get(rowIndex, colIndex);
-        if(newValue==0) {
+        ensureFrozen();
+        checkNotOffloaded();
+        int pos = Arrays.binarySearch(cols, rowOffsets[rowIndex], rowOffsets[rowIndex + 1], colIndex);
+        if(pos<0 || values[pos]==0) {
             LOG.debug(rowIndex + "|" + colIndex);
             LOG.debug(lookupTerm(rowIndex) + "|" + lookupRefTerm(colIndex));
         }
-        newValue-=value;
-        newValue=newValue<0?0:newValue;
-
-        cooccurrence.set(rowIndex, colIndex, newValue);
+        if(pos<0)
+            return;
+        int newValue = values[pos] - value;
+        values[pos] = newValue<0?0:newValue;
     }
 
     public Set<String> getTerms(){
-        return mapTerm2Idx.keySet();
+        ensureFrozen();
+        return toTerms(indexedTerms);
+    }
+    public Set<String> getRefTerms() {
+        ensureFrozen();
+        return toTerms(indexedRefTerms);
     }
-    public Set<String> getRefTerms() {return mapRefTerm2Idx.keySet();}
 
-    protected synchronized int lookupAndIndexTerm(String term){
-        Integer idx = mapTerm2Idx.get(term);
-        if(idx==null) {
-            termCounter++;
-            mapIdx2Term.put(termCounter, term);
-            mapTerm2Idx.put(term, termCounter);
-            return termCounter;
-        }
-        return idx;
+    public int getNumTerms(){
+        ensureFrozen();
+        return indexedTerms.cardinality();
     }
 
-    protected int lookupTerm(String term){
-        Integer index= mapTerm2Idx.get(term);
-        if(index==null) {
-            return -1;
-        }
-        return index;
+    public int getNumRefTerms(){
+        ensureFrozen();
+        return indexedRefTerms.cardinality();
     }
 
-    protected synchronized int lookupAndIndexRefTerm(String refTerm){
-        Integer idx = mapRefTerm2Idx.get(refTerm);
+    private Set<String> toTerms(BitSet ids){
+        Set<String> terms = new LinkedHashSet<>(ids.cardinality() * 4 / 3 + 1);
+        for (int i = ids.nextSetBit(0); i >= 0; i = ids.nextSetBit(i + 1))
+            terms.add(lookupRefTerm(i));
+        return terms;
+    }
 
-        if(idx==null) {
-            ctxTermCounter++;
-            mapIdx2RefTerm.put(ctxTermCounter, refTerm);
-            mapRefTerm2Idx.put(refTerm, ctxTermCounter);
-            return ctxTermCounter;
+    /**
+     * Get the id of a reference term, giving it a new id if it is not a candidate term. Called by the builder
+     * before counting starts.
+     *
+     * @param refTerm reference term string
+     * @return its dictionary ordinal, or an id after the ordinals if it is not a candidate term
+     */
+    synchronized int indexRefTerm(String refTerm){
+        int index = dictionary.ordinal(refTerm);
+        if(index!=-1)
+            return index;
+        Integer id = nonCandidateRefIds.get(refTerm);
+        if(id==null){
+            id = dictionary.size() + nonCandidateRefTerms.size();
+            nonCandidateRefTerms.add(refTerm);
+            nonCandidateRefIds.put(refTerm, id);
         }
-        return idx;
+        return id;
     }
 
+    protected int lookupTerm(String term){
+        ensureFrozen();
+        int index= dictionary.ordinal(term);
+        if(index==-1 || !indexedTerms.get(index)) {
+            return -1;
+        }
+        return index;
+    }
 
     protected int lookupRefTerm(String refTerm){
-        Integer index= mapRefTerm2Idx.get(refTerm);
-        if(index==null) {
+        ensureFrozen();
+        int index= dictionary.ordinal(refTerm);
+        if(index==-1) {
+            Integer id = nonCandidateRefIds.get(refTerm);
+            index = id == null ? -1 : id;
+        }
+        if(index==-1 || !indexedRefTerms.get(index)) {
             return -1;
         }
         return index;
     }
 
-    protected synchronized void increment(int termIdx, int refTermIdx, int freq){
-        //try {
-            double newFreq = cooccurrence.get(termIdx, refTermIdx) + freq;
-            cooccurrence.set(termIdx, refTermIdx,
-                    newFreq);
-        /*}catch (Exception e){
-            System.err.println("rows="+cooccurrence.numRows()+", columns="+cooccurrence.numColumns()+". row="+termIdx+"" +
-                    " column="+refTermIdx);
-            e.printStackTrace();
+    /**
+     * Accept frequencies accumulated by a builder. They are added to the feature on the next read.
+     */
+    void merge(CooccurrenceAccumulator accumulator) {
+        checkNotOffloaded();
+        pending.add(accumulator);
+        frozen = false;
+    }
+
+    private void ensureFrozen() {
+        if (!frozen)
+            freeze();
+    }
+
+    private synchronized void freeze() {
+        List<CooccurrenceAccumulator> accumulated = new ArrayList<>();
+        CooccurrenceAccumulator a;
+        int size = cols.length;
+        while ((a = pending.poll()) != null) {
+            accumulated.add(a);
+            size += a.size();
+        }
+        if (accumulated.isEmpty()) {
+            frozen = pending.isEmpty();
+            return;
+        }
+
+        //existing rows and the accumulated entries, keyed by (row, col)
+        final long[] keys = new long[size];
+        final int[] freqs = new int[size];
+        int n = 0;
+        for (int row = 0; row < rowOffsets.length - 1; row++) {
+            for (int pos = rowOffsets[row]; pos < rowOffsets[row + 1]; pos++, n++) {
+                keys[n] = CooccurrenceAccumulator.key(row, cols[pos]);
+                freqs[n] = values[pos];
+            }
+        }
+        for (CooccurrenceAccumulator acc : accumulated)
+            n += acc.copyTo(keys, freqs, n);
+
+        new IntroSorter() {
+            private long pivot;
+
+            @Override
+            protected void swap(int i, int j) {
+                long k = keys[i]; keys[i] = keys[j]; keys[j] = k;
+                int f = freqs[i]; freqs[i] = freqs[j]; freqs[j] = f;
+            }
+
+            @Override
+            protected int compare(int i, int j) {
+                return Long.compare(keys[i], keys[j]);
+            }
+
+            @Override
+            protected void setPivot(int i) {
+                pivot = keys[i];
+            }
 
-            System.err.println("\n\n\nTrying again, ");
-            System.out.println("value="+cooccurrence.get(termIdx, refTermIdx));
-        }*/
+            @Override
+            protected int comparePivot(int j) {
+                return Long.compare(pivot, keys[j]);
+            }
+        }.sort(0, n);
+
+        //sum entries of the same (row, col), in place
+        int unique = 0;
+        for (int i = 0; i < n; i++) {
+            if (unique > 0 && keys[unique - 1] == keys[i]) {
+                freqs[unique - 1] += freqs[i];
+            } else {
+                keys[unique] = keys[i];
+                freqs[unique] = freqs[i];
+                unique++;
+            }
+        }
+
+        int[] newOffsets = new int[rowOffsets.length];
+        int[] newCols = new int[unique];
+        int[] newValues = Arrays.copyOf(freqs, unique);
+        for (int i = 0; i < unique; i++) {
+            int row = (int) (keys[i] >>> 32);
+            newCols[i] = (int) keys[i];
+            newOffsets[row + 1]++;
+            indexedTerms.set(row);
+            indexedRefTerms.set(newCols[i]);
+        }
+        for (int row = 0; row < newOffsets.length - 1; row++)
+            newOffsets[row + 1] += newOffsets[row];
+
+        rowOffsets = newOffsets;
+        cols = newCols;
+        values = newValues;
+        frozen = pending.isEmpty();
     }
 
     public String lookupTerm(int index){
-        return mapIdx2Term.get(index);
+        return dictionary.term(index);
     }
 
-    public String lookupRefTerm(int index){return mapIdx2RefTerm.get(index);}
+    public String lookupRefTerm(int index){
+        int size = dictionary.size();
+        return index < size ? dictionary.term(index) : nonCandidateRefTerms.get(index - size);
+    }
 
     /**
      * It is possible to have an invalid query term, usually created because of cross-sentence-boundary n-gram,
@@ -121,16 +258,111 @@ public class Cooccurrence extends AbstractFeature {
     }
 
     Map<Integer, Integer> getCooccurrence(int index){
+        ensureFrozen();
         Map<Integer, Integer> result = new HashMap<>();
-        SparseVector vec=cooccurrence.getRow(index);
-        int[] nonZeroIndexes=vec.getIndex();
-
-        for(int i=0; i<nonZeroIndexes.length; i++){
-            int idx=nonZeroIndexes[i];
-            double v = cooccurrence.get(index,idx);
-            result.put(idx, (int)v);
+        if(mapped!=null){
+            for(int pos=mappedRowOffsets.get(index); pos<mappedRowOffsets.get(index+1); pos++){
+                result.put(mappedCols.get(pos), mappedValues.get(pos));
+            }
+            return result;
+        }
+        for(int pos=rowOffsets[index]; pos<rowOffsets[index+1]; pos++){
+            result.put(cols[pos], values[pos]);
         }
 
         return result;
     }
+
+    /**
+     * Move the co-occurrence rows to a memory-mapped file, and drop them from heap. Reference terms that are not
+     * candidate terms are written to the file too, but stay in heap. The feature can not be updated afterwards.
+     *
+     * @param file      file to write, which must stay in place while the feature is used
+     * @param temporary true if the file is deleted when the feature is {@link #release() released} or no longer
+     *                  reachable; false for a file kept for later use, e.g., a snapshot
+     * @throws IOException
+     */
+    protected synchronized void offload(File file, boolean temporary) throws IOException {
+        checkNotOffloaded();
+        freeze();
+        try (MappedFeatureFile.Writer writer = new MappedFeatureFile.Writer(file)) {
+            writer.writeInts(COLUMN_ROW_OFFSETS, rowOffsets, 0, rowOffsets.length);
+            writer.writeInts(COLUMN_COLS, cols, 0, cols.length);
+            writer.writeInts(COLUMN_VALUES, values, 0, values.length);
+
+            String[] refTerms = nonCandidateRefTerms.toArray(new String[nonCandidateRefTerms.size()]);
+            int[] order = MappedFeatureFile.sortedOrder(refTerms, refTerms.length);
+            writer.writeTerms(refTerms, order);
+            writer.beginColumn(COLUMN_REF_TERM_IDS, MappedFeatureFile.TYPE_INT);
+            for (int i : order)
+                writer.writeInt(dictionary.size() + i);
+            writer.endColumn();
+        }
+        attach(temporary ? MappedFeatureFile.openTemporary(file) : MappedFeatureFile.open(file));
+    }
+
+    /**
+     * Load a feature from a file written by {@link #offload(File, boolean)}. The rows are read from the mapped file.
+     *
+     * @param file       feature file, which must stay in place while the feature is used
+     * @param dictionary dictionary of the feature offloaded
+     * @return Cooccurrence feature
+     * @throws IOException if the file can not be read, or is not a Cooccurrence feature file of the dictionary
+     */
+    static Cooccurrence load(File file, TermDictionary dictionary) throws IOException {
+        MappedFeatureFile f = MappedFeatureFile.open(file);
+        for (String column : new String[]{COLUMN_ROW_OFFSETS, COLUMN_COLS, COLUMN_VALUES, COLUMN_REF_TERM_IDS}) {
+            if (!f.hasColumn(column))
+                throw new IOException("Not a " + Cooccurrence.class.getSimpleName() + " feature file: " + file);
+        }
+        if (f.getInts(COLUMN_ROW_OFFSETS).limit() != dictionary.size() + 1)
+            throw new IOException("Rows of " + file + " are not the ordinals of the term dictionary");
+
+        Cooccurrence feature = new Cooccurrence(dictionary);
+        IntBuffer refTermIds = f.getInts(COLUMN_REF_TERM_IDS);
+        String[] refTerms = new String[f.getNumTerms()];
+        for (int rank = 0; rank < refTerms.length; rank++) {
+            int index = refTermIds.get(rank) - dictionary.size();
+            if (index < 0 || index >= refTerms.length)
+                throw new IOException("Invalid reference term id in " + file);
+            refTerms[index] = f.getTerm(rank);
+        }
+        for (int index = 0; index < refTerms.length; index++) {
+            if (refTerms[index] == null || feature.indexRefTerm(refTerms[index]) != dictionary.size() + index)
+                throw new IOException("Reference terms of " + file + " do not match the term dictionary");
+        }
+        synchronized (feature) {
+            feature.attach(f);
+        }
+        return feature;
+    }
+
+    //switch reads to the mapped file and drop the arrays
+    private void attach(MappedFeatureFile f) {
+        mappedRowOffsets = f.getInts(COLUMN_ROW_OFFSETS);
+        mappedCols = f.getInts(COLUMN_COLS);
+        mappedValues = f.getInts(COLUMN_VALUES);
+        for (int row = 0; row < mappedRowOffsets.limit() - 1; row++) {
+            int start = mappedRowOffsets.get(row), end = mappedRowOffsets.get(row + 1);
+            if (start < end)
+                indexedTerms.set(row);
+            for (int pos = start; pos < end; pos++)
+                indexedRefTerms.set(mappedCols.get(pos));
+        }
+        mapped = f;
+        rowOffsets = null;
+        cols = null;
+        values = null;
+    }
+
+    @Override
+    public synchronized void release() {
+        if (mapped != null)
+            mapped.delete();
+    }
+
+    private void checkNotOffloaded() {
+        if (mapped != null)
+            throw new IllegalStateException("Feature is offloaded to " + mapped.getFile() + " and can not be updated");
+    }
 }
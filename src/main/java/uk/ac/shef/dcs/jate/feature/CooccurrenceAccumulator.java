@@ -0,0 +1,94 @@
+package uk.ac.shef.dcs.jate.feature;
+
+import java.util.Arrays;
+
+/**
+ * Accumulates co-occurrence frequencies of a single worker in an open addressing hash table keyed by
+ * (target term ordinal, reference term ordinal), so that workers building a {@link Cooccurrence} feature do not
+ * contend on the feature. Accumulated frequencies are added to the feature by {@link Cooccurrence#merge(CooccurrenceAccumulator)}.
+ *
+ * </p>An accumulator is not thread-safe and should be used by one worker only.
+ */
+final class CooccurrenceAccumulator {
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final long EMPTY = -1L;
+
+    private long[] keys;
+    private int[] values;
+    private int size = 0;
+
+    CooccurrenceAccumulator() {
+        keys = new long[INITIAL_CAPACITY];
+        Arrays.fill(keys, EMPTY);
+        values = new int[INITIAL_CAPACITY];
+    }
+
+    /**
+     * increment the co-occurrence frequency of a target term and a reference term by freq
+     */
+    void increment(int termIdx, int refTermIdx, int freq) {
+        long key = key(termIdx, refTermIdx);
+        int mask = keys.length - 1;
+        int slot = slot(key, mask);
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == key) {
+                values[slot] += freq;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = freq;
+        //keep the load factor under 0.5
+        if (++size << 1 > keys.length)
+            rehash();
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Copy the accumulated entries to the arrays starting at offset, in no particular order
+     *
+     * @return number of entries copied
+     */
+    int copyTo(long[] toKeys, int[] toValues, int offset) {
+        int n = offset;
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] == EMPTY)
+                continue;
+            toKeys[n] = keys[slot];
+            toValues[n] = values[slot];
+            n++;
+        }
+        return n - offset;
+    }
+
+    static long key(int termIdx, int refTermIdx) {
+        return ((long) termIdx << 32) | (refTermIdx & 0xFFFFFFFFL);
+    }
+
+    private static int slot(long key, int mask) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    private void rehash() {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new long[oldKeys.length << 1];
+        Arrays.fill(keys, EMPTY);
+        values = new int[keys.length];
+        int mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] == EMPTY)
+                continue;
+            int slot = slot(oldKeys[i], mask);
+            while (keys[slot] != EMPTY)
+                slot = (slot + 1) & mask;
+            keys[slot] = oldKeys[i];
+            values[slot] = oldValues[i];
+        }
+    }
+}
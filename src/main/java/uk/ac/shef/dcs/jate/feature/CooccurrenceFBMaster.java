@@ -1,9 +1,13 @@
 package uk.ac.shef.dcs.jate.feature;
 
+import org.apache.commons.lang.exception.ExceptionUtils;
 import org.apache.solr.search.SolrIndexSearcher;
 import uk.ac.shef.dcs.jate.JATEException;
+import uk.ac.shef.dcs.jate.JATEExecutors;
 import uk.ac.shef.dcs.jate.JATEProperties;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.*;
 import java.util.concurrent.ForkJoinPool;
 import org.apache.log4j.Logger;
@@ -47,6 +51,7 @@ public class CooccurrenceFBMaster extends AbstractFeatureBuilder {
     private FrequencyTermBased frequencyTermBased; //frequency info of target terms
     private int minTTF;
     private int minTCF;
+    private String[] contextParams;
     /**
      * setting MAX_TASKS_PER_WORKER (or SEQUENTIAL_THRESHOLD) to a good-in-practice value is a trade-off.
      * The documentation for the ForkJoin framework suggests creating parallel subtasks until
@@ -60,65 +65,102 @@ public class CooccurrenceFBMaster extends AbstractFeatureBuilder {
     private final static int MAX_TASKS_PER_WORKER = 10000;
 
 
+    /**
+     * @param contextParams parameters the context features are built with, e.g., the type of context, the window
+     *                      size and how reference terms are selected. They identify the feature snapshot (see
+     *                      {@link JATEProperties#isFeatureSnapshotsEnabled()}) together with minTTF and minTCF; if
+     *                      none are given, no snapshot is made
+     */
     public CooccurrenceFBMaster(SolrIndexSearcher solrIndexSearcher, JATEProperties properties,
                                 FrequencyTermBased termFeature,
                                 Integer minTTF,
                                 FrequencyCtxBased contextFeature,
                                 FrequencyCtxBased ref_frequencyCtxBased,
-                                Integer minTCF) {
+                                Integer minTCF,
+                                String... contextParams) {
         super(solrIndexSearcher, properties);
         this.frequencyCtxBased = contextFeature;
         this.frequencyTermBased = termFeature;
         this.ref_frequencyCtxBased = ref_frequencyCtxBased;
         this.minTTF = minTTF;
         this.minTCF = minTCF;//only applies to target terms, not reference terms
+        this.contextParams = contextParams;
     }
 
     @Override
     public AbstractFeature build() throws JATEException {
-        //MWEMetadata windows where target candidate terms appear. It is possible that many reference terms
-        //do not appear in these context windows, because reference terms are not identical set to target terms
-        List<ContextWindow> contextWindows = new ArrayList<>(frequencyCtxBased.getMapCtx2TTF().keySet());
-        //List<ContextWindow> contextWindows = new ArrayList<>(ref_frequencyCtxBased.getMapCtx2TTF().keySet());
-        Collections.sort(contextWindows);
+        TermDictionary dictionary = getTermDictionary();
+        File snapshot = null;
+        if (contextParams.length > 0) {
+            String[] params = Arrays.copyOf(contextParams, contextParams.length + 2);
+            params[contextParams.length] = "minTTF=" + minTTF;
+            params[contextParams.length + 1] = "minTCF=" + minTCF;
+            snapshot = getSnapshotFile("cooccurrence", params);
+        }
+        if (snapshot != null && snapshot.exists()) {
+            try {
+                Cooccurrence feature = Cooccurrence.load(snapshot, dictionary);
+                LOG.info("Loaded features from snapshot " + snapshot + ". Total=" + feature.getNumTerms());
+                return feature;
+            } catch (IOException ioe) {
+                StringBuilder sb = new StringBuilder("Failed to load feature snapshot, features will be rebuilt: ");
+                sb.append(snapshot).append("\n").append(ExceptionUtils.getFullStackTrace(ioe));
+                LOG.warn(sb.toString());
+            }
+        }
+
+        //ids of the contexts where target candidate terms appear, and the id of the same context in the reference
+        //feature. It is possible that many reference terms do not appear in these contexts, because reference terms
+        //are not identical set to target terms; contexts without reference terms are not given to workers
+        int[] refCtxIds = new int[frequencyCtxBased.getNumContexts()];
+        List<Integer> contextIds = pairContexts(frequencyCtxBased, ref_frequencyCtxBased, refCtxIds);
 
         //start workers
         int cores = properties.getMaxCPUCores();
         cores = cores == 0 ? 1 : cores;
-        int maxPerThread = getMaxPerThread(contextWindows, cores);
+        int maxPerThread = getMaxPerThread(contextIds.size(), cores);
 
         StringBuilder sb = new StringBuilder("Building features using cpu cores=");
-        sb.append(cores).append(", total ctx where reference terms appear =").append(contextWindows.size()).append(", max per worker=")
+        sb.append(cores).append(", total ctx where reference terms appear =").append(contextIds.size()).append(", max per worker=")
                 .append(maxPerThread);
         LOG.info(sb.toString());
 
         LOG.info("Filtering candidates with min.ttf=" + minTTF + " min.tcf=" + minTCF);
-        Set<String> termsPassingPrefilter = new HashSet<>();
-        for (ContextWindow ctx : contextWindows) {
-            //now go thru the selected context windows, select target terms that satisfy selection thresholds
-            Map<String, Integer> termsInContext = frequencyCtxBased.getTFIC(ctx);
-            if (minTTF == 0 && minTCF == 0)
-                termsPassingPrefilter.addAll(termsInContext.keySet());
-            else {
-                for (String term : termsInContext.keySet()) {
-                    if (frequencyTermBased.getTTF(term) >= minTTF && frequencyCtxBased.getContexts(term).size() >= minTCF)
-                        termsPassingPrefilter.add(term);
-                }
-            }
-        }
-
         //It is possible that many reference terms
         //do not appear in these context windows, because reference terms are not identical set to target terms
-        Cooccurrence feature = new Cooccurrence(termsPassingPrefilter.size(),
-                ref_frequencyCtxBased.getMapTerm2Ctx().size());
-        LOG.info("Beginning building features. Total terms=" + termsPassingPrefilter.size() + ", total contexts=" + contextWindows.size());
+        Cooccurrence feature = new Cooccurrence(dictionary);
+
+        //resolve ordinals before workers start, select target terms that satisfy selection thresholds
+        int[] targetOrdinals = targetOrdinals(frequencyCtxBased, dictionary);
+        int termsPassingPrefilter = 0;
+        for (int termId = 0; termId < targetOrdinals.length; termId++) {
+            if (targetOrdinals[termId] == -1)
+                continue;
+            int tcf = frequencyCtxBased.getTermContextsEnd(termId) - frequencyCtxBased.getTermContextsStart(termId);
+            if (frequencyTermBased.getTTF(frequencyCtxBased.getTerm(termId)) < minTTF || tcf < minTCF)
+                targetOrdinals[termId] = -1;
+            else
+                termsPassingPrefilter++;
+        }
+        int[] refOrdinals = refTermIds(ref_frequencyCtxBased, feature);
+
+        LOG.info("Beginning building features. Total terms=" + termsPassingPrefilter + ", total contexts=" + contextIds.size());
 
         CooccurrenceFBWorker worker = new
-                CooccurrenceFBWorker(feature, contextWindows,
-                frequencyTermBased, minTTF, frequencyCtxBased, ref_frequencyCtxBased,
-                minTCF, maxPerThread);
+                CooccurrenceFBWorker(feature, contextIds, refCtxIds,
+                frequencyCtxBased, targetOrdinals, ref_frequencyCtxBased, refOrdinals,
+                maxPerThread);
+        //work per context is the number of target x reference term pairs, which varies greatly between contexts,
+        //so split the contexts by that rather than by count
+        worker.setCost(ctxId -> {
+            int refCtxId = refCtxIds[ctxId];
+            long terms = frequencyCtxBased.getContextTermsEnd(ctxId) - frequencyCtxBased.getContextTermsStart(ctxId);
+            long refTerms = ref_frequencyCtxBased.getContextTermsEnd(refCtxId)
+                    - ref_frequencyCtxBased.getContextTermsStart(refCtxId);
+            return 1 + terms * refTerms;
+        }, Math.max(1, contextIds.size() / maxPerThread));
 
-        ForkJoinPool forkJoinPool = new ForkJoinPool(cores);
+        ForkJoinPool forkJoinPool = JATEExecutors.getPool(cores);
         int total = forkJoinPool.invoke(worker);
 
         /*List<String> col=new ArrayList<>(frequencyCtxBased.getCtxOverlapZones().keySet());
@@ -187,15 +229,108 @@ public class CooccurrenceFBMaster extends AbstractFeatureBuilder {
 
 
         sb = new StringBuilder("Complete building features, total contexts processed=" + total);
-        sb.append("; total indexed candidate terms=").append(feature.termCounter).append(";")
-                .append(" total indexed reference terms=").append(feature.ctxTermCounter);
+        sb.append("; total indexed candidate terms=").append(feature.getNumTerms()).append(";")
+                .append(" total indexed reference terms=").append(feature.getNumRefTerms());
         LOG.info(sb.toString());
 
+        //a snapshot is a feature file that is kept
+        File storeFile = snapshot != null ? snapshot : newFeatureStoreFile("cooccurrence");
+        if (storeFile != null) {
+            try {
+                feature.offload(storeFile, snapshot == null);
+                LOG.info("Feature offloaded to " + storeFile);
+            } catch (IOException ioe) {
+                if (snapshot == null)
+                    storeFile.delete();
+                sb = new StringBuilder("Failed to offload features to ");
+                sb.append(storeFile).append("\n").append(ExceptionUtils.getFullStackTrace(ioe));
+                LOG.error(sb.toString());
+                throw new JATEException(sb.toString());
+            }
+        }
+
         return feature;
     }
 
-    private int getMaxPerThread(List<ContextWindow> contextWindows, int cores) {
-        int maxPerThread = contextWindows.size() / cores;
+    /**
+     * @return the dictionary ordinal of each term id of the target feature, or -1 for ids of terms that are not found
+     * in any context or not in the dictionary. Features of candidate terms are keyed by the ordinals already, only
+     * features keyed otherwise (e.g., built without a dictionary) are looked up by term. Co-occurrences of target
+     * terms that are not candidate terms are not counted
+     */
+    static int[] targetOrdinals(FrequencyCtxBased feature, TermDictionary dictionary) {
+        int[] ordinals = new int[feature.getNumTerms()];
+        boolean keyedByOrdinal = feature.getDictionary() == dictionary;
+        int notCandidates = 0;
+        for (int termId = 0; termId < ordinals.length; termId++) {
+            String term = feature.getTerm(termId);
+            if (term == null)
+                ordinals[termId] = -1;
+            else {
+                ordinals[termId] = keyedByOrdinal ? termId : dictionary.ordinal(term);
+                if (ordinals[termId] == -1)
+                    notCandidates++;
+            }
+        }
+        if (notCandidates > 0)
+            LOG.warn(notCandidates + " target terms are not candidate terms, their co-occurrences are not counted");
+        return ordinals;
+    }
+
+    /**
+     * @return the reference term id in the co-occurrence feature of each term id of the reference feature, or -1 for
+     * ids of terms that are not found in any context. Reference terms that are not candidate terms get their own ids,
+     * see {@link Cooccurrence#indexRefTerm(String)}
+     */
+    static int[] refTermIds(FrequencyCtxBased reference, Cooccurrence feature) {
+        int[] ids = new int[reference.getNumTerms()];
+        boolean keyedByOrdinal = reference.getDictionary() == feature.dictionary;
+        for (int termId = 0; termId < ids.length; termId++) {
+            String term = reference.getTerm(termId);
+            if (term == null)
+                ids[termId] = -1;
+            else
+                ids[termId] = keyedByOrdinal ? termId : feature.indexRefTerm(term);
+        }
+        return ids;
+    }
+
+    /**
+     * Both features keep their contexts sorted by the same keys, so the contexts they share are found by merging the
+     * two sorted lists
+     *
+     * @param refCtxIds set to the id in the reference feature of each context of the target feature, or -1
+     * @return ids of the contexts of the target feature that are also contexts of the reference feature, ascending
+     */
+    static List<Integer> pairContexts(FrequencyCtxBased target, FrequencyCtxBased reference,
+                                              int[] refCtxIds) {
+        List<Integer> shared = new ArrayList<>();
+        int numRefCtx = reference.getNumContexts();
+        int r = 0;
+        for (int ctxId = 0; ctxId < refCtxIds.length; ctxId++) {
+            long docSentenceKey = target.getContextDocSentenceKey(ctxId);
+            long tokenSpanKey = target.getContextTokenSpanKey(ctxId);
+            int cmp = -1;
+            while (r < numRefCtx) {
+                cmp = Long.compare(reference.getContextDocSentenceKey(r), docSentenceKey);
+                if (cmp == 0)
+                    cmp = Long.compare(reference.getContextTokenSpanKey(r), tokenSpanKey);
+                if (cmp >= 0)
+                    break;
+                r++;
+            }
+            if (r < numRefCtx && cmp == 0) {
+                refCtxIds[ctxId] = r;
+                shared.add(ctxId);
+            } else {
+                refCtxIds[ctxId] = -1;
+            }
+        }
+        return shared;
+    }
+
+    private int getMaxPerThread(int contexts, int cores) {
+        int maxPerThread = contexts / cores;
         if (maxPerThread < MIN_SEQUENTIAL_THRESHOLD) {
             maxPerThread = MIN_SEQUENTIAL_THRESHOLD;
         } else if (maxPerThread > MAX_SEQUENTIAL_THRESHOLD){
@@ -2,7 +2,7 @@ package uk.ac.shef.dcs.jate.feature;
 
 import uk.ac.shef.dcs.jate.JATERecursiveTaskWorker;
 
-import java.util.*;
+import java.util.List;
 import org.apache.log4j.Logger;
 
 /**
@@ -11,43 +11,50 @@ import org.apache.log4j.Logger;
  *
  * @see CooccurrenceFBMaster
  */
-public class CooccurrenceFBWorker extends JATERecursiveTaskWorker<ContextWindow, Integer> {
+public class CooccurrenceFBWorker extends JATERecursiveTaskWorker<Integer, Integer> {
 	
 	private static final long serialVersionUID = 2618520228983802927L;
 	private static final Logger LOG = Logger.getLogger(CooccurrenceFBWorker.class.getName());
     private final FrequencyCtxBased frequencyCtxBased;
-    private final FrequencyTermBased frequencyTermBased;
     private final FrequencyCtxBased ref_frequencyCtxBased;
-    private final int minTTF;
-    private final int minTCF;
+    //context id in frequencyCtxBased and the id of the same context in ref_frequencyCtxBased
+    private final int[] refCtxIds;
+    //term id in frequencyCtxBased (resp. ref_frequencyCtxBased) and its row (resp. column) in the co-occurrence
+    //feature, or -1 if the term is not to be counted
+    private final int[] targetOrdinals;
+    private final int[] refTermIds;
     protected final Cooccurrence feature;
 
-    public CooccurrenceFBWorker(Cooccurrence feature, List<ContextWindow> contextWindowIds,
-                                FrequencyTermBased frequencyTermBased,
-                                int minTTF,
+    /**
+     * @param contextIds ids of the contexts (in frequencyCtxBased) to process, each of which must have an id in
+     *                   refCtxIds
+     * @param refCtxIds  id in ref_frequencyCtxBased of each context of frequencyCtxBased
+     */
+    public CooccurrenceFBWorker(Cooccurrence feature, List<Integer> contextIds, int[] refCtxIds,
                                 FrequencyCtxBased frequencyCtxBased,
+                                int[] targetOrdinals,
                                 FrequencyCtxBased ref_frequencyCtxBased,
-                                int minTCF,
+                                int[] refTermIds,
                                 int maxTasksPerWorker) {
-        super(contextWindowIds, maxTasksPerWorker);
+        super(contextIds, maxTasksPerWorker);
         this.feature=feature;
+        this.refCtxIds = refCtxIds;
         this.frequencyCtxBased = frequencyCtxBased;
-        this.frequencyTermBased = frequencyTermBased;
+        this.targetOrdinals = targetOrdinals;
         this.ref_frequencyCtxBased=ref_frequencyCtxBased;
-        this.minTTF = minTTF;
-        this.minTCF = minTCF;
+        this.refTermIds = refTermIds;
     }
 
     @Override
-    protected JATERecursiveTaskWorker<ContextWindow, Integer> createInstance(List<ContextWindow> contextWindowIdSplit) {
-        return new CooccurrenceFBWorker(feature, contextWindowIdSplit,frequencyTermBased,
-                minTTF, frequencyCtxBased, ref_frequencyCtxBased, minTCF, maxTasksPerThread);
+    protected JATERecursiveTaskWorker<Integer, Integer> createInstance(List<Integer> contextIdSplit) {
+        return new CooccurrenceFBWorker(feature, contextIdSplit, refCtxIds, frequencyCtxBased, targetOrdinals,
+                ref_frequencyCtxBased, refTermIds, maxTasksPerThread);
     }
 
     @Override
-    protected Integer mergeResult(List<JATERecursiveTaskWorker<ContextWindow, Integer>> jateRecursiveTaskWorkers) {
+    protected Integer mergeResult(List<JATERecursiveTaskWorker<Integer, Integer>> jateRecursiveTaskWorkers) {
         Integer total=0;
-        for (JATERecursiveTaskWorker<ContextWindow, Integer> worker : jateRecursiveTaskWorkers) {
+        for (JATERecursiveTaskWorker<Integer, Integer> worker : jateRecursiveTaskWorkers) {
             total+= worker.join();
         }
 
@@ -55,63 +62,58 @@ public class CooccurrenceFBWorker extends JATERecursiveTaskWorker<ContextWindow,
     }
 
     @Override
-    protected Integer computeSingleWorker(List<ContextWindow> contextWindows) {
+    protected Integer computeSingleWorker(List<Integer> contextIds) {
         StringBuilder sb = new StringBuilder("Total ctx to process=");
-        sb.append(contextWindows.size())
-        .append(", total ref terms=").append(ref_frequencyCtxBased.getMapTerm2Ctx().size());
+        sb.append(contextIds.size())
+        .append(", total ref terms=").append(ref_frequencyCtxBased.getNumTerms());
         LOG.info(sb.toString());
 
         int total=0;
 
         int totalTermsInContext=0, totalRefTermsInContext=0;
-        List<String> termsInContext = new ArrayList<>();
-
-        for (ContextWindow ctx : contextWindows) {
-            termsInContext.clear();
-            //get the reference terms appearing in this ctx object and their frequency
-            Map<String, Integer> refTerm2TFIC=ref_frequencyCtxBased.getTFIC(ctx);
-            /*if(refTerm2TFIC.size()==0) //it is possible because ref-term may not appear in this context
-                continue;*/
-            //get the target terms appearing in this ctx object and their frequency
-            Map<String, Integer> term2TFIC = frequencyCtxBased.getTFIC(ctx);
-            //all terms in this ctxid
-            //NOTE!!!: it is possible that there are no target terms in this context, due to target term filtering
-            //         As a result, the actual indexed reference terms in this co-occurrence feature may not be identical
-            //         to ref_frequencyCtxBased.getMapTerm2CtxId().
-            termsInContext.addAll(term2TFIC.keySet());
-
-            totalTermsInContext+=termsInContext.size();
-            totalRefTermsInContext+=refTerm2TFIC.size();
-            for (String targetTerm : termsInContext) {
-                if ((minTTF > 0 && frequencyTermBased.getTTF(targetTerm) < minTTF)
-                        || (minTCF > 0 && frequencyCtxBased.getContexts(targetTerm).size() < minTCF))
-                    continue;
+        CooccurrenceAccumulator accumulator = new CooccurrenceAccumulator();
+
+        for (int ctxId : contextIds) {
+            //target terms appearing in this ctx. NOTE!!!: it is possible that there are no target terms in
+            //this context, due to target term filtering. As a result, the actual indexed reference terms in this
+            //co-occurrence feature may not be identical to ref_frequencyCtxBased.getMapTerm2CtxId().
+            //reference terms appearing in this ctx, resolved by the master
+            int refCtxId = refCtxIds[ctxId];
+            total++;
+
+            int termsStart = frequencyCtxBased.getContextTermsStart(ctxId);
+            int termsEnd = frequencyCtxBased.getContextTermsEnd(ctxId);
+            int refTermsStart = ref_frequencyCtxBased.getContextTermsStart(refCtxId);
+            int refTermsEnd = ref_frequencyCtxBased.getContextTermsEnd(refCtxId);
+            totalTermsInContext += termsEnd - termsStart;
+            totalRefTermsInContext += refTermsEnd - refTermsStart;
 
-                int targetFIC = term2TFIC.get(targetTerm); //frequency of term in this context
-                int targetIdx = feature.lookupAndIndexTerm(targetTerm);
+            for (int t = termsStart; t < termsEnd; t++) {
+                int targetIdx = targetOrdinals[frequencyCtxBased.getContextTermId(t)];
+                if (targetIdx == -1)
+                    continue;
+                int targetFIC = frequencyCtxBased.getContextTermFreq(t); //frequency of term in this context
 
                 //now go through each reference term to be considered and check cooccurrence:
-                for (Map.Entry<String, Integer> en : refTerm2TFIC.entrySet()) {
-                    String refTerm = en.getKey();
-                    if (refTerm.equals(targetTerm))
+                for (int r = refTermsStart; r < refTermsEnd; r++) {
+                    int refIdx = refTermIds[ref_frequencyCtxBased.getContextTermId(r)];
+                    if (refIdx == -1 || refIdx == targetIdx)
                         continue;
-
-                    int refTermFIC = en.getValue();
-                    int refIdx = feature.lookupAndIndexRefTerm(refTerm);
+                    int refTermFIC = ref_frequencyCtxBased.getContextTermFreq(r);
 
                     int coocurringFreq = targetFIC < refTermFIC ? targetFIC : refTermFIC;
-                    feature.increment(targetIdx, refIdx, coocurringFreq);
+                    accumulator.increment(targetIdx, refIdx, coocurringFreq);
                 }
             }
-            total++;
 
             //debug
             if(total%100000==0){
-                LOG.info(total + "/" + contextWindows.size() + " (t=" + totalTermsInContext + " x reft=" + totalRefTermsInContext+")");
+                LOG.info(total + "/" + contextIds.size() + " (t=" + totalTermsInContext + " x reft=" + totalRefTermsInContext+")");
                 totalTermsInContext=0;
                 totalRefTermsInContext=0;
             }
         }
+        feature.merge(accumulator);
 
         LOG.info("complete calculation for one worker: total:" + total);
         return total;
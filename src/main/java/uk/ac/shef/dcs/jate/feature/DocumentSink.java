@@ -0,0 +1,40 @@
+package uk.ac.shef.dcs.jate.feature;
+
+import uk.ac.shef.dcs.jate.JATEException;
+
+/**
+ * Receives the candidate occurrences read by a {@link DocumentSweep}. Each worker of the sweep creates its own sink,
+ * so a sink is used by a single thread and needs no synchronisation until {@link #flush()}.
+ *
+ * </p>For each document, the sink sees {@link #startDocument(int)}, then every occurrence of its candidates in the
+ * document, then {@link #endDocument()}. Occurrences come in the order of the term vector, i.e., candidates in the
+ * order of their bytes, and for each candidate its occurrences in the order of positions. If reading a document
+ * fails, {@link #endDocument()} is not called for that document.
+ */
+public interface DocumentSink {
+
+    void startDocument(int docId) throws JATEException;
+
+    /**
+     * @param term        candidate term or word
+     * @param position    token position of the occurrence
+     * @param startOffset start offset of the occurrence
+     * @param endOffset   end offset of the occurrence
+     * @param payload     the payload of the occurrence, shared with the other sinks and valid only during the call.
+     *                    It holds no bytes if the occurrence has no payload, or if none of the sinks of the sweep
+     *                    {@link #usesPayload() uses payloads}
+     */
+    void occurrence(String term, int position, int startOffset, int endOffset, OccurrencePayload payload);
+
+    void endDocument() throws JATEException;
+
+    /**
+     * Called once all documents of the worker have been read, to pass the results to the feature
+     */
+    void flush();
+
+    /**
+     * @return true if the sink reads the payloads of occurrences
+     */
+    boolean usesPayload();
+}
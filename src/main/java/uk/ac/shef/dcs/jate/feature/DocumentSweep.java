@@ -0,0 +1,182 @@
+package uk.ac.shef.dcs.jate.feature;
+
+import org.apache.log4j.Logger;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.solr.search.SolrIndexSearcher;
+import uk.ac.shef.dcs.jate.JATEException;
+import uk.ac.shef.dcs.jate.JATEExecutors;
+import uk.ac.shef.dcs.jate.JATEProperties;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+
+/**
+ * Builds several document-level features in a single pass over the term vectors of the n-gram field
+ * ({@link JATEProperties#getSolrFieldNameJATENGramInfo()}). Each document's term vector is read once, and the
+ * occurrences are passed to all registered {@link DocumentSink}s, with their payloads for the sinks that read them. The
+ * segments of the index are swept in parallel.
+ *
+ * </p>Register the features wanted, then {@link #run()} the sweep once, e.g.:
+ * <pre>
+ *     DocumentSweep sweep = new DocumentSweep(searcher, properties);
+ *     FrequencyCtxBased sentenceCtx = sweep.addSentenceContexts(candidates);
+ *     PositionFeature positions = sweep.addPositions(candidates);
+ *     sweep.run();
+ * </pre>
+ * The features returned by the add methods are complete once {@link #run()} returns.
+ */
+public class DocumentSweep {
+    private static final Logger LOG = Logger.getLogger(DocumentSweep.class.getName());
+
+    private final SolrIndexSearcher solrIndexSearcher;
+    private final JATEProperties properties;
+    private final List<Set<String>> candidates = new ArrayList<>();
+    private final List<Supplier<DocumentSink>> sinkSuppliers = new ArrayList<>();
+    private boolean done = false;
+
+    public DocumentSweep(SolrIndexSearcher solrIndexSearcher, JATEProperties properties) {
+        this.solrIndexSearcher = solrIndexSearcher;
+        this.properties = properties;
+    }
+
+    /**
+     * Register a sink
+     *
+     * @param candidates   candidates whose occurrences are passed to the sink, null for all terms in the term vectors
+     * @param sinkSupplier creates a sink for each worker of the sweep
+     */
+    public void addSink(Set<String> candidates, Supplier<DocumentSink> sinkSupplier) {
+        if (done)
+            throw new IllegalStateException("The sweep has already run");
+        this.candidates.add(candidates);
+        this.sinkSuppliers.add(sinkSupplier);
+    }
+
+    /**
+     * @return frequency-in-context feature of the candidates, with sentences as contexts
+     */
+    public FrequencyCtxBased addSentenceContexts(Set<String> candidates) {
+        return addSentenceContexts(candidates, null);
+    }
+
+    /**
+     * @param dictionary dictionary whose ordinals are used as term ids of the feature, see
+     *                   {@link FrequencyCtxBased#FrequencyCtxBased(TermDictionary)}. Null to assign ids as terms
+     *                   are first seen
+     * @return frequency-in-context feature of the candidates, with sentences as contexts
+     */
+    public FrequencyCtxBased addSentenceContexts(Set<String> candidates, TermDictionary dictionary) {
+        FrequencyCtxBased feature = new FrequencyCtxBased(dictionary);
+        addSink(candidates, () -> new SentenceContextSink(feature, properties));
+        return feature;
+    }
+
+    /**
+     * @param existingContextWindows context windows within which candidates are counted, see
+     *                               {@link FrequencyCtxWindowBasedFBMaster}. Null or empty to generate context
+     *                               windows around the candidates
+     * @param window                 number of tokens on each side of a candidate, when generating context windows
+     * @return frequency-in-context feature of the candidates, with context windows as contexts
+     */
+    public FrequencyCtxBased addWindowContexts(Set<String> candidates, Set<ContextWindow> existingContextWindows,
+                                               int window) {
+        return addWindowContexts(candidates, existingContextWindows, window, null);
+    }
+
+    /**
+     * @param dictionary dictionary whose ordinals are used as term ids of the feature, or null, see
+     *                   {@link #addSentenceContexts(Set, TermDictionary)}
+     * @return frequency-in-context feature of the candidates, with context windows as contexts
+     * @see #addWindowContexts(Set, Set, int)
+     */
+    public FrequencyCtxBased addWindowContexts(Set<String> candidates, Set<ContextWindow> existingContextWindows,
+                                               int window, TermDictionary dictionary) {
+        Map<Integer, List<ContextWindow>> contextLookup = null;
+        if (existingContextWindows != null) {
+            contextLookup = new HashMap<>();
+            for (ContextWindow ctx : existingContextWindows) {
+                List<ContextWindow> container = contextLookup.get(ctx.getDocId());
+                if (container == null)
+                    container = new ArrayList<>();
+                container.add(ctx);
+                contextLookup.put(ctx.getDocId(), container);
+            }
+        }
+        FrequencyCtxBased feature = new FrequencyCtxBased(dictionary);
+        Map<Integer, List<ContextWindow>> lookup = contextLookup;
+        addSink(candidates, () -> new WindowContextSink(feature, properties, lookup, window));
+        return feature;
+    }
+
+    /**
+     * @return positions of the candidates in the paragraphs and sentences of documents
+     */
+    public PositionFeature addPositions(Set<String> candidates) {
+        PositionFeature feature = new PositionFeature();
+        addSink(candidates, () -> new PositionSink(feature));
+        return feature;
+    }
+
+    /**
+     * @return word shape of the candidates
+     */
+    public WordShapeFeature addWordShapes(Set<String> candidates, Set<String> gazetteer) {
+        WordShapeFeature feature = new WordShapeFeature();
+        addSink(candidates, () -> new WordShapeSink(feature, gazetteer));
+        return feature;
+    }
+
+    /**
+     * Read all documents once and fill all registered features. A sweep can run only once.
+     *
+     * @return number of documents processed successfully, and total number of documents
+     * @throws JATEException
+     */
+    public int[] run() throws JATEException {
+        if (done)
+            throw new IllegalStateException("The sweep has already run");
+        done = true;
+
+        //start workers, one per segment, all segments in parallel
+        int cores = properties.getMaxCPUCores();
+        cores = cores == 0 ? 1 : cores;
+        int maxPerThread = solrIndexSearcher.maxDoc() / cores;
+        maxPerThread = getMaxPerThread(maxPerThread);
+
+        CandidateTable table = new CandidateTable(candidates);
+        List<DocumentSweepWorker> workers = new ArrayList<>();
+        for (LeafReaderContext leaf : solrIndexSearcher.getIndexReader().leaves()) {
+            List<Integer> docs = new ArrayList<>();
+            for (int i = 0; i < leaf.reader().maxDoc(); i++) {
+                docs.add(i);
+            }
+            workers.add(new DocumentSweepWorker(properties, docs, leaf, table, sinkSuppliers, maxPerThread));
+        }
+
+        StringBuilder sb = new StringBuilder("Sweeping documents using cpu cores=");
+        sb.append(cores).append(", total docs=").append(solrIndexSearcher.maxDoc()).append(", segments=")
+                .append(workers.size()).append(", max per worker=").append(maxPerThread)
+                .append(", features=").append(sinkSuppliers.size());
+        LOG.info(sb.toString());
+        ForkJoinPool forkJoinPool = JATEExecutors.getPool(cores);
+        int[] total = new int[2];
+        for (int[] rs : AbstractFeatureBuilder.invokeAll(forkJoinPool, workers)) {
+            total[0] += rs[0];
+            total[1] += rs[1];
+        }
+        sb = new StringBuilder("Complete sweeping documents. Total=");
+        sb.append(total[1]).append(" success=").append(total[0]);
+        LOG.info(sb.toString());
+        return total;
+    }
+
+    private int getMaxPerThread(int maxPerThread) {
+        if (maxPerThread < AbstractFeatureBuilder.MIN_SEQUENTIAL_THRESHOLD) {
+            maxPerThread = AbstractFeatureBuilder.MIN_SEQUENTIAL_THRESHOLD;
+        } else if (maxPerThread > AbstractFeatureBuilder.MAX_SEQUENTIAL_THRESHOLD) {
+            maxPerThread = AbstractFeatureBuilder.MAX_SEQUENTIAL_THRESHOLD;
+        }
+        return maxPerThread;
+    }
+}
@@ -0,0 +1,157 @@
+package uk.ac.shef.dcs.jate.feature;
+
+import org.apache.commons.lang.exception.ExceptionUtils;
+import org.apache.log4j.Logger;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.PostingsEnum;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.BytesRef;
+import uk.ac.shef.dcs.jate.JATEException;
+import uk.ac.shef.dcs.jate.JATEProperties;
+import uk.ac.shef.dcs.jate.JATERecursiveTaskWorker;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Reads the term vector of each document of one index segment once and passes the occurrences of candidates to the
+ * sinks of a {@link DocumentSweep}. Deleted documents are skipped. Payloads are read only if a sink accepting the
+ * candidate uses them, and are decoded at most once per occurrence, when a sink first asks for the
+ * {@link OccurrencePayload#metadata() metadata}.
+ */
+class DocumentSweepWorker extends JATERecursiveTaskWorker<Integer, int[]> {
+
+    private static final long serialVersionUID = -3826177418207385642L;
+    private static final Logger LOG = Logger.getLogger(DocumentSweepWorker.class.getName());
+    private JATEProperties properties;
+    private LeafReaderContext leaf;
+    private CandidateTable candidates;
+    private List<Supplier<DocumentSink>> sinkSuppliers;
+
+    /**
+     * @param docIds ids of documents local to the segment
+     */
+    DocumentSweepWorker(JATEProperties properties, List<Integer> docIds, LeafReaderContext leaf,
+                        CandidateTable candidates, List<Supplier<DocumentSink>> sinkSuppliers,
+                        int maxTasksPerWorker) {
+        super(docIds, maxTasksPerWorker);
+        this.properties = properties;
+        this.leaf = leaf;
+        this.candidates = candidates;
+        this.sinkSuppliers = sinkSuppliers;
+    }
+
+    @Override
+    protected JATERecursiveTaskWorker<Integer, int[]> createInstance(List<Integer> docIdSplit) {
+        return new DocumentSweepWorker(properties, docIdSplit, leaf, candidates, sinkSuppliers,
+                maxTasksPerThread);
+    }
+
+    @Override
+    protected int[] mergeResult(List<JATERecursiveTaskWorker<Integer, int[]>> jateRecursiveTaskWorkers) {
+        int totalSuccess = 0, total = 0;
+        for (JATERecursiveTaskWorker<Integer, int[]> worker : jateRecursiveTaskWorkers) {
+            int[] rs = worker.join();
+            totalSuccess += rs[0];
+            total += rs[1];
+        }
+        return new int[]{totalSuccess, total};
+    }
+
+    @Override
+    protected int[] computeSingleWorker(List<Integer> docIds) {
+        LOG.info("Total docs to process=" + docIds.size());
+        DocumentSink[] sinks = new DocumentSink[sinkSuppliers.size()];
+        boolean[] usesPayload = new boolean[sinks.length];
+        for (int i = 0; i < sinks.length; i++) {
+            sinks[i] = sinkSuppliers.get(i).get();
+            usesPayload[i] = sinks[i].usesPayload();
+        }
+        boolean[] accepts = new boolean[sinks.length];
+
+        int count = 0;
+        Bits liveDocs = leaf.reader().getLiveDocs();
+        for (int doc : docIds) {
+            if (liveDocs != null && !liveDocs.get(doc))
+                continue;
+            //id of the document in the searcher
+            int docId = leaf.docBase + doc;
+            try {
+                Terms lookupVector = leaf.reader().getTermVector(doc, properties.getSolrFieldNameJATENGramInfo());
+                if (lookupVector == null) {
+                    LOG.error("Term vector for document id=" + docId + " is null. The document may be empty");
+                    continue;
+                }
+                for (DocumentSink sink : sinks)
+                    sink.startDocument(docId);
+                sweep(lookupVector, sinks, usesPayload, accepts);
+                for (DocumentSink sink : sinks)
+                    sink.endDocument();
+                count++;
+            } catch (IOException ioe) {
+                StringBuilder sb = new StringBuilder("Unable to build feature for document id:");
+                sb.append(docId).append("\n");
+                sb.append(ExceptionUtils.getFullStackTrace(ioe));
+                LOG.error(sb.toString());
+            } catch (JATEException je) {
+                StringBuilder sb = new StringBuilder("Unable to build feature for document id:");
+                sb.append(docId).append("\n");
+                sb.append(ExceptionUtils.getFullStackTrace(je));
+                LOG.error(sb.toString());
+            }
+        }
+        for (DocumentSink sink : sinks)
+            sink.flush();
+
+        LOG.debug("progress : " + count + "/" + docIds.size());
+        return new int[]{count, docIds.size()};
+    }
+
+    private void sweep(Terms termVectorLookup, DocumentSink[] sinks, boolean[] usesPayload, boolean[] accepts)
+            throws IOException {
+        TermsEnum tiRef = termVectorLookup.iterator();
+        PostingsEnum postingsEnum = null;
+        OccurrencePayload payload = new OccurrencePayload();
+        BytesRef luceneTerm;
+        while ((luceneTerm = tiRef.next()) != null) {
+            if (luceneTerm.length == 0)
+                continue;
+            //membership is tested on the bytes, most terms of a vector are not candidates
+            int ordinal = candidates.ordinal(luceneTerm);
+            if (ordinal == -1 && !candidates.anyAcceptsAll())
+                continue;
+
+            boolean accepted = false, readPayload = false;
+            for (int i = 0; i < sinks.length; i++) {
+                accepts[i] = candidates.accepts(i, ordinal);
+                if (accepts[i]) {
+                    accepted = true;
+                    readPayload |= usesPayload[i];
+                }
+            }
+            if (!accepted)
+                continue;
+            String tString = ordinal != -1 ? candidates.term(ordinal) : luceneTerm.utf8ToString();
+
+            //positions and offsets are always passed to sinks, payloads only decoded if a sink reads them
+            postingsEnum = tiRef.postings(postingsEnum, readPayload ? PostingsEnum.ALL : PostingsEnum.OFFSETS);
+            //this should be just 1 doc, i.e., the constraint for getting this TV
+            if (postingsEnum.nextDoc() == PostingsEnum.NO_MORE_DOCS)
+                continue;
+            int totalOccurrence = postingsEnum.freq();
+            for (int o = 0; o < totalOccurrence; o++) {
+                int position = postingsEnum.nextPosition();
+                int start = postingsEnum.startOffset();
+                int end = postingsEnum.endOffset();
+                payload.reset(readPayload ? postingsEnum.getPayload() : null);
+                for (int i = 0; i < sinks.length; i++) {
+                    if (accepts[i])
+                        sinks[i].occurrence(tString, position, start, end, payload);
+                }
+            }
+        }
+    }
+}
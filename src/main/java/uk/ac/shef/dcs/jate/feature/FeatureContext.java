@@ -0,0 +1,260 @@
+package uk.ac.shef.dcs.jate.feature;
+
+import org.apache.log4j.Logger;
+import org.apache.solr.core.SolrCore;
+import org.apache.solr.search.SolrIndexSearcher;
+import uk.ac.shef.dcs.jate.JATEException;
+import uk.ac.shef.dcs.jate.JATEProperties;
+
+import java.lang.ref.WeakReference;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Features built on one SolrIndexSearcher, shared by all algorithms using that searcher. Each feature is built
+ * lazily on first request, once, and handed to later requests as it is. Features must therefore be treated as
+ * read-only by algorithms.
+ *
+ * </p>Callers {@link #acquire(SolrIndexSearcher)} a context and {@link #release()} it when done. A released context
+ * is kept, so that later requests on the same searcher reuse its features, until a context is acquired for another
+ * searcher of the same solr core (i.e., the index has changed) or it is {@link #evict(SolrIndexSearcher) evicted}.
+ * A context in use is evicted only explicitly, its features are then dropped when it is released.
+ */
+public final class FeatureContext {
+    private static final Logger LOG = Logger.getLogger(FeatureContext.class.getName());
+
+    //contexts are dropped together with the searchers they are created for
+    private static final Map<SolrIndexSearcher, FeatureContext> contexts = new WeakHashMap<>();
+
+    /**
+     * Builds a feature, e.g., <code>() -> new FrequencyTermBasedFBMaster(searcher, properties, 0).build()</code>
+     */
+    public interface FeatureSupplier {
+        AbstractFeature build() throws JATEException;
+    }
+
+    //must not hold the searcher strongly, or the context would never be dropped
+    private final WeakReference<SolrIndexSearcher> searcher;
+    private final Map<String, FutureTask<AbstractFeature>> features = new ConcurrentHashMap<>();
+    private int refCount = 0;
+    private boolean evicted = false;
+
+    private FeatureContext(SolrIndexSearcher searcher) {
+        this.searcher = new WeakReference<>(searcher);
+    }
+
+    /**
+     * Get the context of the searcher, creating it if there is none, and increment its reference count. Released
+     * contexts of other searchers of the same solr core are evicted.
+     *
+     * @param solrIndexSearcher solr index searcher
+     * @return FeatureContext, to be released by the caller with {@link #release()}
+     */
+    public static FeatureContext acquire(SolrIndexSearcher solrIndexSearcher) {
+        synchronized (contexts) {
+            Iterator<Map.Entry<SolrIndexSearcher, FeatureContext>> it = contexts.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<SolrIndexSearcher, FeatureContext> e = it.next();
+                if (e.getKey() != solrIndexSearcher && e.getKey().getCore() == solrIndexSearcher.getCore()
+                        && e.getValue().refCount == 0) {
+                    e.getValue().evicted = true;
+                    it.remove();
+                    LOG.info("Evicted features of a previous searcher, total=" + e.getValue().features.size());
+                    e.getValue().dropFeatures();
+                }
+            }
+
+            FeatureContext context = contexts.get(solrIndexSearcher);
+            if (context == null) {
+                context = new FeatureContext(solrIndexSearcher);
+                contexts.put(solrIndexSearcher, context);
+            }
+            context.refCount++;
+            return context;
+        }
+    }
+
+    /**
+     * Decrement the reference count of this context. The context is kept for later requests unless it has been
+     * evicted while in use.
+     */
+    public void release() {
+        synchronized (contexts) {
+            if (refCount == 0)
+                throw new IllegalStateException("FeatureContext is not acquired");
+            refCount--;
+            if (refCount == 0 && evicted)
+                dropFeatures();
+        }
+    }
+
+    /**
+     * Drop the context of the searcher, e.g., when the searcher is closed. If the context is in use, its features are
+     * dropped when it is released.
+     *
+     * @param solrIndexSearcher solr index searcher
+     */
+    public static void evict(SolrIndexSearcher solrIndexSearcher) {
+        synchronized (contexts) {
+            FeatureContext context = contexts.remove(solrIndexSearcher);
+            if (context != null) {
+                context.evicted = true;
+                if (context.refCount == 0)
+                    context.dropFeatures();
+            }
+        }
+    }
+
+    /**
+     * Drop the contexts of the searchers of a solr core, except the kept ones, e.g., when a new searcher is registered
+     * or the core is closed. Contexts in use are dropped when they are released.
+     *
+     * @param core solr core
+     * @param kept searchers whose contexts are kept, null elements are ignored
+     */
+    public static void evict(SolrCore core, SolrIndexSearcher... kept) {
+        synchronized (contexts) {
+            List<SolrIndexSearcher> evicted = new ArrayList<>();
+            for (SolrIndexSearcher s : contexts.keySet()) {
+                if (s.getCore() == core && !Arrays.asList(kept).contains(s))
+                    evicted.add(s);
+            }
+            for (SolrIndexSearcher s : evicted)
+                evict(s);
+        }
+    }
+
+    //release the built features, e.g., deleting the files of offloaded features, and clear them
+    private void dropFeatures() {
+        for (FutureTask<AbstractFeature> task : features.values()) {
+            if (!task.isDone())
+                continue;
+            try {
+                task.get().release();
+            } catch (InterruptedException | ExecutionException e) {
+                //a failed build leaves nothing to release
+            }
+        }
+        features.clear();
+    }
+
+    /**
+     * Get a feature, building it with the supplier if it is not built yet. Concurrent requests for the same key
+     * wait for a single build. If the build fails, the next request builds again.
+     *
+     * @param key      key of the feature, which must identify everything the feature is built from other than the
+     *                 searcher, e.g., its type and the solr fields used
+     * @param supplier builds the feature
+     * @return the feature
+     * @throws JATEException
+     */
+    public AbstractFeature get(String key, FeatureSupplier supplier) throws JATEException {
+        FutureTask<AbstractFeature> task = features.get(key);
+        if (task == null) {
+            FutureTask<AbstractFeature> newTask = new FutureTask<>(supplier::build);
+            task = features.putIfAbsent(key, newTask);
+            if (task == null) {
+                task = newTask;
+                LOG.info("Building feature " + key);
+                newTask.run();
+            }
+        }
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new JATEException("Interrupted while waiting for feature " + key);
+        } catch (ExecutionException e) {
+            features.remove(key, task);
+            Throwable cause = e.getCause();
+            if (cause instanceof JATEException)
+                throw (JATEException) cause;
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            throw new JATEException("Failed to build feature " + key + ": " + cause);
+        }
+    }
+
+    /**
+     * @return term frequency feature of candidate terms, see {@link FrequencyTermBasedFBMaster#FEATURE_TYPE_TERM}
+     */
+    public FrequencyTermBased getTermFrequency(JATEProperties properties) throws JATEException {
+        return getFrequencyTermBased(properties, FrequencyTermBasedFBMaster.FEATURE_TYPE_TERM);
+    }
+
+    /**
+     * @return term frequency feature of words, see {@link FrequencyTermBasedFBMaster#FEATURE_TYPE_WORD}
+     */
+    public FrequencyTermBased getWordFrequency(JATEProperties properties) throws JATEException {
+        return getFrequencyTermBased(properties, FrequencyTermBasedFBMaster.FEATURE_TYPE_WORD);
+    }
+
+    /**
+     * @return total and document frequencies of candidate terms, without their per-document frequencies, see
+     * {@link FrequencyTermBasedFBMaster#FrequencyTermBasedFBMaster(SolrIndexSearcher, JATEProperties, int, boolean)}.
+     * If the full term frequency feature is already built, it is returned instead
+     */
+    public TermStatistics getTermStatistics(JATEProperties properties) throws JATEException {
+        int termOrWord = FrequencyTermBasedFBMaster.FEATURE_TYPE_TERM;
+        FutureTask<AbstractFeature> full = features.get(key(FrequencyTermBased.class, properties, termOrWord));
+        if (full != null && full.isDone()) {
+            try {
+                return (TermStatistics) full.get();
+            } catch (InterruptedException | ExecutionException e) {
+                //failed build, fall back to building the statistics
+            }
+        }
+        SolrIndexSearcher s = searcher();
+        return (TermStatistics) get(key(FrequencyTermBased.class, properties, termOrWord) + "|statistics",
+                () -> new FrequencyTermBasedFBMaster(s, properties, termOrWord, true).build());
+    }
+
+    private FrequencyTermBased getFrequencyTermBased(JATEProperties properties, int termOrWord)
+            throws JATEException {
+        SolrIndexSearcher s = searcher();
+        return (FrequencyTermBased) get(key(FrequencyTermBased.class, properties, termOrWord),
+                () -> new FrequencyTermBasedFBMaster(s, properties, termOrWord).build());
+    }
+
+    /**
+     * @return frequency-in-context feature of candidate terms, with sentences as contexts
+     */
+    public FrequencyCtxBased getSentenceContextFrequency(JATEProperties properties) throws JATEException {
+        SolrIndexSearcher s = searcher();
+        return (FrequencyCtxBased) get(key(FrequencyCtxSentenceBasedFBMaster.class, properties, 0),
+                () -> new FrequencyCtxSentenceBasedFBMaster(s, properties, 0).build());
+    }
+
+    /**
+     * @return frequency-in-context feature of candidate terms, with documents as contexts
+     */
+    public FrequencyCtxBased getDocContextFrequency(JATEProperties properties) throws JATEException {
+        SolrIndexSearcher s = searcher();
+        return (FrequencyCtxBased) get(key(FrequencyCtxDocBasedFBMaster.class, properties, 0),
+                () -> new FrequencyCtxDocBasedFBMaster(s, properties, 0).build());
+    }
+
+    /**
+     * @return containment feature of all candidate terms
+     */
+    public Containment getContainment(JATEProperties properties) throws JATEException {
+        SolrIndexSearcher s = searcher();
+        FrequencyTermBased ttf = getTermFrequency(properties);
+        return (Containment) get(key(Containment.class, properties, 0),
+                () -> new ContainmentFBMaster(s, properties, ttf.getMapTerm2TTF().keySet()).build());
+    }
+
+    private SolrIndexSearcher searcher() throws JATEException {
+        SolrIndexSearcher s = searcher.get();
+        if (s == null)
+            throw new JATEException("The searcher of this FeatureContext has been closed");
+        return s;
+    }
+
+    private static String key(Class<?> type, JATEProperties properties, int variant) throws JATEException {
+        return type.getName() + "|" + variant + "|" + properties.getSolrFieldNameJATENGramInfo() + "|" +
+                properties.getSolrFieldNameJATECTerms();
+    }
+}
@@ -1,108 +1,958 @@
 package uk.ac.shef.dcs.jate.feature;
 
+import org.apache.lucene.util.IntroSorter;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Created by zqz on 21/09/2015.
+ *
+ * <p>Frequencies of terms in contexts, stored in primitive columns. Each context is identified by two packed longs
+ * (see {@link ContextWindow#getDocSentenceKey()} and {@link ContextWindow#getTokenSpanKey()}) and contexts are
+ * kept sorted, so a context id is its position in that order. A feature of candidate terms created with a
+ * {@link TermDictionary} uses the ordinals of the dictionary as term ids, and does not count terms that are not in
+ * the dictionary. Otherwise, e.g., for words, terms get dense ids as they are first seen.
+ * Term-in-context frequencies are a sparse matrix held twice in CSR form: rows by context (term ids ascending)
+ * and rows by term (context ids ascending).</p>
+ *
+ * <p>Builders do not update this object directly; they collect updates in a {@link ContextFrequencyBuffer} per
+ * worker, and the buffers are compacted into the columns on first read. The map based getters are read-only views
+ * over the columns.</p>
+ *
+ * <p>A built feature can be moved to a memory-mapped file with {@link #offload(File, boolean)}, after which the
+ * columns are read from the file, and loaded back from a kept file with {@link #load(File, TermDictionary)}.</p>
  */
 public class FrequencyCtxBased extends AbstractFeature {
 
-    //context id to context objects
-    private Map<String, ContextWindow> id2Ctx = new HashMap<>();
+    //columns of an offloaded feature
+    private static final String COLUMN_CTX_DOC_SENTENCE_KEYS = "ctx.doc.sentence.keys";
+    private static final String COLUMN_CTX_TOKEN_SPAN_KEYS = "ctx.token.span.keys";
+    private static final String COLUMN_CTX_TTF = "ctx.ttf";
+    private static final String COLUMN_CTX_TERM_OFFSETS = "ctx.term.offsets";
+    private static final String COLUMN_CTX_TERM_IDS = "ctx.term.ids";
+    private static final String COLUMN_CTX_TERM_FREQS = "ctx.term.freqs";
+    private static final String COLUMN_TERM_CTX_OFFSETS = "term.ctx.offsets";
+    private static final String COLUMN_TERM_CTX_IDS = "term.ctx.ids";
+    private static final String COLUMN_TERM_CTX_FREQS = "term.ctx.freqs";
+    private static final String COLUMN_TERM_IDS = "term.ids";
+
+    //null if term ids are assigned as terms are first seen
+    private final TermDictionary dictionary;
+    //terms seen by builders and their id
+    private final Map<String, Integer> term2Id = new ConcurrentHashMap<>();
+    private final AtomicInteger termCounter = new AtomicInteger();
 
-    //context and total frequency of all terms in that context
-    private Map<ContextWindow, Integer> ctx2TTF = new HashMap<>();
-    //context and its contained terms with their frequency In that context
-    private Map<ContextWindow, Map<String, Integer>> ctx2TFIC = new HashMap<>();
+    //updates handed over by builders and not yet compacted into columns
+    private final Queue<ContextFrequencyBuffer> pending = new ConcurrentLinkedQueue<>();
+    private volatile Columns columns = new Columns();
+    //false while there are pending updates
+    private volatile boolean frozen = true;
 
-    //term and set of contexts where it appears
-    private Map<String, Set<ContextWindow>> term2Ctx = new HashMap<>();
+    private final Map<String, ContextOverlap> ctxOverlapZones = new ConcurrentHashMap<>();
 
-    private Map<String, ContextOverlap> ctxOverlapZones = new HashMap<>();
+    //set by offload(File, boolean), the columns are then read from this file
+    private MappedFeatureFile mapped;
 
     protected FrequencyCtxBased() {
+        this(null);
     }
 
-    public ContextWindow getContextWindow(String id){
-        return id2Ctx.get(id);
+    /**
+     * @param dictionary dictionary whose ordinals are used as term ids, or null to assign ids as terms are first seen
+     */
+    protected FrequencyCtxBased(TermDictionary dictionary) {
+        this.dictionary = dictionary;
+    }
+
+    /**
+     * @return the dictionary whose ordinals are the term ids of this feature, or null if ids are assigned as terms
+     * are first seen
+     */
+    TermDictionary getDictionary() {
+        return dictionary;
     }
 
     public Map<String, Set<ContextWindow>> getTerm2Ctx(){
-        return term2Ctx;
+        return new Term2CtxView(columns());
     }
 
     public Map<ContextWindow, Integer> getMapCtx2TTF() {
-        return ctx2TTF;
+        return new Ctx2TTFView(columns());
     }
 
     public Map<ContextWindow, Map<String, Integer>> getMapCtx2TFIC() {
-        return ctx2TFIC;
+        return new Ctx2TFICView(columns());
     }
 
     protected Map<String, Set<ContextWindow>> getMapTerm2Ctx() {
-        return term2Ctx;
+        return getTerm2Ctx();
     }
 
     public Map<String, Integer> getTFIC(ContextWindow ctx) {
-        Map<String, Integer> result = ctx2TFIC.get(ctx);
-
-        if (result == null)
+        Columns c = columns();
+        int ctxId = c.lookupContext(ctx.getDocSentenceKey(), ctx.getTokenSpanKey());
+        if (ctxId == -1)
             return new HashMap<>();
-        return result;
+        return new TermsInContextView(c, ctxId);
     }
 
     public Set<ContextWindow> getContexts(String term) {
-        return term2Ctx.get(term);
+        Columns c = columns();
+        int termId = lookupTerm(c, term);
+        if (termId == -1)
+            return null;
+        return new ContextsOfTermView(c, termId);
     }
 
     /**
-     * increment the number of occurrences of term in the context (ctxid) by tf
+     * @return number of contexts, context ids are in [0, size) and follow the order of {@link ContextWindow}
      */
-    protected synchronized void increment(ContextWindow ctx, String term, int tf) {
-        ContextWindow c = id2Ctx.get(ctx.getContextId());
-        if (c == null) {
-            c = ctx;
-            id2Ctx.put(ctx.getContextId(), c);
-        }
+    public int getNumContexts() {
+        return columns().ctxTTF.limit();
+    }
+
+    public ContextWindow getContextWindow(int ctxId) {
+        Columns c = columns();
+        return ContextWindow.fromKeys(c.ctxDocSentenceKeys.get(ctxId), c.ctxTokenSpanKeys.get(ctxId));
+    }
+
+    /**
+     * @param ctx context window
+     * @return the id of the context, or -1 if no term is found in this context
+     */
+    public int lookupContext(ContextWindow ctx) {
+        return columns().lookupContext(ctx.getDocSentenceKey(), ctx.getTokenSpanKey());
+    }
+
+    /**
+     * @return total frequency of all terms in the context
+     */
+    public int getCtxTTF(int ctxId) {
+        return columns().ctxTTF.get(ctxId);
+    }
 
-        Map<String, Integer> tfidMap = ctx2TFIC.get(c);
-        if (tfidMap == null)
-            tfidMap = new HashMap<>();
+    /**
+     * @return upper bound of term ids, term ids are in [0, size). With a dictionary, this is the size of the
+     * dictionary and {@link #getTerm(int)} is null for the ids of terms not found in any context
+     */
+    public int getNumTerms() {
+        return columns().id2Term.length;
+    }
+
+    /**
+     * @param term term string
+     * @return the id of the term, or -1 if the term is not found in any context
+     */
+    public int lookupTerm(String term) {
+        return lookupTerm(columns(), term);
+    }
 
-        Integer f = tfidMap.get(term);
-        if (f == null)
-            f = 0;
-        f += tf;
-        tfidMap.put(term, f);
-        ctx2TFIC.put(c, tfidMap);
+    public String getTerm(int termId) {
+        return columns().id2Term[termId];
+    }
+
+    /**
+     * @return frequency of the term in the context
+     */
+    public int getTFIC(int ctxId, int termId) {
+        Columns c = columns();
+        int pos = binarySearch(c.ctxTermIds, c.ctxTermOffsets.get(ctxId), c.ctxTermOffsets.get(ctxId + 1), termId);
+        return pos < 0 ? 0 : c.ctxTermFreqs.get(pos);
+    }
+
+    /**
+     * The terms found in context <code>ctxId</code> are at positions [start, end) of the context rows, see
+     * {@link #getContextTermId(int)} and {@link #getContextTermFreq(int)}
+     */
+    public int getContextTermsStart(int ctxId) {
+        return columns().ctxTermOffsets.get(ctxId);
+    }
+
+    public int getContextTermsEnd(int ctxId) {
+        return columns().ctxTermOffsets.get(ctxId + 1);
+    }
+
+    public int getContextTermId(int pos) {
+        return columns().ctxTermIds.get(pos);
+    }
+
+    public int getContextTermFreq(int pos) {
+        return columns().ctxTermFreqs.get(pos);
+    }
+
+    /**
+     * The contexts in which term <code>termId</code> is found are at positions [start, end) of the term rows, see
+     * {@link #getTermContextId(int)} and {@link #getTermContextFreq(int)}
+     */
+    public int getTermContextsStart(int termId) {
+        return columns().termCtxOffsets.get(termId);
+    }
+
+    public int getTermContextsEnd(int termId) {
+        return columns().termCtxOffsets.get(termId + 1);
+    }
+
+    public int getTermContextId(int pos) {
+        return columns().termCtxIds.get(pos);
+    }
+
+    public int getTermContextFreq(int pos) {
+        return columns().termCtxFreqs.get(pos);
+    }
+
+    long getContextDocSentenceKey(int ctxId) {
+        return columns().ctxDocSentenceKeys.get(ctxId);
+    }
 
-        Set<ContextWindow> ctxs = term2Ctx.get(term);
-        if (ctxs == null)
-            ctxs = new HashSet<>();
-        ctxs.add(c);
-        term2Ctx.put(term, ctxs);
+    long getContextTokenSpanKey(int ctxId) {
+        return columns().ctxTokenSpanKeys.get(ctxId);
     }
 
-    protected synchronized void increment(ContextWindow ctx, int freq) {
-        ContextWindow c = id2Ctx.get(ctx.getContextId());
-        if (c == null) {
-            c = ctx;
-            id2Ctx.put(ctx.getContextId(), c);
+    /**
+     * @return id of the term, assigning a new one if the term is seen the first time; or -1 if the feature has a
+     * dictionary that does not contain the term
+     */
+    int indexTerm(String term) {
+        Integer id = term2Id.get(term);
+        if (id == null) {
+            if (dictionary == null) {
+                id = term2Id.computeIfAbsent(term, t -> termCounter.getAndIncrement());
+            } else {
+                id = dictionary.ordinal(term);
+                if (id != -1)
+                    term2Id.putIfAbsent(term, id);
+            }
         }
-        Integer f = ctx2TTF.get(c);
-        if (f == null)
-            f = 0;
-        f += freq;
-        ctx2TTF.put(c, f);
+        return id;
+    }
+
+    /**
+     * Accept updates collected by a builder. They are compacted into the columns on the next read.
+     */
+    void merge(ContextFrequencyBuffer buffer) {
+        checkNotOffloaded();
+        pending.add(buffer);
+        frozen = false;
     }
 
     public Map<String, ContextOverlap> getCtxOverlapZones() {
         return ctxOverlapZones;
     }
 
-    protected synchronized void addCtxOverlapZone(ContextOverlap ctxOverlapZone) {
+    protected void addCtxOverlapZone(ContextOverlap ctxOverlapZone) {
         this.ctxOverlapZones.put(ctxOverlapZone.getPrevContext().getContextId() + ":" +
                         ctxOverlapZone.getNextContext().getContextId(),
                 ctxOverlapZone);
     }
+
+    private int lookupTerm(Columns c, String term) {
+        Integer id = term2Id.get(term);
+        //terms seen after the columns are compacted are not in the columns
+        return id == null || id >= c.id2Term.length || c.id2Term[id] == null ? -1 : id;
+    }
+
+    private Columns columns() {
+        if (!frozen)
+            freeze();
+        return columns;
+    }
+
+    /**
+     * Compact all pending updates, together with the current columns, into new columns
+     */
+    private synchronized void freeze() {
+        List<ContextFrequencyBuffer> updates = new ArrayList<>();
+        ContextFrequencyBuffer b;
+        while ((b = pending.poll()) != null)
+            updates.add(b);
+        if (updates.isEmpty()) {
+            frozen = pending.isEmpty();
+            return;
+        }
+        if (columns.ctxTTF.limit() > 0)
+            updates.add(columns.toBuffer(this));
+        //term ids in the drained updates are all below the counter (or dictionary size) now
+        int numTerms = dictionary == null ? termCounter.get() : dictionary.size();
+
+        //register contexts, and count term-in-context updates
+        ContextTable table = new ContextTable();
+        int entries = 0;
+        for (ContextFrequencyBuffer u : updates) {
+            for (int i = 0; i < u.size; i++) {
+                table.add(u.docSentenceKeys[i], u.tokenSpanKeys[i]);
+                if (u.termIds[i] != ContextFrequencyBuffer.CONTEXT_TOTAL)
+                    entries++;
+            }
+        }
+
+        //sort contexts, the rank of a context becomes its id
+        final int numCtx = table.size;
+        final long[] ds = Arrays.copyOf(table.docSentenceKeys, numCtx);
+        final long[] ts = Arrays.copyOf(table.tokenSpanKeys, numCtx);
+        final int[] order = new int[numCtx];
+        for (int i = 0; i < numCtx; i++)
+            order[i] = i;
+        new IntroSorter() {
+            private long pivotDs, pivotTs;
+
+            @Override
+            protected void swap(int i, int j) {
+                long tmp = ds[i]; ds[i] = ds[j]; ds[j] = tmp;
+                tmp = ts[i]; ts[i] = ts[j]; ts[j] = tmp;
+                int o = order[i]; order[i] = order[j]; order[j] = o;
+            }
+
+            @Override
+            protected int compare(int i, int j) {
+                int cmp = Long.compare(ds[i], ds[j]);
+                return cmp != 0 ? cmp : Long.compare(ts[i], ts[j]);
+            }
+
+            @Override
+            protected void setPivot(int i) {
+                pivotDs = ds[i];
+                pivotTs = ts[i];
+            }
+
+            @Override
+            protected int comparePivot(int j) {
+                int cmp = Long.compare(pivotDs, ds[j]);
+                return cmp != 0 ? cmp : Long.compare(pivotTs, ts[j]);
+            }
+        }.sort(0, numCtx);
+        int[] rank = new int[numCtx];
+        for (int r = 0; r < numCtx; r++)
+            rank[order[r]] = r;
+
+        //total frequency per context, and (context, term) entries
+        int[] ttf = new int[numCtx];
+        final long[] keys = new long[entries];
+        final int[] freqs = new int[entries];
+        int e = 0;
+        for (ContextFrequencyBuffer u : updates) {
+            for (int i = 0; i < u.size; i++) {
+                int ctx = rank[table.get(u.docSentenceKeys[i], u.tokenSpanKeys[i])];
+                if (u.termIds[i] == ContextFrequencyBuffer.CONTEXT_TOTAL)
+                    ttf[ctx] += u.freqs[i];
+                else {
+                    keys[e] = ((long) ctx << 32) | u.termIds[i];
+                    freqs[e++] = u.freqs[i];
+                }
+            }
+        }
+        updates.clear();
+        table = null;
+
+        new IntroSorter() {
+            private long pivot;
+
+            @Override
+            protected void swap(int i, int j) {
+                long tmp = keys[i]; keys[i] = keys[j]; keys[j] = tmp;
+                int f = freqs[i]; freqs[i] = freqs[j]; freqs[j] = f;
+            }
+
+            @Override
+            protected int compare(int i, int j) {
+                return Long.compare(keys[i], keys[j]);
+            }
+
+            @Override
+            protected void setPivot(int i) {
+                pivot = keys[i];
+            }
+
+            @Override
+            protected int comparePivot(int j) {
+                return Long.compare(pivot, keys[j]);
+            }
+        }.sort(0, entries);
+
+        //sum up repeated (context, term) entries
+        int nnz = 0;
+        for (e = 0; e < entries; e++) {
+            if (nnz > 0 && keys[nnz - 1] == keys[e])
+                freqs[nnz - 1] += freqs[e];
+            else {
+                keys[nnz] = keys[e];
+                freqs[nnz++] = freqs[e];
+            }
+        }
+
+        //rows by context
+        int[] ctxTermOffsets = new int[numCtx + 1];
+        int[] ctxTermIds = new int[nnz];
+        int[] ctxTermFreqs = Arrays.copyOf(freqs, nnz);
+        for (e = 0; e < nnz; e++) {
+            ctxTermOffsets[(int) (keys[e] >>> 32) + 1]++;
+            ctxTermIds[e] = (int) keys[e];
+        }
+        for (int i = 0; i < numCtx; i++)
+            ctxTermOffsets[i + 1] += ctxTermOffsets[i];
+
+        //rows by term, filled in context order
+        int[] termCtxOffsets = new int[numTerms + 1];
+        for (e = 0; e < nnz; e++)
+            termCtxOffsets[ctxTermIds[e] + 1]++;
+        for (int i = 0; i < numTerms; i++)
+            termCtxOffsets[i + 1] += termCtxOffsets[i];
+        int[] termCtxIds = new int[nnz];
+        int[] termCtxFreqs = new int[nnz];
+        int[] next = Arrays.copyOf(termCtxOffsets, numTerms);
+        for (int ctx = 0; ctx < numCtx; ctx++) {
+            for (e = ctxTermOffsets[ctx]; e < ctxTermOffsets[ctx + 1]; e++) {
+                int pos = next[ctxTermIds[e]]++;
+                termCtxIds[pos] = ctx;
+                termCtxFreqs[pos] = ctxTermFreqs[e];
+            }
+        }
+
+        Columns c = new Columns();
+        c.ctxDocSentenceKeys = LongBuffer.wrap(ds);
+        c.ctxTokenSpanKeys = LongBuffer.wrap(ts);
+        c.ctxTTF = IntBuffer.wrap(ttf);
+        c.ctxTermOffsets = IntBuffer.wrap(ctxTermOffsets);
+        c.ctxTermIds = IntBuffer.wrap(ctxTermIds);
+        c.ctxTermFreqs = IntBuffer.wrap(ctxTermFreqs);
+        c.termCtxOffsets = IntBuffer.wrap(termCtxOffsets);
+        c.termCtxIds = IntBuffer.wrap(termCtxIds);
+        c.termCtxFreqs = IntBuffer.wrap(termCtxFreqs);
+
+        c.id2Term = new String[numTerms];
+        for (Map.Entry<String, Integer> en : term2Id.entrySet()) {
+            if (en.getValue() < numTerms && c.id2Term[en.getValue()] == null) {
+                c.id2Term[en.getValue()] = en.getKey();
+                c.termCount++;
+            }
+        }
+        columns = c;
+        //updates merged while compacting stay pending
+        frozen = pending.isEmpty();
+    }
+
+    /**
+     * Move the columns of this feature to a memory-mapped file, and drop them from heap. Term and context ids do not
+     * change, and the term strings stay in heap. The feature can not be updated afterwards.
+     *
+     * @param file      file to write, which must stay in place while the feature is used
+     * @param temporary true if the file is deleted when the feature is {@link #release() released} or no longer
+     *                  reachable; false for a file kept for later use, e.g., a snapshot
+     * @throws IOException
+     */
+    protected synchronized void offload(File file, boolean temporary) throws IOException {
+        checkNotOffloaded();
+        freeze();
+        Columns c = columns;
+        try (MappedFeatureFile.Writer writer = new MappedFeatureFile.Writer(file)) {
+            writer.writeLongs(COLUMN_CTX_DOC_SENTENCE_KEYS, c.ctxDocSentenceKeys);
+            writer.writeLongs(COLUMN_CTX_TOKEN_SPAN_KEYS, c.ctxTokenSpanKeys);
+            writer.writeInts(COLUMN_CTX_TTF, c.ctxTTF);
+            writer.writeInts(COLUMN_CTX_TERM_OFFSETS, c.ctxTermOffsets);
+            writer.writeInts(COLUMN_CTX_TERM_IDS, c.ctxTermIds);
+            writer.writeInts(COLUMN_CTX_TERM_FREQS, c.ctxTermFreqs);
+            writer.writeInts(COLUMN_TERM_CTX_OFFSETS, c.termCtxOffsets);
+            writer.writeInts(COLUMN_TERM_CTX_IDS, c.termCtxIds);
+            writer.writeInts(COLUMN_TERM_CTX_FREQS, c.termCtxFreqs);
+
+            //the terms seen, as a sorted dictionary, and the id of each
+            String[] terms = new String[c.termCount];
+            int[] ids = new int[c.termCount];
+            for (int id = 0, n = 0; id < c.id2Term.length; id++) {
+                if (c.id2Term[id] != null) {
+                    terms[n] = c.id2Term[id];
+                    ids[n++] = id;
+                }
+            }
+            int[] order = MappedFeatureFile.sortedOrder(terms, terms.length);
+            writer.writeTerms(terms, order);
+            writer.beginColumn(COLUMN_TERM_IDS, MappedFeatureFile.TYPE_INT);
+            for (int i : order)
+                writer.writeInt(ids[i]);
+            writer.endColumn();
+        }
+
+        attach(temporary ? MappedFeatureFile.openTemporary(file) : MappedFeatureFile.open(file), c.id2Term,
+                c.termCount);
+    }
+
+    /**
+     * Load a feature from a file written by {@link #offload(File, boolean)}. The columns are read from the mapped file.
+     *
+     * @param file       feature file, which must stay in place while the feature is used
+     * @param dictionary dictionary whose ordinals were the term ids of the feature offloaded, or null
+     * @return FrequencyCtxBased feature
+     * @throws IOException if the file can not be read, is not a FrequencyCtxBased feature file, or its term ids are
+     *                     not the ordinals of the dictionary
+     */
+    static FrequencyCtxBased load(File file, TermDictionary dictionary) throws IOException {
+        MappedFeatureFile f = MappedFeatureFile.open(file);
+        for (String column : new String[]{COLUMN_CTX_DOC_SENTENCE_KEYS, COLUMN_CTX_TOKEN_SPAN_KEYS, COLUMN_CTX_TTF,
+                COLUMN_CTX_TERM_OFFSETS, COLUMN_CTX_TERM_IDS, COLUMN_CTX_TERM_FREQS, COLUMN_TERM_CTX_OFFSETS,
+                COLUMN_TERM_CTX_IDS, COLUMN_TERM_CTX_FREQS, COLUMN_TERM_IDS}) {
+            if (!f.hasColumn(column))
+                throw new IOException("Not a " + FrequencyCtxBased.class.getSimpleName() + " feature file: " + file);
+        }
+        int numTerms = f.getInts(COLUMN_TERM_CTX_OFFSETS).limit() - 1;
+        if (dictionary != null && numTerms > dictionary.size())
+            throw new IOException("Term ids of " + file + " are not the ordinals of the term dictionary");
+
+        FrequencyCtxBased feature = new FrequencyCtxBased(dictionary);
+        IntBuffer termIds = f.getInts(COLUMN_TERM_IDS);
+        String[] id2Term = new String[numTerms];
+        for (int rank = 0; rank < f.getNumTerms(); rank++) {
+            String term = f.getTerm(rank);
+            int id = termIds.get(rank);
+            if (id < 0 || id >= numTerms || (dictionary != null && dictionary.ordinal(term) != id))
+                throw new IOException("Term ids of " + file + " are not the ordinals of the term dictionary");
+            id2Term[id] = term;
+            feature.term2Id.put(term, id);
+        }
+        feature.termCounter.set(numTerms);
+        synchronized (feature) {
+            feature.attach(f, id2Term, f.getNumTerms());
+        }
+        return feature;
+    }
+
+    //switch reads to the columns of the mapped file
+    private void attach(MappedFeatureFile f, String[] id2Term, int termCount) {
+        Columns m = new Columns();
+        m.ctxDocSentenceKeys = f.getLongs(COLUMN_CTX_DOC_SENTENCE_KEYS);
+        m.ctxTokenSpanKeys = f.getLongs(COLUMN_CTX_TOKEN_SPAN_KEYS);
+        m.ctxTTF = f.getInts(COLUMN_CTX_TTF);
+        m.ctxTermOffsets = f.getInts(COLUMN_CTX_TERM_OFFSETS);
+        m.ctxTermIds = f.getInts(COLUMN_CTX_TERM_IDS);
+        m.ctxTermFreqs = f.getInts(COLUMN_CTX_TERM_FREQS);
+        m.termCtxOffsets = f.getInts(COLUMN_TERM_CTX_OFFSETS);
+        m.termCtxIds = f.getInts(COLUMN_TERM_CTX_IDS);
+        m.termCtxFreqs = f.getInts(COLUMN_TERM_CTX_FREQS);
+        m.id2Term = id2Term;
+        m.termCount = termCount;
+        columns = m;
+        mapped = f;
+    }
+
+    @Override
+    public synchronized void release() {
+        if (mapped != null)
+            mapped.delete();
+    }
+
+    private void checkNotOffloaded() {
+        if (mapped != null)
+            throw new IllegalStateException("Feature is offloaded to " + mapped.getFile() + " and can not be updated");
+    }
+
+    //Arrays.binarySearch over a range of a column
+    private static int binarySearch(IntBuffer column, int from, int to, int key) {
+        int low = from, high = to - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int v = column.get(mid);
+            if (v < key)
+                low = mid + 1;
+            else if (v > key)
+                high = mid - 1;
+            else
+                return mid;
+        }
+        return -(low + 1);
+    }
+
+    /**
+     * An immutable snapshot of the compacted columns, held in heap or mapped from a file
+     */
+    private static final class Columns {
+        //contexts, sorted by doc/sentence key then token span key
+        LongBuffer ctxDocSentenceKeys = LongBuffer.allocate(0);
+        LongBuffer ctxTokenSpanKeys = LongBuffer.allocate(0);
+        //context and total frequency of all terms in that context
+        IntBuffer ctxTTF = IntBuffer.allocate(0);
+        //context and its contained terms with their frequency in that context
+        IntBuffer ctxTermOffsets = IntBuffer.allocate(1);
+        IntBuffer ctxTermIds = IntBuffer.allocate(0);
+        IntBuffer ctxTermFreqs = IntBuffer.allocate(0);
+        //term and the contexts where it appears, with its frequency in that context
+        IntBuffer termCtxOffsets = IntBuffer.allocate(1);
+        IntBuffer termCtxIds = IntBuffer.allocate(0);
+        IntBuffer termCtxFreqs = IntBuffer.allocate(0);
+        //null for ids of terms not seen, see FrequencyCtxBased(TermDictionary)
+        String[] id2Term = new String[0];
+        int termCount = 0;
+
+        int lookupContext(long docSentenceKey, long tokenSpanKey) {
+            int low = 0, high = ctxTTF.limit() - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int cmp = Long.compare(ctxDocSentenceKeys.get(mid), docSentenceKey);
+                if (cmp == 0)
+                    cmp = Long.compare(ctxTokenSpanKeys.get(mid), tokenSpanKey);
+                if (cmp < 0)
+                    low = mid + 1;
+                else if (cmp > 0)
+                    high = mid - 1;
+                else
+                    return mid;
+            }
+            return -1;
+        }
+
+        ContextWindow context(int ctxId) {
+            return ContextWindow.fromKeys(ctxDocSentenceKeys.get(ctxId), ctxTokenSpanKeys.get(ctxId));
+        }
+
+        ContextFrequencyBuffer toBuffer(FrequencyCtxBased feature) {
+            ContextFrequencyBuffer buffer = new ContextFrequencyBuffer(feature);
+            for (int ctx = 0; ctx < ctxTTF.limit(); ctx++) {
+                long ds = ctxDocSentenceKeys.get(ctx), ts = ctxTokenSpanKeys.get(ctx);
+                buffer.add(ds, ts, ContextFrequencyBuffer.CONTEXT_TOTAL, ctxTTF.get(ctx));
+                for (int e = ctxTermOffsets.get(ctx); e < ctxTermOffsets.get(ctx + 1); e++)
+                    buffer.add(ds, ts, ctxTermIds.get(e), ctxTermFreqs.get(e));
+            }
+            return buffer;
+        }
+    }
+
+    /**
+     * Open addressing table assigning ids to (doc/sentence key, token span key) pairs in insertion order
+     */
+    private static final class ContextTable {
+        long[] docSentenceKeys = new long[1024];
+        long[] tokenSpanKeys = new long[1024];
+        int size = 0;
+        private int[] slots = newSlots(2048);
+
+        private static int[] newSlots(int length) {
+            int[] slots = new int[length];
+            Arrays.fill(slots, -1);
+            return slots;
+        }
+
+        private static int hash(long a, long b) {
+            long h = a * 0x9E3779B97F4A7C15L + b * 0xC2B2AE3D27D4EB4FL;
+            return (int) (h ^ (h >>> 32));
+        }
+
+        int get(long a, long b) {
+            int mask = slots.length - 1;
+            for (int i = hash(a, b) & mask; ; i = (i + 1) & mask) {
+                int id = slots[i];
+                if (id == -1 || (docSentenceKeys[id] == a && tokenSpanKeys[id] == b))
+                    return id;
+            }
+        }
+
+        void add(long a, long b) {
+            int mask = slots.length - 1;
+            int i = hash(a, b) & mask;
+            for (; slots[i] != -1; i = (i + 1) & mask) {
+                int id = slots[i];
+                if (docSentenceKeys[id] == a && tokenSpanKeys[id] == b)
+                    return;
+            }
+            if (size == docSentenceKeys.length) {
+                docSentenceKeys = Arrays.copyOf(docSentenceKeys, size << 1);
+                tokenSpanKeys = Arrays.copyOf(tokenSpanKeys, size << 1);
+            }
+            docSentenceKeys[size] = a;
+            tokenSpanKeys[size] = b;
+            slots[i] = size++;
+            if (size << 1 > slots.length)
+                rehash();
+        }
+
+        private void rehash() {
+            slots = newSlots(slots.length << 1);
+            int mask = slots.length - 1;
+            for (int id = 0; id < size; id++) {
+                int i = hash(docSentenceKeys[id], tokenSpanKeys[id]) & mask;
+                while (slots[i] != -1)
+                    i = (i + 1) & mask;
+                slots[i] = id;
+            }
+        }
+    }
+
+    private static abstract class RowIterator<T> implements Iterator<T> {
+        private int pos;
+        private final int end;
+
+        RowIterator(int start, int end) {
+            this.pos = start;
+            this.end = end;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return pos < end;
+        }
+
+        @Override
+        public T next() {
+            if (pos >= end)
+                throw new NoSuchElementException();
+            return get(pos++);
+        }
+
+        abstract T get(int pos);
+    }
+
+    /**
+     * Terms found in a context and their frequency in that context
+     */
+    private final class TermsInContextView extends AbstractMap<String, Integer> {
+        private final Columns c;
+        private final int start, end;
+
+        TermsInContextView(Columns c, int ctxId) {
+            this.c = c;
+            this.start = c.ctxTermOffsets.get(ctxId);
+            this.end = c.ctxTermOffsets.get(ctxId + 1);
+        }
+
+        @Override
+        public int size() {
+            return end - start;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return get(key) != null;
+        }
+
+        @Override
+        public Integer get(Object key) {
+            if (!(key instanceof String))
+                return null;
+            int termId = lookupTerm(c, (String) key);
+            if (termId == -1)
+                return null;
+            int pos = binarySearch(c.ctxTermIds, start, end, termId);
+            return pos < 0 ? null : c.ctxTermFreqs.get(pos);
+        }
+
+        @Override
+        public Set<Entry<String, Integer>> entrySet() {
+            return new AbstractSet<Entry<String, Integer>>() {
+                @Override
+                public Iterator<Entry<String, Integer>> iterator() {
+                    return new RowIterator<Entry<String, Integer>>(start, end) {
+                        @Override
+                        Entry<String, Integer> get(int pos) {
+                            return new SimpleImmutableEntry<>(c.id2Term[c.ctxTermIds.get(pos)], c.ctxTermFreqs.get(pos));
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return end - start;
+                }
+            };
+        }
+    }
+
+    /**
+     * Contexts in which a term is found
+     */
+    private static final class ContextsOfTermView extends AbstractSet<ContextWindow> {
+        private final Columns c;
+        private final int start, end;
+
+        ContextsOfTermView(Columns c, int termId) {
+            this.c = c;
+            this.start = c.termCtxOffsets.get(termId);
+            this.end = c.termCtxOffsets.get(termId + 1);
+        }
+
+        @Override
+        public int size() {
+            return end - start;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            if (!(o instanceof ContextWindow))
+                return false;
+            ContextWindow ctx = (ContextWindow) o;
+            int ctxId = c.lookupContext(ctx.getDocSentenceKey(), ctx.getTokenSpanKey());
+            return ctxId != -1 && binarySearch(c.termCtxIds, start, end, ctxId) >= 0;
+        }
+
+        @Override
+        public Iterator<ContextWindow> iterator() {
+            return new RowIterator<ContextWindow>(start, end) {
+                @Override
+                ContextWindow get(int pos) {
+                    return c.context(c.termCtxIds.get(pos));
+                }
+            };
+        }
+    }
+
+    private static final class Ctx2TTFView extends AbstractMap<ContextWindow, Integer> {
+        private final Columns c;
+
+        Ctx2TTFView(Columns c) {
+            this.c = c;
+        }
+
+        @Override
+        public int size() {
+            return c.ctxTTF.limit();
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return get(key) != null;
+        }
+
+        @Override
+        public Integer get(Object key) {
+            if (!(key instanceof ContextWindow))
+                return null;
+            ContextWindow ctx = (ContextWindow) key;
+            int ctxId = c.lookupContext(ctx.getDocSentenceKey(), ctx.getTokenSpanKey());
+            return ctxId == -1 ? null : c.ctxTTF.get(ctxId);
+        }
+
+        @Override
+        public Set<Entry<ContextWindow, Integer>> entrySet() {
+            return new AbstractSet<Entry<ContextWindow, Integer>>() {
+                @Override
+                public Iterator<Entry<ContextWindow, Integer>> iterator() {
+                    return new RowIterator<Entry<ContextWindow, Integer>>(0, c.ctxTTF.limit()) {
+                        @Override
+                        Entry<ContextWindow, Integer> get(int ctxId) {
+                            return new SimpleImmutableEntry<>(c.context(ctxId), c.ctxTTF.get(ctxId));
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return c.ctxTTF.limit();
+                }
+            };
+        }
+    }
+
+    private final class Ctx2TFICView extends AbstractMap<ContextWindow, Map<String, Integer>> {
+        private final Columns c;
+
+        Ctx2TFICView(Columns c) {
+            this.c = c;
+        }
+
+        @Override
+        public int size() {
+            return c.ctxTTF.limit();
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return get(key) != null;
+        }
+
+        @Override
+        public Map<String, Integer> get(Object key) {
+            if (!(key instanceof ContextWindow))
+                return null;
+            ContextWindow ctx = (ContextWindow) key;
+            int ctxId = c.lookupContext(ctx.getDocSentenceKey(), ctx.getTokenSpanKey());
+            return ctxId == -1 ? null : new TermsInContextView(c, ctxId);
+        }
+
+        @Override
+        public Set<Entry<ContextWindow, Map<String, Integer>>> entrySet() {
+            return new AbstractSet<Entry<ContextWindow, Map<String, Integer>>>() {
+                @Override
+                public Iterator<Entry<ContextWindow, Map<String, Integer>>> iterator() {
+                    return new RowIterator<Entry<ContextWindow, Map<String, Integer>>>(0, c.ctxTTF.limit()) {
+                        @Override
+                        Entry<ContextWindow, Map<String, Integer>> get(int ctxId) {
+                            return new SimpleImmutableEntry<>(c.context(ctxId),
+                                    new TermsInContextView(c, ctxId));
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return c.ctxTTF.limit();
+                }
+            };
+        }
+    }
+
+    private final class Term2CtxView extends AbstractMap<String, Set<ContextWindow>> {
+        private final Columns c;
+
+        Term2CtxView(Columns c) {
+            this.c = c;
+        }
+
+        @Override
+        public int size() {
+            return c.termCount;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return key instanceof String && lookupTerm(c, (String) key) != -1;
+        }
+
+        @Override
+        public Set<ContextWindow> get(Object key) {
+            if (!(key instanceof String))
+                return null;
+            int termId = lookupTerm(c, (String) key);
+            return termId == -1 ? null : new ContextsOfTermView(c, termId);
+        }
+
+        @Override
+        public Set<Entry<String, Set<ContextWindow>>> entrySet() {
+            return new AbstractSet<Entry<String, Set<ContextWindow>>>() {
+                @Override
+                public Iterator<Entry<String, Set<ContextWindow>>> iterator() {
+                    return new Iterator<Entry<String, Set<ContextWindow>>>() {
+                        private int termId = nextTerm(0);
+
+                        private int nextTerm(int from) {
+                            while (from < c.id2Term.length && c.id2Term[from] == null)
+                                from++;
+                            return from;
+                        }
+
+                        @Override
+                        public boolean hasNext() {
+                            return termId < c.id2Term.length;
+                        }
+
+                        @Override
+                        public Entry<String, Set<ContextWindow>> next() {
+                            if (termId >= c.id2Term.length)
+                                throw new NoSuchElementException();
+                            Entry<String, Set<ContextWindow>> e = new SimpleImmutableEntry<String, Set<ContextWindow>>(
+                                    c.id2Term[termId], new ContextsOfTermView(c, termId));
+                            termId = nextTerm(termId + 1);
+                            return e;
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return c.termCount;
+                }
+            };
+        }
+    }
 }
@@ -29,7 +29,8 @@ public class FrequencyCtxBasedCopier extends AbstractFeatureBuilder {
 
     @Override
     public AbstractFeature build() throws JATEException {
-        FrequencyCtxBased result = new FrequencyCtxBased();
+        //keyed as the source, so that its copy shares the term ids
+        FrequencyCtxBased result = new FrequencyCtxBased(source.getDictionary());
 
         LOG.info("Copying features using 1 core, filtering "+frequencyFeature.getMapTerm2TTF().size()+" terms.");
         Set<String> filteredTerms = new HashSet<>();
@@ -47,15 +48,21 @@ public class FrequencyCtxBasedCopier extends AbstractFeatureBuilder {
         count=0;
         int countContext=0;
         LOG.info("Complete filtering, copying for "+filteredTerms.size()+" terms.");
+        ContextFrequencyBuffer buffer = new ContextFrequencyBuffer(result);
         for(String ft: filteredTerms){
-            Set<ContextWindow> ctxx = source.getContexts(ft);
-            if(ctxx==null)
+            int termId = source.lookupTerm(ft);
+            if(termId==-1)
                 continue;//this is possible because candidate term may be incorrectly generated across context (e.g., sentence) boundaries
-            countContext+=ctxx.size();
-            for(ContextWindow ctx: ctxx){
-                int tfInCtx=source.getMapCtx2TFIC().get(ctx).get(ft);
-                result.increment(ctx,ft, tfInCtx);
-                result.increment(ctx,tfInCtx);
+            int resultTermId = result.indexTerm(ft);
+            int start = source.getTermContextsStart(termId), end = source.getTermContextsEnd(termId);
+            countContext+=end-start;
+            for(int pos=start; pos<end; pos++){
+                int ctx = source.getTermContextId(pos);
+                int tfInCtx = source.getTermContextFreq(pos);
+                long docSentenceKey = source.getContextDocSentenceKey(ctx);
+                long tokenSpanKey = source.getContextTokenSpanKey(ctx);
+                buffer.add(docSentenceKey, tokenSpanKey, resultTermId, tfInCtx);
+                buffer.add(docSentenceKey, tokenSpanKey, ContextFrequencyBuffer.CONTEXT_TOTAL, tfInCtx);
             }
 
             count++;
@@ -64,7 +71,9 @@ public class FrequencyCtxBasedCopier extends AbstractFeatureBuilder {
                 countContext=0;
             }
         }
+        buffer.flush();
         LOG.info("Complete copying features.");
+        offloadContexts(result, "ctx.copy", null);
 
         return result;
     }
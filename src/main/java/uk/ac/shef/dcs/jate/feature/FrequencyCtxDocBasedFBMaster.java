@@ -4,12 +4,16 @@ import org.apache.commons.lang.exception.ExceptionUtils;
 import org.apache.lucene.index.*;
 import org.apache.solr.search.SolrIndexSearcher;
 import uk.ac.shef.dcs.jate.JATEException;
+import uk.ac.shef.dcs.jate.JATEExecutors;
 import uk.ac.shef.dcs.jate.JATEProperties;
 import uk.ac.shef.dcs.jate.util.SolrUtil;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ForkJoinPool;
 import org.apache.log4j.Logger;
 
@@ -29,14 +33,29 @@ public class FrequencyCtxDocBasedFBMaster extends AbstractFeatureBuilder {
 
     @Override
     public AbstractFeature build() throws JATEException {
-        FrequencyCtxBased feature = new FrequencyCtxBased();
+        TermDictionary dictionary = termOrWord == 0 ? getTermDictionary() : null;
+        String featureName = termOrWord == 0 ? "ctx-doc-term" : "ctx-doc-word";
+        File snapshot = getSnapshotFile(featureName);
+        if (snapshot != null && snapshot.exists()) {
+            try {
+                FrequencyCtxBased feature = FrequencyCtxBased.load(snapshot, dictionary);
+                LOG.info("Loaded features from snapshot " + snapshot + ". Total contexts=" + feature.getNumContexts());
+                return feature;
+            } catch (IOException ioe) {
+                StringBuilder sb = new StringBuilder("Failed to load feature snapshot, features will be rebuilt: ");
+                sb.append(snapshot).append("\n").append(ExceptionUtils.getFullStackTrace(ioe));
+                LOG.warn(sb.toString());
+            }
+        }
+
+        FrequencyCtxBased feature = new FrequencyCtxBased(dictionary);
         try {
-            Terms info = SolrUtil.getTermVector(properties.getSolrFieldNameJATENGramInfo(), solrIndexSearcher);
-            Set<String> allLuceneTerms;
+            //candidates in index order, so that workers merge-join them with the n-gram field
+            List<String> allLuceneTerms;
             if (termOrWord == 0)
-                allLuceneTerms = getUniqueTerms();
+                allLuceneTerms = getTermDictionary().getTerms();
             else
-                allLuceneTerms = getUniqueWords();
+                allLuceneTerms = getSortedUniqueWords();
 
             //start workers
 
@@ -45,15 +64,32 @@ public class FrequencyCtxDocBasedFBMaster extends AbstractFeatureBuilder {
             int maxPerThread = allLuceneTerms.size() / cores;
             maxPerThread = getMaxPerThread(maxPerThread);
 
+            //one worker per segment, all segments in parallel
+            String ngramField = properties.getSolrFieldNameJATENGramInfo();
+            Set<String> found = ConcurrentHashMap.newKeySet();
+            List<FrequencyCtxDocBasedFBWorker> workers = new ArrayList<>();
+            for (LeafReaderContext leaf : getLeaves()) {
+                Terms info = SolrUtil.getTerms(ngramField, leaf);
+                if (info != null)
+                    workers.add(new FrequencyCtxDocBasedFBWorker(feature, allLuceneTerms, maxPerThread,
+                            info, leaf.docBase, leaf.reader().getLiveDocs(), found));
+            }
+            if (workers.isEmpty() && solrIndexSearcher.maxDoc() > 0)
+                throw new JATEException(String.format("Cannot find expected field: %s", ngramField));
+
             LOG.info("Beginning building features. Total terms=" + allLuceneTerms.size() + ", cpu cores=" +
-                    cores + ", max per core=" + maxPerThread);
-            FrequencyCtxDocBasedFBWorker worker = new
-                    FrequencyCtxDocBasedFBWorker(feature, properties, new ArrayList<>(allLuceneTerms),
-                    solrIndexSearcher, maxPerThread,
-                    info);
-            ForkJoinPool forkJoinPool = new ForkJoinPool(cores);
-            int total = forkJoinPool.invoke(worker);
-            StringBuilder sb = new StringBuilder("Complete building features. Total processed terms = " + total);
+                    cores + ", segments=" + workers.size() + ", max per core=" + maxPerThread);
+            ForkJoinPool forkJoinPool = JATEExecutors.getPool(cores);
+            invokeAll(forkJoinPool, workers);
+            for (String termStr : allLuceneTerms) {
+                if (found.contains(termStr))
+                    continue;
+                StringBuilder msg = new StringBuilder(termStr);
+                msg.append(" is a candidate term, but not indexed in the n-gram information field. It's score may be mis-computed.");
+                msg.append(" Reasons can be: different analysis chains for the two fields; cross-sentence-boundary MWEs");
+                LOG.warn(msg.toString());
+            }
+            StringBuilder sb = new StringBuilder("Complete building features. Total processed terms = " + found.size());
             sb.append("/").append(allLuceneTerms.size());
             LOG.info(sb.toString());
 
@@ -61,7 +97,9 @@ public class FrequencyCtxDocBasedFBMaster extends AbstractFeatureBuilder {
             StringBuilder sb = new StringBuilder("Failed to build features!");
             sb.append("\n").append(ExceptionUtils.getFullStackTrace(ioe));
             LOG.error(sb.toString());
+            throw new JATEException(sb.toString());
         }
+        offloadContexts(feature, featureName, snapshot);
         return feature;
     }
 
@@ -2,43 +2,49 @@ package uk.ac.shef.dcs.jate.feature;
 
 import org.apache.commons.lang.exception.ExceptionUtils;
 import org.apache.lucene.index.*;
-import org.apache.lucene.util.BytesRef;
-import org.apache.solr.search.SolrIndexSearcher;
-import uk.ac.shef.dcs.jate.JATEProperties;
+import org.apache.lucene.util.Bits;
 import uk.ac.shef.dcs.jate.JATERecursiveTaskWorker;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.Set;
 import org.apache.log4j.Logger;
 
 /**
- *
+ * Counts the frequencies of candidates in the documents of one index segment. Candidates must be in index order,
+ * they are merge-joined with the terms of the n-gram field, see {@link TermsMergeJoin}
  */
 public class FrequencyCtxDocBasedFBWorker extends JATERecursiveTaskWorker<String, Integer> {
 
 	private static final long serialVersionUID = 8978235926472578074L;
 	private static final Logger LOG = Logger.getLogger(FrequencyCtxDocBasedFBWorker.class.getName());
-    private JATEProperties properties;
-    private SolrIndexSearcher solrIndexSearcher;
     private Terms ngramInfo;
+    private int docBase;
+    private Bits liveDocs;
     private FrequencyCtxBased feature;
+    private Set<String> found;
 
-    FrequencyCtxDocBasedFBWorker(FrequencyCtxBased feature,
-                                 JATEProperties properties, List<String> luceneTerms, SolrIndexSearcher solrIndexSearcher,
+    /**
+     * @param ngramInfo terms of the n-gram field in the segment
+     * @param docBase doc base of the segment
+     * @param liveDocs live documents of the segment, null if it has no deletions
+     * @param found candidates found in any segment, shared by the workers of all segments
+     */
+    FrequencyCtxDocBasedFBWorker(FrequencyCtxBased feature, List<String> luceneTerms,
                                  int maxTasksPerWorker,
-                                 Terms ngramInfo) {
+                                 Terms ngramInfo, int docBase, Bits liveDocs, Set<String> found) {
         super(luceneTerms, maxTasksPerWorker);
         this.feature=feature;
-        this.properties = properties;
-        this.solrIndexSearcher = solrIndexSearcher;
         this.ngramInfo =ngramInfo;
+        this.docBase = docBase;
+        this.liveDocs = liveDocs;
+        this.found = found;
     }
 
     @Override
     protected JATERecursiveTaskWorker<String, Integer> createInstance(List<String> termSplits) {
-        return new FrequencyCtxDocBasedFBWorker(feature,
-                properties, termSplits, solrIndexSearcher, maxTasksPerThread,
-                ngramInfo);
+        return new FrequencyCtxDocBasedFBWorker(feature, termSplits, maxTasksPerThread,
+                ngramInfo, docBase, liveDocs, found);
     }
 
     @Override
@@ -53,27 +59,30 @@ public class FrequencyCtxDocBasedFBWorker extends JATERecursiveTaskWorker<String
     @Override
     protected Integer computeSingleWorker(List<String> terms) {
         int total=0;
-        TermsEnum ngramInfoIterator;
+        TermsMergeJoin join;
+        ContextFrequencyBuffer buffer = new ContextFrequencyBuffer(feature);
         try {
-            ngramInfoIterator = ngramInfo.iterator();
+            join = new TermsMergeJoin(ngramInfo);
+            PostingsEnum docEnum = null;
             for (String termStr : terms) {
+                if (join.isExhausted())
+                    break;
                 try {
-                    if (ngramInfoIterator.seekExact(new BytesRef(termStr.getBytes("UTF-8")))) {
-                        PostingsEnum docEnum = ngramInfoIterator.postings(null);
+                    //a term missing from this segment may be found in others, missing terms are reported by the master
+                    if (join.next(termStr)) {
+                        docEnum = join.termsEnum().postings(docEnum);
                         int doc = 0;
                         while ((doc = docEnum.nextDoc()) != PostingsEnum.NO_MORE_DOCS) {
+                            if (liveDocs != null && !liveDocs.get(doc))
+                                continue;
                             int tfid = docEnum.freq();  //tf in document
                             ContextWindow ctx = new ContextWindow();
-                            ctx.setDocId(doc);
-                            feature.increment(ctx, tfid);
-                            feature.increment(ctx, termStr, tfid);
+                            ctx.setDocId(docBase + doc);
+                            buffer.increment(ctx, tfid);
+                            buffer.increment(ctx, termStr, tfid);
                         }
+                        found.add(termStr);
                         total++;
-                    }else {
-                        StringBuilder msg = new StringBuilder(termStr);
-                        msg.append(" is a candidate term, but not indexed in the n-gram information field. It's score may be mis-computed.");
-                        msg.append(" Reasons can be: different analysis chains for the two fields; cross-sentence-boundary MWEs");
-                        LOG.warn(msg.toString());
                     }
                 } catch (IOException ioe) {
                     StringBuilder sb = new StringBuilder("Unable to build feature for candidate:");
@@ -87,6 +96,7 @@ public class FrequencyCtxDocBasedFBWorker extends JATERecursiveTaskWorker<String
             sb.append(ExceptionUtils.getFullStackTrace(e));
             LOG.error(sb.toString());
         }
+        buffer.flush();
         return total;
     }
 }
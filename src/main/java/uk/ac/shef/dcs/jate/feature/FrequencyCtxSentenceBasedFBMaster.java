@@ -6,10 +6,7 @@ import uk.ac.shef.dcs.jate.JATEException;
 import uk.ac.shef.dcs.jate.JATEProperties;
 
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Set;
-import java.util.concurrent.ForkJoinPool;
 import org.apache.log4j.Logger;
 
 public class FrequencyCtxSentenceBasedFBMaster extends AbstractFeatureBuilder {
@@ -25,38 +22,21 @@ public class FrequencyCtxSentenceBasedFBMaster extends AbstractFeatureBuilder {
 
     @Override
     public AbstractFeature build() throws JATEException {
-        FrequencyCtxBased feature = new FrequencyCtxBased();
-        List<Integer> allDocs = new ArrayList<>();
-        for (int i = 0; i < solrIndexSearcher.maxDoc(); i++) {
-            allDocs.add(i);
-        }
-
+        FrequencyCtxBased feature;
         try {
             Set<String> allCandidates;
-            if(termOrWord==0)
-                allCandidates=getUniqueTerms();
-            else
+            TermDictionary dictionary = null;
+            if(termOrWord==0) {
+                allCandidates = getUniqueTerms();
+                dictionary = getTermDictionary();
+            } else
                 allCandidates=getUniqueWords();
 
-
-            //start workers
-            int cores = properties.getMaxCPUCores();
-            cores = cores == 0 ? 1 : cores;
-            int maxPerThread = allDocs.size()/cores;
-            maxPerThread = getMaxPerThread(maxPerThread);
-
-            FrequencyCtxSentenceBasedFBWorker worker = new
-                    FrequencyCtxSentenceBasedFBWorker(feature, properties, allDocs, allCandidates,
-                    solrIndexSearcher, maxPerThread
-                    );
-            StringBuilder sb = new StringBuilder("Building features using cpu cores=");
-            sb.append(cores).append(", total docs=").append(allDocs.size()).append(", max per worker=")
-                    .append(maxPerThread);
-            LOG.info(sb.toString());
-            ForkJoinPool forkJoinPool = new ForkJoinPool(cores);
-            int total = forkJoinPool.invoke(worker);
-            sb = new StringBuilder("Complete building features. Total sentence ctx=");
-            sb.append(feature.getMapCtx2TTF().size()).append(", from total processed docs=").append(total);
+            DocumentSweep sweep = new DocumentSweep(solrIndexSearcher, properties);
+            feature = sweep.addSentenceContexts(allCandidates, dictionary);
+            int[] total = sweep.run();
+            StringBuilder sb = new StringBuilder("Complete building features. Total sentence ctx=");
+            sb.append(feature.getMapCtx2TTF().size()).append(", from total processed docs=").append(total[0]);
             LOG.info(sb.toString());
         } catch (IOException ioe) {
             StringBuilder sb = new StringBuilder("Failed to build features!");
@@ -64,15 +44,7 @@ public class FrequencyCtxSentenceBasedFBMaster extends AbstractFeatureBuilder {
             LOG.error(sb.toString());
             throw new JATEException(sb.toString());
         }
+        offloadContexts(feature, "ctx.sentence", null);
         return feature;
     }
-
-    private int getMaxPerThread(int maxPerThread) {
-        if(maxPerThread < MIN_SEQUENTIAL_THRESHOLD) {
-            maxPerThread = MIN_SEQUENTIAL_THRESHOLD;
-        } else if (maxPerThread > MAX_SEQUENTIAL_THRESHOLD) {
-            maxPerThread = MAX_SEQUENTIAL_THRESHOLD;
-        }
-        return maxPerThread;
-    }
 }
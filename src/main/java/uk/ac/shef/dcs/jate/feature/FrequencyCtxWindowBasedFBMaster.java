@@ -7,7 +7,6 @@ import uk.ac.shef.dcs.jate.JATEProperties;
 
 import java.io.IOException;
 import java.util.*;
-import java.util.concurrent.ForkJoinPool;
 import org.apache.log4j.Logger;
 
 /**
@@ -59,14 +58,14 @@ import org.apache.log4j.Logger;
  * </p>
  * @see ContextOverlap
  * @see CooccurrenceFBMaster
- * @see FrequencyCtxWindowBasedFBWorker
+ * @see DocumentSweep#addWindowContexts(Set, Set, int)
  */
 public class FrequencyCtxWindowBasedFBMaster extends AbstractFeatureBuilder {
     private static final Logger LOG = Logger.getLogger(FrequencyCtxWindowBasedFBMaster.class.getName());
 
     private int termOrWord; //0 means term; 1 means word
     private int window;
-    private Map<Integer, List<ContextWindow>> contextLookup;
+    private Set<ContextWindow> existingContextWindows;
 
     /**
      * @param solrIndexSearcher
@@ -86,54 +85,26 @@ public class FrequencyCtxWindowBasedFBMaster extends AbstractFeatureBuilder {
         super(solrIndexSearcher, properties);
         this.termOrWord = termOrWord;
         this.window = window;
-        if (existingContextWindows != null) {
-            contextLookup=new HashMap<>();
-            for (ContextWindow ctx : existingContextWindows) {
-                List<ContextWindow> container = contextLookup.get(ctx.getDocId());
-                if (container == null)
-                    container = new ArrayList<>();
-                container.add(ctx);
-                contextLookup.put(ctx.getDocId(), container);
-            }
-        }
+        this.existingContextWindows = existingContextWindows;
     }
 
     @Override
     public AbstractFeature build() throws JATEException {
-        FrequencyCtxBased feature = new FrequencyCtxBased();
-        List<Integer> allDocs = new ArrayList<>();
-        for (int i = 0; i < solrIndexSearcher.maxDoc(); i++) {
-            allDocs.add(i);
-        }
-
+        FrequencyCtxBased feature;
         try {
             Set<String> allCandidates;
-            if (termOrWord == 0)
+            TermDictionary dictionary = null;
+            if (termOrWord == 0) {
                 allCandidates = getUniqueTerms();
-            else
+                dictionary = getTermDictionary();
+            } else
                 allCandidates = getUniqueWords();
 
-
-            //start workers
-            int cores = properties.getMaxCPUCores();
-            cores = cores == 0 ? 1 : cores;
-            int maxPerThread = allDocs.size() / cores;
-            maxPerThread = getMaxPerThread(maxPerThread);
-
-            FrequencyCtxWindowBasedFBWorker worker = new
-                    FrequencyCtxWindowBasedFBWorker(feature, properties, allDocs, allCandidates,
-                    solrIndexSearcher,
-                    contextLookup,
-                    window, maxPerThread
-            );
-            StringBuilder sb = new StringBuilder("Building features using cpu cores=");
-            sb.append(cores).append(", total docs=").append(allDocs.size()).append(", max per worker=")
-                    .append(maxPerThread);
-            LOG.info(sb.toString());
-            ForkJoinPool forkJoinPool = new ForkJoinPool(cores);
-            int total = forkJoinPool.invoke(worker);
-            sb = new StringBuilder("Complete building features. Total sentence ctx=");
-            sb.append(feature.getMapCtx2TTF().size()).append(", from total processed docs=").append(total);
+            DocumentSweep sweep = new DocumentSweep(solrIndexSearcher, properties);
+            feature = sweep.addWindowContexts(allCandidates, existingContextWindows, window, dictionary);
+            int[] total = sweep.run();
+            StringBuilder sb = new StringBuilder("Complete building features. Total sentence ctx=");
+            sb.append(feature.getMapCtx2TTF().size()).append(", from total processed docs=").append(total[0]);
             LOG.info(sb.toString());
         } catch (IOException ioe) {
             StringBuilder sb = new StringBuilder("Failed to build features!");
@@ -141,15 +112,7 @@ public class FrequencyCtxWindowBasedFBMaster extends AbstractFeatureBuilder {
             LOG.error(sb.toString());
             throw new JATEException(sb.toString());
         }
+        offloadContexts(feature, "ctx.window", null);
         return feature;
     }
-
-    private int getMaxPerThread(int maxPerThread) {
-        if (maxPerThread < MIN_SEQUENTIAL_THRESHOLD) {
-            maxPerThread = MIN_SEQUENTIAL_THRESHOLD;
-        } else if(maxPerThread > MAX_SEQUENTIAL_THRESHOLD) {
-            maxPerThread = MAX_SEQUENTIAL_THRESHOLD;
-        }
-        return maxPerThread;
-    }
 }
@@ -1,42 +1,102 @@
 package uk.ac.shef.dcs.jate.feature;
+import java.io.File;
+import java.io.IOException;
+import java.nio.IntBuffer;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.NoSuchElementException;
+import java.util.Set;
 
 /**
  * A feature store that contains information of term distributions over a corpus. It contains following information:
  * <br>- total number of occurrences of all terms found in the corpus, which is the sum of occurrences of each term
  * <br>- number of occurrences of each term found in the corpus
+ * <br>- number of occurrences of each term in each document it is found in
+ *
+ * <p>Terms are assigned dense int ids on registration and all statistics are held in primitive columns indexed
+ * by those ids. Per-document frequencies are kept in compressed sparse row (CSR) form: the documents of term
+ * {@code id} are {@code docIds[docOffsets[id]..docOffsets[id+1])} in ascending order, with their frequencies
+ * at the same positions of {@code docFreqs}. Builders stage postings per term (see
+ * {@link #setPostings(int, int, int[], int[], int)}) and the store compacts them into CSR on first read.</p>
+ *
+ * <p>Algorithms that only need the total and document frequency of terms can use a {@link FrequencyTermStatistics}
+ * instead, built without reading postings.</p>
+ *
+ * <p>A built feature can be moved to a memory-mapped file with {@link #offload(File, boolean)}, after which term ids are
+ * ranks in a sorted term dictionary and the columns are read from the file.</p>
  *
  * @author <a href="mailto:z.zhang@dcs.shef.ac.uk">Ziqi Zhang</a>
  */
 
 
 
-public class FrequencyTermBased extends AbstractFeature {
+public class FrequencyTermBased extends TermStatistics {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    //columns of an offloaded feature
+    private static final String COLUMN_TTF = "ttf";
+    private static final String COLUMN_DOC_OFFSETS = "doc.offsets";
+    private static final String COLUMN_DOC_IDS = "doc.ids";
+    private static final String COLUMN_DOC_FREQS = "doc.freqs";
+    private static final String COLUMN_COUNTED = "counted";
+    private static final String COLUMN_TOTAL_DOCS = "total.docs";
+
+    //term and its dense id; the id indexes every column below
+    private final Map<String, Integer> term2Id = new HashMap<>();
+    private String[] id2Term = new String[INITIAL_CAPACITY];
+    private int numTerms = 0;
+    //term id and its total freq in corpus
+    private int[] ttf = new int[INITIAL_CAPACITY];
+    //ids of terms that have been counted, i.e., found in the corpus
+    private BitSet counted = new BitSet();
+
+    //postings staged by builders, per term id, before compaction
+    private int[][] stagedDocs = new int[INITIAL_CAPACITY][];
+    private int[][] stagedFreqs = new int[INITIAL_CAPACITY][];
+    private volatile boolean frozen = true;
+
+    //term id and its freq in each document, stored in CSR form
+    private int[] docOffsets = new int[1];
+    private int[] docIds = new int[0];
+    private int[] docFreqs = new int[0];
+
+    //set by offload(File, boolean), the term dictionary and columns are then read from this file and the arrays are dropped
+    private MappedFeatureFile mapped;
+    private IntBuffer mappedTTF;
+    private IntBuffer mappedDocOffsets;
+    private IntBuffer mappedDocIds;
+    private IntBuffer mappedDocFreqs;
 
-    //term and its total freq in corpus
-    private Map<String, Integer> term2TTF = new ConcurrentHashMap<>();
-    //term and its freq in each document, stored as a map
-    private Map<String, Map<Integer, Integer>> term2FID = new ConcurrentHashMap<>();
     private int corpusTotal = 0;
     private int totalDocs=0;
 
     protected FrequencyTermBased() {
     }
 
+    @Override
     public Map<String, Integer> getMapTerm2TTF(){
-        return term2TTF;
+        ensureFrozen();
+        return new TermTTFView();
     }
 
+    @Override
     public synchronized int getCorpusTotal() {
         if(corpusTotal ==0){
-            for(int i: term2TTF.values())
-                corpusTotal +=i;
+            for(int i=0; i<numTerms; i++)
+                corpusTotal +=getTTF(i);
         }
         return corpusTotal;
     }
 
+    @Override
     public int getTotalDocs(){
         return totalDocs;
     }
@@ -45,21 +105,48 @@ public class FrequencyTermBased extends AbstractFeature {
         this.totalDocs=totalDocs;
     }
 
+    /**
+     * @param term term string
+     * @return the id of the term, or -1 if the term has not been registered
+     */
+    public int getTermId(String term) {
+        if (mapped != null)
+            return mapped.lookupTerm(term);
+        Integer id = term2Id.get(term);
+        return id == null ? -1 : id;
+    }
+
+    public String getTerm(int termId) {
+        return mapped != null ? mapped.getTerm(termId) : id2Term[termId];
+    }
+
+    /**
+     * @return number of registered terms, ids are in [0, size)
+     */
+    public int getNumTerms() {
+        return numTerms;
+    }
+
+    @Override
     public int getTTF(String term){
-        Integer freq = term2TTF.get(term);
-        if(freq==null)
-            freq=0;
-        return freq;
+        int id = getTermId(term);
+        return id == -1 ? 0 : getTTF(id);
+    }
+
+    public int getTTF(int termId) {
+        return mapped != null ? mappedTTF.get(termId) : ttf[termId];
     }
+
     /**
-     * Get the normalised frequency of a term in the corpus, which is the number of occurrences of that term as a fraction
-     * of the total number of occurrences of all terms in the corpus.
+     * Register terms so that they are assigned ids, before builders populate the store concurrently by id.
      *
-     * @param term term string
-     * @return double  total term frequency
+     * @param terms term strings
      */
-    public double getTTFNorm(String term) {
-        return (double) getTTF(term) / ((double) getCorpusTotal() + 1);
+    protected synchronized void registerTerms(Collection<String> terms) {
+        checkNotOffloaded();
+        ensureCapacity(numTerms + terms.size());
+        for (String t : terms)
+            lookupOrRegister(t);
     }
 
     /**
@@ -68,26 +155,450 @@ public class FrequencyTermBased extends AbstractFeature {
      * @param term  term string
      * @param i  frequency count
      */
-    protected void increment(String term, int i) {
-        Integer freq = term2TTF.get(term);
-        if(freq==null)
-            freq=0;
-        freq+=i;
-        term2TTF.put(term, freq);
+    protected synchronized void increment(String term, int i) {
+        checkNotOffloaded();
+        int id = lookupOrRegister(term);
+        ttf[id] += i;
+        counted.set(id);
+        corpusTotal = 0;
+    }
+
+    /**
+     * Set the total frequency and the per-document frequencies of a registered term. Workers may call this
+     * concurrently for distinct term ids. The first <code>length</code> elements of the arrays are copied.
+     *
+     * @param termId id of the term as returned by {@link #getTermId(String)}
+     * @param totalFreq total frequency of the term in the corpus
+     * @param docs lucene document ids in ascending order
+     * @param freqs frequency of the term in each of the documents
+     * @param length number of documents
+     */
+    protected void setPostings(int termId, int totalFreq, int[] docs, int[] freqs, int length) {
+        ttf[termId] = totalFreq;
+        stagedDocs[termId] = Arrays.copyOf(docs, length);
+        stagedFreqs[termId] = Arrays.copyOf(freqs, length);
+        frozen = false;
+    }
+
+    /**
+     * Set the postings of registered terms from the postings collected in each index segment. The postings of a
+     * term are concatenated in the order of the segments, which must therefore be ordered by their doc base.
+     *
+     * @param segments postings of each segment, with document ids of the searcher
+     */
+    protected void setPostings(List<SegmentPostings> segments) {
+        for (int id = 0; id < numTerms; id++) {
+            int totalFreq = 0, length = 0, found = 0;
+            SegmentPostings last = null;
+            for (SegmentPostings s : segments) {
+                if (id < s.docs.length && s.docs[id] != null) {
+                    totalFreq += s.ttf[id];
+                    length += s.docs[id].length;
+                    found++;
+                    last = s;
+                }
+            }
+            if (found == 0)
+                continue;
+            ttf[id] = totalFreq;
+            if (found == 1) {
+                stagedDocs[id] = last.docs[id];
+                stagedFreqs[id] = last.freqs[id];
+            } else {
+                int[] docs = new int[length];
+                int[] freqs = new int[length];
+                int pos = 0;
+                for (SegmentPostings s : segments) {
+                    if (id < s.docs.length && s.docs[id] != null) {
+                        System.arraycopy(s.docs[id], 0, docs, pos, s.docs[id].length);
+                        System.arraycopy(s.freqs[id], 0, freqs, pos, s.freqs[id].length);
+                        pos += s.docs[id].length;
+                    }
+                }
+                stagedDocs[id] = docs;
+                stagedFreqs[id] = freqs;
+            }
+            frozen = false;
+        }
     }
 
+    /**
+     * Postings of registered terms collected from one index segment. Workers of the segment may fill it
+     * concurrently for distinct term ids.
+     */
+    static final class SegmentPostings {
+        private final int[] ttf;
+        private final int[][] docs;
+        private final int[][] freqs;
+
+        SegmentPostings(int numTerms) {
+            ttf = new int[numTerms];
+            docs = new int[numTerms][];
+            freqs = new int[numTerms][];
+        }
+
+        /**
+         * @param docs document ids of the searcher, i.e., with the doc base of the segment added, in ascending order
+         */
+        void set(int termId, int totalFreq, int[] docs, int[] freqs, int length) {
+            this.ttf[termId] = totalFreq;
+            this.docs[termId] = Arrays.copyOf(docs, length);
+            this.freqs[termId] = Arrays.copyOf(freqs, length);
+        }
+    }
+
+    /**
+     * Compact staged postings into the CSR columns. Called automatically on read; builders may call it once
+     * they finish.
+     */
+    protected synchronized void freeze() {
+        if (frozen)
+            return;
+        int[] offsets = new int[numTerms + 1];
+        for (int id = 0; id < numTerms; id++) {
+            int[] staged = stagedDocs[id];
+            int len = staged != null ? staged.length : docFrequency(id);
+            offsets[id + 1] = offsets[id] + len;
+        }
+        int[] ids = new int[offsets[numTerms]];
+        int[] freqs = new int[ids.length];
+        for (int id = 0; id < numTerms; id++) {
+            if (stagedDocs[id] != null) {
+                System.arraycopy(stagedDocs[id], 0, ids, offsets[id], stagedDocs[id].length);
+                System.arraycopy(stagedFreqs[id], 0, freqs, offsets[id], stagedFreqs[id].length);
+                stagedDocs[id] = null;
+                stagedFreqs[id] = null;
+                counted.set(id);
+            } else if (id + 1 < docOffsets.length) {
+                System.arraycopy(docIds, docOffsets[id], ids, offsets[id], docFrequency(id));
+                System.arraycopy(docFreqs, docOffsets[id], freqs, offsets[id], docFrequency(id));
+            }
+        }
+        docOffsets = offsets;
+        docIds = ids;
+        docFreqs = freqs;
+        corpusTotal = 0;
+        frozen = true;
+    }
 
+    @Override
+    public int getDocFrequency(String term) {
+        int id = getTermId(term);
+        if (id == -1)
+            return 0;
+        ensureFrozen();
+        return docFrequency(id);
+    }
 
-    protected void incrementTermFrequencyInDocument(String term, int luceneDocId, int freq){
-        Map<Integer, Integer> freqMap = term2FID.get(term);
-        if(freqMap==null)
-            freqMap = new HashMap<>();
-        freqMap.put(luceneDocId, freq);
-        term2FID.put(term, freqMap);
+    public int getDocFrequency(int termId) {
+        ensureFrozen();
+        return docFrequency(termId);
     }
 
+    /**
+     * @param term term string
+     * @return a read-only view of lucene document ids and the frequency of the term in each document, or null if
+     * the term is not found in any document
+     */
     public Map<Integer, Integer> getTermFrequencyInDocument(String term){
-        return term2FID.get(term);
+        int id = getTermId(term);
+        if (id == -1)
+            return null;
+        ensureFrozen();
+        if (docFrequency(id) == 0)
+            return null;
+        if (mapped != null)
+            return new TermDocFrequencyView(mappedDocIds, mappedDocFreqs, mappedDocOffsets.get(id),
+                    mappedDocOffsets.get(id + 1));
+        return new TermDocFrequencyView(IntBuffer.wrap(docIds), IntBuffer.wrap(docFreqs), docOffsets[id],
+                docOffsets[id + 1]);
     }
 
+    /**
+     * Move the term dictionary and columns of this feature to a memory-mapped file, and drop them from heap. Term
+     * ids change to the ranks of the terms in UTF-8 byte order. The feature can not be updated afterwards.
+     *
+     * @param file      file to write, which must stay in place while the feature is used
+     * @param temporary true if the file is deleted when the feature is {@link #release() released} or no longer
+     *                  reachable; false for a file kept for later use, e.g., a snapshot
+     * @throws IOException
+     */
+    protected synchronized void offload(File file, boolean temporary) throws IOException {
+        checkNotOffloaded();
+        freeze();
+        int[] order = MappedFeatureFile.sortedOrder(id2Term, numTerms);
+        try (MappedFeatureFile.Writer writer = new MappedFeatureFile.Writer(file)) {
+            writer.writeTerms(id2Term, order);
+
+            writer.beginColumn(COLUMN_TTF, MappedFeatureFile.TYPE_INT);
+            for (int id : order)
+                writer.writeInt(ttf[id]);
+            writer.endColumn();
+
+            writer.beginColumn(COLUMN_DOC_OFFSETS, MappedFeatureFile.TYPE_INT);
+            int offset = 0;
+            writer.writeInt(offset);
+            for (int id : order) {
+                offset += docFrequency(id);
+                writer.writeInt(offset);
+            }
+            writer.endColumn();
+
+            writer.beginColumn(COLUMN_DOC_IDS, MappedFeatureFile.TYPE_INT);
+            for (int id : order) {
+                //terms registered without postings have no offsets
+                int start = docFrequency(id) > 0 ? docOffsets[id] : 0;
+                for (int pos = start; pos < start + docFrequency(id); pos++)
+                    writer.writeInt(docIds[pos]);
+            }
+            writer.endColumn();
+
+            writer.beginColumn(COLUMN_DOC_FREQS, MappedFeatureFile.TYPE_INT);
+            for (int id : order) {
+                //terms registered without postings have no offsets
+                int start = docFrequency(id) > 0 ? docOffsets[id] : 0;
+                for (int pos = start; pos < start + docFrequency(id); pos++)
+                    writer.writeInt(docFreqs[pos]);
+            }
+            writer.endColumn();
+
+            writer.beginColumn(COLUMN_COUNTED, MappedFeatureFile.TYPE_INT);
+            for (int rank = 0; rank < order.length; rank++) {
+                if (counted.get(order[rank]))
+                    writer.writeInt(rank);
+            }
+            writer.endColumn();
+
+            writer.beginColumn(COLUMN_TOTAL_DOCS, MappedFeatureFile.TYPE_INT);
+            writer.writeInt(totalDocs);
+            writer.endColumn();
+        }
+
+        attach(temporary ? MappedFeatureFile.openTemporary(file) : MappedFeatureFile.open(file));
+    }
+
+    /**
+     * Load a feature from a file written by {@link #offload(File, boolean)}. The columns are read from the mapped file.
+     *
+     * @param file feature file, which must stay in place while the feature is used
+     * @return FrequencyTermBased feature
+     * @throws IOException if the file can not be read or is not a FrequencyTermBased feature file
+     */
+    protected static FrequencyTermBased load(File file) throws IOException {
+        MappedFeatureFile f = MappedFeatureFile.open(file);
+        for (String column : new String[]{COLUMN_TTF, COLUMN_DOC_OFFSETS, COLUMN_DOC_IDS, COLUMN_DOC_FREQS,
+                COLUMN_COUNTED, COLUMN_TOTAL_DOCS}) {
+            if (!f.hasColumn(column))
+                throw new IOException("Not a " + FrequencyTermBased.class.getSimpleName() + " feature file: " + file);
+        }
+        FrequencyTermBased feature = new FrequencyTermBased();
+        synchronized (feature) {
+            feature.attach(f);
+        }
+        return feature;
+    }
+
+    //switch reads to the mapped file and drop the arrays
+    private void attach(MappedFeatureFile f) {
+        mappedTTF = f.getInts(COLUMN_TTF);
+        mappedDocOffsets = f.getInts(COLUMN_DOC_OFFSETS);
+        mappedDocIds = f.getInts(COLUMN_DOC_IDS);
+        mappedDocFreqs = f.getInts(COLUMN_DOC_FREQS);
+        IntBuffer countedIds = f.getInts(COLUMN_COUNTED);
+        BitSet mappedCounted = new BitSet(f.getNumTerms());
+        for (int i = 0; i < countedIds.limit(); i++)
+            mappedCounted.set(countedIds.get(i));
+        counted = mappedCounted;
+        numTerms = f.getNumTerms();
+        totalDocs = f.getInts(COLUMN_TOTAL_DOCS).get(0);
+        corpusTotal = 0;
+        mapped = f;
+
+        term2Id.clear();
+        id2Term = null;
+        ttf = null;
+        stagedDocs = null;
+        stagedFreqs = null;
+        docOffsets = null;
+        docIds = null;
+        docFreqs = null;
+    }
+
+    @Override
+    public synchronized void release() {
+        if (mapped != null)
+            mapped.delete();
+    }
+
+    private void checkNotOffloaded() {
+        if (mapped != null)
+            throw new IllegalStateException("Feature is offloaded to " + mapped.getFile() + " and can not be updated");
+    }
+
+    private void ensureFrozen() {
+        //readers only take the lock while there are staged postings
+        if (!frozen)
+            freeze();
+    }
+
+    private int docFrequency(int id) {
+        if (mapped != null)
+            return mappedDocOffsets.get(id + 1) - mappedDocOffsets.get(id);
+        return id + 1 < docOffsets.length ? docOffsets[id + 1] - docOffsets[id] : 0;
+    }
+
+    private int lookupOrRegister(String term) {
+        Integer id = term2Id.get(term);
+        if (id != null)
+            return id;
+        ensureCapacity(numTerms + 1);
+        id2Term[numTerms] = term;
+        term2Id.put(term, numTerms);
+        return numTerms++;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= id2Term.length)
+            return;
+        int newCapacity = Math.max(capacity, id2Term.length + (id2Term.length >> 1));
+        id2Term = Arrays.copyOf(id2Term, newCapacity);
+        ttf = Arrays.copyOf(ttf, newCapacity);
+        stagedDocs = Arrays.copyOf(stagedDocs, newCapacity);
+        stagedFreqs = Arrays.copyOf(stagedFreqs, newCapacity);
+    }
+
+    /**
+     * Map view over the postings of a single term, backed by a slice of the CSR columns
+     */
+    private static final class TermDocFrequencyView extends AbstractMap<Integer, Integer> {
+        private final int start;
+        private final int end;
+        private final IntBuffer ids;
+        private final IntBuffer freqs;
+
+        private TermDocFrequencyView(IntBuffer ids, IntBuffer freqs, int start, int end) {
+            this.ids = ids;
+            this.freqs = freqs;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public int size() {
+            return end - start;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return key instanceof Integer && indexOf((Integer) key) >= 0;
+        }
+
+        @Override
+        public Integer get(Object key) {
+            if (!(key instanceof Integer))
+                return null;
+            int pos = indexOf((Integer) key);
+            return pos < 0 ? null : freqs.get(pos);
+        }
+
+        private int indexOf(int docId) {
+            int low = start, high = end - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int id = ids.get(mid);
+                if (id < docId)
+                    low = mid + 1;
+                else if (id > docId)
+                    high = mid - 1;
+                else
+                    return mid;
+            }
+            return -1;
+        }
+
+        @Override
+        public Set<Entry<Integer, Integer>> entrySet() {
+            return new AbstractSet<Entry<Integer, Integer>>() {
+                @Override
+                public Iterator<Entry<Integer, Integer>> iterator() {
+                    return new Iterator<Entry<Integer, Integer>>() {
+                        private int pos = start;
+
+                        @Override
+                        public boolean hasNext() {
+                            return pos < end;
+                        }
+
+                        @Override
+                        public Entry<Integer, Integer> next() {
+                            if (pos >= end)
+                                throw new NoSuchElementException();
+                            Entry<Integer, Integer> e = new SimpleImmutableEntry<>(ids.get(pos), freqs.get(pos));
+                            pos++;
+                            return e;
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return end - start;
+                }
+            };
+        }
+    }
+
+    /**
+     * Map view over the terms found in the corpus and the TTF column
+     */
+    private final class TermTTFView extends AbstractMap<String, Integer> {
+        @Override
+        public int size() {
+            return counted.cardinality();
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return get(key) != null;
+        }
+
+        @Override
+        public Integer get(Object key) {
+            if (!(key instanceof String))
+                return null;
+            int id = getTermId((String) key);
+            return id == -1 || !counted.get(id) ? null : getTTF(id);
+        }
+
+        @Override
+        public Set<Entry<String, Integer>> entrySet() {
+            return new AbstractSet<Entry<String, Integer>>() {
+                @Override
+                public Iterator<Entry<String, Integer>> iterator() {
+                    return new Iterator<Entry<String, Integer>>() {
+                        private int next = counted.nextSetBit(0);
+
+                        @Override
+                        public boolean hasNext() {
+                            return next >= 0;
+                        }
+
+                        @Override
+                        public Entry<String, Integer> next() {
+                            if (next < 0)
+                                throw new NoSuchElementException();
+                            Entry<String, Integer> e = new SimpleImmutableEntry<>(getTerm(next), getTTF(next));
+                            next = counted.nextSetBit(next + 1);
+                            return e;
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return counted.cardinality();
+                }
+            };
+        }
+    }
 }
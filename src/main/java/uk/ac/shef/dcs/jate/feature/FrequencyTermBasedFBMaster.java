@@ -4,12 +4,16 @@ import org.apache.commons.lang.exception.ExceptionUtils;
 import org.apache.lucene.index.*;
 import org.apache.solr.search.SolrIndexSearcher;
 import uk.ac.shef.dcs.jate.JATEException;
+import uk.ac.shef.dcs.jate.JATEExecutors;
 import uk.ac.shef.dcs.jate.JATEProperties;
+import uk.ac.shef.dcs.jate.JATERecursiveTaskWorker;
 import uk.ac.shef.dcs.jate.util.SolrUtil;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Set;
+import java.util.Collection;
+import java.util.List;
 import java.util.concurrent.ForkJoinPool;
 import org.apache.log4j.Logger;
 
@@ -21,47 +25,150 @@ public class FrequencyTermBasedFBMaster extends AbstractFeatureBuilder {
     private static final Logger LOG = Logger.getLogger(FrequencyTermBasedFBMaster.class.getName());
 
     private int termOrWord; //0 means term; 1 means word
+    private boolean statisticsOnly;
     public final static Integer FEATURE_TYPE_TERM = 0;
+    public final static Integer FEATURE_TYPE_WORD = 1;
     public final static Integer DEFAULT_CPU_CORES = 1;
 
     public FrequencyTermBasedFBMaster(SolrIndexSearcher solrIndexSearcher, JATEProperties properties,
                                       int termOrWord) {
+        this(solrIndexSearcher, properties, termOrWord, false);
+    }
+
+    /**
+     * @param statisticsOnly if true, build a {@link TermStatistics} instead of a {@link FrequencyTermBased}, from the
+     *                       total and document frequencies recorded by the index, without reading postings.
+     *                       This is enough for algorithms that use only those, e.g., TTF, ATTF, TTF-IDF and RIDF
+     */
+    public FrequencyTermBasedFBMaster(SolrIndexSearcher solrIndexSearcher, JATEProperties properties,
+                                      int termOrWord, boolean statisticsOnly) {
         super(solrIndexSearcher, properties);
         this.termOrWord = termOrWord;
+        this.statisticsOnly = statisticsOnly;
     }
 
     @Override
     public AbstractFeature build() throws JATEException {
-        FrequencyTermBased feature = new FrequencyTermBased();
-        feature.setTotalDocs((Integer) solrIndexSearcher.getStatistics().get("numDocs"));
+        String featureName = termOrWord == FEATURE_TYPE_TERM ? "ttf-term" : "ttf-word";
+        if (statisticsOnly)
+            featureName += "-stats";
+        File snapshot = getSnapshotFile(featureName);
+        if (snapshot != null && snapshot.exists()) {
+            try {
+                if (statisticsOnly) {
+                    FrequencyTermStatistics statistics = FrequencyTermStatistics.load(snapshot);
+                    LOG.info("Loaded features from snapshot " + snapshot + ". Total=" + statistics.getNumTerms());
+                    return statistics;
+                }
+                FrequencyTermBased feature = FrequencyTermBased.load(snapshot);
+                LOG.info("Loaded features from snapshot " + snapshot + ". Total=" + feature.getNumTerms());
+                return feature;
+            } catch (IOException ioe) {
+                StringBuilder sb = new StringBuilder("Failed to load feature snapshot, features will be rebuilt: ");
+                sb.append(snapshot).append("\n").append(ExceptionUtils.getFullStackTrace(ioe));
+                LOG.warn(sb.toString());
+            }
+        }
+
+        int totalDocs = (Integer) solrIndexSearcher.getStatistics().get("numDocs");
+        FrequencyTermBased feature = null;
+        FrequencyTermStatistics statistics = null;
 
         try {
-            Terms ngramInfo = SolrUtil.getTermVector(properties.getSolrFieldNameJATENGramInfo(), solrIndexSearcher);
-            Set<String> all;
+            Collection<String> all;
             if (termOrWord == FEATURE_TYPE_TERM)
-                all = getUniqueTerms();
+                all = getTermDictionary().getTerms();
             else
-                all = getUniqueWords();
+                all = getSortedUniqueWords();
+            //assign term ids up front so that workers can fill the store by id without locking. Candidate terms
+            //are registered in dictionary order, so their ids are their TermDictionary ordinals
+            if (statisticsOnly) {
+                statistics = new FrequencyTermStatistics(all, totalDocs);
+            } else {
+                feature = new FrequencyTermBased();
+                feature.setTotalDocs(totalDocs);
+                feature.registerTerms(all);
+            }
             //start workers
             int cores = properties.getMaxCPUCores();
             cores = (cores == 0) ? DEFAULT_CPU_CORES : cores;
             int maxPerThread = all.size() / cores;
             maxPerThread = getMaxPerThread(maxPerThread);
 
-            StringBuilder sb = new StringBuilder("Building features using cpu cores=");
-            sb.append(cores).append(", total=").append(all.size()).append(", max per worker=")
-                    .append(maxPerThread);
+            //one worker per segment, all segments in parallel; their postings are merged at the end. Candidates are
+            //in index order, so that workers merge-join them with the n-gram field
+            String ngramField = properties.getSolrFieldNameJATENGramInfo();
+            List<String> allTerms = new ArrayList<>(all);
+            List<FrequencyTermBased.SegmentPostings> segments = new ArrayList<>();
+            List<FrequencyTermStatistics.SegmentStatistics> segmentStatistics = new ArrayList<>();
+            List<JATERecursiveTaskWorker<String, int[]>> workers = new ArrayList<>();
+            for (LeafReaderContext leaf : getLeaves()) {
+                Terms ngramInfo = SolrUtil.getTerms(ngramField, leaf);
+                if (ngramInfo == null)
+                    continue;
+                if (statisticsOnly) {
+                    FrequencyTermStatistics.SegmentStatistics segment =
+                            new FrequencyTermStatistics.SegmentStatistics(statistics.getNumTerms());
+                    segmentStatistics.add(segment);
+                    workers.add(new FrequencyTermStatisticsFBWorker(allTerms, statistics, segment, maxPerThread,
+                            ngramInfo, leaf.reader().getLiveDocs()));
+                } else {
+                    FrequencyTermBased.SegmentPostings postings =
+                            new FrequencyTermBased.SegmentPostings(feature.getNumTerms());
+                    segments.add(postings);
+                    workers.add(new FrequencyTermBasedFBWorker(allTerms, feature, postings, maxPerThread,
+                            ngramInfo, leaf.docBase, leaf.reader().getLiveDocs()));
+                }
+            }
+            if (workers.isEmpty() && solrIndexSearcher.maxDoc() > 0)
+                throw new JATEException(String.format("Cannot find expected field: %s", ngramField));
+
+            StringBuilder sb = new StringBuilder(statisticsOnly ? "Building statistics-only features using cpu cores=" :
+                    "Building features using cpu cores=");
+            sb.append(cores).append(", total=").append(all.size()).append(", segments=").append(workers.size())
+                    .append(", max per worker=").append(maxPerThread);
             LOG.info(sb.toString());
-            FrequencyTermBasedFBWorker worker = new
-                    FrequencyTermBasedFBWorker(properties, new ArrayList<>(all),
-                    solrIndexSearcher, feature, maxPerThread,
-                    ngramInfo);
-            ForkJoinPool forkJoinPool = new ForkJoinPool(cores);
-            int[] total = forkJoinPool.invoke(worker);
+            ForkJoinPool forkJoinPool = JATEExecutors.getPool(cores);
+            invokeAll(forkJoinPool, workers);
+            if (statisticsOnly) {
+                statistics.setStatistics(segmentStatistics);
+            } else {
+                feature.setPostings(segments);
+                feature.freeze();
+            }
+
+            int success = 0;
+            for (String term : allTerms) {
+                if ((statisticsOnly ? statistics.getTTF(term) : feature.getTTF(term)) > 0) {
+                    success++;
+                    continue;
+                }
+                String warning = String.format("'%s'  is a candidate term, but not indexed in the n-gram " +
+                        "information field. It's score may be mis-computed. You may have used different text " +
+                        "analysis process (e.g., different tokenizers, different analysis order, limited " +
+                        "n-gram range) for the text-2-candidate-term and text-2-ngram fields.) ", term);
+                LOG.warn(warning);
+            }
             sb = new StringBuilder("Complete building features. Total=");
-            sb.append(total[1]).append(" success=").append(total[0]);
+            sb.append(all.size()).append(" success=").append(success);
             LOG.info(sb.toString());
 
+            //a snapshot is a feature file that is kept
+            File storeFile = snapshot != null ? snapshot : newFeatureStoreFile(featureName);
+            if (storeFile != null) {
+                try {
+                    if (statisticsOnly)
+                        statistics.offload(storeFile, snapshot == null);
+                    else
+                        feature.offload(storeFile, snapshot == null);
+                } catch (IOException ioe) {
+                    if (snapshot == null)
+                        storeFile.delete();
+                    throw ioe;
+                }
+                LOG.info("Feature offloaded to " + storeFile);
+            }
+
 
         } catch (IOException ioe) {
             StringBuilder sb = new StringBuilder("Failed to build features!");
@@ -69,7 +176,7 @@ public class FrequencyTermBasedFBMaster extends AbstractFeatureBuilder {
             LOG.error(sb.toString());
             throw new JATEException(sb.toString());
         }
-        return feature;
+        return statisticsOnly ? statistics : feature;
     }
 
     private int getMaxPerThread(int maxPerThread) {
@@ -2,38 +2,49 @@ package uk.ac.shef.dcs.jate.feature;
 
 import org.apache.commons.lang.exception.ExceptionUtils;
 import org.apache.lucene.index.*;
-import org.apache.lucene.util.BytesRef;
-import org.apache.solr.search.SolrIndexSearcher;
-import uk.ac.shef.dcs.jate.JATEProperties;
+import org.apache.lucene.util.Bits;
 import uk.ac.shef.dcs.jate.JATERecursiveTaskWorker;
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.List;
 import org.apache.log4j.Logger;
 
+/**
+ * Collects the postings of candidate terms in one index segment. Candidate terms must be in index order, they are
+ * merge-joined with the terms of the n-gram field, see {@link TermsMergeJoin}
+ */
 class FrequencyTermBasedFBWorker extends JATERecursiveTaskWorker<String, int[]> {
 
 	private static final long serialVersionUID = -5304721004951728503L;
 	private static final Logger LOG = Logger.getLogger(FrequencyTermBasedFBWorker.class.getName());
-    private JATEProperties properties;
-    private SolrIndexSearcher solrIndexSearcher;
+    private static final int INITIAL_BUFFER_SIZE = 64;
     private FrequencyTermBased feature;
+    private FrequencyTermBased.SegmentPostings postings;
     private Terms ngramInfo;
+    private int docBase;
+    private Bits liveDocs;
 
-    FrequencyTermBasedFBWorker(JATEProperties properties, List<String> luceneTerms, SolrIndexSearcher solrIndexSearcher,
-                               FrequencyTermBased feature, int maxTasksPerWorker,
-                               Terms ngramInfo) {
+    /**
+     * @param ngramInfo terms of the n-gram field in the segment
+     * @param docBase doc base of the segment
+     * @param liveDocs live documents of the segment, null if it has no deletions
+     */
+    FrequencyTermBasedFBWorker(List<String> luceneTerms, FrequencyTermBased feature,
+                               FrequencyTermBased.SegmentPostings postings, int maxTasksPerWorker,
+                               Terms ngramInfo, int docBase, Bits liveDocs) {
         super(luceneTerms, maxTasksPerWorker);
-        this.properties = properties;
         this.feature = feature;
-        this.solrIndexSearcher = solrIndexSearcher;
+        this.postings = postings;
         this.ngramInfo = ngramInfo;
+        this.docBase = docBase;
+        this.liveDocs = liveDocs;
     }
 
     @Override
     protected JATERecursiveTaskWorker<String, int[]> createInstance(List<String> termSplit) {
-        return new FrequencyTermBasedFBWorker(properties, termSplit, solrIndexSearcher, feature, maxTasksPerThread,
-                ngramInfo);
+        return new FrequencyTermBasedFBWorker(termSplit, feature, postings, maxTasksPerThread,
+                ngramInfo, docBase, liveDocs);
     }
 
     @Override
@@ -50,29 +61,41 @@ class FrequencyTermBasedFBWorker extends JATERecursiveTaskWorker<String, int[]>
     @Override
     protected int[] computeSingleWorker(List<String> terms) {
         int totalSuccess = 0;
-        TermsEnum ngramInfoIterator;
+        TermsMergeJoin join;
+        //per-worker postings buffers, reused across terms and copied into the segment postings by term id
+        int[] docs = new int[INITIAL_BUFFER_SIZE];
+        int[] freqs = new int[INITIAL_BUFFER_SIZE];
         try {
-            ngramInfoIterator = ngramInfo.iterator();
+            join = new TermsMergeJoin(ngramInfo);
+            PostingsEnum docEnum = null;
 
             for (String term : terms) {
+                if (join.isExhausted())
+                    break;
                 try {
-                    if (ngramInfoIterator.seekExact(new BytesRef(term.getBytes("UTF-8")))) {
-                        PostingsEnum docEnum = ngramInfoIterator.postings(null);
-                        int doc = 0;
+                    if (join.next(term)) {
+                        docEnum = join.termsEnum().postings(docEnum);
+                        int doc = 0, length = 0, ttf = 0;
                         while ((doc = docEnum.nextDoc()) != PostingsEnum.NO_MORE_DOCS) {
+                            if (liveDocs != null && !liveDocs.get(doc))
+                                continue;
+                            if (length == docs.length) {
+                                docs = Arrays.copyOf(docs, length << 1);
+                                freqs = Arrays.copyOf(freqs, length << 1);
+                            }
                             //tf in document
                             int tfid = docEnum.freq();
-                            feature.increment(term, tfid);
-                            feature.incrementTermFrequencyInDocument(term, doc, tfid);
+                            docs[length] = docBase + doc;
+                            freqs[length] = tfid;
+                            length++;
+                            ttf += tfid;
+                        }
+                        if (length > 0) {
+                            postings.set(feature.getTermId(term), ttf, docs, freqs, length);
+                            totalSuccess++;
                         }
-                        totalSuccess++;
-                    } else {
-                        String warning = String.format("'%s'  is a candidate term, but not indexed in the n-gram " +
-                                "information field. It's score may be mis-computed. You may have used different text " +
-                                "analysis process (e.g., different tokenizers, different analysis order, limited " +
-                                "n-gram range) for the text-2-candidate-term and text-2-ngram fields.) ", term);
-                        LOG.warn(warning);
                     }
+                    //a term missing from this segment may be found in others, missing terms are reported by the master
 
                 } catch (IOException ioe) {
                     String error = String.format("Unable to build feature for candidate: '%s'. \\n Exception: %s",
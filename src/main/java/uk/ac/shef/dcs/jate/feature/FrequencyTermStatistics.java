@@ -0,0 +1,311 @@
+package uk.ac.shef.dcs.jate.feature;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.IntBuffer;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * The total and document frequency of each term, as recorded by the index, without the per-document frequencies held
+ * by {@link FrequencyTermBased}. Built by {@link FrequencyTermBasedFBMaster} in statistics-only mode, see
+ * {@link FrequencyTermStatisticsFBWorker}.
+ *
+ * <p>Terms are assigned dense int ids on construction, which index the primitive columns. Like
+ * {@link FrequencyTermBased}, a built feature can be moved to a memory-mapped file with {@link #offload(File, boolean)},
+ * after which term ids are ranks in a sorted term dictionary.</p>
+ */
+final class FrequencyTermStatistics extends TermStatistics {
+
+    //columns of an offloaded feature
+    private static final String COLUMN_TTF = "ttf";
+    private static final String COLUMN_DOC_COUNTS = "doc.counts";
+    private static final String COLUMN_TOTAL_DOCS = "total.docs";
+
+    //term and its dense id; the id indexes the columns below
+    private final Map<String, Integer> term2Id = new HashMap<>();
+    private String[] id2Term;
+    private int numTerms = 0;
+    //term id and its total freq in corpus
+    private int[] ttf;
+    //term id and the number of documents it is found in
+    private int[] docCounts;
+    //ids of terms found in the corpus
+    private BitSet counted = new BitSet();
+
+    //set by offload(File, boolean), the term dictionary and columns are then read from this file and the arrays are dropped
+    private MappedFeatureFile mapped;
+    private IntBuffer mappedTTF;
+    private IntBuffer mappedDocCounts;
+
+    private int corpusTotal = 0;
+    private int totalDocs;
+
+    /**
+     * @param terms     terms, assigned ids in iteration order. Candidate terms in dictionary order thus get their
+     *                  {@link TermDictionary} ordinals as ids
+     * @param totalDocs number of documents in the corpus
+     */
+    FrequencyTermStatistics(Collection<String> terms, int totalDocs) {
+        this.totalDocs = totalDocs;
+        id2Term = new String[terms.size()];
+        for (String t : terms) {
+            if (term2Id.putIfAbsent(t, numTerms) == null)
+                id2Term[numTerms++] = t;
+        }
+        ttf = new int[numTerms];
+        docCounts = new int[numTerms];
+    }
+
+    private FrequencyTermStatistics() {
+    }
+
+    @Override
+    public Map<String, Integer> getMapTerm2TTF() {
+        return new TermTTFView();
+    }
+
+    @Override
+    public int getCorpusTotal() {
+        return corpusTotal;
+    }
+
+    @Override
+    public int getTotalDocs() {
+        return totalDocs;
+    }
+
+    /**
+     * @param term term string
+     * @return the id of the term, or -1 if the term has not been registered
+     */
+    int getTermId(String term) {
+        if (mapped != null)
+            return mapped.lookupTerm(term);
+        Integer id = term2Id.get(term);
+        return id == null ? -1 : id;
+    }
+
+    String getTerm(int termId) {
+        return mapped != null ? mapped.getTerm(termId) : id2Term[termId];
+    }
+
+    /**
+     * @return number of registered terms, ids are in [0, size)
+     */
+    int getNumTerms() {
+        return numTerms;
+    }
+
+    @Override
+    public int getTTF(String term) {
+        int id = getTermId(term);
+        return id == -1 ? 0 : getTTF(id);
+    }
+
+    int getTTF(int termId) {
+        return mapped != null ? mappedTTF.get(termId) : ttf[termId];
+    }
+
+    @Override
+    public int getDocFrequency(String term) {
+        int id = getTermId(term);
+        if (id == -1)
+            return 0;
+        return mapped != null ? mappedDocCounts.get(id) : docCounts[id];
+    }
+
+    /**
+     * Set the total and document frequencies of registered terms from the statistics of each index segment
+     *
+     * @param segments statistics of each segment
+     */
+    synchronized void setStatistics(List<SegmentStatistics> segments) {
+        checkNotOffloaded();
+        int total = 0;
+        for (int id = 0; id < numTerms; id++) {
+            int totalFreq = 0, docCount = 0;
+            for (SegmentStatistics s : segments) {
+                if (id < s.ttf.length) {
+                    totalFreq += s.ttf[id];
+                    docCount += s.docCounts[id];
+                }
+            }
+            ttf[id] = totalFreq;
+            docCounts[id] = docCount;
+            if (docCount > 0)
+                counted.set(id);
+            total += totalFreq;
+        }
+        corpusTotal = total;
+    }
+
+    /**
+     * Total and document frequencies of registered terms in one index segment. Workers of the segment may fill it
+     * concurrently for distinct term ids.
+     */
+    static final class SegmentStatistics {
+        private final int[] ttf;
+        private final int[] docCounts;
+
+        SegmentStatistics(int numTerms) {
+            ttf = new int[numTerms];
+            docCounts = new int[numTerms];
+        }
+
+        void set(int termId, int totalFreq, int docCount) {
+            this.ttf[termId] = totalFreq;
+            this.docCounts[termId] = docCount;
+        }
+    }
+
+    /**
+     * Move the term dictionary and columns of this feature to a memory-mapped file, and drop them from heap. Term
+     * ids change to the ranks of the terms in UTF-8 byte order. The feature can not be updated afterwards.
+     *
+     * @param file      file to write, which must stay in place while the feature is used
+     * @param temporary true if the file is deleted when the feature is {@link #release() released} or no longer
+     *                  reachable; false for a file kept for later use, e.g., a snapshot
+     * @throws IOException
+     */
+    synchronized void offload(File file, boolean temporary) throws IOException {
+        checkNotOffloaded();
+        int[] order = MappedFeatureFile.sortedOrder(id2Term, numTerms);
+        try (MappedFeatureFile.Writer writer = new MappedFeatureFile.Writer(file)) {
+            writer.writeTerms(id2Term, order);
+
+            writer.beginColumn(COLUMN_TTF, MappedFeatureFile.TYPE_INT);
+            for (int id : order)
+                writer.writeInt(ttf[id]);
+            writer.endColumn();
+
+            writer.beginColumn(COLUMN_DOC_COUNTS, MappedFeatureFile.TYPE_INT);
+            for (int id : order)
+                writer.writeInt(docCounts[id]);
+            writer.endColumn();
+
+            writer.beginColumn(COLUMN_TOTAL_DOCS, MappedFeatureFile.TYPE_INT);
+            writer.writeInt(totalDocs);
+            writer.endColumn();
+        }
+
+        attach(temporary ? MappedFeatureFile.openTemporary(file) : MappedFeatureFile.open(file));
+    }
+
+    /**
+     * Load a feature from a file written by {@link #offload(File, boolean)}. The columns are read from the mapped file.
+     *
+     * @param file feature file, which must stay in place while the feature is used
+     * @return FrequencyTermStatistics feature
+     * @throws IOException if the file can not be read or is not a FrequencyTermStatistics feature file
+     */
+    static FrequencyTermStatistics load(File file) throws IOException {
+        MappedFeatureFile f = MappedFeatureFile.open(file);
+        for (String column : new String[]{COLUMN_TTF, COLUMN_DOC_COUNTS, COLUMN_TOTAL_DOCS}) {
+            if (!f.hasColumn(column))
+                throw new IOException("Not a " + FrequencyTermStatistics.class.getSimpleName() + " feature file: " +
+                        file);
+        }
+        FrequencyTermStatistics feature = new FrequencyTermStatistics();
+        synchronized (feature) {
+            feature.attach(f);
+        }
+        return feature;
+    }
+
+    //switch reads to the mapped file and drop the arrays
+    private void attach(MappedFeatureFile f) {
+        mappedTTF = f.getInts(COLUMN_TTF);
+        mappedDocCounts = f.getInts(COLUMN_DOC_COUNTS);
+        numTerms = f.getNumTerms();
+        BitSet mappedCounted = new BitSet(numTerms);
+        int total = 0;
+        for (int id = 0; id < numTerms; id++) {
+            if (mappedDocCounts.get(id) > 0)
+                mappedCounted.set(id);
+            total += mappedTTF.get(id);
+        }
+        counted = mappedCounted;
+        corpusTotal = total;
+        totalDocs = f.getInts(COLUMN_TOTAL_DOCS).get(0);
+        mapped = f;
+
+        term2Id.clear();
+        id2Term = null;
+        ttf = null;
+        docCounts = null;
+    }
+
+    @Override
+    public synchronized void release() {
+        if (mapped != null)
+            mapped.delete();
+    }
+
+    private void checkNotOffloaded() {
+        if (mapped != null)
+            throw new IllegalStateException("Feature is offloaded to " + mapped.getFile() + " and can not be updated");
+    }
+
+    /**
+     * Map view over the terms found in the corpus and the TTF column
+     */
+    private final class TermTTFView extends AbstractMap<String, Integer> {
+        @Override
+        public int size() {
+            return counted.cardinality();
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return get(key) != null;
+        }
+
+        @Override
+        public Integer get(Object key) {
+            if (!(key instanceof String))
+                return null;
+            int id = getTermId((String) key);
+            return id == -1 || !counted.get(id) ? null : getTTF(id);
+        }
+
+        @Override
+        public Set<Entry<String, Integer>> entrySet() {
+            return new AbstractSet<Entry<String, Integer>>() {
+                @Override
+                public Iterator<Entry<String, Integer>> iterator() {
+                    return new Iterator<Entry<String, Integer>>() {
+                        private int next = counted.nextSetBit(0);
+
+                        @Override
+                        public boolean hasNext() {
+                            return next >= 0;
+                        }
+
+                        @Override
+                        public Entry<String, Integer> next() {
+                            if (next < 0)
+                                throw new NoSuchElementException();
+                            Entry<String, Integer> e = new SimpleImmutableEntry<>(getTerm(next), getTTF(next));
+                            next = counted.nextSetBit(next + 1);
+                            return e;
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return counted.cardinality();
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package uk.ac.shef.dcs.jate.feature;
+
+import org.apache.commons.lang.exception.ExceptionUtils;
+import org.apache.lucene.index.*;
+import org.apache.lucene.util.Bits;
+import uk.ac.shef.dcs.jate.JATERecursiveTaskWorker;
+
+import java.io.IOException;
+import java.util.List;
+import org.apache.log4j.Logger;
+
+/**
+ * Collects the total and document frequency of candidate terms in one index segment, for a
+ * {@link FrequencyTermStatistics} feature. The frequencies recorded by the index are used, see
+ * {@link TermsEnum#totalTermFreq()} and {@link TermsEnum#docFreq()}, so postings are not read. Those include deleted
+ * documents however, so in a segment with deletions (or without term frequencies) the postings are counted instead.
+ *
+ * </p>Candidate terms must be in index order, they are merge-joined with the terms of the n-gram field, see
+ * {@link TermsMergeJoin}
+ */
+class FrequencyTermStatisticsFBWorker extends JATERecursiveTaskWorker<String, int[]> {
+
+    private static final long serialVersionUID = 3142851735527916810L;
+    private static final Logger LOG = Logger.getLogger(FrequencyTermStatisticsFBWorker.class.getName());
+    private FrequencyTermStatistics feature;
+    private FrequencyTermStatistics.SegmentStatistics statistics;
+    private Terms ngramInfo;
+    private Bits liveDocs;
+
+    /**
+     * @param ngramInfo terms of the n-gram field in the segment
+     * @param liveDocs live documents of the segment, null if it has no deletions
+     */
+    FrequencyTermStatisticsFBWorker(List<String> luceneTerms, FrequencyTermStatistics feature,
+                                    FrequencyTermStatistics.SegmentStatistics statistics, int maxTasksPerWorker,
+                                    Terms ngramInfo, Bits liveDocs) {
+        super(luceneTerms, maxTasksPerWorker);
+        this.feature = feature;
+        this.statistics = statistics;
+        this.ngramInfo = ngramInfo;
+        this.liveDocs = liveDocs;
+    }
+
+    @Override
+    protected JATERecursiveTaskWorker<String, int[]> createInstance(List<String> termSplit) {
+        return new FrequencyTermStatisticsFBWorker(termSplit, feature, statistics, maxTasksPerThread,
+                ngramInfo, liveDocs);
+    }
+
+    @Override
+    protected int[] mergeResult(List<JATERecursiveTaskWorker<String, int[]>> jateRecursiveTaskWorkers) {
+        int totalSuccess = 0, total = 0;
+        for (JATERecursiveTaskWorker<String, int[]> worker : jateRecursiveTaskWorkers) {
+            int[] rs = worker.join();
+            totalSuccess += rs[0];
+            total += rs[1];
+        }
+        return new int[]{totalSuccess, total};
+    }
+
+    @Override
+    protected int[] computeSingleWorker(List<String> terms) {
+        int totalSuccess = 0;
+        try {
+            TermsMergeJoin join = new TermsMergeJoin(ngramInfo);
+            //the index statistics are exact only if no document of the segment is deleted
+            boolean useIndexStatistics = liveDocs == null && ngramInfo.hasFreqs();
+            PostingsEnum docEnum = null;
+
+            for (String term : terms) {
+                if (join.isExhausted())
+                    break;
+                try {
+                    if (!join.next(term))
+                        continue;
+                    TermsEnum termsEnum = join.termsEnum();
+                    int ttf = 0, docCount = 0;
+                    if (useIndexStatistics) {
+                        ttf = (int) termsEnum.totalTermFreq();
+                        docCount = termsEnum.docFreq();
+                    } else {
+                        docEnum = termsEnum.postings(docEnum, PostingsEnum.FREQS);
+                        int doc;
+                        while ((doc = docEnum.nextDoc()) != PostingsEnum.NO_MORE_DOCS) {
+                            if (liveDocs != null && !liveDocs.get(doc))
+                                continue;
+                            ttf += docEnum.freq();
+                            docCount++;
+                        }
+                    }
+                    if (docCount > 0) {
+                        statistics.set(feature.getTermId(term), ttf, docCount);
+                        totalSuccess++;
+                    }
+                    //a term missing from this segment may be found in others, missing terms are reported by the master
+
+                } catch (IOException ioe) {
+                    String error = String.format("Unable to build feature for candidate: '%s'. \\n Exception: %s",
+                            term, ExceptionUtils.getFullStackTrace(ioe));
+                    LOG.error(error.toString());
+                }
+            }
+        } catch (IOException ioe) {
+            String error = String.format("Unable to read ngram information field:. \\n Exception: %s",
+                    ExceptionUtils.getFullStackTrace(ioe));
+            LOG.error(error);
+        }
+        LOG.debug("progress : " + totalSuccess + "/" + terms.size());
+        return new int[]{totalSuccess, terms.size()};
+    }
+}
@@ -0,0 +1,393 @@
+package uk.ac.shef.dcs.jate.feature;
+
+import org.apache.log4j.Logger;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.IntroSorter;
+
+import java.io.*;
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A read-only feature file mapped into memory. The file holds named fixed-width columns (int, long or byte) and
+ * optionally a term dictionary sorted by the UTF-8 bytes of the terms, so that a term's id is its rank in that
+ * order. Features moved to such a file (see {@link FrequencyTermBased#offload(File, boolean)} and
+ * {@link Cooccurrence#offload(File, boolean)}, {@link FrequencyCtxBased#offload(File, boolean)}) read their columns through the mapped buffers, leaving the paging to the
+ * operating system instead of holding the data in heap.
+ *
+ * </p>Layout: the columns, each aligned to 8 bytes, followed by a directory of the columns and a trailing long
+ * with the position of the directory. Numbers are big-endian. A single column can not exceed 2GB.
+ *
+ * </p>A file opened with {@link #openTemporary(File)} belongs to the feature reading it: it is deleted by
+ * {@link #delete()} when the feature is released, or else once the MappedFeatureFile is no longer reachable.
+ */
+final class MappedFeatureFile {
+    private static final Logger LOG = Logger.getLogger(MappedFeatureFile.class.getName());
+
+    static final int MAGIC = 0x4A415445; //"JATE"
+    static final int VERSION = 1;
+
+    static final byte TYPE_INT = 0;
+    static final byte TYPE_LONG = 1;
+    static final byte TYPE_BYTE = 2;
+
+    //columns of the term dictionary
+    private static final String TERM_OFFSETS = "terms.offsets";
+    private static final String TERM_BYTES = "terms.bytes";
+
+    //temporary files not deleted yet; unreachable ones are enqueued and deleted on the next open or delete
+    private static final ReferenceQueue<MappedFeatureFile> unreachable = new ReferenceQueue<>();
+    private static final Set<TemporaryFile> temporaryFiles = ConcurrentHashMap.newKeySet();
+
+    private final File file;
+    private final Map<String, ByteBuffer> columns;
+    private final IntBuffer termOffsets;
+    private final ByteBuffer termBytes;
+    //null if the file is not temporary
+    private TemporaryFile temporary;
+
+    private MappedFeatureFile(File file, Map<String, ByteBuffer> columns) {
+        this.file = file;
+        this.columns = columns;
+        this.termOffsets = columns.containsKey(TERM_OFFSETS) ? columns.get(TERM_OFFSETS).asIntBuffer() : null;
+        this.termBytes = columns.get(TERM_BYTES);
+    }
+
+    /**
+     * Map all columns of a feature file written by a {@link Writer}
+     */
+    static MappedFeatureFile open(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+            long length = raf.length();
+            if (length < 16)
+                throw new IOException("Not a feature file: " + file);
+            raf.seek(length - 8);
+            raf.seek(raf.readLong());
+            if (raf.readInt() != MAGIC)
+                throw new IOException("Not a feature file: " + file);
+            int version = raf.readInt();
+            if (version != VERSION)
+                throw new IOException("Unsupported feature file version " + version + ": " + file);
+
+            int numColumns = raf.readInt();
+            Map<String, ByteBuffer> columns = new HashMap<>(numColumns * 2);
+            for (int i = 0; i < numColumns; i++) {
+                String name = raf.readUTF();
+                raf.readByte(); //type, informative only
+                long offset = raf.readLong();
+                long byteLength = raf.readLong();
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, offset, byteLength);
+                columns.put(name, buffer);
+            }
+            //the mappings stay valid after the channel is closed
+            return new MappedFeatureFile(file, columns);
+        }
+    }
+
+    /**
+     * Map all columns of a feature file that is deleted when no longer used, see {@link #delete()}
+     */
+    static MappedFeatureFile openTemporary(File file) throws IOException {
+        deleteUnreachable();
+        MappedFeatureFile f = open(file);
+        f.temporary = new TemporaryFile(f);
+        temporaryFiles.add(f.temporary);
+        return f;
+    }
+
+    /**
+     * Delete the file if it is temporary. Where the operating system does not allow deleting a mapped file, it is
+     * deleted once this object is no longer reachable instead.
+     */
+    void delete() {
+        if (temporary != null)
+            temporary.delete();
+        deleteUnreachable();
+    }
+
+    /**
+     * Delete the temporary files of MappedFeatureFiles that are no longer reachable
+     */
+    static void deleteUnreachable() {
+        Reference<? extends MappedFeatureFile> ref;
+        while ((ref = unreachable.poll()) != null)
+            ((TemporaryFile) ref).unreachable = true;
+        for (TemporaryFile t : temporaryFiles) {
+            //a file that could not be deleted while mapped is retried
+            if (t.unreachable)
+                t.delete();
+        }
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    boolean hasColumn(String name) {
+        return columns.containsKey(name);
+    }
+
+    IntBuffer getInts(String name) {
+        return column(name).asIntBuffer();
+    }
+
+    LongBuffer getLongs(String name) {
+        return column(name).asLongBuffer();
+    }
+
+    ByteBuffer getBytes(String name) {
+        return column(name).duplicate();
+    }
+
+    private ByteBuffer column(String name) {
+        ByteBuffer buffer = columns.get(name);
+        if (buffer == null)
+            throw new IllegalArgumentException("No column " + name + " in feature file " + file);
+        return buffer;
+    }
+
+    /**
+     * @return number of terms in the dictionary, term ids are in [0, size)
+     */
+    int getNumTerms() {
+        return termOffsets == null ? 0 : termOffsets.limit() - 1;
+    }
+
+    String getTerm(int termId) {
+        int start = termOffsets.get(termId);
+        int end = termOffsets.get(termId + 1);
+        byte[] bytes = new byte[end - start];
+        for (int i = 0; i < bytes.length; i++)
+            bytes[i] = termBytes.get(start + i);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return id of the term, or -1 if the term is not in the dictionary
+     */
+    int lookupTerm(String term) {
+        if (termOffsets == null)
+            return -1;
+        byte[] key = term.getBytes(StandardCharsets.UTF_8);
+        int low = 0, high = getNumTerms() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = compareTerm(mid, key);
+            if (cmp < 0)
+                low = mid + 1;
+            else if (cmp > 0)
+                high = mid - 1;
+            else
+                return mid;
+        }
+        return -1;
+    }
+
+    //compares unsigned bytes, i.e., the order of BytesRef
+    private int compareTerm(int termId, byte[] key) {
+        int start = termOffsets.get(termId);
+        int length = termOffsets.get(termId + 1) - start;
+        int n = Math.min(length, key.length);
+        for (int i = 0; i < n; i++) {
+            int cmp = (termBytes.get(start + i) & 0xFF) - (key[i] & 0xFF);
+            if (cmp != 0)
+                return cmp;
+        }
+        return length - key.length;
+    }
+
+    /**
+     * @return the indexes of the first n terms, ordered by the UTF-8 bytes of the terms, i.e., the ids they get in
+     * a term dictionary
+     */
+    static int[] sortedOrder(String[] terms, int n) {
+        final BytesRef[] bytes = new BytesRef[n];
+        final int[] order = new int[n];
+        for (int i = 0; i < n; i++) {
+            bytes[i] = new BytesRef(terms[i]);
+            order[i] = i;
+        }
+        new IntroSorter() {
+            private BytesRef pivot;
+
+            @Override
+            protected void swap(int i, int j) {
+                BytesRef b = bytes[i]; bytes[i] = bytes[j]; bytes[j] = b;
+                int o = order[i]; order[i] = order[j]; order[j] = o;
+            }
+
+            @Override
+            protected int compare(int i, int j) {
+                return bytes[i].compareTo(bytes[j]);
+            }
+
+            @Override
+            protected void setPivot(int i) {
+                pivot = bytes[i];
+            }
+
+            @Override
+            protected int comparePivot(int j) {
+                return pivot.compareTo(bytes[j]);
+            }
+        }.sort(0, n);
+        return order;
+    }
+
+    private static final class TemporaryFile extends PhantomReference<MappedFeatureFile> {
+        private final File file;
+        private volatile boolean unreachable = false;
+
+        TemporaryFile(MappedFeatureFile f) {
+            super(f, MappedFeatureFile.unreachable);
+            this.file = f.file;
+        }
+
+        void delete() {
+            if (!file.exists() || file.delete()) {
+                if (temporaryFiles.remove(this))
+                    LOG.info("Deleted feature file " + file);
+            }
+        }
+    }
+
+    /**
+     * Writes columns one after another. The file is written under a temporary name and only appears under its
+     * own name once the writer is closed, so readers never see a partial file. Not thread-safe.
+     */
+    static final class Writer implements Closeable {
+        private final File file;
+        private final File tmpFile;
+        private final DataOutputStream out;
+        private long position = 0;
+        private final List<Object[]> directory = new ArrayList<>();
+
+        private String columnName;
+        private byte columnType;
+        private long columnStart;
+
+        Writer(File file) throws IOException {
+            this.file = file;
+            //unique, so that concurrent writers of the same file do not share it
+            this.tmpFile = File.createTempFile(file.getName(), ".tmp", file.getAbsoluteFile().getParentFile());
+            try {
+                out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile), 1 << 16));
+            } catch (IOException ioe) {
+                tmpFile.delete();
+                throw ioe;
+            }
+        }
+
+        /**
+         * Write a term dictionary
+         *
+         * @param terms terms, indexed by their current ids
+         * @param order current ids of the terms in the order of {@link #sortedOrder(String[], int)}
+         */
+        void writeTerms(String[] terms, int[] order) throws IOException {
+            int[] offsets = new int[order.length + 1];
+            beginColumn(TERM_BYTES, TYPE_BYTE);
+            for (int rank = 0; rank < order.length; rank++) {
+                byte[] bytes = terms[order[rank]].getBytes(StandardCharsets.UTF_8);
+                out.write(bytes);
+                position += bytes.length;
+                offsets[rank + 1] = offsets[rank] + bytes.length;
+            }
+            endColumn();
+            writeInts(TERM_OFFSETS, offsets, 0, offsets.length);
+        }
+
+        void writeInts(String name, int[] values, int from, int to) throws IOException {
+            beginColumn(name, TYPE_INT);
+            for (int i = from; i < to; i++)
+                writeInt(values[i]);
+            endColumn();
+        }
+
+        void writeInts(String name, IntBuffer values) throws IOException {
+            beginColumn(name, TYPE_INT);
+            for (int i = 0; i < values.limit(); i++)
+                writeInt(values.get(i));
+            endColumn();
+        }
+
+        void writeLongs(String name, LongBuffer values) throws IOException {
+            beginColumn(name, TYPE_LONG);
+            for (int i = 0; i < values.limit(); i++)
+                writeLong(values.get(i));
+            endColumn();
+        }
+
+        void beginColumn(String name, byte type) throws IOException {
+            if (columnName != null)
+                throw new IllegalStateException("Column " + columnName + " is not ended");
+            //align to 8 bytes
+            while ((position & 7) != 0) {
+                out.writeByte(0);
+                position++;
+            }
+            columnName = name;
+            columnType = type;
+            columnStart = position;
+        }
+
+        void writeInt(int v) throws IOException {
+            out.writeInt(v);
+            position += 4;
+        }
+
+        void writeLong(long v) throws IOException {
+            out.writeLong(v);
+            position += 8;
+        }
+
+        void endColumn() throws IOException {
+            long length = position - columnStart;
+            if (length > Integer.MAX_VALUE)
+                throw new IOException("Column " + columnName + " exceeds 2GB");
+            directory.add(new Object[]{columnName, columnType, columnStart, length});
+            columnName = null;
+        }
+
+        @Override
+        public void close() throws IOException {
+            boolean complete = false;
+            try {
+                if (columnName != null)
+                    throw new IOException("Column " + columnName + " is not ended");
+                long directoryStart = position;
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(directory.size());
+                for (Object[] column : directory) {
+                    out.writeUTF((String) column[0]);
+                    out.writeByte((Byte) column[1]);
+                    out.writeLong((Long) column[2]);
+                    out.writeLong((Long) column[3]);
+                }
+                out.writeLong(directoryStart);
+                out.close();
+                Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+                complete = true;
+            } finally {
+                if (!complete) {
+                    out.close();
+                    tmpFile.delete();
+                }
+            }
+        }
+    }
+}
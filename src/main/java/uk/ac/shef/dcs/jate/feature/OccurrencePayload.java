@@ -0,0 +1,37 @@
+package uk.ac.shef.dcs.jate.feature;
+
+import org.apache.lucene.analysis.jate.MWEMetadata;
+import org.apache.lucene.util.BytesRef;
+
+/**
+ * The payload of an occurrence read by a {@link DocumentSweep}, shared by all sinks of the occurrence. Sinks reading
+ * only a few values use the raw {@link #bytes()} (e.g., with {@link org.apache.lucene.analysis.jate.SentenceContext});
+ * the full {@link MWEMetadata} is decoded on the first call to {@link #metadata()}, so at most once per occurrence
+ * whatever the number of sinks.
+ */
+public final class OccurrencePayload {
+    private BytesRef bytes;
+    private MWEMetadata metadata;
+
+    void reset(BytesRef bytes) {
+        this.bytes = bytes;
+        this.metadata = null;
+    }
+
+    /**
+     * @return the raw payload, null if the occurrence has none. It is valid only during the call to the sink and must
+     * not be modified
+     */
+    public BytesRef bytes() {
+        return bytes;
+    }
+
+    /**
+     * @return the decoded payload, null if the occurrence has none
+     */
+    public MWEMetadata metadata() {
+        if (metadata == null && bytes != null)
+            metadata = MWEMetadata.fromPayload(bytes);
+        return metadata;
+    }
+}
@@ -0,0 +1,66 @@
+package uk.ac.shef.dcs.jate.feature;
+
+import org.apache.lucene.analysis.jate.MWEMetadata;
+import org.apache.lucene.analysis.jate.MWEMetadataType;
+
+import java.util.Set;
+
+/**
+ * Records the paragraphs and sentences candidates are found in, see {@link DocumentSweep#addPositions(Set)}
+ */
+class PositionSink implements DocumentSink {
+    private final PositionFeature feature;
+
+    PositionSink(PositionFeature feature) {
+        this.feature = feature;
+    }
+
+    @Override
+    public void startDocument(int docId) {
+    }
+
+    @Override
+    public void occurrence(String term, int position, int startOffset, int endOffset, OccurrencePayload payload) {
+        MWEMetadata metadata = payload.metadata();
+        if (metadata != null)
+            populateFeature(metadata, term, feature);
+    }
+
+    @Override
+    public void endDocument() {
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public boolean usesPayload() {
+        return true;
+    }
+
+    private void populateFeature(MWEMetadata metadata, String term, PositionFeature feature) {
+        int sourceParIdInDoc = Integer.valueOf(metadata.getMetaData(MWEMetadataType.SOURCE_PARAGRAPH_ID_IN_DOC));
+        int sourceSentIdInDoc = Integer.valueOf(metadata.getMetaData(MWEMetadataType.SOURCE_SENTENCE_ID_IN_DOC));
+        int sourceSentIdInPar = Integer.valueOf(metadata.getMetaData(MWEMetadataType.SOURCE_SENTENCE_ID_IN_PARAGRAPH));
+
+        int totalParsInDoc = Integer.valueOf(metadata.getMetaData(MWEMetadataType.PARAGRAPHS_IN_DOC));
+        int totalSentsInDoc = Integer.valueOf(metadata.getMetaData(MWEMetadataType.SENTENCES_IN_DOC));
+        int totalSentsInPar = Integer.valueOf(metadata.getMetaData(MWEMetadataType.SENTENCES_IN_PARAGRAPH));
+
+
+        if (sourceParIdInDoc == 0)
+            feature.incrementFoundInDocTitles(term);
+
+        double parDistFromTitle = calculateDistance(sourceParIdInDoc, totalParsInDoc);
+        feature.addParDistFromTitle(term, parDistFromTitle);
+        double sentDistFromTitle = calculateDistance(sourceSentIdInDoc, totalSentsInDoc);
+        feature.addSentDistFromTitle(term, sentDistFromTitle);
+        double sentDistFromPar = calculateDistance(sourceSentIdInPar, totalSentsInPar);
+        feature.addSentDistFromPar(term, sentDistFromPar);
+    }
+
+    private double calculateDistance(int index, int total) {
+        return index / (double) total;
+    }
+}
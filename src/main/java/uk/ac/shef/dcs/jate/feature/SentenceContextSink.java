@@ -0,0 +1,99 @@
+package uk.ac.shef.dcs.jate.feature;
+
+import org.apache.log4j.Logger;
+import org.apache.lucene.analysis.jate.SentenceContext;
+import uk.ac.shef.dcs.jate.JATEException;
+import uk.ac.shef.dcs.jate.JATEProperties;
+
+import java.util.*;
+
+/**
+ * Counts the frequencies of candidates in the sentences of each document, see
+ * {@link DocumentSweep#addSentenceContexts(Set)}
+ */
+class SentenceContextSink implements DocumentSink {
+    private static final Logger LOG = Logger.getLogger(SentenceContextSink.class.getName());
+    private final JATEProperties properties;
+    private final ContextFrequencyBuffer buffer;
+    private final List<MWESentenceContext> terms = new ArrayList<>();
+    private final Set<Integer> sentenceIds = new HashSet<>();
+    private final SentenceContext sentenceContext = new SentenceContext();
+    private int docId;
+    private int docs = 0;
+
+    SentenceContextSink(FrequencyCtxBased feature, JATEProperties properties) {
+        this.properties = properties;
+        this.buffer = new ContextFrequencyBuffer(feature);
+    }
+
+    @Override
+    public void startDocument(int docId) {
+        this.docId = docId;
+        terms.clear();
+    }
+
+    @Override
+    public void occurrence(String term, int position, int startOffset, int endOffset, OccurrencePayload payload) {
+        //the sentence id is -1 if the payload has none
+        sentenceContext.read(payload.bytes());
+        terms.add(new MWESentenceContext(term, sentenceContext.getSentenceId(), startOffset, endOffset));
+    }
+
+    @Override
+    public void endDocument() {
+        docs++;
+        Collections.sort(terms);
+        for (MWESentenceContext term : terms) {
+            ContextWindow ctx = new ContextWindow();
+            ctx.setDocId(docId);
+            ctx.setSentenceId(term.sentenceId);
+
+            buffer.increment(ctx, 1);
+            buffer.increment(ctx, term.string, 1);
+            sentenceIds.add(term.sentenceId);
+        }
+    }
+
+    @Override
+    public void flush() {
+        buffer.flush();
+        if (sentenceIds.size() == 1)
+            try {
+                LOG.error("Among " + docs + " on average each document has only 1 sentence. If this is not expected, check your analyzer chain for your Solr field "
+                        + properties.getSolrFieldNameJATENGramInfo() + " (OpenNLPTokenizerFactory) if SentenceContext has been produced corrected.");
+            } catch (JATEException e) {
+            }
+    }
+
+    @Override
+    public boolean usesPayload() {
+        return true;
+    }
+
+    private static class MWESentenceContext implements Comparable<MWESentenceContext> {
+        public String string;
+        public int sentenceId;
+        public int start;
+        public int end;
+
+        public MWESentenceContext(String string, int sentenceId, int start, int end) {
+            this.string = string;
+            this.sentenceId = sentenceId;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public int compareTo(MWESentenceContext o) {
+            int compare = Integer.valueOf(start).compareTo(o.start);
+            if (compare == 0) {
+                return Integer.valueOf(end).compareTo(o.end);
+            }
+            return compare;
+        }
+
+        public String toString() {
+            return sentenceId + "," + start + "," + end;
+        }
+    }
+}
@@ -1,33 +1,212 @@
 package uk.ac.shef.dcs.jate.feature;
 
+import org.apache.lucene.util.IntroSorter;
 import org.apache.solr.common.util.Pair;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 /**
  * Specific feature to be used by CValue for efficient computation
  * <p/>
  * The index is a map from uni-grams to a list of pairs. Each pair contains a candidate term containing that unigram and the length of the term in terms of
  * number of tokens (uni-grams) in that term
+ * <p/>
+ * The index is built in two phases. Builders collect entries in a {@link Collector} each, without locking. On first
+ * read the collected entries are frozen into immutable arrays, where the entries of each unigram are held
+ * contiguously, sorted by term length in descending order. A unigram's entries are at positions
+ * [{@link #getStart(int)}, {@link #getEnd(int)}) and can be read without allocation.
  */
 public class TermComponentIndex extends AbstractFeature {
-    private Map<String, List<Pair<String, Integer>>> index = new HashMap<>();
+    private final Queue<Collector> pending = new ConcurrentLinkedQueue<>();
+    private volatile boolean frozen = true;
+
+    private Map<String, Integer> unigramIds = new HashMap<>();
+    //entries of unigram id i are at [offsets[i], offsets[i+1])
+    private int[] offsets = new int[1];
+    private String[] entryTerms = new String[0];
+    private int[] entryLengths = new int[0];
 
-    public synchronized void add(String unigram, String term, int numTokens) {
-        List<Pair<String, Integer>> contained = index.get(unigram);
-        if (contained == null)
-            contained = new ArrayList<>();
-        contained.add(new Pair<>(term, numTokens));
-        index.put(unigram, contained);
+    /**
+     * @param unigram unigram
+     * @return id of the unigram, or -1 if no term contains the unigram
+     */
+    public int lookup(String unigram) {
+        ensureFrozen();
+        Integer id = unigramIds.get(unigram);
+        return id == null ? -1 : id;
     }
 
-    public List<Pair<String, Integer>> getSorted(String unigram) {
-        List<Pair<String, Integer>> sorted = new ArrayList<>();
-        List<Pair<String, Integer>> values=index.get(unigram);
-        if (values!=null)
-            sorted.addAll(values);
+    public int getStart(int unigramId) {
+        ensureFrozen();
+        return offsets[unigramId];
+    }
+
+    public int getEnd(int unigramId) {
+        ensureFrozen();
+        return offsets[unigramId + 1];
+    }
+
+    /**
+     * @param unigramId id of the unigram
+     * @param numTokens length bound
+     * @return the end (exclusive) of the unigram's entries whose terms have more than numTokens tokens
+     */
+    public int getEndOfLongerThan(int unigramId, int numTokens) {
+        ensureFrozen();
+        int low = offsets[unigramId], high = offsets[unigramId + 1];
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (entryLengths[mid] > numTokens)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        return low;
+    }
 
-        Collections.sort(sorted, (o1, o2) -> o2.getValue().compareTo(o1.getValue()));
+    /**
+     * @return the candidate term of the entry at pos
+     */
+    public String getTerm(int pos) {
+        ensureFrozen();
+        return entryTerms[pos];
+    }
+
+    /**
+     * @return number of tokens in the candidate term of the entry at pos
+     */
+    public int getNumTokens(int pos) {
+        ensureFrozen();
+        return entryLengths[pos];
+    }
+
+    /**
+     * @param unigram unigram
+     * @return a new list of terms containing the unigram, and their lengths, sorted by length in descending order
+     */
+    public List<Pair<String, Integer>> getSorted(String unigram) {
+        int id = lookup(unigram);
+        if (id == -1)
+            return new ArrayList<>();
+        List<Pair<String, Integer>> sorted = new ArrayList<>(offsets[id + 1] - offsets[id]);
+        for (int pos = offsets[id]; pos < offsets[id + 1]; pos++)
+            sorted.add(new Pair<>(entryTerms[pos], entryLengths[pos]));
         return sorted;
     }
+
+    /**
+     * Accept entries collected by a builder. They are frozen into the index on the next read.
+     */
+    void merge(Collector collector) {
+        pending.add(collector);
+        frozen = false;
+    }
+
+    private void ensureFrozen() {
+        if (!frozen)
+            freeze();
+    }
+
+    private synchronized void freeze() {
+        List<Collector> collected = new ArrayList<>();
+        Collector c;
+        while ((c = pending.poll()) != null)
+            collected.add(c);
+        if (collected.isEmpty()) {
+            frozen = pending.isEmpty();
+            return;
+        }
+
+        //entries already frozen are merged with the new ones
+        Map<String, Integer> ids = new HashMap<>(unigramIds);
+        int size = entryTerms.length;
+        for (Collector col : collected)
+            size += col.size;
+        final long[] keys = new long[size];
+        final String[] terms = Arrays.copyOf(entryTerms, size);
+        final int[] lengths = Arrays.copyOf(entryLengths, size);
+        for (int id = 0; id < offsets.length - 1; id++) {
+            for (int pos = offsets[id]; pos < offsets[id + 1]; pos++)
+                keys[pos] = key(id, lengths[pos]);
+        }
+        int e = entryTerms.length;
+        for (Collector col : collected) {
+            for (int i = 0; i < col.size; i++, e++) {
+                Integer id = ids.get(col.unigrams[i]);
+                if (id == null) {
+                    id = ids.size();
+                    ids.put(col.unigrams[i], id);
+                }
+                keys[e] = key(id, col.lengths[i]);
+                terms[e] = col.terms[i];
+                lengths[e] = col.lengths[i];
+            }
+        }
+
+        //group by unigram, longest terms first
+        new IntroSorter() {
+            private long pivot;
+
+            @Override
+            protected void swap(int i, int j) {
+                long k = keys[i]; keys[i] = keys[j]; keys[j] = k;
+                String t = terms[i]; terms[i] = terms[j]; terms[j] = t;
+                int l = lengths[i]; lengths[i] = lengths[j]; lengths[j] = l;
+            }
+
+            @Override
+            protected int compare(int i, int j) {
+                return Long.compare(keys[i], keys[j]);
+            }
+
+            @Override
+            protected void setPivot(int i) {
+                pivot = keys[i];
+            }
+
+            @Override
+            protected int comparePivot(int j) {
+                return Long.compare(pivot, keys[j]);
+            }
+        }.sort(0, size);
+
+        int[] newOffsets = new int[ids.size() + 1];
+        for (e = 0; e < size; e++)
+            newOffsets[(int) (keys[e] >>> 32) + 1]++;
+        for (int id = 0; id < ids.size(); id++)
+            newOffsets[id + 1] += newOffsets[id];
+
+        unigramIds = ids;
+        offsets = newOffsets;
+        entryTerms = terms;
+        entryLengths = lengths;
+        frozen = pending.isEmpty();
+    }
+
+    private static long key(int unigramId, int numTokens) {
+        return ((long) unigramId << 32) | (Integer.MAX_VALUE - numTokens);
+    }
+
+    /**
+     * Collects index entries of a single builder, see {@link #merge(Collector)}. Not thread-safe.
+     */
+    static final class Collector {
+        private String[] unigrams = new String[256];
+        private String[] terms = new String[256];
+        private int[] lengths = new int[256];
+        private int size = 0;
+
+        void add(String unigram, String term, int numTokens) {
+            if (size == lengths.length) {
+                unigrams = Arrays.copyOf(unigrams, size << 1);
+                terms = Arrays.copyOf(terms, size << 1);
+                lengths = Arrays.copyOf(lengths, size << 1);
+            }
+            unigrams[size] = unigram;
+            terms[size] = term;
+            lengths[size] = numTokens;
+            size++;
+        }
+    }
 }
@@ -2,6 +2,7 @@ package uk.ac.shef.dcs.jate.feature;
 
 import org.apache.log4j.Logger;
 import uk.ac.shef.dcs.jate.JATEException;
+import uk.ac.shef.dcs.jate.JATEExecutors;
 import uk.ac.shef.dcs.jate.JATEProperties;
 
 import java.util.List;
@@ -32,7 +33,7 @@ public class TermComponentIndexFBMaster extends AbstractFeatureBuilder {
         TermComponentIndexFBWorker worker = new
                 TermComponentIndexFBWorker(candidates, maxPerThread,
                 feature);
-        ForkJoinPool forkJoinPool = new ForkJoinPool(cores);
+        ForkJoinPool forkJoinPool = JATEExecutors.getPool(cores);
         int total = forkJoinPool.invoke(worker);
         StringBuilder sb = new StringBuilder("Complete building features. Total processed terms = " + total);
         LOG.info(sb.toString());
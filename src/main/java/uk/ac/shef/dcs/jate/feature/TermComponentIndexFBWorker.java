@@ -35,14 +35,16 @@ public class TermComponentIndexFBWorker extends JATERecursiveTaskWorker<String,
     @Override
     protected Integer computeSingleWorker(List<String> tasks) {
         int count=0;
+        TermComponentIndex.Collector collector = new TermComponentIndex.Collector();
         for(String tString : tasks){
             String[] tokens = tString.split(" ");
 
             for(String tok: tokens){
-                ctciFeature.add(tok, tString, tokens.length);
+                collector.add(tok, tString, tokens.length);
             }
             count++;
         }
+        ctciFeature.merge(collector);
         return count;
     }
 }
@@ -0,0 +1,160 @@
+package uk.ac.shef.dcs.jate.feature;
+
+import org.apache.commons.lang.exception.ExceptionUtils;
+import org.apache.log4j.Logger;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.util.BytesRef;
+import org.apache.solr.search.SolrIndexSearcher;
+import uk.ac.shef.dcs.jate.JATEException;
+import uk.ac.shef.dcs.jate.JATEProperties;
+import uk.ac.shef.dcs.jate.util.SolrUtil;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * An immutable dictionary of the candidate terms indexed in the candidate term field
+ * (see {@link JATEProperties#getSolrFieldNameJATECTerms()}), which assigns each candidate a dense ordinal in
+ * [0, size). Ordinals follow the order of the field's TermsEnum, i.e., the byte order of the indexed terms.
+ *
+ * </p>A dictionary is built once per SolrIndexSearcher and candidate term field, and shared by all feature builders
+ * and algorithms working on that searcher, so that features share the same term strings. {@link FrequencyTermBased},
+ * {@link FrequencyCtxBased} of candidate terms and {@link Cooccurrence} are keyed by its ordinals.
+ *
+ * </p>{@link Containment}, {@link TermComponentIndex}, {@link WordShapeFeature}, {@link PositionFeature} and the
+ * algorithms are still keyed by term strings, and look terms up in the ordinal keyed features through their String
+ * getters. These features are also built for words, which have no ordinals, and the algorithms score each term
+ * once, so they do not repeat the per-occurrence hashing the ordinals remove from the larger features.
+ *
+ * @see #getInstance(SolrIndexSearcher, JATEProperties)
+ */
+public final class TermDictionary {
+    private static final Logger LOG = Logger.getLogger(TermDictionary.class.getName());
+
+    //dictionaries by candidate term field, dropped together with the searchers they are built for
+    private static final Map<SolrIndexSearcher, Map<String, FutureTask<TermDictionary>>> instances =
+            new WeakHashMap<>();
+
+    private final String field;
+    private final String[] terms;
+    private final Map<String, Integer> term2Ord;
+
+    //terms in the order of the field's TermsEnum; package-private for tests
+    TermDictionary(String field, String[] terms) {
+        this.field = field;
+        this.terms = terms;
+        this.term2Ord = new HashMap<>(terms.length * 4 / 3 + 1);
+        for (int i = 0; i < terms.length; i++)
+            term2Ord.put(terms[i], i);
+    }
+
+    /**
+     * Get the dictionary of candidate terms for the searcher, building it on first request. Dictionaries are kept per
+     * searcher and candidate term field. Concurrent requests for the same dictionary wait for a single build, which
+     * does not block requests for other dictionaries.
+     *
+     * @param solrIndexSearcher solr index searcher
+     * @param properties jate properties, used to determine the candidate term field
+     * @return TermDictionary shared by all callers using the same searcher and candidate term field
+     * @throws JATEException
+     */
+    public static TermDictionary getInstance(SolrIndexSearcher solrIndexSearcher, JATEProperties properties)
+            throws JATEException {
+        String field = properties.getSolrFieldNameJATECTerms();
+        FutureTask<TermDictionary> task;
+        FutureTask<TermDictionary> newTask = null;
+        synchronized (instances) {
+            Map<String, FutureTask<TermDictionary>> byField = instances.get(solrIndexSearcher);
+            if (byField == null) {
+                byField = new HashMap<>();
+                instances.put(solrIndexSearcher, byField);
+            }
+            task = byField.get(field);
+            if (task == null) {
+                //the task refers to the searcher only until it has run, so the searcher can still be dropped
+                newTask = new FutureTask<>(() -> build(SolrUtil.getTermVector(field, solrIndexSearcher), field));
+                byField.put(field, newTask);
+                task = newTask;
+            }
+        }
+        if (task == newTask)
+            task.run();
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new JATEException("Interrupted while waiting for the term dictionary of field " + field);
+        } catch (ExecutionException e) {
+            //the next request builds again
+            synchronized (instances) {
+                Map<String, FutureTask<TermDictionary>> byField = instances.get(solrIndexSearcher);
+                if (byField != null && byField.get(field) == task)
+                    byField.remove(field);
+            }
+            Throwable cause = e.getCause();
+            if (cause instanceof JATEException)
+                throw (JATEException) cause;
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            throw new JATEException("Failed to build the term dictionary of field " + field + ": " + cause);
+        }
+    }
+
+    static TermDictionary build(Terms candidates, String field) throws JATEException {
+        List<String> all = new ArrayList<>();
+        try {
+            TermsEnum termsEnum = candidates.iterator();
+            BytesRef t;
+            while ((t = termsEnum.next()) != null) {
+                if (t.length == 0)
+                    continue;
+                all.add(t.utf8ToString());
+            }
+        } catch (IOException ioe) {
+            StringBuilder sb = new StringBuilder("Failed to read candidate terms from field ");
+            sb.append(field).append("\n").append(ExceptionUtils.getFullStackTrace(ioe));
+            LOG.error(sb.toString());
+            throw new JATEException(sb.toString());
+        }
+        LOG.info("Built term dictionary from field " + field + ", total candidates=" + all.size());
+        return new TermDictionary(field, all.toArray(new String[all.size()]));
+    }
+
+    /**
+     * @return number of candidate terms, ordinals are in [0, size)
+     */
+    public int size() {
+        return terms.length;
+    }
+
+    /**
+     * @param term candidate term string
+     * @return ordinal of the term, or -1 if it is not a candidate
+     */
+    public int ordinal(String term) {
+        Integer ord = term2Ord.get(term);
+        return ord == null ? -1 : ord;
+    }
+
+    public String term(int ordinal) {
+        return terms[ordinal];
+    }
+
+    public boolean contains(String term) {
+        return term2Ord.containsKey(term);
+    }
+
+    /**
+     * @return read-only list of all candidate terms, in ordinal order
+     */
+    public List<String> getTerms() {
+        return Collections.unmodifiableList(Arrays.asList(terms));
+    }
+
+    public String getField() {
+        return field;
+    }
+}
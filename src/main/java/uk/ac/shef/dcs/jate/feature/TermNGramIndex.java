@@ -0,0 +1,123 @@
+package uk.ac.shef.dcs.jate.feature;
+
+import java.util.*;
+
+/**
+ * An index of candidate terms keyed by the hash of their token id sequence, so that any contiguous token
+ * sub-sequence (n-gram) of another term can be looked up without building strings. Tokens are obtained by splitting
+ * terms on a single space, and token ids are assigned over all tokens of the indexed terms.
+ *
+ * </p>The index is immutable once built and can be shared by workers.
+ */
+class TermNGramIndex {
+    private static final long HASH_SEED = 0xCBF29CE484222325L;
+    private static final long HASH_PRIME = 0x100000001B3L;
+
+    private final Map<String, Integer> tokenIds = new HashMap<>();
+    private final String[] terms;
+    private final int[][] termTokens;
+
+    //open addressing table from n-gram hash to the first term with that hash; terms with equal hashes are chained
+    private final long[] slotHashes;
+    private final int[] slotTerms;
+    private final int[] nextTermWithHash;
+
+    TermNGramIndex(Collection<String> candidates) {
+        terms = candidates.toArray(new String[candidates.size()]);
+        termTokens = new int[terms.length][];
+        for (int t = 0; t < terms.length; t++) {
+            String[] tokens = terms[t].split(" ");
+            int[] ids = new int[tokens.length];
+            for (int i = 0; i < tokens.length; i++) {
+                Integer id = tokenIds.get(tokens[i]);
+                if (id == null) {
+                    id = tokenIds.size();
+                    tokenIds.put(tokens[i], id);
+                }
+                ids[i] = id;
+            }
+            termTokens[t] = ids;
+        }
+
+        int capacity = Integer.highestOneBit(Math.max(terms.length, 1) * 2 - 1) << 1;
+        slotHashes = new long[capacity];
+        slotTerms = new int[capacity];
+        Arrays.fill(slotTerms, -1);
+        nextTermWithHash = new int[terms.length];
+        int mask = capacity - 1;
+        for (int t = 0; t < terms.length; t++) {
+            long h = HASH_SEED;
+            for (int id : termTokens[t])
+                h = hash(h, id);
+            int slot = slot(h, mask);
+            while (slotTerms[slot] != -1 && slotHashes[slot] != h)
+                slot = (slot + 1) & mask;
+            nextTermWithHash[t] = slotTerms[slot];
+            slotHashes[slot] = h;
+            slotTerms[slot] = t;
+        }
+    }
+
+    static long seed() {
+        return HASH_SEED;
+    }
+
+    /**
+     * @return the hash of a token id sequence extended by one more token id
+     */
+    static long hash(long hash, int tokenId) {
+        return (hash ^ (tokenId + 1)) * HASH_PRIME;
+    }
+
+    private static int slot(long hash, int mask) {
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    /**
+     * @return id of the token, or -1 if no indexed term has this token
+     */
+    int tokenId(String token) {
+        Integer id = tokenIds.get(token);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * Find the term whose token ids are exactly <code>tokens[0..length)</code>
+     *
+     * @param hash hash of the token ids, see {@link #hash(long, int)}
+     * @return index of the term, or -1 if there is no such term
+     */
+    int lookup(long hash, int[] tokens, int length) {
+        int mask = slotTerms.length - 1;
+        int slot = slot(hash, mask);
+        while (slotTerms[slot] != -1) {
+            if (slotHashes[slot] == hash) {
+                for (int t = slotTerms[slot]; t != -1; t = nextTermWithHash[t]) {
+                    if (sameTokens(termTokens[t], tokens, length))
+                        return t;
+                }
+                return -1;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private static boolean sameTokens(int[] termTokens, int[] tokens, int length) {
+        if (termTokens.length != length)
+            return false;
+        for (int i = 0; i < length; i++) {
+            if (termTokens[i] != tokens[i])
+                return false;
+        }
+        return true;
+    }
+
+    String getTerm(int index) {
+        return terms[index];
+    }
+
+    int size() {
+        return terms.length;
+    }
+}
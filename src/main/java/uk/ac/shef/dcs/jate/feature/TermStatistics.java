@@ -0,0 +1,51 @@
+package uk.ac.shef.dcs.jate.feature;
+
+import java.util.Map;
+
+/**
+ * Total and document frequencies of terms in a corpus, which is all that algorithms such as TTF, ATTF, TTF-IDF and
+ * RIDF use. {@link FrequencyTermBased} also holds the frequency of each term in each document; a feature built with
+ * only the statistics recorded by the index (see
+ * {@link FrequencyTermBasedFBMaster#FrequencyTermBasedFBMaster(org.apache.solr.search.SolrIndexSearcher,
+ * uk.ac.shef.dcs.jate.JATEProperties, int, boolean)}) is only a TermStatistics.
+ */
+public abstract class TermStatistics extends AbstractFeature {
+
+    /**
+     * @return a read-only view of terms found in the corpus and their total frequency
+     */
+    public abstract Map<String, Integer> getMapTerm2TTF();
+
+    /**
+     * @return total number of occurrences of all terms in the corpus
+     */
+    public abstract int getCorpusTotal();
+
+    /**
+     * @return number of documents in the corpus
+     */
+    public abstract int getTotalDocs();
+
+    /**
+     * @param term term string
+     * @return number of occurrences of the term in the corpus
+     */
+    public abstract int getTTF(String term);
+
+    /**
+     * @param term term string
+     * @return number of documents the term is found in
+     */
+    public abstract int getDocFrequency(String term);
+
+    /**
+     * Get the normalised frequency of a term in the corpus, which is the number of occurrences of that term as a fraction
+     * of the total number of occurrences of all terms in the corpus.
+     *
+     * @param term term string
+     * @return double  total term frequency
+     */
+    public double getTTFNorm(String term) {
+        return (double) getTTF(term) / ((double) getCorpusTotal() + 1);
+    }
+}
@@ -0,0 +1,73 @@
+package uk.ac.shef.dcs.jate.feature;
+
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.BytesRefBuilder;
+
+import java.io.IOException;
+
+/**
+ * Merge join of a sorted stream of candidates against the terms of a field (e.g., the n-gram field of an index
+ * segment). Candidates must be passed in index order, i.e., the byte order of their UTF-8 encoding, which is the
+ * order of the candidate field's TermsEnum (see {@link TermDictionary#getTerms()}). The terms enum then only moves
+ * forward: a candidate at or before the current term is resolved without seeking, the next term is tried before
+ * seeking, and seeks land near the current term. Candidates are encoded into a reused buffer, so no allocation is
+ * made per candidate.
+ *
+ * </p>Not thread-safe, each worker uses its own join.
+ */
+final class TermsMergeJoin {
+    private final TermsEnum termsEnum;
+    private final BytesRefBuilder target = new BytesRefBuilder();
+    private boolean positioned = false;
+    private boolean exhausted = false;
+
+    TermsMergeJoin(Terms terms) throws IOException {
+        this.termsEnum = terms.iterator();
+    }
+
+    /**
+     * @param candidate next candidate, not before the previous one in index order
+     * @return true if the field has the candidate, in which case {@link #termsEnum()} is positioned on it
+     * @throws IOException
+     */
+    boolean next(String candidate) throws IOException {
+        if (exhausted)
+            return false;
+        target.copyChars(candidate);
+        BytesRef t = target.get();
+        if (positioned) {
+            int cmp = termsEnum.term().compareTo(t);
+            if (cmp >= 0)
+                return cmp == 0;
+            //candidates are often adjacent in the field, try the next term before seeking
+            BytesRef next = termsEnum.next();
+            if (next == null) {
+                exhausted = true;
+                return false;
+            }
+            cmp = next.compareTo(t);
+            if (cmp >= 0)
+                return cmp == 0;
+        }
+        TermsEnum.SeekStatus status = termsEnum.seekCeil(t);
+        if (status == TermsEnum.SeekStatus.END) {
+            exhausted = true;
+            return false;
+        }
+        positioned = true;
+        return status == TermsEnum.SeekStatus.FOUND;
+    }
+
+    /**
+     * @return true if the field has no terms after the last candidate, so no further candidates can be found
+     */
+    boolean isExhausted() {
+        return exhausted;
+    }
+
+    TermsEnum termsEnum() {
+        return termsEnum;
+    }
+}
@@ -0,0 +1,317 @@
+package uk.ac.shef.dcs.jate.feature;
+
+import org.apache.log4j.Logger;
+import org.apache.lucene.analysis.jate.SentenceContext;
+import uk.ac.shef.dcs.jate.JATEException;
+import uk.ac.shef.dcs.jate.JATEProperties;
+
+import java.util.*;
+
+/**
+ * A containment relationship between a candidate term and a context window can be partial. I.e., as long as a candidate term's
+ * start of end token is included in the context window the candidate term is considered to be 'contained' by the context window.
+ *
+ * Frequencies in context can be calculated in two different modes.
+ *
+ * </p><b>Mode 1</b>: context windows are generated based on candidate terms. The method these are generated is described
+ * in FrequencyCtxWindowBasedFBMaster.
+ *
+ * </p><Mode 2</b>: context windows are provided (possibly generated by another process already), and the goal is to use
+ * these windows as-is and count candidate term frequencies in these windows. One scenario that this mode is useful
+ * is when you want to compare the co-occurrences of candidate terms (e.g., phrases) with 'reference' words (e.g., adjectives),
+ * such as in the case of NC-value (Frantzi 2000). In this case you want to generate context windows based on candidate terms,
+ * but are also interested in what reference words appear in which candidate term contexts (and you do not want to
+ * generate context windows around reference words, as they will be different).
+ *
+ *
+ * </p>Reference: Katerina Frantzi, Sophia Ananiadou, Hideki Mima. 2000. Automatic recognition of multi-word terms:
+ * the C-value/NC-value method. Natural Language Processing For Digital Libraries International Journal on Digital
+ * Libraries August 2000, Volume 3, Issue 2, pp 115-130
+ */
+class WindowContextSink implements DocumentSink {
+    private static final Logger LOG = Logger.getLogger(WindowContextSink.class.getName());
+    private final JATEProperties properties;
+    private final FrequencyCtxBased feature;
+    private final ContextFrequencyBuffer buffer;
+    private final int window;
+    private final Map<Integer, List<ContextWindow>> contextLookup;//set of contexts in which we should count term frequencies
+
+    private final List<MWEInSentence> terms = new ArrayList<>();
+    private final Map<Integer, Integer> sentenceBoundaries = new HashMap<>();
+    private final Set<Integer> firstTokenIndexes = new HashSet<>();
+    private final SentenceContext sentenceContextInfo = new SentenceContext();
+    private int docId;
+    private int docs = 0;
+
+    /**
+     * @param feature
+     * @param properties
+     * @param contextLookup set of contexts in which we should count term frequencies, keyed by doc id. If the
+     *                      contexts should be generated, use null or an empty map
+     * @param window
+     */
+    WindowContextSink(FrequencyCtxBased feature, JATEProperties properties,
+                      Map<Integer, List<ContextWindow>> contextLookup, int window) {
+        this.properties = properties;
+        this.feature = feature;
+        this.buffer = new ContextFrequencyBuffer(feature);
+        this.contextLookup = contextLookup;
+        this.window = window;
+    }
+
+    @Override
+    public void startDocument(int docId) {
+        this.docId = docId;
+        terms.clear();
+        sentenceBoundaries.clear();
+    }
+
+    @Override
+    public void occurrence(String term, int position, int startOffset, int endOffset, OccurrencePayload payload) {
+        if (!sentenceContextInfo.read(payload.bytes())) {
+            terms.add(new MWEInSentence(term, startOffset, endOffset, 0, 0, 0));
+            return;
+        }
+        terms.add(new MWEInSentence(term, startOffset, endOffset,
+                sentenceContextInfo.getFirstTokenIdx(),
+                sentenceContextInfo.getLastTokenIdx(),
+                sentenceContextInfo.getSentenceId()));
+
+        Integer endBound = sentenceBoundaries.get(sentenceContextInfo.getSentenceId());
+        if (endBound == null || endBound < sentenceContextInfo.getLastTokenIdx())
+            sentenceBoundaries.put(sentenceContextInfo.getSentenceId(),
+                    sentenceContextInfo.getLastTokenIdx());
+    }
+
+    @Override
+    public void endDocument() {
+        docs++;
+        //terms are now sorted by sentence id, then first tok index in sentence, then last tok index in sentence
+        Collections.sort(terms);
+        if (contextLookup == null || contextLookup.size() == 0)
+            generateNewContexts();
+        else
+            useExistingContexts();
+    }
+
+    @Override
+    public void flush() {
+        buffer.flush();
+        if ((contextLookup == null || contextLookup.size() == 0) && docs > 0 && firstTokenIndexes.size() / docs <= 1)
+            try {
+                LOG.warn("Check your analyzer chain for your Solr field "
+                        + properties.getSolrFieldNameJATENGramInfo() + " if each token's position in a sentence has been produced.");
+            } catch (JATEException e) {
+            }
+    }
+
+    @Override
+    public boolean usesPayload() {
+        return true;
+    }
+
+    /**
+     * Use existing context windows to count term/word frequency within contexts of the current document.
+     * MWEMetadata overlap zones are generated for adjacent context windows.
+     */
+    private void useExistingContexts() {
+        List<ContextWindow> contexts_in_doc = contextLookup.get(docId);
+        if (contexts_in_doc == null || contexts_in_doc.size() == 0)
+            return;
+
+        //context windows are now should be sorted by sentence id, then start tok index, then end tok index
+        Collections.sort(contexts_in_doc);
+        //mwecontext also sorted by sentence id, then start tok index, then end tok index
+        int cursor = 0;//cursor to point to the position in the list of terms that have been processed
+        ContextWindow prevCtx = null;
+        //go thru each context window, compute term frequency within that window
+        for (ContextWindow ctx : contexts_in_doc) {
+            ContextOverlap co = null;
+            if (prevCtx != null && prevCtx.getSentenceId() == ctx.getSentenceId()) {//does current context overlap with previous
+                //calculate context overlap
+                if (prevCtx.getLastTok() >= ctx.getFirstTok()) {
+                    co = new ContextOverlap(prevCtx, ctx, new ArrayList<>());
+                }
+            }
+
+            int indexFirstIncludedTermByContext = -1;
+            for (int i = cursor; i < terms.size(); i++) {//starting from the term pointed by the cursor
+                //window to check
+                MWEInSentence t = terms.get(i);
+
+                if (ctx.getSentenceId() < t.sentenceId) {//term is in the next sentence to the context's containing sentence
+                    //no terms will be found in the current context, so move on to the next context
+                    cursor = indexFirstIncludedTermByContext;
+                    break;
+                } else if (ctx.getSentenceId() > t.sentenceId) {//term is in the previous sentence to the context's sentence
+                    //should move on to the first term that is in the same sentence of the context
+                    continue;
+                }
+
+                //term is in the same context of the sentence; next, check is t within this context?
+                boolean outOfContext = false;
+                if ((t.firstTokenIndex >= ctx.getFirstTok() && t.firstTokenIndex <= ctx.getLastTok()) ||
+                        t.lastTokenIndex >= ctx.getFirstTok() && t.lastTokenIndex <= ctx.getLastTok()) { //containment can be partial
+                    buffer.increment(ctx, 1);
+                    buffer.increment(ctx, t.string, 1);
+                    if (indexFirstIncludedTermByContext == -1)
+                        indexFirstIncludedTermByContext = i;
+                } else if (t.lastTokenIndex < ctx.getFirstTok()) { //term to the left of the context, continue the term list to search
+                    //for term included in this context
+                    continue;
+                } else {
+                    outOfContext = true;
+                    if (indexFirstIncludedTermByContext != -1)
+                        cursor = indexFirstIncludedTermByContext;
+                }
+
+                //is t within a context overlap?
+                if (co != null) {
+                    if ((co.getPrevContext().getLastTok() >= t.firstTokenIndex &&
+                            co.getNextContext().getFirstTok() <= t.firstTokenIndex) ||
+                            (co.getPrevContext().getLastTok() >= t.lastTokenIndex &&
+                                    co.getNextContext().getFirstTok() <= t.lastTokenIndex) ||
+                            (co.getPrevContext().getFirstTok() <= t.firstTokenIndex && co.getPrevContext().getLastTok() >= t.firstTokenIndex &&
+                                    co.getNextContext().getLastTok() >= t.lastTokenIndex && co.getNextContext().getFirstTok() <= t.lastTokenIndex)) {
+                        co.getTerms().add(t.string);
+                    }
+                }
+
+                if (outOfContext)
+                    break;
+
+            }
+
+            prevCtx = ctx;
+
+            if (co != null && co.getTerms().size() > 0)
+                feature.addCtxOverlapZone(co);
+        }
+    }
+
+    private void generateNewContexts() {
+        int lastToken = -1;
+
+        int currSentenceId = -1, currWindowStart = -1, currWindowEnd = -1;
+        ContextWindow prevCtx = null;
+        List<Integer> prevWindowRight = new ArrayList<>(); //to keep indexes of terms that appear on the right half
+        // of the window context
+
+        for (int i = 0; i < terms.size(); i++) {
+            MWEInSentence term = terms.get(i);
+            firstTokenIndexes.add(term.firstTokenIndex);
+
+            //init for a sentence
+            if (currSentenceId == -1 || (currSentenceId != -1 && term.sentenceId != currSentenceId)) {//if new sentence, reset window parameters
+                currSentenceId = term.sentenceId;
+                currWindowStart = -1;
+                currWindowEnd = -1;
+                lastToken = sentenceBoundaries.get(currSentenceId);
+            }
+
+            if (term.firstTokenIndex >= currWindowStart && term.firstTokenIndex <= currWindowEnd)
+                continue;//the term is included in the current window, it should have been counted
+
+            //create window based on this term, and check its context
+            currWindowStart = term.firstTokenIndex - window;
+            if (currWindowStart < 0)
+                currWindowStart = 0;
+            currWindowEnd = term.lastTokenIndex + window;
+            if (currWindowEnd >= lastToken)
+                currWindowEnd = lastToken;
+
+            ContextWindow ctx = new ContextWindow();
+            ctx.setDocId(docId);
+            ctx.setSentenceId(currSentenceId);
+            ctx.setFirstTok(currWindowStart);
+            ctx.setLastTok(currWindowEnd);
+
+            buffer.increment(ctx, 1);
+            buffer.increment(ctx, term.string, 1);
+
+            //previous j tokens
+            List<String> termsInOverlap = new ArrayList<>();
+
+            List<Integer> currentWindowRight=new ArrayList<>();
+            for (int j = i - 1; j > -1; j--) {
+                MWEInSentence prevTerm = terms.get(j);
+                if (prevWindowRight.size() > 0) { //if we have moved back passing the the leftmost term in the
+                    //// previous window's right half, stop. This is to ensure minimum overlap
+                    if (j < prevWindowRight.get(0))
+                        break;
+                } else if (prevTerm.lastTokenIndex < currWindowStart || prevTerm.sentenceId != ctx.getSentenceId())
+                    break;
+
+                if ((prevTerm.firstTokenIndex >= ctx.getFirstTok() && prevTerm.firstTokenIndex <= ctx.getLastTok()) ||
+                        (prevTerm.lastTokenIndex >= ctx.getFirstTok() && prevTerm.lastTokenIndex <= ctx.getLastTok())) {
+                    buffer.increment(ctx, 1);
+                    buffer.increment(ctx, prevTerm.string, 1);
+                    if (prevWindowRight.contains(j)) {
+                        //if any term in the left half of current term's context window is also found in
+                        //the previous term's right half of context window, they are in overlap
+                        termsInOverlap.add(prevTerm.string);
+                    }
+                }
+                if(prevTerm.sentenceId==term.sentenceId&&prevTerm.lastTokenIndex>term.lastTokenIndex) //update terms that appear in the right half of
+                    //current term's context. A term appearing to the left of the current term can span
+                    //across the current term to finish on the right of the current term
+                    currentWindowRight.add(j);
+
+            }
+            if (prevCtx != null && prevCtx.getSentenceId()==ctx.getSentenceId()&&
+                    termsInOverlap.size() > 0 && prevCtx.getLastTok() >= ctx.getFirstTok()) {
+                ContextOverlap co = new ContextOverlap(prevCtx, ctx, termsInOverlap);
+                feature.addCtxOverlapZone(co);
+            }
+
+            //following j tokens
+            for (int j = i + 1; j < terms.size(); j++) {
+                i = j - 1;
+                MWEInSentence nextTerm = terms.get(j);
+                if (nextTerm.firstTokenIndex > currWindowEnd || nextTerm.sentenceId != ctx.getSentenceId())
+                    break;
+                buffer.increment(ctx, 1);
+                buffer.increment(ctx, nextTerm.string, 1);
+                currentWindowRight.add(j);////update terms that appear in the right half of current term's context
+            }
+            prevWindowRight=currentWindowRight;
+
+            prevCtx = ctx;
+        }
+    }
+
+    private static class MWEInSentence implements Comparable<MWEInSentence> {
+        public String string;
+        public int sentenceId;
+        public int firstTokenIndex;
+        public int lastTokenIndex;
+        public int start;
+        public int end;
+
+        public MWEInSentence(String string, int start, int end,
+                             int firstTokenIndex, int lastTokenIndex, int sentenceId) {
+            this.string = string;
+            this.sentenceId = sentenceId;
+            this.start = start;
+            this.end = end;
+            this.firstTokenIndex = firstTokenIndex;
+            this.lastTokenIndex = lastTokenIndex;
+        }
+
+        @Override
+        public int compareTo(MWEInSentence o) {
+            int compare = Integer.valueOf(sentenceId).compareTo(o.sentenceId);
+            if(compare==0)
+                compare=Integer.valueOf(firstTokenIndex).compareTo(o.firstTokenIndex);
+            if (compare == 0) {
+                return Integer.valueOf(lastTokenIndex).compareTo(o.lastTokenIndex);
+            }
+            return compare;
+        }
+
+        public String toString() {
+
+            return "st=" + sentenceId + ",f=" + firstTokenIndex + ",l=" + lastTokenIndex + ",so=" + start + ",se=" + end;
+        }
+    }
+}
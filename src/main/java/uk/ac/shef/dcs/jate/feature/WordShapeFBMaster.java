@@ -2,14 +2,17 @@ package uk.ac.shef.dcs.jate.feature;
 
 import org.apache.commons.lang.exception.ExceptionUtils;
 import org.apache.log4j.Logger;
+import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.index.Terms;
 import org.apache.solr.search.SolrIndexSearcher;
 import uk.ac.shef.dcs.jate.JATEException;
+import uk.ac.shef.dcs.jate.JATEExecutors;
 import uk.ac.shef.dcs.jate.JATEProperties;
 import uk.ac.shef.dcs.jate.util.SolrUtil;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.ForkJoinPool;
 
@@ -36,13 +39,21 @@ public class WordShapeFBMaster extends AbstractFeatureBuilder{
         WordShapeFeature feature = new WordShapeFeature();
 
         try {
-            Terms ngramInfo = SolrUtil.
-                    getTermVector(properties.getSolrFieldNameJATENGramInfo(), solrIndexSearcher);
-            Set<String> all;
+            String ngramField = properties.getSolrFieldNameJATENGramInfo();
+            List<Terms> ngramInfo = new ArrayList<>();
+            for (LeafReaderContext leaf : getLeaves()) {
+                Terms segmentInfo = SolrUtil.getTerms(ngramField, leaf);
+                if (segmentInfo != null)
+                    ngramInfo.add(segmentInfo);
+            }
+            if (ngramInfo.isEmpty() && solrIndexSearcher.maxDoc() > 0)
+                throw new JATEException(String.format("Cannot find expected field: %s", ngramField));
+            //candidates in index order, so that workers merge-join them with the n-gram field
+            List<String> all;
             if (termOrWord == FEATURE_TYPE_TERM)
-                all = getUniqueTerms();
+                all = getTermDictionary().getTerms();
             else
-                all = getUniqueWords();
+                all = getSortedUniqueWords();
             //start workers
             int cores = properties.getMaxCPUCores();
             cores = (cores == 0) ? DEFAULT_CPU_CORES : cores;
@@ -55,10 +66,10 @@ public class WordShapeFBMaster extends AbstractFeatureBuilder{
                     .append(maxPerThread);
             LOG.info(sb.toString());
             WordShapeFBWorker worker = new
-                    WordShapeFBWorker(properties, new ArrayList<>(all),
+                    WordShapeFBWorker(properties, all,
                     solrIndexSearcher, feature, maxPerThread,
                     ngramInfo, gazetteer);
-            ForkJoinPool forkJoinPool = new ForkJoinPool(cores);
+            ForkJoinPool forkJoinPool = JATEExecutors.getPool(cores);
             int[] total = forkJoinPool.invoke(worker);
             sb = new StringBuilder("Complete building features. Total=");
             sb.append(total[1]).append(" success=").append(total[0]);
@@ -18,6 +18,9 @@ import java.util.Set;
 
 /**
  * Created by zqz on 11/01/17.
+ *
+ * </p>Candidates must be in index order, they are merge-joined with the terms of the n-gram field of each segment,
+ * see {@link TermsMergeJoin}
  */
 class WordShapeFBWorker extends JATERecursiveTaskWorker<String, int[]> {
 
@@ -26,12 +29,12 @@ class WordShapeFBWorker extends JATERecursiveTaskWorker<String, int[]> {
     private JATEProperties properties;
     private SolrIndexSearcher solrIndexSearcher;
     private WordShapeFeature feature;
-    private Terms ngramInfo;
+    private List<Terms> ngramInfo;
     private Set<String> gazetteer;
 
     WordShapeFBWorker(JATEProperties properties, List<String> luceneTerms, SolrIndexSearcher solrIndexSearcher,
                       WordShapeFeature feature, int maxTasksPerWorker,
-                      Terms ngramInfo,
+                      List<Terms> ngramInfo,
                       Set<String> gazetteer) {
         super(luceneTerms, maxTasksPerWorker);
         this.properties = properties;
@@ -61,20 +64,31 @@ class WordShapeFBWorker extends JATERecursiveTaskWorker<String, int[]> {
     @Override
     protected int[] computeSingleWorker(List<String> terms) {
         int totalSuccess = 0;
-        TermsEnum ngramInfoEnum;
         try {
-            ngramInfoEnum = this.ngramInfo.iterator();
+            //terms of the n-gram field in each segment, merge-joined with the candidates; the shape of a term is
+            //taken from its first occurrence in the first segment it is found in
+            TermsMergeJoin[] joins = new TermsMergeJoin[ngramInfo.size()];
+            for (int i = 0; i < joins.length; i++)
+                joins[i] = new TermsMergeJoin(ngramInfo.get(i));
+            PostingsEnum docEnum = null;
 
             for (String term : terms) {
                 try {
-                    if (ngramInfoEnum.seekExact(new BytesRef(term.getBytes("UTF-8")))) {
-                        PostingsEnum docEnum = ngramInfoEnum.postings(null, PostingsEnum.ALL);
+                    TermsEnum ngramInfoEnum = null;
+                    for (TermsMergeJoin join : joins) {
+                        if (join.next(term)) {
+                            ngramInfoEnum = join.termsEnum();
+                            break;
+                        }
+                    }
+                    if (ngramInfoEnum != null) {
+                        docEnum = ngramInfoEnum.postings(docEnum, PostingsEnum.ALL);
                         int doc = 0;
                         if ((doc = docEnum.nextDoc()) != PostingsEnum.NO_MORE_DOCS) {
                             //tf in document
                             docEnum.nextPosition();
                             BytesRef bytes=docEnum.getPayload();
-                            MWEMetadata metadata = MWEMetadata.deserialize(bytes.utf8ToString());
+                            MWEMetadata metadata = MWEMetadata.fromPayload(bytes);
 
                             applyGazetteer(gazetteer, term);
 
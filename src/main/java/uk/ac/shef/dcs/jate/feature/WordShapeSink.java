@@ -0,0 +1,61 @@
+package uk.ac.shef.dcs.jate.feature;
+
+import org.apache.lucene.analysis.jate.MWEMetadata;
+import org.apache.lucene.analysis.jate.MWEMetadataType;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Records the word shape of candidates, see {@link DocumentSweep#addWordShapes(Set, Set)}. The shape of a candidate
+ * is the same in all its occurrences, so only the first occurrence seen by the sink is used.
+ */
+class WordShapeSink implements DocumentSink {
+    private final WordShapeFeature feature;
+    private final Set<String> gazetteer;
+    private final Set<String> seen = new HashSet<>();
+
+    WordShapeSink(WordShapeFeature feature, Set<String> gazetteer) {
+        this.feature = feature;
+        this.gazetteer = gazetteer;
+    }
+
+    @Override
+    public void startDocument(int docId) {
+    }
+
+    @Override
+    public void occurrence(String term, int position, int startOffset, int endOffset, OccurrencePayload payload) {
+        if (payload.bytes() == null || !seen.add(term))
+            return;
+        MWEMetadata metadata = payload.metadata();
+        applyGazetteer(gazetteer, term);
+        feature.mweHasDigit(term, isTrue(metadata, MWEMetadataType.HAS_DIGIT));
+        feature.mweHasUppercase(term, isTrue(metadata, MWEMetadataType.HAS_UPPERCASE));
+        feature.mweHasSymbol(term, isTrue(metadata, MWEMetadataType.HAS_SYMBOL));
+        feature.mweHasNumber(term, isTrue(metadata, MWEMetadataType.HAS_NUMERIC_TOKEN));
+        feature.mweHasAcronym(term, isTrue(metadata, MWEMetadataType.HAS_ACRONYM_TOKEN));
+    }
+
+    private static boolean isTrue(MWEMetadata metadata, MWEMetadataType type) {
+        return metadata.getMetaData(type).equalsIgnoreCase("true");
+    }
+
+    @Override
+    public void endDocument() {
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public boolean usesPayload() {
+        return true;
+    }
+
+    //this method can be implemented to check if the term contains any elements in the gazetteer.
+    protected void applyGazetteer(Set<String> gazetteer, String term) {
+        //must update with feature.mweHasIndicative...
+    }
+}
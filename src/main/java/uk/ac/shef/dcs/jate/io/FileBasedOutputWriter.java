@@ -8,12 +8,16 @@ import org.apache.solr.client.solrj.embedded.EmbeddedSolrServer;
 import org.apache.solr.core.SolrCore;
 import org.apache.solr.search.SolrIndexSearcher;
 import org.json.simple.parser.ParseException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import uk.ac.shef.dcs.jate.JATEException;
 import uk.ac.shef.dcs.jate.JATEProperties;
 import uk.ac.shef.dcs.jate.app.App;
 import uk.ac.shef.dcs.jate.eval.ATEResultLoader;
+import uk.ac.shef.dcs.jate.feature.DocumentSink;
+import uk.ac.shef.dcs.jate.feature.OccurrencePayload;
+import uk.ac.shef.dcs.jate.feature.DocumentSweep;
 import uk.ac.shef.dcs.jate.model.JATETerm;
-import uk.ac.shef.dcs.jate.util.SolrUtil;
 
 import java.io.*;
 import java.nio.file.Paths;
@@ -25,6 +29,7 @@ import java.util.*;
  *
  */
 public class FileBasedOutputWriter {
+    private static final Logger LOG = LoggerFactory.getLogger(FileBasedOutputWriter.class.getName());
 
     public static void main(String[] args) throws JATEException, IOException, ParseException {
         String outFolder=args[0];
@@ -47,64 +52,77 @@ public class FileBasedOutputWriter {
      */
     public static void output(String outFolder, SolrCore core, JATEProperties properties, List<String> predictions){
         SolrIndexSearcher searcher = core.getSearcher().get();
-        List<Integer> docIds = new ArrayList<>();
-        for (int i = 0; i < searcher.maxDoc(); i++) {
-            docIds.add(i);
+
+        Set<String> predictionStrings =null;
+        if(predictions!=null && predictions.size()>0){
+            predictionStrings =new HashSet<>(predictions);
         }
 
-        Set<String> predictionStrings =new HashSet<>();
-        if(predictions!=null){
-            predictionStrings.addAll(predictions);
+        //the terms of each document are read in the same single pass over term vectors used to build features
+        DocumentSweep sweep = new DocumentSweep(searcher, properties);
+        sweep.addSink(predictionStrings, () -> new TermListSink(outFolder, searcher));
+        try {
+            sweep.run();
+        } catch (JATEException je) {
+            LOG.error(ExceptionUtils.getFullStackTrace(je));
         }
+        core.close();
+        System.exit(0);
+    }
 
-        int count=0;
+    /**
+     * Writes the terms found in each document to a file named after the document
+     */
+    private static class TermListSink implements DocumentSink {
+        private final String outFolder;
+        private final SolrIndexSearcher searcher;
+        private final Set<String> terms = new HashSet<>();
+        private int docId;
 
-        for (int docId : docIds) {
-            count++;
+        TermListSink(String outFolder, SolrIndexSearcher searcher) {
+            this.outFolder = outFolder;
+            this.searcher = searcher;
+        }
 
-            try {
-                Terms lookupVector = SolrUtil.getTermVector(docId, properties.getSolrFieldNameJATENGramInfo(), searcher);
-                if(lookupVector==null){
-                    //LOG.error("Term vector for document id="+count+" is null. The document may be empty");
-                    System.err.println("Term vector for document id="+count+" is null. The document may be empty");
-                    continue;
-                }
+        @Override
+        public void startDocument(int docId) {
+            this.docId = docId;
+            terms.clear();
+        }
+
+        @Override
+        public void occurrence(String term, int position, int startOffset, int endOffset, OccurrencePayload payload) {
+            terms.add(term);
+        }
 
+        //a document that can not be written is skipped, the others are still written
+        @Override
+        public void endDocument() {
+            try {
                 String filename=outFolder+ File.separator+new File(searcher.doc(docId).get("id")).getName();
-                System.out.println(count+","+filename);
-                Set<String> terms = collectTerms(
-                        lookupVector);
-                List<String> sorted = new ArrayList<>();
-
-                if(predictions==null|| predictionStrings.size()==0)
-                    sorted.addAll(terms);
-                else{
-                    for(String t: terms){
-                        if(predictionStrings.contains(t))
-                            sorted.add(t);
-                       /* else
-                            System.err.println("This candidate term in this document does not exist: {"+t+" @ "+filename);
-                    */}
-                }
+                LOG.info(docId+","+filename);
+                List<String> sorted = new ArrayList<>(terms);
                 Collections.sort(sorted);
-                PrintWriter p = new PrintWriter(filename);
-                for(String s: sorted)
-                    p.println(s);
-                p.close();
+                try (PrintWriter p = new PrintWriter(filename)) {
+                    for (String s : sorted)
+                        p.println(s);
+                }
             } catch (IOException ioe) {
-                StringBuilder sb = new StringBuilder("Unable to build feature for document id:");
+                StringBuilder sb = new StringBuilder("Unable to write terms for document id:");
                 sb.append(docId).append("\n");
                 sb.append(ExceptionUtils.getFullStackTrace(ioe));
-                //LOG.error(sb.toString());
-            } catch (JATEException je) {
-                StringBuilder sb = new StringBuilder("Unable to build feature for document id:");
-                sb.append(docId).append("\n");
-                sb.append(ExceptionUtils.getFullStackTrace(je));
-                //LOG.error(sb.toString());
+                LOG.error(sb.toString());
             }
         }
-        core.close();
-        System.exit(0);
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public boolean usesPayload() {
+            return false;
+        }
     }
 
     public static Set<String> collectTerms(Terms termVectorLookup) throws IOException {
@@ -0,0 +1,73 @@
+package uk.ac.shef.dcs.jate.nlp;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded cache of lemmas by word and POS class (see {@link Lemmatiser}), safe to share by threads. Once the cache
+ * holds its capacity of words, new words are no longer cached: word frequencies are Zipfian, so the words seen first
+ * already include the frequent ones, and nothing has to be evicted.
+ */
+public class LemmaCache {
+    //POS classes used by Lemmatiser are 1 to 4
+    private static final int MAX_POS_CLASS = 4;
+
+    private final int capacity;
+    private final ConcurrentHashMap<String, String>[] lemmas;
+    private final AtomicInteger size = new AtomicInteger();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    @SuppressWarnings("unchecked")
+    public LemmaCache(int capacity) {
+        this.capacity = capacity;
+        lemmas = new ConcurrentHashMap[MAX_POS_CLASS + 1];
+        for (int i = 0; i < lemmas.length; i++)
+            lemmas[i] = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * @return the lemma of the word, or null if it is not cached
+     */
+    public String get(String word, int posClass) {
+        String lemma = posClass >= 0 && posClass < lemmas.length ? lemmas[posClass].get(word) : null;
+        if (lemma == null)
+            misses.increment();
+        else
+            hits.increment();
+        return lemma;
+    }
+
+    /**
+     * Cache the lemma of the word, unless the cache is full. A null lemma is not cached.
+     */
+    public void put(String word, int posClass, String lemma) {
+        if (lemma == null || posClass < 0 || posClass >= lemmas.length || size.get() >= capacity)
+            return;
+        if (lemmas[posClass].putIfAbsent(word, lemma) == null)
+            size.incrementAndGet();
+    }
+
+    public int size() {
+        return size.get();
+    }
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long h = hits.sum(), m = misses.sum();
+        stats.put("capacity", capacity);
+        stats.put("size", size.get());
+        stats.put("hits", h);
+        stats.put("misses", m);
+        stats.put("hitRatio", h + m == 0 ? 0.0 : h / (double) (h + m));
+        return stats;
+    }
+
+    @Override
+    public String toString() {
+        return "LemmaCache" + getStatistics();
+    }
+}
@@ -8,11 +8,20 @@ import java.util.Map;
 public class Lemmatiser {
 
     private final EngLemmatiser lemmatiser;
+    private final LemmaCache cache;
     private Map<String, Integer> tagLookUp;
 
     public Lemmatiser(EngLemmatiser lemmatiser) {
+        this(lemmatiser, null);
+    }
+
+    /**
+     * @param cache cache of lemmas, may be shared by lemmatisers. Null for no cache
+     */
+    public Lemmatiser(EngLemmatiser lemmatiser, LemmaCache cache) {
 
         this.lemmatiser=lemmatiser;
+        this.cache=cache;
         tagLookUp = new HashMap<>();
         tagLookUp.put("NN", 1);
         tagLookUp.put("NNS", 1);
@@ -41,12 +50,31 @@ public class Lemmatiser {
         tag=tag==null?1:tag;
         int space = value.lastIndexOf(" ");
         if(space==-1||value.endsWith("'s")) //if string is a single word, or it is in "XYZ's" form where the ' char has been removed
-            return lemmatiser.lemmatize(value,tag).trim();
+            return lemmatize(value,tag).trim();
 
 
         String part1 = value.substring(0,space);
-        String part2 = lemmatiser.lemmatize(value.substring(space+1),tag);
+        String part2 = lemmatize(value.substring(space+1),tag);
         return (part1+" "+part2).trim();
 
     }
+
+    private String lemmatize(String word, int tag) {
+        if (cache == null)
+            return lemmatiser.lemmatize(word, tag);
+        String lemma = cache.get(word, tag);
+        if (lemma == null) {
+            lemma = lemmatiser.lemmatize(word, tag);
+            if (lemma != null)
+                cache.put(word, tag, lemma);
+        }
+        return lemma;
+    }
+
+    /**
+     * @return the cache of lemmas, or null
+     */
+    public LemmaCache getCache() {
+        return cache;
+    }
 }
@@ -7,20 +7,30 @@ import uk.ac.shef.dcs.jate.nlp.Chunker;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 /**
- *
+ * Thread-safe: the model is shared, and each call chunks with a {@link ChunkerME} (which is not thread-safe) taken
+ * from a pool, as in {@link SentenceSplitterOpenNLP}.
  */
 public class ChunkerOpenNLP implements Chunker {
-    private opennlp.tools.chunker.Chunker chunker;
+    private final ChunkerModel model;
+    private final Queue<ChunkerME> idleChunkers = new ConcurrentLinkedQueue<>();
 
     public ChunkerOpenNLP(InputStream model) throws IOException {
-        chunker=new ChunkerME(new ChunkerModel(model));
+        this.model = new ChunkerModel(model);
     }
 
     public String[] chunk(String[] tokens, String[] posTags){
-        String[] chunkerTags=chunker.chunk(tokens, posTags);
-        return chunkerTags;
+        ChunkerME chunker = idleChunkers.poll();
+        if (chunker == null)
+            chunker = new ChunkerME(model);
+        try {
+            return chunker.chunk(tokens, posTags);
+        } finally {
+            idleChunkers.offer(chunker);
+        }
     }
 
     public String getStartTag(){
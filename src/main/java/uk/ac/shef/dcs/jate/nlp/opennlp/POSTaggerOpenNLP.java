@@ -6,19 +6,32 @@ import uk.ac.shef.dcs.jate.nlp.POSTagger;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 /**
  * Created by zqz on 28/09/2015.
+ *
+ * </p>Thread-safe: the model is shared, and each call tags with a {@link POSTaggerME} (which is not thread-safe)
+ * taken from a pool, as in {@link SentenceSplitterOpenNLP}.
  */
 public class POSTaggerOpenNLP implements POSTagger {
-    private opennlp.tools.postag.POSTagger tagger;
+    private final POSModel model;
+    private final Queue<POSTaggerME> idleTaggers = new ConcurrentLinkedQueue<>();
 
     public POSTaggerOpenNLP(InputStream model) throws IOException {
-        tagger = new POSTaggerME(new POSModel(model));
+        this.model = new POSModel(model);
     }
 
     @Override
     public String[] tag(String[] tokens) {
-        return tagger.tag(tokens);
+        POSTaggerME tagger = idleTaggers.poll();
+        if (tagger == null)
+            tagger = new POSTaggerME(model);
+        try {
+            return tagger.tag(tokens);
+        } finally {
+            idleTaggers.offer(tagger);
+        }
     }
 }
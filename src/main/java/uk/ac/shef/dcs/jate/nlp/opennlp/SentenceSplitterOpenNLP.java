@@ -1,6 +1,5 @@
 package uk.ac.shef.dcs.jate.nlp.opennlp;
 
-import opennlp.tools.sentdetect.SentenceDetector;
 import opennlp.tools.sentdetect.SentenceDetectorME;
 import opennlp.tools.sentdetect.SentenceModel;
 import opennlp.tools.util.Span;
@@ -12,22 +11,30 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import org.apache.log4j.Logger;
 
+/**
+ * Thread-safe: the model is shared, and each call splits with a {@link SentenceDetectorME} (which is not thread-safe)
+ * taken from a pool, holding at most as many detectors as concurrent callers. Detectors are not bound to threads, so
+ * they and the model are dropped with the splitter rather than kept by pooled threads, e.g., after a core reload.
+ */
 public class SentenceSplitterOpenNLP implements SentenceSplitter {
     private static Logger LOG = Logger.getLogger(SentenceSplitterOpenNLP.class.getName());
-    protected SentenceDetector sentenceDetector;
+    private SentenceModel model;
+    private final Queue<SentenceDetectorME> idleDetectors = new ConcurrentLinkedQueue<>();
 
     public SentenceSplitterOpenNLP(InputStream model) throws IOException {
         LOG.info("Initializing OpenNLP sentence splitter...");
-        sentenceDetector = new SentenceDetectorME(new SentenceModel(model));
+        init(new SentenceModel(model));
     }
 
     public SentenceSplitterOpenNLP(String modelFile) throws IOException {
         LOG.info("Initializing OpenNLP sentence splitter...");
         FileInputStream modelFileStream = new FileInputStream(modelFile);
         try {
-        	sentenceDetector = new SentenceDetectorME(new SentenceModel(modelFileStream));
+        	init(new SentenceModel(modelFileStream));
         } finally {
         	modelFileStream.close();
         }
@@ -35,11 +42,23 @@ public class SentenceSplitterOpenNLP implements SentenceSplitter {
 
     public SentenceSplitterOpenNLP(File modelFile) throws IOException {
         LOG.info("Initializing OpenNLP sentence splitter...");
-        sentenceDetector = new SentenceDetectorME(new SentenceModel(modelFile));
+        init(new SentenceModel(modelFile));
+    }
+
+    private void init(SentenceModel model) {
+        this.model = model;
     }
 
     public List<int[]> split(String text) {
-        Span[] offsets = sentenceDetector.sentPosDetect(text);
+        SentenceDetectorME sentenceDetector = idleDetectors.poll();
+        if (sentenceDetector == null)
+            sentenceDetector = new SentenceDetectorME(model);
+        Span[] offsets;
+        try {
+            offsets = sentenceDetector.sentPosDetect(text);
+        } finally {
+            idleDetectors.offer(sentenceDetector);
+        }
         List<int[]> rs = new ArrayList<>();
         for (Span s : offsets) {
             rs.add(new int[]{s.getStart(), s.getEnd()});
@@ -10,13 +10,17 @@ import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.math.NumberUtils;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.MultiFields;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.index.Terms;
+import org.apache.lucene.util.Bits;
 import org.apache.solr.common.SolrException;
 import org.apache.solr.common.params.MapSolrParams;
 import org.apache.solr.common.params.SolrParams;
 import org.apache.solr.common.util.NamedList;
 import org.apache.solr.common.util.Pair;
+import org.apache.solr.core.AbstractSolrEventListener;
+import org.apache.solr.core.CloseHook;
 import org.apache.solr.core.SolrCore;
 import org.apache.solr.handler.RequestHandlerBase;
 import org.apache.solr.request.SolrQueryRequest;
@@ -25,13 +29,17 @@ import org.apache.solr.schema.CopyField;
 import org.apache.solr.schema.IndexSchema;
 import org.apache.solr.search.SolrIndexSearcher;
 import org.apache.solr.update.CommitUpdateCommand;
+import org.apache.solr.util.plugin.SolrCoreAware;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import uk.ac.shef.dcs.jate.JATEException;
+import uk.ac.shef.dcs.jate.JATEExecutors;
 import uk.ac.shef.dcs.jate.JATEProperties;
 import uk.ac.shef.dcs.jate.app.App;
 import uk.ac.shef.dcs.jate.app.AppParams;
+import uk.ac.shef.dcs.jate.feature.AbstractFeatureBuilder;
+import uk.ac.shef.dcs.jate.feature.FeatureContext;
 import uk.ac.shef.dcs.jate.model.JATETerm;
 import uk.ac.shef.dcs.jate.util.SolrUtil;
 
@@ -70,7 +78,7 @@ import uk.ac.shef.dcs.jate.util.SolrUtil;
  * </requestHandler>
  * }
  */
-public class TermRecognitionRequestHandler extends RequestHandlerBase {
+public class TermRecognitionRequestHandler extends RequestHandlerBase implements SolrCoreAware {
     private final Logger log = LoggerFactory.getLogger(getClass());
 
     /**
@@ -204,6 +212,40 @@ public class TermRecognitionRequestHandler extends RequestHandlerBase {
         generalTRProcessor = TermRecognitionProcessorFactory.createTermRecognitionProcessor();
     }
 
+    /**
+     * Share the fork/join pools of feature builders and algorithms (see {@link JATEExecutors}) for the lifetime of
+     * the core, and release them when the core is closed. Cached features (see {@link FeatureContext}) and feature
+     * snapshots of older searchers are dropped when a new searcher is registered, and all cached features of the core
+     * when it is closed.
+     */
+    @Override
+    public void inform(SolrCore core) {
+        JATEExecutors.acquire();
+        core.addCloseHook(new CloseHook() {
+            @Override
+            public void preClose(SolrCore core) {
+            }
+
+            @Override
+            public void postClose(SolrCore core) {
+                FeatureContext.evict(core);
+                JATEExecutors.release();
+            }
+        });
+        core.registerNewSearcherListener(new AbstractSolrEventListener(core) {
+            @Override
+            public void newSearcher(SolrIndexSearcher newSearcher, SolrIndexSearcher currentSearcher) {
+                //the current searcher serves requests until the new one is registered
+                FeatureContext.evict(getCore(), newSearcher, currentSearcher);
+                try {
+                    AbstractFeatureBuilder.deleteStaleSnapshots(getCore(), newSearcher, currentSearcher);
+                } catch (IOException e) {
+                    log.warn("Failed to delete stale feature snapshots", e);
+                }
+            }
+        });
+    }
+
     @Override
     public void handleRequestBody(SolrQueryRequest req, SolrQueryResponse rsp) throws Exception {
         log.info("Term recognition request handler...");
@@ -323,6 +365,16 @@ public class TermRecognitionRequestHandler extends RequestHandlerBase {
         return "Automatic term recognition and indexing by whole corpus/index analysis.";
     }
 
+    @Override
+    public NamedList<Object> getStatistics() {
+        NamedList<Object> lst = super.getStatistics();
+        for (Map.Entry<String, Map<String, Object>> pool : JATEExecutors.getStatistics().entrySet()) {
+            for (Map.Entry<String, Object> stat : pool.getValue().entrySet())
+                lst.add(pool.getKey() + "." + stat.getKey(), stat.getValue());
+        }
+        return lst;
+    }
+
     /**
      * Index weighted & filtered final terms back into Solr
      *
@@ -353,7 +405,13 @@ public class TermRecognitionRequestHandler extends RequestHandlerBase {
 
             Map<String, List<CopyField>> copyFields = indexSchema.getCopyFieldsMap();
 
+            //the index is no longer merged into one segment, so deleted documents stay in the index until their
+            //segments are merged; they must not be updated, or they would be added back
+            Bits liveDocs = MultiFields.getLiveDocs(indexSearcher.getIndexReader());
             for (int docID = 0; docID < numDocs; docID++) {
+                if (liveDocs != null && !liveDocs.get(docID)) {
+                    continue;
+                }
                 try {
                     Document doc = indexSearcher.doc(docID);
                     if (isExtraction) {
@@ -388,7 +446,6 @@ public class TermRecognitionRequestHandler extends RequestHandlerBase {
                 } 
             }
 
-            writerIn.forceMerge(1, false);
             writerIn.commit();
         } catch (IOException ioe) {
             throw new JATEException(String.format("Failed to index filtered domain terms due to I/O exception when " +
@@ -4,6 +4,7 @@ import org.apache.sis.util.StringBuilders;
 import org.apache.solr.client.solrj.SolrServerException;
 import org.apache.solr.client.solrj.embedded.EmbeddedSolrServer;
 import org.apache.solr.core.CoreContainer;
+import org.apache.solr.search.SolrIndexSearcher;
 import uk.ac.shef.dcs.jate.JATEException;
 import uk.ac.shef.dcs.jate.JATEProperties;
 import uk.ac.shef.dcs.jate.feature.*;
@@ -15,7 +16,9 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 
 /**
@@ -43,14 +46,13 @@ public class RegressionFeatureGenerator {
         System.exit(0);*/
 
         //############## the following is the code for fetching features from the built index ######
-        WordShapeFBMaster wordShapeFBMaster =
-                new WordShapeFBMaster(server.getCoreContainer().getCore("GENIA").getSearcher().get(),
-                        prop,0,null);
-        PositionFeatureMaster positionFeatureMaster =
-                new PositionFeatureMaster(server.getCoreContainer().getCore("GENIA").getSearcher().get(),
-                        prop,0);
-        WordShapeFeature wordshapeFeature= (WordShapeFeature)wordShapeFBMaster.build();
-        PositionFeature positionFeature= (PositionFeature)positionFeatureMaster.build();
+        //both features are built in a single pass over the documents
+        SolrIndexSearcher searcher = server.getCoreContainer().getCore("GENIA").getSearcher().get();
+        DocumentSweep sweep = new DocumentSweep(searcher, prop);
+        Set<String> candidates = new HashSet<>(TermDictionary.getInstance(searcher, prop).getTerms());
+        WordShapeFeature wordshapeFeature = sweep.addWordShapes(candidates, null);
+        PositionFeature positionFeature = sweep.addPositions(candidates);
+        sweep.run();
 
         int c=0;
         System.out.println("\nTOTAL="+wordshapeFeature.getAllTerms().size());
@@ -42,6 +42,27 @@ public class SolrUtil {
         }
     }
 
+    /**
+     * Get indexed terms of a field in one index segment. Unlike {@link #getTermVector(String, SolrIndexSearcher)},
+     * this reads the segment directly rather than through a merged view of all segments. Document ids in the
+     * postings are local to the segment, add {@link LeafReaderContext#docBase} to get the ids of the searcher, and
+     * postings include deleted documents, see {@link LeafReader#getLiveDocs()}
+     *
+     * @param fieldname  field where terms will be retrieved
+     * @param leaf  index segment
+     * @return Terms  terms of the field, or null if no document in the segment has the field
+     * @throws JATEException
+     */
+    public static Terms getTerms(String fieldname, LeafReaderContext leaf) throws JATEException {
+        try {
+            return leaf.reader().terms(fieldname);
+        } catch (IOException ioe) {
+            StringBuilder sb = new StringBuilder(String.format("Cannot find expected field: %s. Error stacktrack: \n", fieldname));
+            sb.append(org.apache.commons.lang.exception.ExceptionUtils.getFullStackTrace(ioe));
+            throw new JATEException(sb.toString());
+        }
+    }
+
     public static void copyFields(Map<String, List<CopyField>> copyFields, float boost, Document doc) {
         for (String sourceField : copyFields.keySet()) {
             List<CopyField> copyFieldList = copyFields.get(sourceField);
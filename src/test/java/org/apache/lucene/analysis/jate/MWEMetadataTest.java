@@ -0,0 +1,111 @@
+package org.apache.lucene.analysis.jate;
+
+import org.apache.lucene.util.BytesRef;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class MWEMetadataTest {
+
+    @Test
+    public void binaryPayloadRoundTrip() {
+        MWEMetadata metadata = new MWEMetadata();
+        metadata.addMetaData(MWEMetadataType.SOURCE_SENTENCE_ID_IN_DOC, "12");
+        metadata.addMetaData(MWEMetadataType.FIRST_COMPOSING_TOKEN_ID_IN_SENT, "-1");
+        metadata.addMetaData(MWEMetadataType.SENTENCES_IN_DOC, "007");
+        metadata.addMetaData(MWEMetadataType.POS, "NNP");
+        metadata.addMetaData(MWEMetadataType.HAS_DIGIT, "true");
+        metadata.addMetaData(MWEMetadataType.HAS_SYMBOL, "false");
+        metadata.addMetaData(MWEMetadataType.HAS_UPPERCASE, "unknown");
+
+        BytesRef payload = MWEMetadata.toPayload(metadata);
+        Assert.assertEquals(MWEMetadata.BINARY_VERSION, payload.bytes[payload.offset]);
+        Assert.assertTrue(payload.length < MWEMetadata.serialize(metadata).length());
+
+        MWEMetadata read = MWEMetadata.fromPayload(payload);
+        Assert.assertEquals(metadata.metadata, read.metadata);
+    }
+
+    @Test
+    public void jsonPayloadIsRead() {
+        MWEMetadata metadata = new MWEMetadata();
+        metadata.addMetaData(MWEMetadataType.POS, "NN");
+        metadata.addMetaData(MWEMetadataType.SOURCE_PARAGRAPH_ID_IN_DOC, "3");
+
+        MWEMetadata read = MWEMetadata.fromPayload(new BytesRef(MWEMetadata.serialize(metadata)));
+        Assert.assertEquals(metadata.metadata, read.metadata);
+    }
+
+    @Test
+    public void sentenceContextReadsPayloads() {
+        MWEMetadata metadata = new MWEMetadata();
+        metadata.addMetaData(MWEMetadataType.SOURCE_PARAGRAPH_ID_IN_DOC, "2");
+        metadata.addMetaData(MWEMetadataType.SOURCE_SENTENCE_ID_IN_DOC, "5");
+        metadata.addMetaData(MWEMetadataType.FIRST_COMPOSING_TOKEN_ID_IN_SENT, "3");
+        metadata.addMetaData(MWEMetadataType.LAST_COMPOSING_TOKEN_ID_IN_SENT, "04");
+        metadata.addMetaData(MWEMetadataType.POS, "JJ");
+        metadata.addMetaData(MWEMetadataType.HAS_DIGIT, "false");
+
+        SentenceContext ctx = new SentenceContext();
+        Assert.assertTrue(ctx.read(MWEMetadata.toPayload(metadata)));
+        Assert.assertEquals(5, ctx.getSentenceId());
+        Assert.assertEquals(3, ctx.getFirstTokenIdx());
+        Assert.assertEquals(4, ctx.getLastTokenIdx());
+        Assert.assertEquals("JJ", ctx.getPosTag());
+
+        Assert.assertTrue(ctx.read(new BytesRef(MWEMetadata.serialize(metadata))));
+        Assert.assertEquals(5, ctx.getSentenceId());
+        Assert.assertEquals("JJ", ctx.getPosTag());
+
+        metadata.metadata.remove(MWEMetadataType.LAST_COMPOSING_TOKEN_ID_IN_SENT);
+        Assert.assertFalse(ctx.read(MWEMetadata.toPayload(metadata)));
+        Assert.assertEquals(-1, ctx.getLastTokenIdx());
+        Assert.assertFalse(ctx.read(null));
+        Assert.assertNull(ctx.getPosTag());
+    }
+
+    @Test
+    public void setFlagsKeepsOtherValues() {
+        MWEMetadata metadata = new MWEMetadata();
+        metadata.addMetaData(MWEMetadataType.SOURCE_SENTENCE_ID_IN_DOC, "7");
+        metadata.addMetaData(MWEMetadataType.POS, "NN");
+        metadata.addMetaData(MWEMetadataType.HAS_DIGIT, "true");
+        int flags = 1 << MWEMetadataType.HAS_DIGIT.ordinal() | 1 << MWEMetadataType.HAS_SYMBOL.ordinal();
+        int flagsTrue = 1 << MWEMetadataType.HAS_SYMBOL.ordinal();
+
+        MWEMetadata expected = new MWEMetadata();
+        expected.metadata.putAll(metadata.metadata);
+        expected.addMetaData(MWEMetadataType.HAS_DIGIT, "false");
+        expected.addMetaData(MWEMetadataType.HAS_SYMBOL, "true");
+
+        MWEMetadata read = MWEMetadata.fromPayload(MWEMetadata.setFlags(MWEMetadata.toPayload(metadata), flags, flagsTrue));
+        Assert.assertEquals(expected.metadata, read.metadata);
+        read = MWEMetadata.fromPayload(MWEMetadata.setFlags(new BytesRef(MWEMetadata.serialize(metadata)), flags, flagsTrue));
+        Assert.assertEquals(expected.metadata, read.metadata);
+    }
+
+    @Test
+    public void setStringKeepsOtherValues() {
+        MWEMetadata metadata = new MWEMetadata();
+        metadata.addMetaData(MWEMetadataType.SOURCE_SENTENCE_ID_IN_DOC, "7");
+        metadata.addMetaData(MWEMetadataType.SENTENCES_IN_DOC, "007");
+        metadata.addMetaData(MWEMetadataType.LAST_COMPOSING_TOKEN_ID_IN_SENT, "-3");
+        metadata.addMetaData(MWEMetadataType.HAS_DIGIT, "true");
+        metadata.addMetaData(MWEMetadataType.HAS_SYMBOL, "unknown");
+
+        MWEMetadata expected = new MWEMetadata();
+        expected.metadata.putAll(metadata.metadata);
+        expected.addMetaData(MWEMetadataType.POS, "NNS");
+
+        BytesRef payload = MWEMetadata.setString(MWEMetadata.toPayload(metadata), MWEMetadataType.POS, "NNS");
+        Assert.assertEquals(expected.metadata, MWEMetadata.fromPayload(payload).metadata);
+        //replacing a value
+        payload = MWEMetadata.setString(payload, MWEMetadataType.POS, "VBZ");
+        expected.addMetaData(MWEMetadataType.POS, "VBZ");
+        Assert.assertEquals(expected.metadata, MWEMetadata.fromPayload(payload).metadata);
+
+        payload = MWEMetadata.setString(new BytesRef(MWEMetadata.serialize(metadata)), MWEMetadataType.POS, "VBZ");
+        Assert.assertEquals(expected.metadata, MWEMetadata.fromPayload(payload).metadata);
+        Assert.assertEquals("JJ", MWEMetadata.fromPayload(
+                MWEMetadata.setString(null, MWEMetadataType.POS, "JJ")).getMetaData(MWEMetadataType.POS));
+    }
+}
@@ -0,0 +1,66 @@
+package org.apache.lucene.analysis.jate;
+
+import opennlp.tools.sentdetect.SentenceDetectorME;
+import opennlp.tools.sentdetect.SentenceModel;
+import opennlp.tools.tokenize.SimpleTokenizer;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
+import org.apache.lucene.analysis.tokenattributes.PayloadAttribute;
+import org.apache.lucene.util.AttributeFactory;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+public class OpenNLPTokenizerTest {
+    static String workingDir = System.getProperty("user.dir");
+    Path EN_SENT_MODEL_FILE = Paths.get(workingDir, "src", "test", "resource", "opennlp-models", "en-sent.bin");
+
+    @Test
+    public void streamingMatchesWholeDocument() throws IOException {
+        SentenceDetectorME sentenceDetector = new SentenceDetectorME(new SentenceModel(EN_SENT_MODEL_FILE.toFile()));
+        //leading whitespace fills a whole window
+        String text = "\n                                        \n" +
+                "Term extraction finds terms. It reads a corpus first.\n\n" +
+                "The next sentence is much longer than the streaming window, so the window has to grow " +
+                "before this sentence can be detected and emitted as a whole. " +
+                "Short one.                                                  \n\n\n" +
+                "Offsets must match. Sentence ids too.";
+
+        Tokenizer whole = new OpenNLPTokenizer(AttributeFactory.DEFAULT_ATTRIBUTE_FACTORY, sentenceDetector,
+                SimpleTokenizer.INSTANCE);
+        Tokenizer streamed = new OpenNLPTokenizer(AttributeFactory.DEFAULT_ATTRIBUTE_FACTORY, sentenceDetector,
+                SimpleTokenizer.INSTANCE, null, 32);
+
+        List<String> expected = tokens(whole, text);
+        Assert.assertTrue(expected.size() > 30);
+        Assert.assertEquals(expected, tokens(streamed, text));
+        //the window grown for the long sentence is reused by the next document
+        Assert.assertEquals(expected, tokens(streamed, text));
+        Assert.assertEquals(tokens(whole, "One more. Document."), tokens(streamed, "One more. Document."));
+    }
+
+    //each token as term|start|end|sentence id
+    private static List<String> tokens(Tokenizer tokenizer, String text) throws IOException {
+        CharTermAttribute term = tokenizer.addAttribute(CharTermAttribute.class);
+        OffsetAttribute offset = tokenizer.addAttribute(OffsetAttribute.class);
+        PayloadAttribute payload = tokenizer.addAttribute(PayloadAttribute.class);
+        List<String> tokens = new ArrayList<>();
+        tokenizer.setReader(new StringReader(text));
+        tokenizer.reset();
+        while (tokenizer.incrementToken()) {
+            String sentenceId = MWEMetadata.fromPayload(payload.getPayload())
+                    .getMetaData(MWEMetadataType.SOURCE_SENTENCE_ID_IN_DOC);
+            tokens.add(term.toString() + "|" + offset.startOffset() + "|" + offset.endOffset() + "|" + sentenceId);
+        }
+        tokenizer.end();
+        tokenizer.close();
+        return tokens;
+    }
+}
@@ -0,0 +1,78 @@
+package org.apache.lucene.analysis.jate;
+
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
+import org.apache.lucene.analysis.tokenattributes.PayloadAttribute;
+import org.apache.lucene.util.AttributeSource;
+import org.apache.lucene.util.BytesRef;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TokenBufferTest {
+    private final AttributeSource attributes = new AttributeSource();
+    private final CharTermAttribute termAtt = attributes.addAttribute(CharTermAttribute.class);
+    private final OffsetAttribute offsetAtt = attributes.addAttribute(OffsetAttribute.class);
+    private final PayloadAttribute payloadAtt = attributes.addAttribute(PayloadAttribute.class);
+
+    @Test
+    public void discardKeepsReadAheadToken() {
+        TokenBuffer tokens = new TokenBuffer(attributes);
+        //a sentence of three tokens, then the first token of the next sentence read ahead, as
+        //OpenNLPPOSTaggerFilter does
+        capture(tokens, "Term", 0, 4, 0);
+        capture(tokens, "extraction", 5, 15, 0);
+        capture(tokens, ".", 15, 16, 0);
+        capture(tokens, "Corpora", 17, 24, 1);
+        Assert.assertEquals(4, tokens.size());
+
+        tokens.discard(3);
+        Assert.assertEquals(1, tokens.size());
+        //the rest of the second sentence, one token without payload
+        capture(tokens, "grow", 25, 29, 1);
+        termAtt.setEmpty().append("fast");
+        offsetAtt.setOffset(30, 34);
+        payloadAtt.setPayload(null);
+        tokens.capture();
+
+        assertRestored(tokens, 0, "Corpora", 17, 24, 1);
+        assertRestored(tokens, 1, "grow", 25, 29, 1);
+        tokens.restore(2);
+        Assert.assertEquals("fast", termAtt.toString());
+        Assert.assertNull(payloadAtt.getPayload());
+
+        tokens.discard(5);
+        Assert.assertEquals(0, tokens.size());
+        capture(tokens, "Next", 40, 44, 2);
+        assertRestored(tokens, 0, "Next", 40, 44, 2);
+    }
+
+    private void capture(TokenBuffer tokens, String term, int start, int end, int sentenceId) {
+        termAtt.setEmpty().append(term);
+        offsetAtt.setOffset(start, end);
+        MWEMetadata metadata = new MWEMetadata();
+        metadata.addMetaData(MWEMetadataType.SOURCE_SENTENCE_ID_IN_DOC, String.valueOf(sentenceId));
+        metadata.addMetaData(MWEMetadataType.POS, term.toUpperCase());
+        payloadAtt.setPayload(MWEMetadata.toPayload(metadata));
+        tokens.capture();
+        //the attributes are overwritten by the next token
+        termAtt.setEmpty().append("overwritten");
+        offsetAtt.setOffset(0, 0);
+        payloadAtt.setPayload(new BytesRef("overwritten"));
+    }
+
+    private void assertRestored(TokenBuffer tokens, int i, String term, int start, int end, int sentenceId) {
+        tokens.restore(i);
+        Assert.assertEquals(term, termAtt.toString());
+        Assert.assertEquals(start, offsetAtt.startOffset());
+        Assert.assertEquals(end, offsetAtt.endOffset());
+        Assert.assertEquals(start, tokens.startOffset(i));
+        StringBuilder sb = new StringBuilder();
+        tokens.appendTerm(i, sb);
+        Assert.assertEquals(term, sb.toString());
+
+        MWEMetadata metadata = MWEMetadata.fromPayload(payloadAtt.getPayload());
+        Assert.assertEquals(String.valueOf(sentenceId),
+                metadata.getMetaData(MWEMetadataType.SOURCE_SENTENCE_ID_IN_DOC));
+        Assert.assertEquals(term.toUpperCase(), metadata.getMetaData(MWEMetadataType.POS));
+    }
+}
@@ -0,0 +1,40 @@
+package org.apache.lucene.analysis.jate;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+public class WordShapeTaggerTest {
+    //the patterns the tagger implements
+    private static final Pattern acronym = Pattern.compile("\\b[A-Z0-9]+\\b");
+    private static final Pattern number = Pattern.compile("\\b[0-9\\.,/]+\\b");
+    private static final Pattern uppercase = Pattern.compile("[A-Z]");
+    private static final Pattern digit = Pattern.compile("[0-9]");
+    private static final Pattern symbol = Pattern.compile("\\p{Punct}");
+
+    @Test
+    public void sameShapesAsPatterns() {
+        String[] inputs = {"CD28 surface receptor", "p28n", "NBC corp", "the X26 flight", "the 28 lane", "IL-2",
+                "1,000.5", "3/4", ".5", "5.", "a.5", "5a", "_5_", "NF-kappa B", "GM-CSF", "aBC", "ABc", "", "...",
+                "x/y", "mRNA", "IFN-gamma", "(NK)", "\u00fcber \u00c4B", "2012-01-01", "a1.2b", "1.2b", "A_1"};
+        for (String input : inputs) {
+            int shape = WordShapeTagger.tag(input.toCharArray(), 0, input.length());
+            Assert.assertEquals(input, hasAcronym(input), (shape & WordShapeTagger.ACRONYM) != 0);
+            Assert.assertEquals(input, number.matcher(input).find(), (shape & WordShapeTagger.NUMBER) != 0);
+            Assert.assertEquals(input, uppercase.matcher(input).find(), (shape & WordShapeTagger.UPPERCASE) != 0);
+            Assert.assertEquals(input, digit.matcher(input).find(), (shape & WordShapeTagger.DIGIT) != 0);
+            Assert.assertEquals(input, symbol.matcher(input).find(), (shape & WordShapeTagger.SYMBOL) != 0);
+        }
+    }
+
+    private static boolean hasAcronym(String input) {
+        Matcher m = acronym.matcher(input);
+        while (m.find()) {
+            if (uppercase.matcher(m.group()).find())
+                return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,75 @@
+package uk.ac.shef.dcs.jate.feature;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.regex.Pattern;
+
+public class ContainmentFBWorkerTest {
+
+    @Test
+    public void sameContainmentAsPattern() {
+        List<String> candidates = Arrays.asList(
+                //punctuation inside and around tokens
+                "cell receptor", "t-cell receptor complex", "t-cell receptor", "receptor", "cell",
+                "il-2 (alpha) chain", "il-2 (", "(alpha) chain", "alpha) chain", "il-2", "b-", "a b-", "a b--x c",
+                "-b c", "x a-b c", "a--b c d", "nf-kappa b", "kappa b", "nf-kappa b site", "b site",
+                //repeated tokens
+                "a a", "a a a", "a a a a", "b a a", "a", "cell x", "t-cell x-ray cell", "x-ray cell",
+                //a term that is a prefix of a token
+                "cell rec", "cell receptor binding", "rec", "receptor binding", "receptor bind",
+                "gene", "gene expression", "gene expressions level", "gene expression level");
+        assertSameContainment(candidates);
+    }
+
+    @Test
+    public void sameContainmentAsPatternOnRandomTerms() {
+        String[] tokens = {"a", "b", "a-b", "b-a", "-a", "a-", "(a", "b)", "a.b", "ab", "a_b", "-"};
+        Random random = new Random(42);
+        Set<String> candidates = new LinkedHashSet<>();
+        while (candidates.size() < 400) {
+            int length = 1 + random.nextInt(4);
+            StringBuilder term = new StringBuilder();
+            for (int i = 0; i < length; i++) {
+                if (i > 0)
+                    term.append(' ');
+                term.append(tokens[random.nextInt(tokens.length)]);
+            }
+            candidates.add(term.toString());
+        }
+        assertSameContainment(new ArrayList<>(candidates));
+    }
+
+    private static void assertSameContainment(List<String> candidates) {
+        Containment feature = new Containment();
+        ContainmentFBWorker worker = new ContainmentFBWorker(candidates, candidates.size(), feature,
+                new TermNGramIndex(candidates));
+        worker.computeSingleWorker(candidates);
+
+        for (String term : candidates)
+            Assert.assertEquals(term, patternParents(term, candidates), feature.getTermParents(term));
+    }
+
+    /**
+     * The rule the n-gram index replaces: a longer candidate sharing a token with the term contains the term if the
+     * term is found in it delimited by non-word characters
+     */
+    private static Set<String> patternParents(String term, List<String> candidates) {
+        Pattern pattern = Pattern.compile("(?<!\\w)" + Pattern.quote(term) + "(?!\\w)");
+        String[] termTokens = term.split(" ");
+        Set<String> tokens = new HashSet<>(Arrays.asList(termTokens));
+        Set<String> parents = new HashSet<>();
+        for (String candidate : candidates) {
+            String[] candidateTokens = candidate.split(" ");
+            if (candidateTokens.length <= termTokens.length)
+                continue;
+            boolean sharesToken = false;
+            for (String t : candidateTokens)
+                sharesToken |= tokens.contains(t);
+            if (sharesToken && pattern.matcher(candidate).find())
+                parents.add(candidate);
+        }
+        return parents;
+    }
+}
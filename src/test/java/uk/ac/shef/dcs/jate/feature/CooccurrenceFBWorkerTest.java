@@ -0,0 +1,69 @@
+package uk.ac.shef.dcs.jate.feature;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.*;
+
+public class CooccurrenceFBWorkerTest {
+
+    @Test
+    public void countsReferenceTermsThatAreNotCandidates() {
+        TermDictionary dictionary = new TermDictionary("terms", new String[]{"cell", "cell receptor"});
+        //target candidate terms, keyed by ordinals
+        FrequencyCtxBased target = new FrequencyCtxBased(dictionary);
+        ContextFrequencyBuffer targets = new ContextFrequencyBuffer(target);
+        targets.increment(context(0), "cell receptor", 1);
+        targets.increment(context(0), "cell", 2);
+        targets.increment(context(1), "cell", 1);
+        targets.increment(context(2), "cell", 4);
+        targets.flush();
+        //reference words, of which only "cell" is a candidate term
+        FrequencyCtxBased reference = new FrequencyCtxBased();
+        ContextFrequencyBuffer refs = new ContextFrequencyBuffer(reference);
+        refs.increment(context(0), "cell", 2);
+        refs.increment(context(0), "the", 3);
+        refs.increment(context(0), "receptor", 1);
+        refs.increment(context(1), "cell", 1);
+        refs.increment(context(1), "the", 1);
+        refs.flush();
+
+        Cooccurrence feature = new Cooccurrence(dictionary);
+        int[] refCtxIds = new int[target.getNumContexts()];
+        List<Integer> contextIds = CooccurrenceFBMaster.pairContexts(target, reference, refCtxIds);
+        Assert.assertEquals(2, contextIds.size());
+        CooccurrenceFBWorker worker = new CooccurrenceFBWorker(feature, contextIds, refCtxIds,
+                target, CooccurrenceFBMaster.targetOrdinals(target, dictionary),
+                reference, CooccurrenceFBMaster.refTermIds(reference, feature), contextIds.size());
+        Assert.assertEquals(2, (int) worker.computeSingleWorker(contextIds));
+
+        Map<String, Integer> expected = new HashMap<>();
+        expected.put("cell", 1);
+        expected.put("the", 1);
+        expected.put("receptor", 1);
+        Assert.assertEquals(expected, cooccurrence(feature, "cell receptor"));
+        expected.clear();
+        expected.put("the", 3);
+        expected.put("receptor", 1);
+        Assert.assertEquals(expected, cooccurrence(feature, "cell"));
+
+        Assert.assertEquals(new HashSet<>(Arrays.asList("cell", "the", "receptor")), feature.getRefTerms());
+        Assert.assertEquals(dictionary.ordinal("cell"), feature.lookupRefTerm("cell"));
+        Assert.assertTrue(feature.lookupRefTerm("the") >= dictionary.size());
+        Assert.assertEquals(-1, feature.lookupRefTerm("gene"));
+    }
+
+    private static Map<String, Integer> cooccurrence(Cooccurrence feature, String term) {
+        Map<String, Integer> result = new HashMap<>();
+        for (Map.Entry<Integer, Integer> e : feature.getCoocurrence(term).entrySet())
+            result.put(feature.lookupRefTerm(e.getKey()), e.getValue());
+        return result;
+    }
+
+    private static ContextWindow context(int docId) {
+        ContextWindow ctx = new ContextWindow();
+        ctx.setDocId(docId);
+        ctx.setSentenceId(0);
+        return ctx;
+    }
+}
@@ -0,0 +1,50 @@
+package uk.ac.shef.dcs.jate.nlp;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Map;
+
+public class LemmaCacheTest {
+
+    @Test
+    public void hitsAndMisses() {
+        LemmaCache cache = new LemmaCache(10);
+        Assert.assertNull(cache.get("cells", 1));
+        cache.put("cells", 1, "cell");
+        Assert.assertEquals("cell", cache.get("cells", 1));
+        //lemmas are cached by POS class
+        Assert.assertNull(cache.get("cells", 2));
+        //POS classes out of range are not cached
+        cache.put("cells", 9, "cell");
+        Assert.assertNull(cache.get("cells", 9));
+        //null lemmas are not cached
+        cache.put("xyz", 1, null);
+        Assert.assertNull(cache.get("xyz", 1));
+        Assert.assertEquals(1, cache.size());
+
+        Map<String, Object> stats = cache.getStatistics();
+        Assert.assertEquals(1L, stats.get("hits"));
+        Assert.assertEquals(4L, stats.get("misses"));
+        Assert.assertEquals(0.2, (Double) stats.get("hitRatio"), 1e-9);
+    }
+
+    @Test
+    public void boundedSize() {
+        LemmaCache cache = new LemmaCache(3);
+        cache.put("cells", 1, "cell");
+        cache.put("cells", 1, "cell");
+        cache.put("running", 2, "run");
+        cache.put("genes", 1, "gene");
+        Assert.assertEquals(3, cache.size());
+
+        //words seen first stay cached, new words are not
+        cache.put("proteins", 1, "protein");
+        Assert.assertEquals(3, cache.size());
+        Assert.assertNull(cache.get("proteins", 1));
+        Assert.assertEquals("cell", cache.get("cells", 1));
+        Assert.assertEquals("run", cache.get("running", 2));
+        Assert.assertEquals("gene", cache.get("genes", 1));
+        Assert.assertEquals(3, cache.getStatistics().get("size"));
+    }
+}